@@ -10,6 +10,7 @@ import atlasledger.service.DatabaseIntegrityService;
 import atlasledger.service.DocumentService;
 import atlasledger.service.ReportService;
 import atlasledger.service.SimulationService;
+import atlasledger.service.SyncScheduler;
 import atlasledger.service.SyncService;
 import atlasledger.utils.NetworkUtils;
 import java.nio.file.Path;
@@ -31,6 +32,7 @@ import java.nio.file.Path;
  *   <li>{@link ProviderRepository} - Repository for provider data access</li>
  *   <li>{@link OrderRepository} - Repository for order data access</li>
  *   <li>{@link SyncService} - Service for data synchronization</li>
+ *   <li>{@link SyncScheduler} - Background scheduler that drains the sync queue</li>
  *   <li>{@link ReportService} - Service for generating reports</li>
  *   <li>{@link DatabaseIntegrityService} - Service for database integrity checks</li>
  *   <li>{@link AnalyticsService} - Service for analytics and metrics</li>
@@ -54,6 +56,7 @@ public class AppContext {
     private final ProviderRepository providerRepository;
     private final OrderRepository orderRepository;
     private final SyncService syncService;
+    private final SyncScheduler syncScheduler;
     private final ReportService reportService;
     private final DatabaseIntegrityService databaseIntegrityService;
     private final AnalyticsService analyticsService;
@@ -70,6 +73,7 @@ public class AppContext {
                       ProviderRepository providerRepository,
                       OrderRepository orderRepository,
                       SyncService syncService,
+                      SyncScheduler syncScheduler,
                       ReportService reportService,
                       DatabaseIntegrityService databaseIntegrityService,
                       AnalyticsService analyticsService,
@@ -85,6 +89,7 @@ public class AppContext {
         this.providerRepository = providerRepository;
         this.orderRepository = orderRepository;
         this.syncService = syncService;
+        this.syncScheduler = syncScheduler;
         this.reportService = reportService;
         this.databaseIntegrityService = databaseIntegrityService;
         this.analyticsService = analyticsService;
@@ -117,6 +122,10 @@ public class AppContext {
         return syncService;
     }
 
+    public SyncScheduler getSyncScheduler() {
+        return syncScheduler;
+    }
+
     public ReportService getReportService() {
         return reportService;
     }
@@ -1,6 +1,11 @@
 
 package atlasledger.app;
 
+import atlasledger.dao.DocumentQueueDao;
+import atlasledger.dao.OrdenDao;
+import atlasledger.dao.ProductoDao;
+import atlasledger.dao.ProveedorDao;
+import atlasledger.dao.WorkerDao;
 import atlasledger.repository.OrderRepository;
 import atlasledger.repository.ProductRepository;
 import atlasledger.repository.ProviderRepository;
@@ -10,24 +15,42 @@ import atlasledger.service.DatabaseIntegrityService;
 import atlasledger.service.DocumentService;
 import atlasledger.service.ReportService;
 import atlasledger.service.SimulationService;
+import atlasledger.service.SyncScheduler;
 import atlasledger.service.SyncService;
+import atlasledger.utils.ConnectivityMonitor;
 import atlasledger.utils.DBHelper;
 import atlasledger.utils.NetworkUtils;
+import atlasledger.utils.QueryPlanAuditor;
+import atlasledger.utils.SchemaMigrator;
 import java.nio.file.Path;
 import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
 
 public final class AppInitializer {
 
+    /**
+     * Propiedad del sistema que activa la auditoria de planes de consulta al iniciar sesion.
+     */
+    public static final String AUDIT_QUERY_PLANS_PROPERTY = "atlasledger.auditarPlanes";
+
     private AppInitializer() {
     }
 
     public static AppContext initialise(StartupProfile profile, AuthService authService) {
         Path databasePath = profile.getDatabasePath();
-        DBHelper.overrideDatabasePath(databasePath, true);
+        if (profile.isInMemoryDatabase()) {
+            DBHelper.useInMemoryDatabase(databasePath, true);
+        } else {
+            DBHelper.overrideDatabasePath(databasePath, true);
+        }
         authService.ensureDefaultAdmin();
+        if (Boolean.getBoolean(AUDIT_QUERY_PLANS_PROPERTY)) {
+            auditQueryPlansInBackground();
+        }
 
         AppConfig config = AppConfig.of(profile.getApiBaseUrl(), Duration.ofSeconds(10));
-        NetworkUtils networkUtils = new NetworkUtils(config.getNetworkTimeout());
+        ConnectivityMonitor connectivity = ConnectivityMonitor.forEndpoint(config.getApiBaseUrl(), config.getNetworkTimeout());
+        NetworkUtils networkUtils = new NetworkUtils(config.getNetworkTimeout(), connectivity);
 
         ProductRepository productRepository = new ProductRepository();
         ProviderRepository providerRepository = new ProviderRepository();
@@ -40,11 +63,13 @@ public final class AppInitializer {
             orderRepository,
             networkUtils
         );
+        SyncScheduler syncScheduler = new SyncScheduler(syncService);
+        syncScheduler.start();
 
         ReportService reportService = new ReportService(productRepository, orderRepository);
         DatabaseIntegrityService integrityService = new DatabaseIntegrityService();
         AnalyticsService analyticsService = new AnalyticsService();
-        DocumentService documentService = new DocumentService(profile.getDocumentsPath());
+        DocumentService documentService = new DocumentService(profile.getDocumentsPath(), connectivity);
         SimulationService simulationService = new SimulationService(productRepository, providerRepository, orderRepository);
 
         return new AppContext(
@@ -53,6 +78,7 @@ public final class AppInitializer {
             providerRepository,
             orderRepository,
             syncService,
+            syncScheduler,
             reportService,
             integrityService,
             analyticsService,
@@ -65,5 +91,20 @@ public final class AppInitializer {
             networkUtils
         );
     }
+
+    private static void auditQueryPlansInBackground() {
+        CompletableFuture.runAsync(() -> {
+            SchemaMigrator.awaitBackground();
+            QueryPlanAuditor.auditAndLog(
+                ProductoDao.class,
+                ProveedorDao.class,
+                OrdenDao.class,
+                DocumentQueueDao.class,
+                WorkerDao.class,
+                SyncService.class,
+                AnalyticsService.class
+            );
+        });
+    }
 }
 
@@ -4,6 +4,8 @@ import atlasledger.app.StartupProfile;
 import atlasledger.service.AuthService;
 import atlasledger.ui.dashboard.MainScreen;
 import atlasledger.ui.login.LoginScreen;
+import atlasledger.utils.DBHelper;
+import atlasledger.utils.Logger;
 import java.net.URL;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -23,7 +25,9 @@ public class MainApp extends Application {
 
     private void showLogin(Stage stage) {
         if (appContext != null) {
+            appContext.getSyncScheduler().close();
             appContext.getSyncService().close();
+            appContext.getNetworkUtils().connectivity().close();
             appContext = null;
         }
 
@@ -46,7 +50,9 @@ public class MainApp extends Application {
 
     private void openMainWindow(Stage stage, StartupProfile profile, AuthService authService) {
         if (appContext != null) {
+            appContext.getSyncScheduler().close();
             appContext.getSyncService().close();
+            appContext.getNetworkUtils().connectivity().close();
         }
         appContext = AppInitializer.initialise(profile, authService);
         Runnable logoutHandler = () -> showLogin(stage);
@@ -77,8 +83,12 @@ public class MainApp extends Application {
     @Override
     public void stop() {
         if (appContext != null) {
+            appContext.getSyncScheduler().close();
             appContext.getSyncService().close();
+            appContext.getNetworkUtils().connectivity().close();
         }
+        Logger.flush();
+        DBHelper.shutdown();
     }
 
     public static void main(String[] args) {
@@ -10,13 +10,24 @@ public class StartupProfile {
     private final boolean localMode;
     private final String apiBaseUrl;
     private final Worker worker;
+    private final boolean inMemoryDatabase;
 
     public StartupProfile(Path databasePath, Path documentsPath, boolean localMode, String apiBaseUrl, Worker worker) {
+        this(databasePath, documentsPath, localMode, apiBaseUrl, worker, false);
+    }
+
+    /**
+     * @param inMemoryDatabase si es {@code true}, la sesion trabaja sobre una copia en memoria de
+     *                         {@code databasePath} que se guarda en disco periodicamente y al salir
+     */
+    public StartupProfile(Path databasePath, Path documentsPath, boolean localMode, String apiBaseUrl, Worker worker,
+                          boolean inMemoryDatabase) {
         this.databasePath = databasePath;
         this.documentsPath = documentsPath;
         this.localMode = localMode;
         this.apiBaseUrl = apiBaseUrl;
         this.worker = worker;
+        this.inMemoryDatabase = inMemoryDatabase;
     }
 
     public Path getDatabasePath() {
@@ -38,4 +49,8 @@ public class StartupProfile {
     public Worker getWorker() {
         return worker;
     }
+
+    public boolean isInMemoryDatabase() {
+        return inMemoryDatabase;
+    }
 }
@@ -0,0 +1,104 @@
+package atlasledger.dao;
+
+import atlasledger.utils.DBHelper;
+import atlasledger.utils.Logger;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Soporte compartido por los DAO para recorrer tablas fila a fila sin materializarlas en memoria.
+ * <p>
+ * El {@link Stream} devuelto mantiene abiertos la conexion, la sentencia y el {@link ResultSet}
+ * hasta que se cierra, por lo que debe usarse siempre dentro de un try-with-resources.
+ */
+final class DaoStreams {
+
+    static final int DEFAULT_FETCH_SIZE = 500;
+
+    private DaoStreams() {
+    }
+
+    @FunctionalInterface
+    interface RowMapper<T> {
+        T map(ResultSet rs) throws SQLException;
+    }
+
+    @FunctionalInterface
+    interface Binder {
+        void bind(PreparedStatement ps) throws SQLException;
+    }
+
+    static <T> Stream<T> stream(Class<?> owner, String sql, int fetchSize, RowMapper<T> mapper) {
+        return stream(owner, sql, fetchSize, ps -> { }, mapper);
+    }
+
+    static <T> Stream<T> stream(Class<?> owner, String sql, int fetchSize, Binder binder, RowMapper<T> mapper) {
+        Connection conn = null;
+        PreparedStatement ps = null;
+        ResultSet rs;
+        try {
+            conn = DBHelper.getConnection();
+            ps = conn.prepareStatement(sql);
+            ps.setFetchSize(Math.max(1, fetchSize));
+            binder.bind(ps);
+            rs = ps.executeQuery();
+        } catch (SQLException e) {
+            closeQuietly(null, ps, conn);
+            Logger.error(owner, "Error abriendo cursor de lectura", e);
+            return Stream.empty();
+        }
+
+        ResultSet cursor = rs;
+        PreparedStatement statement = ps;
+        Connection connection = conn;
+        Spliterator<T> rows = new Spliterators.AbstractSpliterator<>(Long.MAX_VALUE,
+            Spliterator.ORDERED | Spliterator.NONNULL) {
+            @Override
+            public boolean tryAdvance(Consumer<? super T> action) {
+                try {
+                    if (!cursor.next()) {
+                        return false;
+                    }
+                    action.accept(mapper.map(cursor));
+                    return true;
+                } catch (SQLException e) {
+                    Logger.error(owner, "Error recorriendo cursor de lectura", e);
+                    return false;
+                }
+            }
+        };
+        return StreamSupport.stream(rows, false)
+            .onClose(() -> closeQuietly(cursor, statement, connection));
+    }
+
+    private static void closeQuietly(ResultSet rs, PreparedStatement ps, Connection conn) {
+        try {
+            if (rs != null) {
+                rs.close();
+            }
+        } catch (SQLException ignored) {
+            // Se cierra igualmente la sentencia y la conexion.
+        }
+        try {
+            if (ps != null) {
+                ps.close();
+            }
+        } catch (SQLException ignored) {
+            // Se cierra igualmente la conexion.
+        }
+        try {
+            if (conn != null) {
+                conn.close();
+            }
+        } catch (SQLException ignored) {
+            // La conexion se descarta en el pool.
+        }
+    }
+}
@@ -2,7 +2,9 @@ package atlasledger.dao;
 
 import atlasledger.model.DocumentTask;
 import atlasledger.utils.DBHelper;
+import atlasledger.utils.DBWriter;
 import atlasledger.utils.Logger;
+import atlasledger.utils.QueryPlanAuditor;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
@@ -13,6 +15,13 @@ import java.util.List;
 
 public final class DocumentQueueDao {
 
+    private static final String PENDING_SQL = QueryPlanAuditor.register(DocumentQueueDao.class, "pending", """
+        SELECT id, file_name, local_path, status, uploaded_at, metadata
+        FROM document_queue
+        WHERE status = 'PENDING'
+        ORDER BY id ASC
+    """);
+
     private DocumentQueueDao() {
     }
 
@@ -21,28 +30,26 @@ public final class DocumentQueueDao {
             INSERT INTO document_queue (file_name, local_path, status, uploaded_at, metadata)
             VALUES (?, ?, ?, ?, ?)
         """;
-        try (Connection conn = DBHelper.getConnection(); PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setString(1, task.getFileName());
-            ps.setString(2, task.getLocalPath());
-            ps.setString(3, task.getStatus());
-            ps.setString(4, task.getUploadedAt() != null ? task.getUploadedAt().toString() : null);
-            ps.setString(5, task.getMetadata());
-            ps.executeUpdate();
+        try {
+            DBWriter.execute(conn -> {
+                try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                    ps.setString(1, task.getFileName());
+                    ps.setString(2, task.getLocalPath());
+                    ps.setString(3, task.getStatus());
+                    ps.setString(4, task.getUploadedAt() != null ? task.getUploadedAt().toString() : null);
+                    ps.setString(5, task.getMetadata());
+                    return ps.executeUpdate();
+                }
+            });
         } catch (SQLException e) {
             Logger.error(DocumentQueueDao.class, "Error insertando documento en cola", e);
         }
     }
 
     public static List<DocumentTask> pending() {
-        String sql = """
-            SELECT id, file_name, local_path, status, uploaded_at, metadata
-            FROM document_queue
-            WHERE status = 'PENDING'
-            ORDER BY id ASC
-        """;
         List<DocumentTask> tasks = new ArrayList<>();
         try (Connection conn = DBHelper.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql);
+             PreparedStatement ps = conn.prepareStatement(PENDING_SQL);
              ResultSet rs = ps.executeQuery()) {
             while (rs.next()) {
                 tasks.add(map(rs));
@@ -59,11 +66,15 @@ public final class DocumentQueueDao {
             SET status = ?, uploaded_at = CASE WHEN ? = 'DONE' THEN CURRENT_TIMESTAMP ELSE uploaded_at END
             WHERE id = ?
         """;
-        try (Connection conn = DBHelper.getConnection(); PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setString(1, status);
-            ps.setString(2, status);
-            ps.setInt(3, id);
-            ps.executeUpdate();
+        try {
+            DBWriter.execute(conn -> {
+                try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                    ps.setString(1, status);
+                    ps.setString(2, status);
+                    ps.setInt(3, id);
+                    return ps.executeUpdate();
+                }
+            });
         } catch (SQLException e) {
             Logger.error(DocumentQueueDao.class, "Error actualizando estado de documento", e);
         }
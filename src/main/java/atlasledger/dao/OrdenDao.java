@@ -2,7 +2,9 @@ package atlasledger.dao;
 
 import atlasledger.model.Orden;
 import atlasledger.utils.DBHelper;
+import atlasledger.utils.DBWriter;
 import atlasledger.utils.Logger;
+import atlasledger.utils.QueryPlanAuditor;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
@@ -12,49 +14,128 @@ import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 public final class OrdenDao {
 
+    public static final int DEFAULT_BATCH_SIZE = 500;
+
     private static final DateTimeFormatter SQLITE_DATE_TIME = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
 
+    private static final String UPSERT_SQL = """
+        INSERT INTO ordenes (codigo, fecha, proveedor_codigo, total, estado, updated_at)
+        VALUES (?, ?, ?, ?, ?, CURRENT_TIMESTAMP)
+        ON CONFLICT(codigo) DO UPDATE SET
+            fecha = excluded.fecha,
+            proveedor_codigo = excluded.proveedor_codigo,
+            total = excluded.total,
+            estado = excluded.estado,
+            updated_at = CURRENT_TIMESTAMP
+    """;
+
+    private static final String LISTAR_SQL = QueryPlanAuditor.register(OrdenDao.class, "listar", """
+        SELECT id, codigo, fecha, proveedor_codigo, total, estado, updated_at
+        FROM ordenes
+        ORDER BY fecha DESC
+    """);
+
+    private static final String STREAM_SQL = QueryPlanAuditor.register(OrdenDao.class, "stream", """
+        SELECT id, codigo, fecha, proveedor_codigo, total, estado, updated_at
+        FROM ordenes
+    """, QueryPlanAuditor.Issue.FULL_SCAN);
+
+    private static final String BUSCAR_POR_CODIGO_SQL = QueryPlanAuditor.register(OrdenDao.class, "buscarPorCodigo", """
+        SELECT id, codigo, fecha, proveedor_codigo, total, estado, updated_at
+        FROM ordenes
+        WHERE codigo = ?
+    """);
+
+    private static final String PRIMERA_PAGINA_SQL = QueryPlanAuditor.register(OrdenDao.class, "listarDespuesDe.primeraPagina", """
+        SELECT id, codigo, fecha, proveedor_codigo, total, estado, updated_at
+        FROM ordenes
+        ORDER BY fecha ASC, id ASC
+        LIMIT ?
+    """);
+
+    private static final String PAGINA_DESPUES_DE_SIN_FECHA_SQL = QueryPlanAuditor.register(OrdenDao.class, "listarDespuesDe.sinFecha", """
+        SELECT id, codigo, fecha, proveedor_codigo, total, estado, updated_at
+        FROM ordenes
+        WHERE (fecha IS NULL AND id > ?) OR fecha IS NOT NULL
+        ORDER BY fecha ASC, id ASC
+        LIMIT ?
+    """);
+
+    private static final String PAGINA_DESPUES_DE_SQL = QueryPlanAuditor.register(OrdenDao.class, "listarDespuesDe", """
+        SELECT id, codigo, fecha, proveedor_codigo, total, estado, updated_at
+        FROM ordenes
+        WHERE (fecha, id) > (?, ?)
+        ORDER BY fecha ASC, id ASC
+        LIMIT ?
+    """);
+
     private OrdenDao() {
     }
 
     public static void guardar(Orden orden) {
-        String sql = """
-            INSERT INTO ordenes (codigo, fecha, proveedor_codigo, total, estado, updated_at)
-            VALUES (?, ?, ?, ?, ?, CURRENT_TIMESTAMP)
-            ON CONFLICT(codigo) DO UPDATE SET
-                fecha = excluded.fecha,
-                proveedor_codigo = excluded.proveedor_codigo,
-                total = excluded.total,
-                estado = excluded.estado,
-                updated_at = CURRENT_TIMESTAMP
-        """;
-
-        try (Connection conn = DBHelper.getConnection(); PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setString(1, orden.getCodigo());
-            ps.setString(2, orden.getFecha() != null ? orden.getFecha().toString() : null);
-            ps.setString(3, orden.getProveedorCodigo());
-            ps.setDouble(4, orden.getTotal());
-            ps.setString(5, orden.getEstado() != null ? orden.getEstado().name() : Orden.Estado.BORRADOR.name());
-            ps.executeUpdate();
+        try {
+            DBWriter.execute(conn -> {
+                try (PreparedStatement ps = conn.prepareStatement(UPSERT_SQL)) {
+                    bindUpsert(ps, orden);
+                    return ps.executeUpdate();
+                }
+            });
         } catch (SQLException e) {
             Logger.error(OrdenDao.class, "Error guardando orden", e);
         }
     }
 
+    public static boolean guardarTodos(Collection<Orden> ordenes) {
+        return guardarTodos(ordenes, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Inserta o actualiza todos los elementos en una sola transaccion, reutilizando la misma
+     * sentencia preparada y enviandola a SQLite en lotes de {@code batchSize} filas.
+     *
+     * @return {@code false} si ha fallado; en ese caso no se ha guardado ninguna fila
+     */
+    public static boolean guardarTodos(Collection<Orden> ordenes, int batchSize) {
+        if (ordenes.isEmpty()) {
+            return true;
+        }
+        int chunk = Math.max(1, batchSize);
+        try {
+            DBWriter.execute(conn -> {
+                try (PreparedStatement ps = conn.prepareStatement(UPSERT_SQL)) {
+                    int pending = 0;
+                    for (Orden orden : ordenes) {
+                        bindUpsert(ps, orden);
+                        ps.addBatch();
+                        if (++pending == chunk) {
+                            ps.executeBatch();
+                            pending = 0;
+                        }
+                    }
+                    if (pending > 0) {
+                        ps.executeBatch();
+                    }
+                    return ordenes.size();
+                }
+            });
+            return true;
+        } catch (SQLException e) {
+            Logger.error(OrdenDao.class, "Error guardando lote de ordenes", e);
+            return false;
+        }
+    }
+
     public static List<Orden> listar() {
         List<Orden> list = new ArrayList<>();
-        String sql = """
-            SELECT id, codigo, fecha, proveedor_codigo, total, estado, updated_at
-            FROM ordenes
-            ORDER BY fecha DESC
-        """;
-
-        try (Connection conn = DBHelper.getConnection(); Statement st = conn.createStatement(); ResultSet rs = st.executeQuery(sql)) {
+        try (Connection conn = DBHelper.getConnection(); Statement st = conn.createStatement(); ResultSet rs = st.executeQuery(LISTAR_SQL)) {
             while (rs.next()) {
                 list.add(mapRow(rs));
             }
@@ -64,14 +145,49 @@ public final class OrdenDao {
         return list;
     }
 
-    public static Optional<Orden> buscarPorCodigo(String codigo) {
-        String sql = """
-            SELECT id, codigo, fecha, proveedor_codigo, total, estado, updated_at
-            FROM ordenes
-            WHERE codigo = ?
-        """;
+    /**
+     * Recorre la tabla completa fila a fila sin materializarla. El stream mantiene una conexion
+     * abierta hasta que se cierra, por lo que debe consumirse dentro de un try-with-resources.
+     */
+    public static Stream<Orden> stream(int fetchSize) {
+        return DaoStreams.stream(OrdenDao.class, STREAM_SQL, fetchSize, OrdenDao::mapRow);
+    }
+
+    public static void recorrer(int fetchSize, Consumer<Orden> consumer) {
+        try (Stream<Orden> ordenes = stream(fetchSize)) {
+            ordenes.forEach(consumer);
+        }
+    }
+
+    /**
+     * Paginacion por clave sobre {@code (fecha, id)} en orden cronologico. Las ordenes sin fecha van
+     * primero. Con {@code despuesDeId <= 0} devuelve la primera pagina.
+     */
+    public static List<Orden> listarDespuesDe(LocalDate despuesDeFecha, int despuesDeId, int limite) {
+        String sql;
+        if (despuesDeId <= 0) {
+            sql = PRIMERA_PAGINA_SQL;
+        } else if (despuesDeFecha == null) {
+            sql = PAGINA_DESPUES_DE_SIN_FECHA_SQL;
+        } else {
+            sql = PAGINA_DESPUES_DE_SQL;
+        }
+        try (Stream<Orden> pagina = DaoStreams.stream(OrdenDao.class, sql, limite, ps -> {
+            int index = 1;
+            if (despuesDeId > 0) {
+                if (despuesDeFecha != null) {
+                    ps.setString(index++, despuesDeFecha.toString());
+                }
+                ps.setInt(index++, despuesDeId);
+            }
+            ps.setInt(index, limite);
+        }, OrdenDao::mapRow)) {
+            return pagina.toList();
+        }
+    }
 
-        try (Connection conn = DBHelper.getConnection(); PreparedStatement ps = conn.prepareStatement(sql)) {
+    public static Optional<Orden> buscarPorCodigo(String codigo) {
+        try (Connection conn = DBHelper.getConnection(); PreparedStatement ps = conn.prepareStatement(BUSCAR_POR_CODIGO_SQL)) {
             ps.setString(1, codigo);
             try (ResultSet rs = ps.executeQuery()) {
                 if (rs.next()) {
@@ -86,14 +202,26 @@ public final class OrdenDao {
 
     public static void eliminar(int id) {
         String sql = "DELETE FROM ordenes WHERE id = ?";
-        try (Connection conn = DBHelper.getConnection(); PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setInt(1, id);
-            ps.executeUpdate();
+        try {
+            DBWriter.execute(conn -> {
+                try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                    ps.setInt(1, id);
+                    return ps.executeUpdate();
+                }
+            });
         } catch (SQLException e) {
             Logger.error(OrdenDao.class, "Error eliminando orden", e);
         }
     }
 
+    private static void bindUpsert(PreparedStatement ps, Orden orden) throws SQLException {
+        ps.setString(1, orden.getCodigo());
+        ps.setString(2, orden.getFecha() != null ? orden.getFecha().toString() : null);
+        ps.setString(3, orden.getProveedorCodigo());
+        ps.setDouble(4, orden.getTotal());
+        ps.setString(5, orden.getEstado() != null ? orden.getEstado().name() : Orden.Estado.BORRADOR.name());
+    }
+
     private static Orden mapRow(ResultSet rs) throws SQLException {
         Orden orden = new Orden();
         orden.setId(rs.getInt("id"));
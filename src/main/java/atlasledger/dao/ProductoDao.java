@@ -2,7 +2,9 @@ package atlasledger.dao;
 
 import atlasledger.model.Producto;
 import atlasledger.utils.DBHelper;
+import atlasledger.utils.DBWriter;
 import atlasledger.utils.Logger;
+import atlasledger.utils.QueryPlanAuditor;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
@@ -11,53 +13,122 @@ import java.sql.Statement;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 public final class ProductoDao {
 
+    public static final int DEFAULT_BATCH_SIZE = 500;
+
     private static final DateTimeFormatter SQLITE_DATE_TIME = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
 
+    private static final String UPSERT_SQL = """
+        INSERT INTO productos (codigo, nombre, categoria, proveedor_codigo, stock, coste, precio, updated_at)
+        VALUES (?, ?, ?, ?, ?, ?, ?, CURRENT_TIMESTAMP)
+        ON CONFLICT(codigo) DO UPDATE SET
+            nombre = excluded.nombre,
+            categoria = excluded.categoria,
+            proveedor_codigo = excluded.proveedor_codigo,
+            stock = excluded.stock,
+            coste = excluded.coste,
+            precio = excluded.precio,
+            updated_at = CURRENT_TIMESTAMP
+    """;
+
+    private static final String LISTAR_SQL = QueryPlanAuditor.register(ProductoDao.class, "listar", """
+        SELECT id, codigo, nombre, categoria, proveedor_codigo, stock, coste, precio, updated_at
+        FROM productos
+        ORDER BY nombre ASC
+    """);
+
+    private static final String STREAM_SQL = QueryPlanAuditor.register(ProductoDao.class, "stream", """
+        SELECT id, codigo, nombre, categoria, proveedor_codigo, stock, coste, precio, updated_at
+        FROM productos
+    """, QueryPlanAuditor.Issue.FULL_SCAN);
+
+    private static final String BUSCAR_POR_CODIGO_SQL = QueryPlanAuditor.register(ProductoDao.class, "buscarPorCodigo", """
+        SELECT id, codigo, nombre, categoria, proveedor_codigo, stock, coste, precio, updated_at
+        FROM productos
+        WHERE codigo = ?
+    """);
+
+    private static final String PRIMERA_PAGINA_SQL = QueryPlanAuditor.register(ProductoDao.class, "listarDespuesDe.primeraPagina", """
+        SELECT id, codigo, nombre, categoria, proveedor_codigo, stock, coste, precio, updated_at
+        FROM productos
+        ORDER BY codigo ASC
+        LIMIT ?
+    """);
+
+    private static final String PAGINA_DESPUES_DE_SQL = QueryPlanAuditor.register(ProductoDao.class, "listarDespuesDe", """
+        SELECT id, codigo, nombre, categoria, proveedor_codigo, stock, coste, precio, updated_at
+        FROM productos
+        WHERE codigo > ?
+        ORDER BY codigo ASC
+        LIMIT ?
+    """);
+
     private ProductoDao() {
     }
 
     public static void guardar(Producto producto) {
-        String sql = """
-            INSERT INTO productos (codigo, nombre, categoria, proveedor_codigo, stock, coste, precio, updated_at)
-            VALUES (?, ?, ?, ?, ?, ?, ?, CURRENT_TIMESTAMP)
-            ON CONFLICT(codigo) DO UPDATE SET
-                nombre = excluded.nombre,
-                categoria = excluded.categoria,
-                proveedor_codigo = excluded.proveedor_codigo,
-                stock = excluded.stock,
-                coste = excluded.coste,
-                precio = excluded.precio,
-                updated_at = CURRENT_TIMESTAMP
-        """;
-
-        try (Connection conn = DBHelper.getConnection(); PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setString(1, producto.getCodigo());
-            ps.setString(2, producto.getNombre());
-            ps.setString(3, producto.getCategoria());
-            ps.setString(4, producto.getProveedorCodigo());
-            ps.setInt(5, producto.getStock());
-            ps.setDouble(6, producto.getCoste());
-            ps.setDouble(7, producto.getPrecio());
-            ps.executeUpdate();
+        try {
+            DBWriter.execute(conn -> {
+                try (PreparedStatement ps = conn.prepareStatement(UPSERT_SQL)) {
+                    bindUpsert(ps, producto);
+                    return ps.executeUpdate();
+                }
+            });
         } catch (SQLException e) {
             Logger.error(ProductoDao.class, "Error guardando producto", e);
         }
     }
 
+    public static boolean guardarTodos(Collection<Producto> productos) {
+        return guardarTodos(productos, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Inserta o actualiza todos los elementos en una sola transaccion, reutilizando la misma
+     * sentencia preparada y enviandola a SQLite en lotes de {@code batchSize} filas.
+     *
+     * @return {@code false} si ha fallado; en ese caso no se ha guardado ninguna fila
+     */
+    public static boolean guardarTodos(Collection<Producto> productos, int batchSize) {
+        if (productos.isEmpty()) {
+            return true;
+        }
+        int chunk = Math.max(1, batchSize);
+        try {
+            DBWriter.execute(conn -> {
+                try (PreparedStatement ps = conn.prepareStatement(UPSERT_SQL)) {
+                    int pending = 0;
+                    for (Producto producto : productos) {
+                        bindUpsert(ps, producto);
+                        ps.addBatch();
+                        if (++pending == chunk) {
+                            ps.executeBatch();
+                            pending = 0;
+                        }
+                    }
+                    if (pending > 0) {
+                        ps.executeBatch();
+                    }
+                    return productos.size();
+                }
+            });
+            return true;
+        } catch (SQLException e) {
+            Logger.error(ProductoDao.class, "Error guardando lote de productos", e);
+            return false;
+        }
+    }
+
     public static List<Producto> listar() {
         List<Producto> list = new ArrayList<>();
-        String sql = """
-            SELECT id, codigo, nombre, categoria, proveedor_codigo, stock, coste, precio, updated_at
-            FROM productos
-            ORDER BY nombre ASC
-        """;
-
-        try (Connection conn = DBHelper.getConnection(); Statement st = conn.createStatement(); ResultSet rs = st.executeQuery(sql)) {
+        try (Connection conn = DBHelper.getConnection(); Statement st = conn.createStatement(); ResultSet rs = st.executeQuery(LISTAR_SQL)) {
             while (rs.next()) {
                 list.add(mapRow(rs));
             }
@@ -67,14 +138,39 @@ public final class ProductoDao {
         return list;
     }
 
-    public static Optional<Producto> buscarPorCodigo(String codigo) {
-        String sql = """
-            SELECT id, codigo, nombre, categoria, proveedor_codigo, stock, coste, precio, updated_at
-            FROM productos
-            WHERE codigo = ?
-        """;
+    /**
+     * Recorre la tabla completa fila a fila sin materializarla. El stream mantiene una conexion
+     * abierta hasta que se cierra, por lo que debe consumirse dentro de un try-with-resources.
+     */
+    public static Stream<Producto> stream(int fetchSize) {
+        return DaoStreams.stream(ProductoDao.class, STREAM_SQL, fetchSize, ProductoDao::mapRow);
+    }
 
-        try (Connection conn = DBHelper.getConnection(); PreparedStatement ps = conn.prepareStatement(sql)) {
+    public static void recorrer(int fetchSize, Consumer<Producto> consumer) {
+        try (Stream<Producto> productos = stream(fetchSize)) {
+            productos.forEach(consumer);
+        }
+    }
+
+    /**
+     * Paginacion por clave: devuelve hasta {@code limite} filas ordenadas por codigo cuyo codigo es
+     * posterior a {@code despuesDeCodigo}. Con {@code null} devuelve la primera pagina.
+     */
+    public static List<Producto> listarDespuesDe(String despuesDeCodigo, int limite) {
+        String sql = despuesDeCodigo == null ? PRIMERA_PAGINA_SQL : PAGINA_DESPUES_DE_SQL;
+        try (Stream<Producto> pagina = DaoStreams.stream(ProductoDao.class, sql, limite, ps -> {
+            int index = 1;
+            if (despuesDeCodigo != null) {
+                ps.setString(index++, despuesDeCodigo);
+            }
+            ps.setInt(index, limite);
+        }, ProductoDao::mapRow)) {
+            return pagina.toList();
+        }
+    }
+
+    public static Optional<Producto> buscarPorCodigo(String codigo) {
+        try (Connection conn = DBHelper.getConnection(); PreparedStatement ps = conn.prepareStatement(BUSCAR_POR_CODIGO_SQL)) {
             ps.setString(1, codigo);
             try (ResultSet rs = ps.executeQuery()) {
                 if (rs.next()) {
@@ -89,14 +185,28 @@ public final class ProductoDao {
 
     public static void eliminar(int id) {
         String sql = "DELETE FROM productos WHERE id = ?";
-        try (Connection conn = DBHelper.getConnection(); PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setInt(1, id);
-            ps.executeUpdate();
+        try {
+            DBWriter.execute(conn -> {
+                try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                    ps.setInt(1, id);
+                    return ps.executeUpdate();
+                }
+            });
         } catch (SQLException e) {
             Logger.error(ProductoDao.class, "Error eliminando producto", e);
         }
     }
 
+    private static void bindUpsert(PreparedStatement ps, Producto producto) throws SQLException {
+        ps.setString(1, producto.getCodigo());
+        ps.setString(2, producto.getNombre());
+        ps.setString(3, producto.getCategoria());
+        ps.setString(4, producto.getProveedorCodigo());
+        ps.setInt(5, producto.getStock());
+        ps.setDouble(6, producto.getCoste());
+        ps.setDouble(7, producto.getPrecio());
+    }
+
     private static Producto mapRow(ResultSet rs) throws SQLException {
         Producto producto = new Producto();
         producto.setId(rs.getInt("id"));
@@ -2,7 +2,9 @@ package atlasledger.dao;
 
 import atlasledger.model.Proveedor;
 import atlasledger.utils.DBHelper;
+import atlasledger.utils.DBWriter;
 import atlasledger.utils.Logger;
+import atlasledger.utils.QueryPlanAuditor;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
@@ -11,49 +13,120 @@ import java.sql.Statement;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 public final class ProveedorDao {
 
+    public static final int DEFAULT_BATCH_SIZE = 500;
+
     private static final DateTimeFormatter SQLITE_DATE_TIME = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
 
+    private static final String UPSERT_SQL = """
+        INSERT INTO proveedores (codigo, nombre, email, telefono, direccion, updated_at)
+        VALUES (?, ?, ?, ?, ?, CURRENT_TIMESTAMP)
+        ON CONFLICT(codigo) DO UPDATE SET
+            nombre = excluded.nombre,
+            email = excluded.email,
+            telefono = excluded.telefono,
+            direccion = excluded.direccion,
+            updated_at = CURRENT_TIMESTAMP
+    """;
+
+    private static final String LISTAR_SQL = QueryPlanAuditor.register(ProveedorDao.class, "listar", """
+        SELECT id, codigo, nombre, email, telefono, direccion, updated_at
+        FROM proveedores
+        ORDER BY nombre ASC
+    """);
+
+    private static final String STREAM_SQL = QueryPlanAuditor.register(ProveedorDao.class, "stream", """
+        SELECT id, codigo, nombre, email, telefono, direccion, updated_at
+        FROM proveedores
+    """, QueryPlanAuditor.Issue.FULL_SCAN);
+
+    private static final String BUSCAR_POR_CODIGO_SQL = QueryPlanAuditor.register(ProveedorDao.class, "buscarPorCodigo", """
+        SELECT id, codigo, nombre, email, telefono, direccion, updated_at
+        FROM proveedores
+        WHERE codigo = ?
+    """);
+
+    private static final String PRIMERA_PAGINA_SQL = QueryPlanAuditor.register(ProveedorDao.class, "listarDespuesDe.primeraPagina", """
+        SELECT id, codigo, nombre, email, telefono, direccion, updated_at
+        FROM proveedores
+        ORDER BY codigo ASC
+        LIMIT ?
+    """);
+
+    private static final String PAGINA_DESPUES_DE_SQL = QueryPlanAuditor.register(ProveedorDao.class, "listarDespuesDe", """
+        SELECT id, codigo, nombre, email, telefono, direccion, updated_at
+        FROM proveedores
+        WHERE codigo > ?
+        ORDER BY codigo ASC
+        LIMIT ?
+    """);
+
     private ProveedorDao() {
     }
 
     public static void guardar(Proveedor proveedor) {
-        String sql = """
-            INSERT INTO proveedores (codigo, nombre, email, telefono, direccion, updated_at)
-            VALUES (?, ?, ?, ?, ?, CURRENT_TIMESTAMP)
-            ON CONFLICT(codigo) DO UPDATE SET
-                nombre = excluded.nombre,
-                email = excluded.email,
-                telefono = excluded.telefono,
-                direccion = excluded.direccion,
-                updated_at = CURRENT_TIMESTAMP
-        """;
-
-        try (Connection conn = DBHelper.getConnection(); PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setString(1, proveedor.getCodigo());
-            ps.setString(2, proveedor.getNombre());
-            ps.setString(3, proveedor.getEmail());
-            ps.setString(4, proveedor.getTelefono());
-            ps.setString(5, proveedor.getDireccion());
-            ps.executeUpdate();
+        try {
+            DBWriter.execute(conn -> {
+                try (PreparedStatement ps = conn.prepareStatement(UPSERT_SQL)) {
+                    bindUpsert(ps, proveedor);
+                    return ps.executeUpdate();
+                }
+            });
         } catch (SQLException e) {
             Logger.error(ProveedorDao.class, "Error guardando proveedor", e);
         }
     }
 
+    public static boolean guardarTodos(Collection<Proveedor> proveedores) {
+        return guardarTodos(proveedores, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Inserta o actualiza todos los elementos en una sola transaccion, reutilizando la misma
+     * sentencia preparada y enviandola a SQLite en lotes de {@code batchSize} filas.
+     *
+     * @return {@code false} si ha fallado; en ese caso no se ha guardado ninguna fila
+     */
+    public static boolean guardarTodos(Collection<Proveedor> proveedores, int batchSize) {
+        if (proveedores.isEmpty()) {
+            return true;
+        }
+        int chunk = Math.max(1, batchSize);
+        try {
+            DBWriter.execute(conn -> {
+                try (PreparedStatement ps = conn.prepareStatement(UPSERT_SQL)) {
+                    int pending = 0;
+                    for (Proveedor proveedor : proveedores) {
+                        bindUpsert(ps, proveedor);
+                        ps.addBatch();
+                        if (++pending == chunk) {
+                            ps.executeBatch();
+                            pending = 0;
+                        }
+                    }
+                    if (pending > 0) {
+                        ps.executeBatch();
+                    }
+                    return proveedores.size();
+                }
+            });
+            return true;
+        } catch (SQLException e) {
+            Logger.error(ProveedorDao.class, "Error guardando lote de proveedores", e);
+            return false;
+        }
+    }
+
     public static List<Proveedor> listar() {
         List<Proveedor> list = new ArrayList<>();
-        String sql = """
-            SELECT id, codigo, nombre, email, telefono, direccion, updated_at
-            FROM proveedores
-            ORDER BY nombre ASC
-        """;
-
-        try (Connection conn = DBHelper.getConnection(); Statement st = conn.createStatement(); ResultSet rs = st.executeQuery(sql)) {
+        try (Connection conn = DBHelper.getConnection(); Statement st = conn.createStatement(); ResultSet rs = st.executeQuery(LISTAR_SQL)) {
             while (rs.next()) {
                 list.add(mapRow(rs));
             }
@@ -63,14 +136,39 @@ public final class ProveedorDao {
         return list;
     }
 
-    public static Optional<Proveedor> buscarPorCodigo(String codigo) {
-        String sql = """
-            SELECT id, codigo, nombre, email, telefono, direccion, updated_at
-            FROM proveedores
-            WHERE codigo = ?
-        """;
+    /**
+     * Recorre la tabla completa fila a fila sin materializarla. El stream mantiene una conexion
+     * abierta hasta que se cierra, por lo que debe consumirse dentro de un try-with-resources.
+     */
+    public static Stream<Proveedor> stream(int fetchSize) {
+        return DaoStreams.stream(ProveedorDao.class, STREAM_SQL, fetchSize, ProveedorDao::mapRow);
+    }
 
-        try (Connection conn = DBHelper.getConnection(); PreparedStatement ps = conn.prepareStatement(sql)) {
+    public static void recorrer(int fetchSize, Consumer<Proveedor> consumer) {
+        try (Stream<Proveedor> proveedores = stream(fetchSize)) {
+            proveedores.forEach(consumer);
+        }
+    }
+
+    /**
+     * Paginacion por clave: devuelve hasta {@code limite} filas ordenadas por codigo cuyo codigo es
+     * posterior a {@code despuesDeCodigo}. Con {@code null} devuelve la primera pagina.
+     */
+    public static List<Proveedor> listarDespuesDe(String despuesDeCodigo, int limite) {
+        String sql = despuesDeCodigo == null ? PRIMERA_PAGINA_SQL : PAGINA_DESPUES_DE_SQL;
+        try (Stream<Proveedor> pagina = DaoStreams.stream(ProveedorDao.class, sql, limite, ps -> {
+            int index = 1;
+            if (despuesDeCodigo != null) {
+                ps.setString(index++, despuesDeCodigo);
+            }
+            ps.setInt(index, limite);
+        }, ProveedorDao::mapRow)) {
+            return pagina.toList();
+        }
+    }
+
+    public static Optional<Proveedor> buscarPorCodigo(String codigo) {
+        try (Connection conn = DBHelper.getConnection(); PreparedStatement ps = conn.prepareStatement(BUSCAR_POR_CODIGO_SQL)) {
             ps.setString(1, codigo);
             try (ResultSet rs = ps.executeQuery()) {
                 if (rs.next()) {
@@ -85,14 +183,26 @@ public final class ProveedorDao {
 
     public static void eliminar(int id) {
         String sql = "DELETE FROM proveedores WHERE id = ?";
-        try (Connection conn = DBHelper.getConnection(); PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setInt(1, id);
-            ps.executeUpdate();
+        try {
+            DBWriter.execute(conn -> {
+                try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                    ps.setInt(1, id);
+                    return ps.executeUpdate();
+                }
+            });
         } catch (SQLException e) {
             Logger.error(ProveedorDao.class, "Error eliminando proveedor", e);
         }
     }
 
+    private static void bindUpsert(PreparedStatement ps, Proveedor proveedor) throws SQLException {
+        ps.setString(1, proveedor.getCodigo());
+        ps.setString(2, proveedor.getNombre());
+        ps.setString(3, proveedor.getEmail());
+        ps.setString(4, proveedor.getTelefono());
+        ps.setString(5, proveedor.getDireccion());
+    }
+
     private static Proveedor mapRow(ResultSet rs) throws SQLException {
         Proveedor proveedor = new Proveedor();
         proveedor.setId(rs.getInt("id"));
@@ -2,7 +2,9 @@ package atlasledger.dao;
 
 import atlasledger.model.Worker;
 import atlasledger.utils.DBHelper;
+import atlasledger.utils.DBWriter;
 import atlasledger.utils.Logger;
+import atlasledger.utils.QueryPlanAuditor;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
@@ -12,16 +14,17 @@ import java.util.Optional;
 
 public final class WorkerDao {
 
+    private static final String FIND_BY_USERNAME_SQL = QueryPlanAuditor.register(WorkerDao.class, "findByUsername", """
+        SELECT id, username, password_hash, nombre, rol, last_login
+        FROM workers
+        WHERE username = ?
+    """);
+
     private WorkerDao() {
     }
 
     public static Optional<Worker> findByUsername(String username) {
-        String sql = """
-            SELECT id, username, password_hash, nombre, rol, last_login
-            FROM workers
-            WHERE username = ?
-        """;
-        try (Connection conn = DBHelper.getConnection(); PreparedStatement ps = conn.prepareStatement(sql)) {
+        try (Connection conn = DBHelper.getConnection(); PreparedStatement ps = conn.prepareStatement(FIND_BY_USERNAME_SQL)) {
             ps.setString(1, username.toLowerCase());
             try (ResultSet rs = ps.executeQuery()) {
                 if (rs.next()) {
@@ -44,13 +47,17 @@ public final class WorkerDao {
                 rol = excluded.rol,
                 last_login = excluded.last_login
         """;
-        try (Connection conn = DBHelper.getConnection(); PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setString(1, worker.getUsername().toLowerCase());
-            ps.setString(2, worker.getPasswordHash());
-            ps.setString(3, worker.getNombre());
-            ps.setString(4, worker.getRol());
-            ps.setString(5, worker.getLastLogin() != null ? worker.getLastLogin().toString() : null);
-            ps.executeUpdate();
+        try {
+            DBWriter.execute(conn -> {
+                try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                    ps.setString(1, worker.getUsername().toLowerCase());
+                    ps.setString(2, worker.getPasswordHash());
+                    ps.setString(3, worker.getNombre());
+                    ps.setString(4, worker.getRol());
+                    ps.setString(5, worker.getLastLogin() != null ? worker.getLastLogin().toString() : null);
+                    return ps.executeUpdate();
+                }
+            });
         } catch (SQLException e) {
             Logger.error(WorkerDao.class, "Error guardando trabajador", e);
         }
@@ -58,9 +65,13 @@ public final class WorkerDao {
 
     public static void updateLastLogin(int workerId) {
         String sql = "UPDATE workers SET last_login = CURRENT_TIMESTAMP WHERE id = ?";
-        try (Connection conn = DBHelper.getConnection(); PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setInt(1, workerId);
-            ps.executeUpdate();
+        try {
+            DBWriter.execute(conn -> {
+                try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                    ps.setInt(1, workerId);
+                    return ps.executeUpdate();
+                }
+            });
         } catch (SQLException e) {
             Logger.error(WorkerDao.class, "Error actualizando ultimo acceso", e);
         }
@@ -2,15 +2,40 @@ package atlasledger.repository;
 
 import atlasledger.dao.OrdenDao;
 import atlasledger.model.Orden;
+import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 public class OrderRepository {
 
+    private static final int DEFAULT_FETCH_SIZE = 500;
+
     public List<Orden> findAll() {
         return OrdenDao.listar();
     }
 
+    /**
+     * Stream perezoso sobre todos los registros; debe cerrarse con try-with-resources.
+     */
+    public Stream<Orden> streamAll() {
+        return OrdenDao.stream(DEFAULT_FETCH_SIZE);
+    }
+
+    public Stream<Orden> streamAll(int fetchSize) {
+        return OrdenDao.stream(fetchSize);
+    }
+
+    public void forEach(Consumer<Orden> consumer) {
+        OrdenDao.recorrer(DEFAULT_FETCH_SIZE, consumer);
+    }
+
+    public List<Orden> findPageAfter(LocalDate fecha, int id, int limit) {
+        return OrdenDao.listarDespuesDe(fecha, id, limit);
+    }
+
     public Optional<Orden> findByCode(String codigo) {
         return OrdenDao.buscarPorCodigo(codigo);
     }
@@ -19,6 +44,17 @@ public class OrderRepository {
         OrdenDao.guardar(orden);
     }
 
+    /**
+     * @return {@code false} si no se ha podido guardar; ninguna fila queda guardada
+     */
+    public boolean saveAll(Collection<Orden> ordenes) {
+        return OrdenDao.guardarTodos(ordenes);
+    }
+
+    public boolean saveAll(Collection<Orden> ordenes, int batchSize) {
+        return OrdenDao.guardarTodos(ordenes, batchSize);
+    }
+
     public void deleteById(int id) {
         OrdenDao.eliminar(id);
     }
@@ -2,15 +2,39 @@ package atlasledger.repository;
 
 import atlasledger.dao.ProductoDao;
 import atlasledger.model.Producto;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 public class ProductRepository {
 
+    private static final int DEFAULT_FETCH_SIZE = 500;
+
     public List<Producto> findAll() {
         return ProductoDao.listar();
     }
 
+    /**
+     * Stream perezoso sobre todos los registros; debe cerrarse con try-with-resources.
+     */
+    public Stream<Producto> streamAll() {
+        return ProductoDao.stream(DEFAULT_FETCH_SIZE);
+    }
+
+    public Stream<Producto> streamAll(int fetchSize) {
+        return ProductoDao.stream(fetchSize);
+    }
+
+    public void forEach(Consumer<Producto> consumer) {
+        ProductoDao.recorrer(DEFAULT_FETCH_SIZE, consumer);
+    }
+
+    public List<Producto> findPageAfter(String codigo, int limit) {
+        return ProductoDao.listarDespuesDe(codigo, limit);
+    }
+
     public Optional<Producto> findByCode(String codigo) {
         return ProductoDao.buscarPorCodigo(codigo);
     }
@@ -19,6 +43,17 @@ public class ProductRepository {
         ProductoDao.guardar(producto);
     }
 
+    /**
+     * @return {@code false} si no se ha podido guardar; ninguna fila queda guardada
+     */
+    public boolean saveAll(Collection<Producto> productos) {
+        return ProductoDao.guardarTodos(productos);
+    }
+
+    public boolean saveAll(Collection<Producto> productos, int batchSize) {
+        return ProductoDao.guardarTodos(productos, batchSize);
+    }
+
     public void deleteById(int id) {
         ProductoDao.eliminar(id);
     }
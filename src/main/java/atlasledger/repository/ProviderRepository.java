@@ -2,15 +2,39 @@ package atlasledger.repository;
 
 import atlasledger.dao.ProveedorDao;
 import atlasledger.model.Proveedor;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 public class ProviderRepository {
 
+    private static final int DEFAULT_FETCH_SIZE = 500;
+
     public List<Proveedor> findAll() {
         return ProveedorDao.listar();
     }
 
+    /**
+     * Stream perezoso sobre todos los registros; debe cerrarse con try-with-resources.
+     */
+    public Stream<Proveedor> streamAll() {
+        return ProveedorDao.stream(DEFAULT_FETCH_SIZE);
+    }
+
+    public Stream<Proveedor> streamAll(int fetchSize) {
+        return ProveedorDao.stream(fetchSize);
+    }
+
+    public void forEach(Consumer<Proveedor> consumer) {
+        ProveedorDao.recorrer(DEFAULT_FETCH_SIZE, consumer);
+    }
+
+    public List<Proveedor> findPageAfter(String codigo, int limit) {
+        return ProveedorDao.listarDespuesDe(codigo, limit);
+    }
+
     public Optional<Proveedor> findByCode(String codigo) {
         return ProveedorDao.buscarPorCodigo(codigo);
     }
@@ -19,6 +43,17 @@ public class ProviderRepository {
         ProveedorDao.guardar(proveedor);
     }
 
+    /**
+     * @return {@code false} si no se ha podido guardar; ninguna fila queda guardada
+     */
+    public boolean saveAll(Collection<Proveedor> proveedores) {
+        return ProveedorDao.guardarTodos(proveedores);
+    }
+
+    public boolean saveAll(Collection<Proveedor> proveedores, int batchSize) {
+        return ProveedorDao.guardarTodos(proveedores, batchSize);
+    }
+
     public void deleteById(int id) {
         ProveedorDao.eliminar(id);
     }
@@ -2,7 +2,11 @@ package atlasledger.service;
 
 import atlasledger.model.AppLog;
 import atlasledger.utils.DBHelper;
+import atlasledger.utils.LatencyHistogram;
+import atlasledger.utils.LogCounters;
 import atlasledger.utils.Logger;
+import atlasledger.utils.QueryMetrics;
+import atlasledger.utils.QueryPlanAuditor;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
@@ -16,17 +20,43 @@ import java.util.TreeMap;
 
 public class AnalyticsService {
 
+    private static final String INVENTORY_BY_CATEGORY_SQL = QueryPlanAuditor.register(AnalyticsService.class, "inventoryValueByCategory", """
+        SELECT COALESCE(categoria, 'Sin categoria') AS categoria,
+               SUM(precio * stock) AS total
+        FROM productos
+        GROUP BY categoria
+        ORDER BY total DESC
+    """, QueryPlanAuditor.Issue.TEMP_B_TREE);
+
+    private static final String STOCK_BY_SUPPLIER_SQL = QueryPlanAuditor.register(AnalyticsService.class, "stockBySupplier", """
+        SELECT COALESCE(proveedor_codigo, 'Sin proveedor') AS proveedor,
+               SUM(stock) AS total
+        FROM productos
+        GROUP BY proveedor_codigo
+        ORDER BY total DESC
+    """, QueryPlanAuditor.Issue.TEMP_B_TREE);
+
+    private static final String ORDERS_BY_MONTH_SQL = QueryPlanAuditor.register(AnalyticsService.class, "ordersByMonth", """
+        SELECT strftime('%Y-%m', fecha) AS periodo,
+               SUM(total) AS total
+        FROM ordenes
+        WHERE fecha IS NOT NULL
+        GROUP BY strftime('%Y-%m', fecha)
+        ORDER BY periodo DESC
+        LIMIT ?
+    """);
+
+    private static final String RECENT_LOGS_SQL = QueryPlanAuditor.register(AnalyticsService.class, "recentLogs", """
+        SELECT id, level, source, message, created_at
+        FROM app_logs
+        ORDER BY id DESC
+        LIMIT ?
+    """, QueryPlanAuditor.Issue.FULL_SCAN);
+
     public Map<String, Double> inventoryValueByCategory() {
-        String sql = """
-            SELECT COALESCE(categoria, 'Sin categoria') AS categoria,
-                   SUM(precio * stock) AS total
-            FROM productos
-            GROUP BY categoria
-            ORDER BY total DESC
-        """;
         Map<String, Double> result = new LinkedHashMap<>();
         try (Connection conn = DBHelper.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql);
+             PreparedStatement ps = conn.prepareStatement(INVENTORY_BY_CATEGORY_SQL);
              ResultSet rs = ps.executeQuery()) {
             while (rs.next()) {
                 result.put(rs.getString("categoria"), rs.getDouble("total"));
@@ -38,16 +68,9 @@ public class AnalyticsService {
     }
 
     public Map<String, Integer> stockBySupplier() {
-        String sql = """
-            SELECT COALESCE(proveedor_codigo, 'Sin proveedor') AS proveedor,
-                   SUM(stock) AS total
-            FROM productos
-            GROUP BY proveedor_codigo
-            ORDER BY total DESC
-        """;
         Map<String, Integer> result = new LinkedHashMap<>();
         try (Connection conn = DBHelper.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql);
+             PreparedStatement ps = conn.prepareStatement(STOCK_BY_SUPPLIER_SQL);
              ResultSet rs = ps.executeQuery()) {
             while (rs.next()) {
                 result.put(rs.getString("proveedor"), rs.getInt("total"));
@@ -59,18 +82,9 @@ public class AnalyticsService {
     }
 
     public Map<String, Double> ordersByMonth(int months) {
-        String sql = """
-            SELECT strftime('%Y-%m', fecha) AS periodo,
-                   SUM(total) AS total
-            FROM ordenes
-            WHERE fecha IS NOT NULL
-            GROUP BY strftime('%Y-%m', fecha)
-            ORDER BY periodo DESC
-            LIMIT ?
-        """;
         Map<String, Double> reversed = new LinkedHashMap<>();
         try (Connection conn = DBHelper.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
+             PreparedStatement ps = conn.prepareStatement(ORDERS_BY_MONTH_SQL)) {
             ps.setInt(1, months);
             try (ResultSet rs = ps.executeQuery()) {
                 while (rs.next()) {
@@ -86,35 +100,35 @@ public class AnalyticsService {
         return chronologicallyOrdered;
     }
 
+    /**
+     * Entradas de log por nivel, leidas de los contadores en memoria sin consultar {@code app_logs}.
+     */
     public Map<String, Long> logCountByLevel() {
-        String sql = """
-            SELECT level, COUNT(*) AS total
-            FROM app_logs
-            GROUP BY level
-        """;
-        Map<String, Long> result = new LinkedHashMap<>();
-        try (Connection conn = DBHelper.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql);
-             ResultSet rs = ps.executeQuery()) {
-            while (rs.next()) {
-                result.put(rs.getString("level"), rs.getLong("total"));
-            }
-        } catch (SQLException e) {
-            Logger.error(AnalyticsService.class, "Error obteniendo resumen de logs", e);
-        }
-        return result;
+        return LogCounters.byLevel();
+    }
+
+    /**
+     * Cambia cada vez que cambian los contadores de log; sirve para refrescar vistas solo cuando hace falta.
+     */
+    public long logCountersVersion() {
+        return LogCounters.version();
+    }
+
+    public Map<String, Long> logCountBySource() {
+        return LogCounters.bySource();
+    }
+
+    /**
+     * Entradas de log por hora (UTC) de las ultimas {@code hours} horas.
+     */
+    public Map<String, Long> logCountByHour(int hours) {
+        return LogCounters.byHour(hours);
     }
 
     public List<AppLog> recentLogs(int limit) {
-        String sql = """
-            SELECT id, level, source, message, created_at
-            FROM app_logs
-            ORDER BY id DESC
-            LIMIT ?
-        """;
         List<AppLog> logs = new ArrayList<>();
         try (Connection conn = DBHelper.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
+             PreparedStatement ps = conn.prepareStatement(RECENT_LOGS_SQL)) {
             ps.setInt(1, limit);
             try (ResultSet rs = ps.executeQuery()) {
                 while (rs.next()) {
@@ -135,4 +149,15 @@ public class AnalyticsService {
         }
         return logs;
     }
+
+    /**
+     * Plantillas SQL que mas tiempo han consumido desde el arranque, con su histograma de latencias.
+     */
+    public List<QueryMetrics.QueryStats> queryLatencies(int limit) {
+        return QueryMetrics.snapshot().stream().limit(limit).toList();
+    }
+
+    public LatencyHistogram.Snapshot connectionWaitHistogram() {
+        return QueryMetrics.connectionWait();
+    }
 }
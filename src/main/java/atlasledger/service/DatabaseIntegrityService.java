@@ -1,6 +1,7 @@
 package atlasledger.service;
 
 import atlasledger.utils.DBHelper;
+import atlasledger.utils.DatabaseCompactor;
 import atlasledger.utils.Logger;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
@@ -18,14 +19,38 @@ public class DatabaseIntegrityService {
         return issues;
     }
 
+    /**
+     * Devuelve al sistema de ficheros las paginas libres sin bloquear las escrituras mas de un paso.
+     */
     public void compactar() {
-        try (Connection conn = DBHelper.getConnection()) {
-            conn.createStatement().execute("VACUUM;");
+        try {
+            long paginas = DatabaseCompactor.compactNow();
+            Logger.info(DatabaseIntegrityService.class, "Compactacion incremental: " + paginas + " paginas liberadas");
         } catch (SQLException e) {
             Logger.error(DatabaseIntegrityService.class, "Error compactando la base de datos", e);
         }
     }
 
+    /**
+     * Reconstruye el fichero de base de datos completo. Solo debe usarse a peticion expresa.
+     */
+    public void compactarCompleto() {
+        try {
+            DBHelper.rebuildDatabaseFile();
+        } catch (SQLException e) {
+            Logger.error(DatabaseIntegrityService.class, "Error reconstruyendo la base de datos", e);
+        }
+    }
+
+    public DatabaseCompactor.CompactionStats estadoCompactacion() {
+        try {
+            return DatabaseCompactor.stats();
+        } catch (SQLException e) {
+            Logger.error(DatabaseIntegrityService.class, "Error consultando el espacio libre de la base de datos", e);
+            return new DatabaseCompactor.CompactionStats(0, 0, 0, 0);
+        }
+    }
+
     private List<String> validarProductosSinProveedor() {
         String sql = """
             SELECT codigo
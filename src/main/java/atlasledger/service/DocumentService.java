@@ -2,20 +2,44 @@ package atlasledger.service;
 
 import atlasledger.dao.DocumentQueueDao;
 import atlasledger.model.DocumentTask;
+import atlasledger.utils.ConnectivityMonitor;
 import atlasledger.utils.Logger;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.LocalDateTime;
 import java.util.List;
-import java.util.function.Function;
 
+/**
+ * Copia local de documentos y cola de subida a la API remota.
+ * <p>
+ * Las subidas informan al {@link ConnectivityMonitor} igual que {@link SyncService}: cualquier respuesta del
+ * servidor, aunque rechace el documento, cuenta como exito, y solo los fallos de red cuentan como fallo.
+ */
 public class DocumentService {
 
+    /**
+     * Envio de un documento a la API remota.
+     */
+    @FunctionalInterface
+    public interface Uploader {
+        /**
+         * Devuelve {@code false} si el servidor rechaza el documento y lanza {@link IOException} si no se
+         * pudo llegar a el.
+         */
+        boolean upload(Path path) throws IOException;
+    }
+
     private final Path storageRoot;
+    private final ConnectivityMonitor connectivity;
 
     public DocumentService(Path storageRoot) {
+        this(storageRoot, new ConnectivityMonitor());
+    }
+
+    public DocumentService(Path storageRoot, ConnectivityMonitor connectivity) {
         this.storageRoot = storageRoot;
+        this.connectivity = connectivity;
         try {
             Files.createDirectories(storageRoot);
         } catch (IOException e) {
@@ -64,7 +88,16 @@ public class DocumentService {
         DocumentQueueDao.updateStatus(task.getId(), "DONE");
     }
 
-    public void uploadPendingDocuments(Function<Path, Boolean> uploader) {
+    /**
+     * Sube los documentos pendientes con {@code uploader}. Sin conexion segun {@code connectivity} no lo
+     * intenta. Tras un fallo de red el documento sigue pendiente y, si la conexion cae a mitad, se deja
+     * el resto para el siguiente intento. Un documento rechazado por el servidor pasa a {@code ERROR}.
+     */
+    public void uploadPendingDocuments(Uploader uploader) {
+        if (!connectivity.allowRequest()) {
+            Logger.warn(DocumentService.class, "Sin conexion. Subida de documentos omitida.");
+            return;
+        }
         List<DocumentTask> pending = pendingDocuments();
         for (DocumentTask task : pending) {
             Path path = Path.of(task.getLocalPath());
@@ -72,11 +105,22 @@ public class DocumentService {
                 DocumentQueueDao.updateStatus(task.getId(), "MISSING");
                 continue;
             }
-            boolean ok = uploader.apply(path);
-            DocumentQueueDao.updateStatus(task.getId(), ok ? "DONE" : "ERROR");
+            if (!connectivity.allowRequest()) {
+                return;
+            }
+            boolean ok;
+            try {
+                ok = uploader.upload(path);
+            } catch (IOException e) {
+                Logger.warn(DocumentService.class, "No se pudo subir " + task.getFileName() + ": " + e.getMessage());
+                connectivity.recordFailure();
+                continue;
+            }
+            connectivity.recordSuccess();
             if (ok) {
                 task.setUploadedAt(LocalDateTime.now());
             }
+            DocumentQueueDao.updateStatus(task.getId(), ok ? "DONE" : "ERROR");
         }
     }
 }
@@ -5,16 +5,15 @@ import atlasledger.model.Orden;
 import atlasledger.model.Producto;
 import atlasledger.repository.OrderRepository;
 import atlasledger.repository.ProductRepository;
-import atlasledger.utils.DBHelper;
+import atlasledger.utils.DBWriter;
+import atlasledger.utils.JsonCodec;
 import atlasledger.utils.Logger;
-import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.time.LocalDateTime;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
-import java.util.List;
-import java.util.Locale;
 import java.util.Map;
 import java.util.stream.Collectors;
 
@@ -29,25 +28,20 @@ public class ReportService {
     }
 
     public ReportSnapshot generarResumenInventario() {
-        List<Producto> productos = productRepository.findAll();
+        InventoryTotals totales = new InventoryTotals();
+        productRepository.forEach(totales::add);
 
-        double valorInventario = productos.stream().mapToDouble(p -> p.getPrecio() * p.getStock()).sum();
-        double saldoInventario = productos.stream().mapToDouble(p -> p.getCoste() * p.getStock()).sum();
-        double margenPromedio = productos.isEmpty()
-            ? 0.0
-            : productos.stream().mapToDouble(Producto::getMargen).average().orElse(0.0);
+        double valorInventario = totales.valorInventario;
+        double saldoInventario = totales.saldoInventario;
+        double margenPromedio = totales.productos == 0 ? 0.0 : totales.sumaMargen / totales.productos;
 
         Map<String, Number> resumen = new LinkedHashMap<>();
-        resumen.put("Total de productos", productos.size());
+        resumen.put("Total de productos", totales.productos);
         resumen.put("Valor inventario", valorInventario);
         resumen.put("Saldo inventario", saldoInventario);
         resumen.put("Margen promedio", margenPromedio);
 
-        Map<String, Long> categorias = productos.stream()
-            .collect(Collectors.groupingBy(p -> {
-                String categoria = p.getCategoria();
-                return categoria == null || categoria.isBlank() ? "Sin categoria" : categoria;
-            }, Collectors.counting()));
+        Map<String, Long> categorias = totales.categorias;
 
         Map<String, Number> categoriasOrdenadas = categorias.entrySet().stream()
             .sorted(Map.Entry.<String, Long>comparingByValue(Comparator.reverseOrder()))
@@ -59,7 +53,7 @@ public class ReportService {
             ));
 
         Informe informe = new Informe("Resumen Inventario", Informe.Tipo.INVENTARIO,
-            toJson(resumen, categoriasOrdenadas, "Categorias"));
+            JsonCodec.encodeReport(resumen, "Categorias", categoriasOrdenadas));
         informe.setGeneradoEn(LocalDateTime.now());
         persistirInforme(informe);
 
@@ -67,21 +61,18 @@ public class ReportService {
     }
 
     public ReportSnapshot generarComprasPorProveedor() {
-        List<Orden> ordenes = orderRepository.findAll();
+        PurchaseTotals totales = new PurchaseTotals();
+        orderRepository.forEach(totales::add);
 
-        double totalComprado = ordenes.stream().mapToDouble(Orden::getTotal).sum();
-        double promedio = ordenes.isEmpty() ? 0.0 : totalComprado / ordenes.size();
+        double totalComprado = totales.totalComprado;
+        double promedio = totales.ordenes == 0 ? 0.0 : totalComprado / totales.ordenes;
 
         Map<String, Number> resumen = new LinkedHashMap<>();
-        resumen.put("Total de ordenes", ordenes.size());
+        resumen.put("Total de ordenes", totales.ordenes);
         resumen.put("Total comprado", totalComprado);
         resumen.put("Orden promedio", promedio);
 
-        Map<String, Double> porProveedor = ordenes.stream()
-            .collect(Collectors.groupingBy(orden -> {
-                String proveedor = orden.getProveedorCodigo();
-                return proveedor == null || proveedor.isBlank() ? "Sin proveedor" : proveedor;
-            }, Collectors.summingDouble(Orden::getTotal)));
+        Map<String, Double> porProveedor = totales.porProveedor;
 
         Map<String, Number> proveedoresOrdenados = porProveedor.entrySet().stream()
             .sorted(Map.Entry.<String, Double>comparingByValue(Comparator.reverseOrder()))
@@ -93,51 +84,13 @@ public class ReportService {
             ));
 
         Informe informe = new Informe("Compras por Proveedor", Informe.Tipo.COMPRAS,
-            toJson(resumen, proveedoresOrdenados, "Proveedores"));
+            JsonCodec.encodeReport(resumen, "Proveedores", proveedoresOrdenados));
         informe.setGeneradoEn(LocalDateTime.now());
         persistirInforme(informe);
 
         return new ReportSnapshot(informe, resumen, proveedoresOrdenados, "Distribucion por proveedor");
     }
 
-    private String toJson(Map<String, Number> summary,
-                          Map<String, Number> breakdown,
-                          String breakdownLabel) {
-        StringBuilder sb = new StringBuilder();
-        sb.append("{\"summary\":{");
-        appendMap(sb, summary);
-        sb.append("},\"breakdownLabel\":\"").append(escape(breakdownLabel)).append("\",\"breakdown\":{");
-        appendMap(sb, breakdown);
-        sb.append("}}");
-        return sb.toString();
-    }
-
-    private void appendMap(StringBuilder sb, Map<String, Number> map) {
-        boolean first = true;
-        for (Map.Entry<String, Number> entry : map.entrySet()) {
-            if (!first) {
-                sb.append(',');
-            }
-            first = false;
-            sb.append('"').append(escape(entry.getKey())).append('"').append(':')
-                .append(formatNumber(entry.getValue()));
-        }
-    }
-
-    private String formatNumber(Number number) {
-        if (number == null) {
-            return "0";
-        }
-        if (number instanceof Integer || number instanceof Long) {
-            return String.valueOf(number.longValue());
-        }
-        return String.format(Locale.US, "%.2f", number.doubleValue());
-    }
-
-    private String escape(String value) {
-        return value.replace("\"", "\\\"");
-    }
-
     private void persistirInforme(Informe informe) {
         String sql = """
             INSERT INTO informes (nombre, tipo, definicion_json, generado_en)
@@ -148,14 +101,53 @@ public class ReportService {
                 generado_en = excluded.generado_en
         """;
 
-        try (Connection conn = DBHelper.getConnection(); PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setString(1, informe.getNombre());
-            ps.setString(2, informe.getTipo().name());
-            ps.setString(3, informe.getDefinicionJson());
-            ps.setString(4, informe.getGeneradoEn() != null ? informe.getGeneradoEn().toString() : null);
-            ps.executeUpdate();
+        try {
+            DBWriter.execute(conn -> {
+                try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                    ps.setString(1, informe.getNombre());
+                    ps.setString(2, informe.getTipo().name());
+                    ps.setString(3, informe.getDefinicionJson());
+                    ps.setString(4, informe.getGeneradoEn() != null ? informe.getGeneradoEn().toString() : null);
+                    return ps.executeUpdate();
+                }
+            });
         } catch (SQLException e) {
             Logger.error(ReportService.class, "Error guardando informe", e);
         }
     }
+
+    /**
+     * Acumulador del resumen de inventario; permite recorrer el catalogo en streaming con memoria
+     * proporcional al numero de categorias y no al de productos.
+     */
+    private static final class InventoryTotals {
+        private int productos;
+        private double valorInventario;
+        private double saldoInventario;
+        private double sumaMargen;
+        private final Map<String, Long> categorias = new HashMap<>();
+
+        private void add(Producto producto) {
+            productos++;
+            valorInventario += producto.getPrecio() * producto.getStock();
+            saldoInventario += producto.getCoste() * producto.getStock();
+            sumaMargen += producto.getMargen();
+            String categoria = producto.getCategoria();
+            categorias.merge(categoria == null || categoria.isBlank() ? "Sin categoria" : categoria, 1L, Long::sum);
+        }
+    }
+
+    private static final class PurchaseTotals {
+        private int ordenes;
+        private double totalComprado;
+        private final Map<String, Double> porProveedor = new HashMap<>();
+
+        private void add(Orden orden) {
+            ordenes++;
+            totalComprado += orden.getTotal();
+            String proveedor = orden.getProveedorCodigo();
+            porProveedor.merge(proveedor == null || proveedor.isBlank() ? "Sin proveedor" : proveedor,
+                orden.getTotal(), Double::sum);
+        }
+    }
 }
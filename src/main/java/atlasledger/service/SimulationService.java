@@ -93,20 +93,21 @@ public class SimulationService {
         if (!providerRepository.findAll().isEmpty()) {
             return;
         }
-        IntStream.range(1, 4).forEach(i -> {
-            Proveedor proveedor = new Proveedor(
+        List<Proveedor> proveedores = IntStream.range(1, 4)
+            .mapToObj(i -> new Proveedor(
                 "PV-SIM-" + i,
                 "Proveedor Sim " + i,
                 "sim" + i + "@proveedor.com",
                 "+34 600 00 0" + i,
                 "Calle Simulada " + i
-            );
-            providerRepository.save(proveedor);
-        });
+            ))
+            .toList();
+        providerRepository.saveAll(proveedores);
     }
 
     private void createSampleProducts() {
         List<Proveedor> proveedores = providerRepository.findAll();
+        List<Producto> productos = new ArrayList<>();
         for (int i = 1; i <= 5; i++) {
             Producto producto = new Producto(
                 "SIM-P-" + i,
@@ -117,13 +118,15 @@ public class SimulationService {
                 randomDouble(5, 20),
                 randomDouble(15, 50)
             );
-            productRepository.save(producto);
+            productos.add(producto);
         }
+        productRepository.saveAll(productos);
         Logger.info(SimulationService.class, "Productos de simulacion creados.");
     }
 
     private void createSampleOrders() {
         List<Proveedor> proveedores = providerRepository.findAll();
+        List<Orden> ordenes = new ArrayList<>();
         for (int i = 1; i <= 3; i++) {
             String proveedorCodigo = proveedores.isEmpty() ? "PV-SIM-1" : proveedores.get(random.nextInt(proveedores.size())).getCodigo();
             Orden orden = new Orden(
@@ -133,8 +136,9 @@ public class SimulationService {
                 randomDouble(100, 500),
                 Orden.Estado.APROBADA
             );
-            orderRepository.save(orden);
+            ordenes.add(orden);
         }
+        orderRepository.saveAll(ordenes);
         Logger.info(SimulationService.class, "Ordenes de simulacion creadas.");
     }
 
@@ -0,0 +1,328 @@
+package atlasledger.service;
+
+import atlasledger.utils.ConnectivityMonitor;
+import atlasledger.utils.Logger;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Sincronizacion continua de la cola de salida en segundo plano.
+ * <p>
+ * Un hilo propio vacia {@code sync_queue} con pasadas de {@link SyncService#pushPending(int)} hasta que
+ * no queda nada vencido. El tamano de cada pasada se adapta: se duplica mientras las pasadas llenas
+ * terminan en menos de {@link #TARGET_ROUND} y se reduce a la mitad cuando fallan envios o tardan el
+ * doble. Cada {@link SyncService#enqueueChange cambio encolado} programa una sincronizacion tras
+ * {@link #DEBOUNCE} sin nuevos cambios (como mucho {@link #MAX_DEBOUNCE} desde el primero), de modo que
+ * una rafaga de ediciones se envia junta. Sin cambios nuevos se despierta cuando vence el siguiente
+ * reintento o cada {@link #IDLE_INTERVAL}. Sin conexion espera entre {@link #OFFLINE_BACKOFF_MIN} y
+ * {@link #OFFLINE_BACKOFF_MAX}, duplicando la espera en cada intento fallido; adelantan el siguiente intento
+ * {@link #requestSync}, que ademas sondea el servidor en el momento, y el {@link ConnectivityMonitor} del
+ * servicio cuando vuelve a dejar pasar peticiones.
+ * <p>
+ * La interfaz no lanza sincronizaciones: observa el {@link Progress} con {@link #addListener}, que se
+ * notifica desde el hilo del planificador.
+ */
+public class SyncScheduler implements AutoCloseable {
+
+    public enum State {
+        IDLE,
+        SYNCING,
+        OFFLINE,
+        STOPPED
+    }
+
+    /**
+     * Estado observable de la sincronizacion.
+     *
+     * @param state     que esta haciendo el planificador
+     * @param pending   cambios pendientes en la cola
+     * @param dead      cambios descartados tras agotar sus intentos
+     * @param delivered cambios enviados desde que se inicio
+     * @param failed    envios fallidos desde que se inicio
+     * @param lag       antiguedad del cambio pendiente mas antiguo
+     * @param batchSize tamano actual de cada pasada
+     * @param lastRun   fin de la ultima sincronizacion, o {@code null}
+     * @param nextRun   siguiente sincronizacion programada, o {@code null}
+     */
+    public record Progress(State state, int pending, int dead, long delivered, long failed, Duration lag,
+                           int batchSize, Instant lastRun, Instant nextRun) {
+    }
+
+    static final int MIN_BATCH = 10;
+    static final int INITIAL_BATCH = 25;
+    static final int MAX_BATCH = 500;
+    static final Duration TARGET_ROUND = Duration.ofSeconds(2);
+    static final Duration DEBOUNCE = Duration.ofMillis(500);
+    static final Duration MAX_DEBOUNCE = Duration.ofSeconds(2);
+    static final Duration IDLE_INTERVAL = Duration.ofSeconds(30);
+    static final Duration OFFLINE_BACKOFF_MIN = Duration.ofSeconds(5);
+    static final Duration OFFLINE_BACKOFF_MAX = Duration.ofMinutes(5);
+
+    private final SyncService service;
+    private final Object lock = new Object();
+    private final List<Consumer<Progress>> listeners = new CopyOnWriteArrayList<>();
+    private final List<Consumer<Boolean>> waiting = new ArrayList<>();
+    private final Consumer<ConnectivityMonitor.State> connectivityListener = this::connectivityChanged;
+    private Thread worker;
+    private boolean running;
+    private boolean triggered;
+    private long firstTriggerNanos;
+    private long wakeAtNanos;
+    private long nextScheduledNanos;
+    private volatile Progress progress = new Progress(State.STOPPED, 0, 0, 0, 0, Duration.ZERO, INITIAL_BATCH, null, null);
+
+    // Solo los usa el hilo del planificador.
+    private int batchSize = INITIAL_BATCH;
+    private long delivered;
+    private long failed;
+    private Duration offlineBackoff;
+    private Instant lastRun;
+
+    public SyncScheduler(SyncService service) {
+        this.service = service;
+    }
+
+    public void start() {
+        synchronized (lock) {
+            if (running) {
+                return;
+            }
+            running = true;
+            nextScheduledNanos = System.nanoTime();
+            worker = new Thread(this::runLoop, "atlasledger-sync");
+            worker.setDaemon(true);
+            worker.start();
+        }
+        service.setEnqueueListener(this::trigger);
+        service.connectivity().addListener(connectivityListener);
+    }
+
+    /**
+     * Programa una sincronizacion en cuanto pase {@link #DEBOUNCE} sin nuevas llamadas. Sin conexion no
+     * adelanta el siguiente intento.
+     */
+    public void trigger() {
+        synchronized (lock) {
+            if (!running || progress.state() == State.OFFLINE) {
+                return;
+            }
+            long now = System.nanoTime();
+            if (!triggered) {
+                triggered = true;
+                firstTriggerNanos = now;
+            }
+            wakeAtNanos = Math.min(now + DEBOUNCE.toNanos(), firstTriggerNanos + MAX_DEBOUNCE.toNanos());
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * Sincroniza de inmediato, tambien sin conexion, y avisa al terminar con {@code true} si habia conexion.
+     */
+    public void requestSync(Consumer<Boolean> callback) {
+        synchronized (lock) {
+            if (!running) {
+                if (callback != null) {
+                    callback.accept(false);
+                }
+                return;
+            }
+            if (callback != null) {
+                waiting.add(callback);
+            }
+            if (!triggered) {
+                triggered = true;
+                firstTriggerNanos = System.nanoTime();
+            }
+            wakeAtNanos = System.nanoTime();
+            lock.notifyAll();
+        }
+    }
+
+    public Progress progress() {
+        return progress;
+    }
+
+    public void addListener(Consumer<Progress> listener) {
+        listeners.add(listener);
+        listener.accept(progress);
+    }
+
+    public void removeListener(Consumer<Progress> listener) {
+        listeners.remove(listener);
+    }
+
+    @Override
+    public void close() {
+        service.setEnqueueListener(null);
+        service.connectivity().removeListener(connectivityListener);
+        Thread current;
+        List<Consumer<Boolean>> pendientes;
+        synchronized (lock) {
+            running = false;
+            current = worker;
+            pendientes = new ArrayList<>(waiting);
+            waiting.clear();
+            lock.notifyAll();
+        }
+        pendientes.forEach(callback -> callback.accept(false));
+        if (current != null && current != Thread.currentThread()) {
+            current.interrupt();
+            try {
+                current.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        publish(State.STOPPED);
+    }
+
+    private void runLoop() {
+        publish(State.IDLE);
+        while (true) {
+            List<Consumer<Boolean>> callbacks;
+            synchronized (lock) {
+                try {
+                    while (running) {
+                        long wakeAt = triggered ? wakeAtNanos : nextScheduledNanos;
+                        long remaining = wakeAt - System.nanoTime();
+                        if (remaining <= 0) {
+                            break;
+                        }
+                        TimeUnit.NANOSECONDS.timedWait(lock, remaining);
+                    }
+                } catch (InterruptedException e) {
+                    return;
+                }
+                if (!running) {
+                    return;
+                }
+                triggered = false;
+                callbacks = new ArrayList<>(waiting);
+                waiting.clear();
+            }
+
+            if (!callbacks.isEmpty()) {
+                service.connectivity().checkNow();
+            }
+            boolean online = false;
+            try {
+                online = drain();
+            } catch (RuntimeException e) {
+                Logger.error(SyncScheduler.class, "Error en la sincronizacion en segundo plano", e);
+            }
+            for (Consumer<Boolean> callback : callbacks) {
+                callback.accept(online);
+            }
+            schedule(online);
+        }
+    }
+
+    /**
+     * Sin conexion, adelanta la siguiente sincronizacion en cuanto el monitor vuelve a dejar pasar peticiones.
+     */
+    private void connectivityChanged(ConnectivityMonitor.State state) {
+        if (state == ConnectivityMonitor.State.OPEN) {
+            return;
+        }
+        synchronized (lock) {
+            if (!running || progress.state() != State.OFFLINE) {
+                return;
+            }
+            if (!triggered) {
+                triggered = true;
+                firstTriggerNanos = System.nanoTime();
+            }
+            wakeAtNanos = System.nanoTime();
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * Envia pasadas hasta vaciar lo vencido o hasta que una pasada no consiga enviar nada.
+     *
+     * @return {@code false} si no habia conexion
+     */
+    private boolean drain() {
+        publish(State.SYNCING);
+        while (!Thread.currentThread().isInterrupted()) {
+            int limit = batchSize;
+            long start = System.nanoTime();
+            SyncService.PushResult result = service.pushPending(limit);
+            if (!result.online()) {
+                offlineBackoff = offlineBackoff == null
+                    ? OFFLINE_BACKOFF_MIN
+                    : min(offlineBackoff.multipliedBy(2), OFFLINE_BACKOFF_MAX);
+                lastRun = Instant.now();
+                return false;
+            }
+            offlineBackoff = null;
+            delivered += result.delivered();
+            failed += result.failed();
+            adapt(result, limit, Duration.ofNanos(System.nanoTime() - start));
+            publish(State.SYNCING);
+            if (result.read() < limit || result.delivered() == 0) {
+                break;
+            }
+        }
+        lastRun = Instant.now();
+        return true;
+    }
+
+    private void adapt(SyncService.PushResult result, int limit, Duration elapsed) {
+        if (result.failed() > 0 || elapsed.compareTo(TARGET_ROUND.multipliedBy(2)) > 0) {
+            batchSize = Math.max(MIN_BATCH, batchSize / 2);
+        } else if (result.read() >= limit && elapsed.compareTo(TARGET_ROUND) < 0) {
+            batchSize = Math.min(MAX_BATCH, batchSize * 2);
+        }
+    }
+
+    private void schedule(boolean online) {
+        Duration delay;
+        if (!online) {
+            delay = offlineBackoff;
+        } else {
+            delay = IDLE_INTERVAL;
+            SyncService.QueueStatus status = service.queueStatus();
+            if (status.pending() > 0) {
+                long untilDue = status.nextAttemptMillis() - System.currentTimeMillis();
+                delay = min(delay, Duration.ofMillis(Math.max(untilDue, DEBOUNCE.toMillis())));
+            }
+        }
+        synchronized (lock) {
+            nextScheduledNanos = System.nanoTime() + delay.toNanos();
+        }
+        Instant next = Instant.now().plus(delay);
+        publish(online ? State.IDLE : State.OFFLINE, next);
+    }
+
+    private void publish(State state) {
+        Progress previous = progress;
+        publish(state, previous.nextRun());
+    }
+
+    private void publish(State state, Instant nextRun) {
+        SyncService.QueueStatus status = service.queueStatus();
+        Duration lag = status.oldestPending() == null
+            ? Duration.ZERO
+            : Duration.between(status.oldestPending(), Instant.now());
+        if (lag.isNegative()) {
+            lag = Duration.ZERO;
+        }
+        Progress current = new Progress(state, status.pending(), status.dead(), delivered, failed, lag, batchSize,
+            lastRun, nextRun);
+        progress = current;
+        for (Consumer<Progress> listener : listeners) {
+            listener.accept(current);
+        }
+    }
+
+    private static Duration min(Duration a, Duration b) {
+        return a.compareTo(b) <= 0 ? a : b;
+    }
+}
@@ -6,26 +6,56 @@ import atlasledger.model.Proveedor;
 import atlasledger.repository.OrderRepository;
 import atlasledger.repository.ProductRepository;
 import atlasledger.repository.ProviderRepository;
+import atlasledger.utils.ConnectivityMonitor;
 import atlasledger.utils.DBHelper;
+import atlasledger.utils.DBWriter;
+import atlasledger.utils.GzipEncodingStream;
+import atlasledger.utils.JsonCodec;
+import atlasledger.utils.JsonReader;
 import atlasledger.utils.Logger;
+import atlasledger.utils.QueryPlanAuditor;
 import atlasledger.utils.NetworkUtils;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
+import java.net.URLEncoder;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.time.Duration;
 import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.zip.GZIPInputStream;
 
 /**
  * Service responsible for synchronizing local domain changes with a remote HTTP API and for pulling
@@ -43,23 +73,78 @@ import java.util.function.Consumer;
  * <ul>
  *   <li>The service persists outgoing changes via {@link #enqueueChange(String, String, String, SyncOperation)}.
  *       The expected DB table columns used are: {@code entidad}, {@code referencia}, {@code payload},
- *       {@code operacion}, {@code estado}, {@code creado_en}, {@code ultimo_intento} and {@code intentos}.</li>
+ *       {@code operacion}, {@code estado}, {@code creado_en}, {@code ultimo_intento}, {@code intentos},
+ *       {@code proximo_intento} and {@code ultimo_error}.</li>
  *   <li>{@link #pushPendingAsync(java.util.function.Consumer)} schedules a background task on an internal
  *       single-threaded {@code ExecutorService} and invokes the optional callback when finished. The callback
  *       receives {@code true} when the background task completed without throwing; {@code false} when an
  *       exception occurred or the operation decided not to run (e.g. offline). Note: a {@code true} callback
  *       value indicates the task ran successfully, not that every queued item was successfully delivered.</li>
- *   <li>{@link #pushPendingInternal()} performs the actual delivery of up to 25 oldest PENDING queue entries.
- *       It verifies network connectivity first and returns {@code false} if offline. For each queued entry it
- *       attempts an HTTP POST to {@code apiBaseUrl + "/sync/" + entidad}. On HTTP success the entry is marked
- *       DONE and attempts are incremented; on failure only the attempt counter and timestamp are updated.</li>
- *   <li>{@link #pullUpdates()} requests remote lists for the entities "productos", "proveedores" and "ordenes",
- *       maps the received JSON payloads to domain objects via {@code NetworkUtils} mapping helpers, and saves
- *       them into the provided repositories. If offline the pull is skipped.</li>
+ *   <li>{@link #pushPending(int)} runs one pass over at most {@code limit} due entries and reports what it read and
+ *       delivered; passes never overlap. {@link SyncScheduler} calls it continuously in the background, woken by
+ *       {@link #setEnqueueListener(Runnable)} after every enqueued change, and {@link #queueStatus()} gives it the
+ *       pending count, the oldest pending change and the next retry time, ignoring entries held back behind an
+ *       older entry of the same record.</li>
+ *   <li>Only due entries are read: a failed delivery sets {@code proximo_intento} to an exponential backoff with
+ *       jitter ({@link #backoffMillis(int, double)}) and stores the error in {@code ultimo_error}. After
+ *       {@code maxAttempts} failures (system property {@value #MAX_ATTEMPTS_PROPERTY}, default
+ *       {@value #DEFAULT_MAX_ATTEMPTS}) the entry is moved to the DEAD state and no longer retried until
+ *       {@link #requeueDead()} is called. An entry is not read while an older PENDING entry of the same record is
+ *       still waiting for its retry, so a backoff never lets later changes of a record overtake earlier ones,
+ *       while other records keep flowing.</li>
+ *   <li>Before delivery the pending entries read from the queue are coalesced per record: a CREATE followed by
+ *       UPDATEs becomes a single CREATE with the last payload, any change followed by a DELETE becomes the
+ *       DELETE, and a CREATE that ends in a DELETE disappears. Only the surviving rows are sent; the others are
+ *       marked SUPERSEDED with a single statement, in the same transaction that rewrites the operation of the
+ *       surviving rows when it changes. A DELETE followed by a new CREATE keeps both steps.</li>
+ *   <li>{@link #pushPendingInternal()} performs the actual delivery of up to {@value #PUSH_BATCH_SIZE} oldest
+ *       due PENDING queue entries. It verifies network connectivity first and returns {@code false} if offline. The
+ *       entries are grouped by record ({@code entidad} + {@code referencia}); different records are sent in
+ *       parallel with at most {@code concurrency} HTTP POSTs to {@code apiBaseUrl + "/sync/" + entidad} in
+ *       flight, while the changes of one record are sent one after another in queue order. When a change fails
+ *       the later changes of the same record are left PENDING for the next run, so they never overtake it. The
+ *       outcome of the whole run is written back in a single transaction: delivered entries are marked DONE and
+ *       failed ones get their attempt counter, timestamp, error and next attempt updated.</li>
+ *   <li>With a {@code batchSize} greater than one the service switches to the batch protocol: the changes of each
+ *       entity are packed, in queue order, into requests of up to {@code batchSize} items POSTed to
+ *       {@code apiBaseUrl + "/sync/" + entidad + "/lote"}. The body is a JSON array of
+ *       {@code {"id", "referencia", "operacion", "payload"}} items and the response a JSON array of
+ *       {@code {"id", "ok", "error"}} results; items missing from the response count as failed. Entities are
+ *       sent in parallel and the batches of one entity one after another; once a change of a record fails, the
+ *       later changes of that record are not sent (or, if the server accepted them in the same batch, are
+ *       retried) so the record is never left in an older state.</li>
+ *   <li>{@link #pullUpdates()} requests remote changes for the entities "proveedores", "productos" and "ordenes",
+ *       in that order so orders find their providers. Each entity keeps a watermark and the last ETag in the
+ *       {@code sync_marcas} table: the request is {@code GET apiBaseUrl/sync/{entidad}?since={watermark}} with
+ *       {@code If-None-Match}, a {@code 304} response ends the pull of that entity, and the new watermark is read
+ *       from the {@value #WATERMARK_HEADER} response header (without it the previous one is kept). The body is
+ *       read as a stream with {@link JsonReader}: each object is mapped straight into a domain object by the
+ *       {@code NetworkUtils} mappers and the rows are handled in batches of {@value #PULL_BATCH_SIZE}, so memory
+ *       does not grow with the catalog. Rows are compared with the SHA-256 of their content stored in
+ *       {@code sync_huellas}; only rows whose hash changed are saved, with one {@code saveAll} per batch, so a
+ *       server that ignores {@code since} still costs one lookup per row instead of one write. Hashes are stored
+ *       only once their batch is saved, and the watermark and ETag only after the whole response is saved; a
+ *       {@code saveAll} that reports failure ends the pull of that entity, so it is repeated from the previous
+ *       watermark. If offline the pull is skipped.</li>
+ *   <li>Bodies are compressed with gzip when the server can take them. Push bodies of at least
+ *       {@code gzipThreshold} characters (system property {@value #GZIP_THRESHOLD_PROPERTY}, default
+ *       {@value #DEFAULT_GZIP_THRESHOLD}) are sent with {@code Content-Encoding: gzip}, compressed while the
+ *       request is written by {@link GzipEncodingStream}, so neither the encoded nor the compressed body is held
+ *       in memory. A {@code 415} answer to a compressed body turns request compression off for this service and
+ *       the request is repeated uncompressed. Every request sends {@code Accept-Encoding: gzip} and responses
+ *       with {@code Content-Encoding: gzip} are decompressed while they are parsed.</li>
+ *   <li>Connectivity is tracked by the {@link ConnectivityMonitor} of {@code networkUtils} instead of probing the
+ *       network before each run. Every HTTP request reports its outcome to it: I/O errors and {@code 502},
+ *       {@code 503} or {@code 504} answers count as failures, any other answer as a success. After a few
+ *       consecutive failures the circuit opens, {@code networkUtils.isOnline()} turns {@code false} without
+ *       touching the network, and the push and pull stop before their next request; the changes not yet sent
+ *       stay PENDING without spending an attempt. The monitor probes the server in the background and lets
+ *       requests through again once it answers. A push that ends with the circuit open reports
+ *       {@code online = false}.</li>
  *   <li>Database and network errors are logged; methods generally swallow exceptions and do not propagate them.</li>
  *   <li>The internal {@link java.net.http.HttpClient} is constructed with {@code networkUtils.defaultTimeout()}
- *       and uses the same single-threaded executor; call {@link #close()} to shut down the executor when the
- *       service is no longer needed.</li>
+ *       and runs on a virtual-thread executor shared with the parallel senders; call {@link #close()} to shut
+ *       down the executors when the service is no longer needed.</li>
  * </ul>
  *
  * <p>Constructor parameters:
@@ -67,20 +152,25 @@ import java.util.function.Consumer;
  *   <li>{@code apiBaseUrl} ??? base URL of the remote API; a trailing slash is normalized away.</li>
  *   <li>{@code productRepository}, {@code providerRepository}, {@code orderRepository} ??? local repositories
  *       used to persist pulled entities.</li>
- *   <li>{@code networkUtils} ??? provides connectivity checks, timeout values, JSON parsing and mapping helpers.</li>
+ *   <li>{@code networkUtils} ??? provides connectivity checks, timeout values and the streaming JSON mappers.</li>
+ *   <li>{@code concurrency} ??? maximum number of push requests in flight; by default the system property
+ *       {@value #CONCURRENCY_PROPERTY} or {@value #DEFAULT_CONCURRENCY}.</li>
+ *   <li>{@code batchSize} ??? maximum changes per request in the batch protocol; by default the system property
+ *       {@value #BATCH_SIZE_PROPERTY} or {@value #DEFAULT_BATCH_SIZE}, which keeps one request per change.</li>
  * </ul>
  *
  * <p>Threading and lifecycle:
  * <ul>
- *   <li>Uses a dedicated single-threaded {@link java.util.concurrent.ExecutorService} for background tasks and
- *       as the {@link java.net.http.HttpClient} executor.</li>
+ *   <li>Uses a dedicated single-threaded {@link java.util.concurrent.ExecutorService} for background tasks, so
+ *       only one push runs at a time, and a virtual-thread executor for the HTTP requests it fans out.</li>
  *   <li>{@link #close()} performs {@code executor.shutdownNow()} to release resources. After calling close the
  *       service should not be used for further network activity.</li>
  * </ul>
  *
  * <p>Record:
  * <ul>
- *   <li>Inner record {@code QueuedChange(int id, String entidad, String referencia, String payload, SyncOperation operacion)}
+ *   <li>Inner record {@code QueuedChange(int id, String entidad, String referencia, String payload, SyncOperation operacion,
+ *       int intentos)}
  *       represents a row loaded from the sync_queue table that is pending delivery.</li>
  * </ul>
  *
@@ -101,27 +191,191 @@ public class SyncService implements AutoCloseable {
         DELETE
     }
 
+    /**
+     * Resultado de una pasada de envio.
+     *
+     * @param online    {@code false} si no se ha intentado por falta de conexion
+     * @param read      cambios leidos de la cola, antes de agruparlos
+     * @param delivered cambios aceptados por el servidor
+     * @param failed    cambios que se reintentaran o han pasado a DEAD
+     */
+    public record PushResult(boolean online, int read, int delivered, int failed) {
+
+        static final PushResult OFFLINE = new PushResult(false, 0, 0, 0);
+    }
+
+    /**
+     * Estado de la cola de salida.
+     *
+     * @param pending           cambios pendientes de enviar
+     * @param dead              cambios descartados tras agotar sus intentos
+     * @param oldestPending     alta del cambio pendiente mas antiguo, o {@code null} si no hay
+     * @param nextAttemptMillis instante (epoch ms) en que vence el siguiente pendiente que se puede enviar, o 0
+     *                          si no hay; no cuenta los retenidos tras otro cambio del mismo registro
+     */
+    public record QueueStatus(int pending, int dead, Instant oldestPending, long nextAttemptMillis) {
+    }
+
+    /**
+     * Resultado de la descarga de una entidad.
+     *
+     * @param entity      entidad descargada
+     * @param ok          {@code false} si la peticion o el guardado han fallado
+     * @param notModified {@code true} si el servidor ha respondido 304
+     * @param received    filas recibidas
+     * @param saved       filas guardadas porque su contenido habia cambiado
+     */
+    public record PullResult(String entity, boolean ok, boolean notModified, int received, int saved) {
+
+        static PullResult failed(String entity) {
+            return new PullResult(entity, false, false, 0, 0);
+        }
+    }
+
+    public static final String CONCURRENCY_PROPERTY = "atlasledger.sync.concurrencia";
+    public static final int DEFAULT_CONCURRENCY = 8;
+    public static final String BATCH_SIZE_PROPERTY = "atlasledger.sync.lote";
+    public static final int DEFAULT_BATCH_SIZE = 1;
+    static final int PUSH_BATCH_SIZE = 25;
+
+    public static final String GZIP_THRESHOLD_PROPERTY = "atlasledger.sync.gzipMinimo";
+    public static final int DEFAULT_GZIP_THRESHOLD = 1024;
+
+    public static final String MAX_ATTEMPTS_PROPERTY = "atlasledger.sync.maxIntentos";
+    public static final int DEFAULT_MAX_ATTEMPTS = 10;
+    static final Duration BACKOFF_BASE = Duration.ofSeconds(5);
+    static final Duration BACKOFF_MAX = Duration.ofHours(1);
+    private static final int MAX_ERROR_LENGTH = 500;
+
+    private static final String MARCAR_COMPLETADO_SQL =
+        "UPDATE sync_queue SET estado = 'DONE', ultimo_intento = ?, intentos = intentos + 1 WHERE id = ?";
+    private static final String REGISTRAR_FALLO_SQL = """
+        UPDATE sync_queue
+        SET intentos = intentos + 1, ultimo_intento = ?, ultimo_error = ?, proximo_intento = ?,
+            estado = CASE WHEN intentos + 1 >= ? THEN 'DEAD' ELSE estado END
+        WHERE id = ?
+    """;
+    private static final String REACTIVAR_DESCARTADOS_SQL =
+        "UPDATE sync_queue SET estado = 'PENDING', intentos = 0, proximo_intento = 0 WHERE estado = 'DEAD'";
+
+    private static final String ESTADO_COLA_SQL = QueryPlanAuditor.register(SyncService.class, "estadoCola", """
+        SELECT estado, COUNT(*), MIN(creado_en)
+        FROM sync_queue
+        WHERE estado IN ('PENDING', 'DEAD')
+        GROUP BY estado
+    """);
+    // Mismo filtro de retenidos que obtenerPendientes: un cambio detras de otro del mismo registro en espera
+    // no vence hasta que vence ese otro.
+    private static final String SIGUIENTE_INTENTO_SQL = QueryPlanAuditor.register(SyncService.class, "siguienteIntento", """
+        SELECT proximo_intento
+        FROM sync_queue q
+        WHERE estado = 'PENDING'
+          AND NOT EXISTS (
+              SELECT 1 FROM sync_queue previo
+              WHERE previo.entidad = q.entidad AND previo.referencia = q.referencia
+                AND previo.estado = 'PENDING' AND previo.id < q.id AND previo.proximo_intento > ?
+          )
+        ORDER BY proximo_intento ASC
+        LIMIT 1
+    """);
+    // Mismo formato que CURRENT_TIMESTAMP, que SQLite expresa en UTC.
+    private static final DateTimeFormatter CREADO_EN_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private static final String DESCARTADOS_SQL = QueryPlanAuditor.register(SyncService.class, "contarDescartados",
+        "SELECT COUNT(*) FROM sync_queue WHERE estado = 'DEAD'");
+
+    private static final String CAMBIAR_OPERACION_SQL = "UPDATE sync_queue SET operacion = ? WHERE id = ?";
+
+    // Los cambios vencidos se localizan por (estado, proximo_intento) y se ordenan despues; son pocos
+    // comparados con la cola, asi que el arbol temporal es mas barato que recorrer los que esperan.
+    private static final String PENDIENTES_SQL = QueryPlanAuditor.register(SyncService.class, "obtenerPendientes", """
+        SELECT id, entidad, referencia, payload, operacion, intentos
+        FROM sync_queue q
+        WHERE estado = 'PENDING' AND proximo_intento <= ?
+          AND NOT EXISTS (
+              SELECT 1 FROM sync_queue previo
+              WHERE previo.entidad = q.entidad AND previo.referencia = q.referencia
+                AND previo.estado = 'PENDING' AND previo.id < q.id AND previo.proximo_intento > ?
+          )
+        ORDER BY creado_en ASC, id ASC
+        LIMIT ?
+    """, QueryPlanAuditor.Issue.TEMP_B_TREE);
+
+    static final String WATERMARK_HEADER = "X-Sync-Watermark";
+    static final int PULL_BATCH_SIZE = 500;
+
+    private static final String LEER_MARCA_SQL = QueryPlanAuditor.register(SyncService.class, "leerMarca",
+        "SELECT marca, etag FROM sync_marcas WHERE entidad = ?");
+    private static final String GUARDAR_MARCA_SQL = """
+        INSERT INTO sync_marcas (entidad, marca, etag, actualizado_en) VALUES (?, ?, ?, CURRENT_TIMESTAMP)
+        ON CONFLICT (entidad) DO UPDATE
+        SET marca = excluded.marca, etag = excluded.etag, actualizado_en = excluded.actualizado_en
+    """;
+    private static final String LEER_HUELLA_SQL = QueryPlanAuditor.register(SyncService.class, "leerHuella",
+        "SELECT hash FROM sync_huellas WHERE entidad = ? AND codigo = ?");
+    private static final String GUARDAR_HUELLA_SQL = """
+        INSERT INTO sync_huellas (entidad, codigo, hash) VALUES (?, ?, ?)
+        ON CONFLICT (entidad, codigo) DO UPDATE SET hash = excluded.hash
+    """;
+    private static final char SEPARADOR_HUELLA = '\u001f';
+
     private final ProductRepository productRepository;
     private final ProviderRepository providerRepository;
     private final OrderRepository orderRepository;
     private final HttpClient httpClient;
     private final String apiBaseUrl;
     private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final ExecutorService senders = Executors.newVirtualThreadPerTaskExecutor();
+    private final Semaphore inFlight;
+    private final int concurrency;
+    private final int batchSize;
+    private volatile int maxAttempts = Integer.getInteger(MAX_ATTEMPTS_PROPERTY, DEFAULT_MAX_ATTEMPTS);
+    private volatile int gzipThreshold = Integer.getInteger(GZIP_THRESHOLD_PROPERTY, DEFAULT_GZIP_THRESHOLD);
+    // Se desactiva si el servidor rechaza un cuerpo comprimido con 415.
+    private volatile boolean compressRequests = true;
+    private final ReentrantLock pushLock = new ReentrantLock();
+    private volatile Runnable enqueueListener;
     private final NetworkUtils networkUtils;
+    private final ConnectivityMonitor connectivity;
 
     public SyncService(String apiBaseUrl,
                        ProductRepository productRepository,
                        ProviderRepository providerRepository,
                        OrderRepository orderRepository,
                        NetworkUtils networkUtils) {
+        this(apiBaseUrl, productRepository, providerRepository, orderRepository, networkUtils,
+            Integer.getInteger(CONCURRENCY_PROPERTY, DEFAULT_CONCURRENCY));
+    }
+
+    public SyncService(String apiBaseUrl,
+                       ProductRepository productRepository,
+                       ProviderRepository providerRepository,
+                       OrderRepository orderRepository,
+                       NetworkUtils networkUtils,
+                       int concurrency) {
+        this(apiBaseUrl, productRepository, providerRepository, orderRepository, networkUtils, concurrency,
+            Integer.getInteger(BATCH_SIZE_PROPERTY, DEFAULT_BATCH_SIZE));
+    }
+
+    public SyncService(String apiBaseUrl,
+                       ProductRepository productRepository,
+                       ProviderRepository providerRepository,
+                       OrderRepository orderRepository,
+                       NetworkUtils networkUtils,
+                       int concurrency,
+                       int batchSize) {
         this.apiBaseUrl = apiBaseUrl.endsWith("/") ? apiBaseUrl.substring(0, apiBaseUrl.length() - 1) : apiBaseUrl;
         this.productRepository = productRepository;
         this.providerRepository = providerRepository;
         this.orderRepository = orderRepository;
         this.networkUtils = networkUtils;
+        this.connectivity = networkUtils.connectivity();
+        this.concurrency = Math.max(1, concurrency);
+        this.batchSize = Math.max(1, batchSize);
+        this.inFlight = new Semaphore(this.concurrency);
         this.httpClient = HttpClient.newBuilder()
             .connectTimeout(networkUtils.defaultTimeout())
-            .executor(executor)
+            .executor(senders)
             .build();
     }
 
@@ -130,17 +384,41 @@ public class SyncService implements AutoCloseable {
             INSERT INTO sync_queue (entidad, referencia, payload, operacion)
             VALUES (?, ?, ?, ?)
         """;
-        try (Connection conn = DBHelper.getConnection(); PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setString(1, entity);
-            ps.setString(2, reference);
-            ps.setString(3, payload);
-            ps.setString(4, operation.name());
-            ps.executeUpdate();
+        try {
+            DBWriter.execute(conn -> {
+                try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                    ps.setString(1, entity);
+                    ps.setString(2, reference);
+                    ps.setString(3, payload);
+                    ps.setString(4, operation.name());
+                    return ps.executeUpdate();
+                }
+            });
         } catch (SQLException e) {
             Logger.error(SyncService.class, "Error registrando cambio para sincronizar", e);
+            return;
+        }
+        Runnable listener = enqueueListener;
+        if (listener != null) {
+            listener.run();
         }
     }
 
+    /**
+     * Registra la accion que se ejecuta tras encolar cada cambio; la usa {@link SyncScheduler} para
+     * sincronizar en cuanto hay algo que enviar.
+     */
+    public void setEnqueueListener(Runnable listener) {
+        this.enqueueListener = listener;
+    }
+
+    /**
+     * Monitor de conexion al que se informa del resultado de cada peticion.
+     */
+    public ConnectivityMonitor connectivity() {
+        return connectivity;
+    }
+
     public void pushPendingAsync(Consumer<Boolean> callback) {
         CompletableFuture
             .supplyAsync(this::pushPendingInternal, executor)
@@ -152,51 +430,322 @@ public class SyncService implements AutoCloseable {
     }
 
     public boolean pushPendingInternal() {
+        return pushPending(batchSize > 1 ? batchSize * concurrency : PUSH_BATCH_SIZE).online();
+    }
+
+    /**
+     * Envia como mucho {@code limit} cambios vencidos de la cola. Las pasadas no se solapan: si hay otra
+     * en curso se espera a que termine.
+     */
+    public PushResult pushPending(int limit) {
         if (!networkUtils.isOnline()) {
             Logger.warn(SyncService.class, "Sin conexion para sincronizar cambios pendientes.");
-            return false;
+            return PushResult.OFFLINE;
+        }
+        pushLock.lock();
+        try {
+            return pushPendingLocked(limit);
+        } finally {
+            pushLock.unlock();
+        }
+    }
+
+    private PushResult pushPendingLocked(int limit) {
+        boolean porLotes = batchSize > 1;
+        List<QueuedChange> leidos = obtenerPendientes(limit);
+        List<QueuedChange> pendientes = coalescer(leidos);
+        Map<String, List<QueuedChange>> grupos = new LinkedHashMap<>();
+        for (QueuedChange cambio : pendientes) {
+            String grupo = porLotes ? cambio.entidad() : cambio.entidad() + '/' + cambio.referencia();
+            grupos.computeIfAbsent(grupo, key -> new ArrayList<>()).add(cambio);
+        }
+
+        List<Integer> completados = Collections.synchronizedList(new ArrayList<>());
+        List<Fallo> fallidos = Collections.synchronizedList(new ArrayList<>());
+        List<Future<?>> envios = new ArrayList<>(grupos.size());
+        for (List<QueuedChange> cambios : grupos.values()) {
+            envios.add(senders.submit(() -> {
+                if (porLotes) {
+                    enviarPorLotes(cambios, completados, fallidos);
+                } else {
+                    enviarEnOrden(cambios, completados, fallidos);
+                }
+            }));
+        }
+        for (Future<?> envio : envios) {
+            try {
+                envio.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                envios.forEach(pendiente -> pendiente.cancel(true));
+                break;
+            } catch (ExecutionException e) {
+                Logger.error(SyncService.class, "Error enviando cambios de sincronizacion", e.getCause());
+            }
+        }
+        registrarResultados(completados, fallidos);
+        return new PushResult(networkUtils.isOnline(), leidos.size(), completados.size(), fallidos.size());
+    }
+
+    /**
+     * Cuenta los cambios pendientes y descartados y localiza el mas antiguo y el siguiente que se podra
+     * enviar.
+     */
+    public QueueStatus queueStatus() {
+        int pending = 0;
+        int dead = 0;
+        Instant oldest = null;
+        long nextAttempt = 0;
+        try (Connection conn = DBHelper.getConnection()) {
+            try (PreparedStatement ps = conn.prepareStatement(ESTADO_COLA_SQL);
+                 ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    if ("DEAD".equals(rs.getString(1))) {
+                        dead = rs.getInt(2);
+                        continue;
+                    }
+                    pending = rs.getInt(2);
+                    String creado = rs.getString(3);
+                    if (creado != null) {
+                        oldest = LocalDateTime.parse(creado, CREADO_EN_FORMAT).toInstant(ZoneOffset.UTC);
+                    }
+                }
+            }
+            if (pending > 0) {
+                try (PreparedStatement ps = conn.prepareStatement(SIGUIENTE_INTENTO_SQL)) {
+                    ps.setLong(1, System.currentTimeMillis());
+                    try (ResultSet rs = ps.executeQuery()) {
+                        if (rs.next()) {
+                            nextAttempt = rs.getLong(1);
+                        }
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            Logger.error(SyncService.class, "Error consultando el estado de la cola de sincronizacion", e);
         }
+        return new QueueStatus(pending, dead, oldest, nextAttempt);
+    }
 
-        List<QueuedChange> pendientes = obtenerPendientes(25);
+    /**
+     * Reduce los cambios leidos de cada registro a los necesarios para llevarlo a su estado final y marca
+     * el resto como SUPERSEDED. Si no se puede guardar el resultado se envian los cambios tal cual.
+     */
+    private List<QueuedChange> coalescer(List<QueuedChange> pendientes) {
+        Map<String, List<QueuedChange>> porRegistro = new LinkedHashMap<>();
         for (QueuedChange cambio : pendientes) {
-            if (enviarCambio(cambio)) {
-                marcarCompletado(cambio.id());
+            porRegistro.computeIfAbsent(cambio.entidad() + '/' + cambio.referencia(), key -> new ArrayList<>()).add(cambio);
+        }
+        if (porRegistro.size() == pendientes.size()) {
+            return pendientes;
+        }
+
+        Map<Integer, QueuedChange> conservados = new HashMap<>();
+        List<Integer> sustituidos = new ArrayList<>();
+        for (List<QueuedChange> cambios : porRegistro.values()) {
+            coalescerRegistro(cambios, conservados, sustituidos);
+        }
+        List<QueuedChange> resultado = new ArrayList<>(conservados.size());
+        List<QueuedChange> operacionCambiada = new ArrayList<>();
+        for (QueuedChange cambio : pendientes) {
+            QueuedChange conservado = conservados.get(cambio.id());
+            if (conservado != null) {
+                resultado.add(conservado);
+                if (conservado != cambio) {
+                    operacionCambiada.add(conservado);
+                }
+            }
+        }
+        try {
+            DBWriter.execute(conn -> {
+                marcarSustituidos(conn, sustituidos);
+                if (!operacionCambiada.isEmpty()) {
+                    try (PreparedStatement ps = conn.prepareStatement(CAMBIAR_OPERACION_SQL)) {
+                        for (QueuedChange cambio : operacionCambiada) {
+                            ps.setString(1, cambio.operacion().name());
+                            ps.setInt(2, cambio.id());
+                            ps.addBatch();
+                        }
+                        ps.executeBatch();
+                    }
+                }
+                return null;
+            });
+        } catch (SQLException e) {
+            Logger.error(SyncService.class, "Error agrupando cambios de sincronizacion", e);
+            return pendientes;
+        }
+        return resultado;
+    }
+
+    /**
+     * Agrupa los cambios de un registro, en orden de cola. Todo lo anterior al ultimo DELETE se reduce a
+     * ese DELETE, o a nada si el registro se creo en la propia cola; lo posterior se reduce a su ultimo
+     * cambio, como CREATE si empieza con un CREATE.
+     */
+    private static void coalescerRegistro(List<QueuedChange> cambios, Map<Integer, QueuedChange> conservados,
+                                          List<Integer> sustituidos) {
+        int ultimoBorrado = -1;
+        for (int i = 0; i < cambios.size(); i++) {
+            if (cambios.get(i).operacion() == SyncOperation.DELETE) {
+                ultimoBorrado = i;
+            }
+        }
+        if (ultimoBorrado >= 0) {
+            for (int i = 0; i < ultimoBorrado; i++) {
+                sustituidos.add(cambios.get(i).id());
+            }
+            QueuedChange borrado = cambios.get(ultimoBorrado);
+            if (cambios.get(0).operacion() == SyncOperation.CREATE) {
+                sustituidos.add(borrado.id());
             } else {
-                incrementarIntentos(cambio.id());
+                conservados.put(borrado.id(), borrado);
+            }
+        }
+
+        List<QueuedChange> posteriores = cambios.subList(ultimoBorrado + 1, cambios.size());
+        if (posteriores.isEmpty()) {
+            return;
+        }
+        QueuedChange ultimo = posteriores.get(posteriores.size() - 1);
+        for (QueuedChange cambio : posteriores) {
+            if (cambio != ultimo) {
+                sustituidos.add(cambio.id());
+            }
+        }
+        boolean creado = posteriores.get(0).operacion() == SyncOperation.CREATE;
+        conservados.put(ultimo.id(), creado && ultimo.operacion() != SyncOperation.CREATE
+            ? ultimo.withOperacion(SyncOperation.CREATE)
+            : ultimo);
+    }
+
+    private static void marcarSustituidos(Connection conn, List<Integer> ids) throws SQLException {
+        if (ids.isEmpty()) {
+            return;
+        }
+        String sql = "UPDATE sync_queue SET estado = 'SUPERSEDED' WHERE estado = 'PENDING' AND id IN ("
+            + "?,".repeat(ids.size() - 1) + "?)";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            for (int i = 0; i < ids.size(); i++) {
+                ps.setInt(i + 1, ids.get(i));
+            }
+            ps.executeUpdate();
+        }
+    }
+
+    /**
+     * Envia en orden los cambios de un mismo registro. Si uno falla se detiene para que los siguientes no
+     * lleguen antes que el; se reintentaran juntos en la proxima sincronizacion.
+     */
+    private void enviarEnOrden(List<QueuedChange> cambios, List<Integer> completados, List<Fallo> fallidos) {
+        for (QueuedChange cambio : cambios) {
+            String error;
+            try {
+                inFlight.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            try {
+                // Se comprueba con el permiso ya tomado: mientras se esperaba ha podido abrirse el circuito.
+                if (!networkUtils.isOnline()) {
+                    return;
+                }
+                error = enviarCambio(cambio);
+            } finally {
+                inFlight.release();
+            }
+            if (error != null) {
+                fallidos.add(new Fallo(cambio, error));
+                return;
+            }
+            completados.add(cambio.id());
+        }
+    }
+
+    /**
+     * Envia por lotes los cambios de una entidad, un lote detras de otro. Los cambios de un registro con
+     * un cambio fallido ya no se envian en esta sincronizacion, y si el servidor acepto alguno posterior
+     * en el mismo lote se reintenta despues del fallido.
+     */
+    private void enviarPorLotes(List<QueuedChange> cambios, List<Integer> completados, List<Fallo> fallidos) {
+        Set<String> bloqueadas = new HashSet<>();
+        int siguiente = 0;
+        while (siguiente < cambios.size()) {
+            List<QueuedChange> lote = new ArrayList<>(batchSize);
+            while (siguiente < cambios.size() && lote.size() < batchSize) {
+                QueuedChange cambio = cambios.get(siguiente++);
+                if (!bloqueadas.contains(cambio.referencia())) {
+                    lote.add(cambio);
+                }
+            }
+            if (lote.isEmpty()) {
+                return;
+            }
+            Map<Integer, String> errores;
+            try {
+                inFlight.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            try {
+                if (!networkUtils.isOnline()) {
+                    return;
+                }
+                errores = enviarLote(lote);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (IOException e) {
+                Logger.error(SyncService.class, "Error enviando lote de sincronizacion", e);
+                lote.forEach(cambio -> fallidos.add(new Fallo(cambio, describir(e))));
+                return;
+            } finally {
+                inFlight.release();
+            }
+            for (QueuedChange cambio : lote) {
+                String error = errores.getOrDefault(cambio.id(), "Sin resultado del servidor");
+                if (error != null) {
+                    fallidos.add(new Fallo(cambio, error));
+                    bloqueadas.add(cambio.referencia());
+                } else if (!bloqueadas.contains(cambio.referencia())) {
+                    completados.add(cambio.id());
+                }
+                // Aceptado detras de un cambio fallido: sigue pendiente sin gastar un intento, como en
+                // enviarEnOrden, y se reenvia cuando el fallido salga adelante.
             }
         }
-        return true;
     }
 
-    public void pullUpdates() {
+    /**
+     * Descarga los cambios remotos desde la ultima marca de cada entidad.
+     *
+     * @return el resultado de cada entidad, o una lista vacia sin conexion
+     */
+    public List<PullResult> pullUpdates() {
         if (!networkUtils.isOnline()) {
             Logger.warn(SyncService.class, "Sin conexion. Pull remoto omitido.");
-            return;
+            return List.of();
         }
 
-        Map<String, Consumer<List<Map<String, Object>>>> handlers = Map.of(
-            "productos", this::actualizarProductos,
-            "proveedores", this::actualizarProveedores,
-            "ordenes", this::actualizarOrdenes
+        return List.of(
+            descargar("proveedores", networkUtils::mapToProveedor, Proveedor::getCodigo, SyncService::contenido,
+                providerRepository::saveAll),
+            descargar("productos", networkUtils::mapToProducto, Producto::getCodigo, SyncService::contenido,
+                productRepository::saveAll),
+            descargar("ordenes", networkUtils::mapToOrden, Orden::getCodigo, SyncService::contenido,
+                orderRepository::saveAll)
         );
-
-        handlers.forEach((entity, handler) -> {
-            Optional<List<Map<String, Object>>> response = solicitarEntidad(entity);
-            response.ifPresent(handler);
-        });
     }
 
     private List<QueuedChange> obtenerPendientes(int limit) {
         List<QueuedChange> cambios = new ArrayList<>();
-        String sql = """
-            SELECT id, entidad, referencia, payload, operacion
-            FROM sync_queue
-            WHERE estado = 'PENDING'
-            ORDER BY creado_en ASC
-            LIMIT ?
-        """;
-        try (Connection conn = DBHelper.getConnection(); PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setInt(1, limit);
+        try (Connection conn = DBHelper.getConnection(); PreparedStatement ps = conn.prepareStatement(PENDIENTES_SQL)) {
+            long ahora = System.currentTimeMillis();
+            ps.setLong(1, ahora);
+            ps.setLong(2, ahora);
+            ps.setInt(3, limit);
             try (ResultSet rs = ps.executeQuery()) {
                 while (rs.next()) {
                     cambios.add(new QueuedChange(
@@ -204,7 +753,8 @@ public class SyncService implements AutoCloseable {
                         rs.getString("entidad"),
                         rs.getString("referencia"),
                         rs.getString("payload"),
-                        SyncOperation.valueOf(rs.getString("operacion"))
+                        SyncOperation.valueOf(rs.getString("operacion")),
+                        rs.getInt("intentos")
                     ));
                 }
             }
@@ -214,83 +764,479 @@ public class SyncService implements AutoCloseable {
         return cambios;
     }
 
-    private boolean enviarCambio(QueuedChange cambio) {
-        HttpRequest request = HttpRequest.newBuilder()
-            .uri(URI.create(apiBaseUrl + "/sync/" + cambio.entidad()))
-            .header("Content-Type", "application/json")
-            .POST(HttpRequest.BodyPublishers.ofString(cambio.payload()))
-            .build();
+    /**
+     * Envia un cambio.
+     *
+     * @return {@code null} si el servidor lo ha aceptado, o la descripcion del error
+     */
+    private String enviarCambio(QueuedChange cambio) {
         try {
-            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
-            return response.statusCode() >= 200 && response.statusCode() < 300;
+            HttpResponse<Void> response = post(apiBaseUrl + "/sync/" + cambio.entidad(), cambio.payload(),
+                HttpResponse.BodyHandlers.discarding());
+            if (response.statusCode() >= 200 && response.statusCode() < 300) {
+                return null;
+            }
+            return "Estado HTTP " + response.statusCode();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return "Envio interrumpido";
         } catch (Exception e) {
             Logger.error(SyncService.class, "Error enviando cambio de sincronizacion", e);
-            return false;
+            return describir(e);
         }
     }
 
-    private void marcarCompletado(int id) {
-        String sql = "UPDATE sync_queue SET estado = 'DONE', ultimo_intento = ?, intentos = intentos + 1 WHERE id = ?";
-        try (Connection conn = DBHelper.getConnection(); PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setString(1, Instant.now().toString());
-            ps.setInt(2, id);
-            ps.executeUpdate();
+    /**
+     * Envia un lote de cambios de la misma entidad.
+     *
+     * @return por id de cada cambio con resultado, {@code null} si se ha aceptado o la descripcion del error
+     * @throws IOException si la peticion ha fallado por completo
+     */
+    private Map<Integer, String> enviarLote(List<QueuedChange> lote) throws IOException, InterruptedException {
+        HttpResponse<InputStream> response = post(apiBaseUrl + "/sync/" + lote.get(0).entidad() + "/lote", cuerpoLote(lote),
+            HttpResponse.BodyHandlers.ofInputStream());
+        try (InputStream body = decodificar(response)) {
+            if (response.statusCode() < 200 || response.statusCode() >= 300) {
+                throw new IOException("Lote rechazado con estado HTTP " + response.statusCode());
+            }
+            return leerResultados(body);
+        }
+    }
+
+    /**
+     * Envia {@code json} por POST, comprimido con gzip si supera {@code gzipThreshold} y el servidor no lo
+     * ha rechazado antes. Ante un 415 a un cuerpo comprimido deja de comprimir y lo reenvia sin comprimir.
+     */
+    private <T> HttpResponse<T> post(String uri, String json, HttpResponse.BodyHandler<T> handler)
+            throws IOException, InterruptedException {
+        boolean comprimir = compressRequests && json.length() >= gzipThreshold;
+        HttpResponse<T> response = send(peticionPost(uri, json, comprimir), handler);
+        if (comprimir && response.statusCode() == 415) {
+            if (response.body() instanceof Closeable body) {
+                body.close();
+            }
+            compressRequests = false;
+            Logger.warn(SyncService.class, "El servidor no acepta cuerpos comprimidos; se envian sin comprimir.");
+            response = send(peticionPost(uri, json, false), handler);
+        }
+        return response;
+    }
+
+    /**
+     * Hace la peticion e informa del resultado a {@code connectivity}: los errores de red y los estados
+     * {@code 502}, {@code 503} y {@code 504} cuentan como fallo y cualquier otra respuesta como exito.
+     */
+    private <T> HttpResponse<T> send(HttpRequest request, HttpResponse.BodyHandler<T> handler)
+            throws IOException, InterruptedException {
+        HttpResponse<T> response;
+        try {
+            response = httpClient.send(request, handler);
+        } catch (IOException e) {
+            connectivity.recordFailure();
+            throw e;
+        }
+        if (ConnectivityMonitor.isUnavailableStatus(response.statusCode())) {
+            connectivity.recordFailure();
+        } else {
+            connectivity.recordSuccess();
+        }
+        return response;
+    }
+
+    private static HttpRequest peticionPost(String uri, String json, boolean comprimir) {
+        HttpRequest.Builder request = HttpRequest.newBuilder()
+            .uri(URI.create(uri))
+            .header("Content-Type", "application/json")
+            .header("Accept-Encoding", "gzip");
+        if (comprimir) {
+            request.header("Content-Encoding", "gzip")
+                .POST(HttpRequest.BodyPublishers.ofInputStream(() -> new GzipEncodingStream(json)));
+        } else {
+            request.POST(HttpRequest.BodyPublishers.ofString(json));
+        }
+        return request.build();
+    }
+
+    /**
+     * Cuerpo de la respuesta, descomprimido a medida que se lee si llega con {@code Content-Encoding: gzip}.
+     */
+    private static InputStream decodificar(HttpResponse<InputStream> response) throws IOException {
+        InputStream body = response.body();
+        boolean gzip = response.headers().firstValue("Content-Encoding")
+            .map(encoding -> encoding.trim().equalsIgnoreCase("gzip"))
+            .orElse(false);
+        if (!gzip) {
+            return body;
+        }
+        try {
+            return new GZIPInputStream(body, 8192);
+        } catch (IOException e) {
+            body.close();
+            throw e;
+        }
+    }
+
+    private static String cuerpoLote(List<QueuedChange> lote) {
+        StringBuilder body = new StringBuilder(lote.size() * 160).append('[');
+        for (QueuedChange cambio : lote) {
+            if (body.length() > 1) {
+                body.append(',');
+            }
+            body.append("{\"id\":").append(cambio.id()).append(",\"referencia\":");
+            JsonCodec.appendString(body, cambio.referencia());
+            body.append(",\"operacion\":\"").append(cambio.operacion().name())
+                .append("\",\"payload\":").append(cambio.payload()).append('}');
+        }
+        return body.append(']').toString();
+    }
+
+    private static Map<Integer, String> leerResultados(InputStream body) throws IOException {
+        Map<Integer, String> resultados = new HashMap<>();
+        JsonReader reader = JsonReader.of(body);
+        reader.beginArray();
+        while (reader.hasNext()) {
+            int id = -1;
+            boolean ok = false;
+            String error = null;
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "id" -> id = reader.nextInt();
+                    case "ok" -> ok = reader.nextBoolean();
+                    case "error" -> {
+                        if (reader.peek() == JsonReader.Token.NULL) {
+                            reader.nextNull();
+                        } else {
+                            error = reader.nextString();
+                        }
+                    }
+                    default -> reader.skipValue();
+                }
+            }
+            reader.endObject();
+            if (ok) {
+                resultados.put(id, null);
+            } else {
+                resultados.put(id, error != null ? error : "Rechazado por el servidor");
+                Logger.warn(SyncService.class, "Cambio " + id + " rechazado por el servidor: " + error);
+            }
+        }
+        reader.endArray();
+        return resultados;
+    }
+
+    private void registrarResultados(List<Integer> completados, List<Fallo> fallidos) {
+        if (completados.isEmpty() && fallidos.isEmpty()) {
+            return;
+        }
+        Instant ahora = Instant.now();
+        int limite = maxAttempts;
+        try {
+            DBWriter.execute(conn -> {
+                if (!completados.isEmpty()) {
+                    try (PreparedStatement ps = conn.prepareStatement(MARCAR_COMPLETADO_SQL)) {
+                        for (int id : completados) {
+                            ps.setString(1, ahora.toString());
+                            ps.setInt(2, id);
+                            ps.addBatch();
+                        }
+                        ps.executeBatch();
+                    }
+                }
+                if (!fallidos.isEmpty()) {
+                    try (PreparedStatement ps = conn.prepareStatement(REGISTRAR_FALLO_SQL)) {
+                        for (Fallo fallo : fallidos) {
+                            int intentos = fallo.cambio().intentos() + 1;
+                            ps.setString(1, ahora.toString());
+                            ps.setString(2, recortar(fallo.error()));
+                            ps.setLong(3, ahora.toEpochMilli() + backoffMillis(intentos, ThreadLocalRandom.current().nextDouble()));
+                            ps.setInt(4, limite);
+                            ps.setInt(5, fallo.cambio().id());
+                            ps.addBatch();
+                        }
+                        ps.executeBatch();
+                    }
+                }
+                return null;
+            });
         } catch (SQLException e) {
-            Logger.error(SyncService.class, "Error marcando sincronizacion como completada", e);
+            Logger.error(SyncService.class, "Error registrando el resultado de la sincronizacion", e);
+            return;
+        }
+        for (Fallo fallo : fallidos) {
+            if (fallo.cambio().intentos() + 1 >= limite) {
+                QueuedChange cambio = fallo.cambio();
+                Logger.warn(SyncService.class, "Cambio " + cambio.id() + " de " + cambio.entidad() + "/" + cambio.referencia()
+                    + " descartado tras " + limite + " intentos: " + fallo.error());
+            }
         }
     }
 
-    private void incrementarIntentos(int id) {
-        String sql = "UPDATE sync_queue SET intentos = intentos + 1, ultimo_intento = ? WHERE id = ?";
-        try (Connection conn = DBHelper.getConnection(); PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setString(1, Instant.now().toString());
-            ps.setInt(2, id);
-            ps.executeUpdate();
+    /**
+     * Espera antes del siguiente intento tras {@code intentos} fallos: crece de forma exponencial desde
+     * {@link #BACKOFF_BASE} hasta {@link #BACKOFF_MAX}, y se elige al azar entre la mitad y el total para
+     * que los cambios que fallaron juntos no se reintenten a la vez.
+     *
+     * @param aleatorio valor en [0, 1)
+     */
+    static long backoffMillis(int intentos, double aleatorio) {
+        int exponente = Math.min(Math.max(intentos, 1) - 1, 30);
+        long techo = Math.min(BACKOFF_MAX.toMillis(), BACKOFF_BASE.toMillis() << exponente);
+        return techo / 2 + (long) (aleatorio * (techo / 2));
+    }
+
+    private static String describir(Exception e) {
+        return e.getMessage() != null ? e.getClass().getSimpleName() + ": " + e.getMessage() : e.toString();
+    }
+
+    private static String recortar(String error) {
+        return error.length() > MAX_ERROR_LENGTH ? error.substring(0, MAX_ERROR_LENGTH) : error;
+    }
+
+    /**
+     * Numero de cambios descartados (DEAD) tras agotar sus intentos.
+     */
+    public int deadCount() {
+        try (Connection conn = DBHelper.getConnection();
+             PreparedStatement ps = conn.prepareStatement(DESCARTADOS_SQL);
+             ResultSet rs = ps.executeQuery()) {
+            return rs.next() ? rs.getInt(1) : 0;
         } catch (SQLException e) {
-            Logger.error(SyncService.class, "Error incrementando intentos de sincronizacion", e);
+            Logger.error(SyncService.class, "Error contando cambios descartados", e);
+            return 0;
         }
     }
 
-    private Optional<List<Map<String, Object>>> solicitarEntidad(String entity) {
-        HttpRequest request = HttpRequest.newBuilder()
-            .uri(URI.create(apiBaseUrl + "/sync/" + entity))
-            .GET()
-            .build();
+    /**
+     * Devuelve los cambios descartados a la cola con los intentos a cero.
+     *
+     * @return numero de cambios reactivados
+     */
+    public int requeueDead() {
         try {
-            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
-            if (response.statusCode() >= 200 && response.statusCode() < 300) {
-                return Optional.of(networkUtils.parseJsonArray(response.body()));
+            return DBWriter.execute(conn -> {
+                try (PreparedStatement ps = conn.prepareStatement(REACTIVAR_DESCARTADOS_SQL)) {
+                    return ps.executeUpdate();
+                }
+            });
+        } catch (SQLException e) {
+            Logger.error(SyncService.class, "Error reactivando cambios descartados", e);
+            return 0;
+        }
+    }
+
+    /**
+     * Cambia el numero de fallos tras el que un cambio pasa a DEAD.
+     */
+    public void setMaxAttempts(int maxAttempts) {
+        this.maxAttempts = Math.max(1, maxAttempts);
+    }
+
+    /**
+     * Tamano minimo, en caracteres, a partir del cual los cuerpos enviados se comprimen con gzip; por debajo
+     * la cabecera y el coste de comprimir no compensan.
+     */
+    public void setGzipThreshold(int gzipThreshold) {
+        this.gzipThreshold = Math.max(0, gzipThreshold);
+    }
+
+    private <T> PullResult descargar(String entidad, JsonReader.ValueReader<T> mapper,
+                                     Function<T, String> codigo, Function<T, String> contenido,
+                                     Predicate<List<T>> guardar) {
+        if (!networkUtils.isOnline()) {
+            return PullResult.failed(entidad);
+        }
+        String[] marca = leerMarca(entidad);
+        if (marca == null) {
+            return PullResult.failed(entidad);
+        }
+        String uri = apiBaseUrl + "/sync/" + entidad;
+        if (marca[0] != null) {
+            uri += "?since=" + URLEncoder.encode(marca[0], StandardCharsets.UTF_8);
+        }
+        HttpRequest.Builder request = HttpRequest.newBuilder()
+            .uri(URI.create(uri))
+            .header("Accept", "application/json")
+            .header("Accept-Encoding", "gzip")
+            .GET();
+        if (marca[1] != null) {
+            request.header("If-None-Match", marca[1]);
+        }
+
+        int recibidos = 0;
+        int guardados = 0;
+        try {
+            HttpResponse<InputStream> response = send(request.build(), HttpResponse.BodyHandlers.ofInputStream());
+            try (InputStream body = decodificar(response)) {
+                if (response.statusCode() == 304) {
+                    return new PullResult(entidad, true, true, 0, 0);
+                }
+                if (response.statusCode() < 200 || response.statusCode() >= 300) {
+                    Logger.warn(SyncService.class, "Pull de " + entidad + " rechazado con estado HTTP " + response.statusCode());
+                    return PullResult.failed(entidad);
+                }
+                MessageDigest digest = sha256();
+                List<T> lote = new ArrayList<>(PULL_BATCH_SIZE);
+                JsonReader reader = JsonReader.of(body);
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    lote.add(mapper.read(reader));
+                    if (lote.size() == PULL_BATCH_SIZE) {
+                        guardados += guardarCambiados(entidad, lote, codigo, contenido, guardar, digest);
+                        recibidos += lote.size();
+                        lote.clear();
+                    }
+                }
+                reader.endArray();
+                if (reader.peek() != JsonReader.Token.END_DOCUMENT) {
+                    throw new IOException("Contenido inesperado tras la lista de " + entidad);
+                }
+                guardados += guardarCambiados(entidad, lote, codigo, contenido, guardar, digest);
+                recibidos += lote.size();
             }
+            guardarMarca(entidad, response.headers().firstValue(WATERMARK_HEADER).orElse(marca[0]),
+                response.headers().firstValue("ETag").orElse(null));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return PullResult.failed(entidad);
         } catch (Exception e) {
-            Logger.error(SyncService.class, "Error solicitando datos remotos", e);
+            Logger.error(SyncService.class, "Error descargando " + entidad + " remotos", e);
+            return PullResult.failed(entidad);
         }
-        return Optional.empty();
+        Logger.info(SyncService.class, "Pull de " + entidad + ": " + recibidos + " recibidos, " + guardados + " guardados.");
+        return new PullResult(entidad, true, false, recibidos, guardados);
     }
 
-    private void actualizarProductos(List<Map<String, Object>> payloads) {
-        payloads.stream()
-            .map(networkUtils::mapToProducto)
-            .forEach(productRepository::save);
+    /**
+     * Guarda las filas de un lote cuya huella ha cambiado y, solo si se han guardado, sus huellas.
+     *
+     * @return filas guardadas
+     * @throws SQLException si no se han podido guardar; la descarga se da por fallida y no avanza la marca
+     */
+    private <T> int guardarCambiados(String entidad, List<T> lote, Function<T, String> codigo,
+                                     Function<T, String> contenido, Predicate<List<T>> guardar,
+                                     MessageDigest digest) throws SQLException {
+        if (lote.isEmpty()) {
+            return 0;
+        }
+        List<T> cambiados = new ArrayList<>();
+        Map<String, String> huellas = new LinkedHashMap<>();
+        try (Connection conn = DBHelper.getConnection(); PreparedStatement ps = conn.prepareStatement(LEER_HUELLA_SQL)) {
+            ps.setString(1, entidad);
+            for (T registro : lote) {
+                String clave = codigo.apply(registro);
+                String huella = HexFormat.of().formatHex(digest.digest(contenido.apply(registro).getBytes(StandardCharsets.UTF_8)));
+                ps.setString(2, clave);
+                try (ResultSet rs = ps.executeQuery()) {
+                    if (rs.next() && huella.equals(rs.getString(1))) {
+                        continue;
+                    }
+                }
+                huellas.put(clave, huella);
+                cambiados.add(registro);
+            }
+        }
+        if (cambiados.isEmpty()) {
+            return 0;
+        }
+        if (!guardar.test(cambiados)) {
+            throw new SQLException("No se pudo guardar un lote de " + cambiados.size() + " " + entidad);
+        }
+        DBWriter.execute(conn -> {
+            try (PreparedStatement ps = conn.prepareStatement(GUARDAR_HUELLA_SQL)) {
+                for (Map.Entry<String, String> huella : huellas.entrySet()) {
+                    ps.setString(1, entidad);
+                    ps.setString(2, huella.getKey());
+                    ps.setString(3, huella.getValue());
+                    ps.addBatch();
+                }
+                return ps.executeBatch().length;
+            }
+        });
+        return cambiados.size();
     }
 
-    private void actualizarProveedores(List<Map<String, Object>> payloads) {
-        payloads.stream()
-            .map(networkUtils::mapToProveedor)
-            .forEach(providerRepository::save);
+    /**
+     * @return {@code [marca, etag]}, con nulos si la entidad no se ha descargado nunca, o {@code null} si falla
+     */
+    private String[] leerMarca(String entidad) {
+        try (Connection conn = DBHelper.getConnection(); PreparedStatement ps = conn.prepareStatement(LEER_MARCA_SQL)) {
+            ps.setString(1, entidad);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? new String[] {rs.getString(1), rs.getString(2)} : new String[2];
+            }
+        } catch (SQLException e) {
+            Logger.error(SyncService.class, "Error leyendo la marca de sincronizacion de " + entidad, e);
+            return null;
+        }
     }
 
-    private void actualizarOrdenes(List<Map<String, Object>> payloads) {
-        payloads.stream()
-            .map(networkUtils::mapToOrden)
-            .forEach(orderRepository::save);
+    private void guardarMarca(String entidad, String marca, String etag) throws SQLException {
+        DBWriter.execute(conn -> {
+            try (PreparedStatement ps = conn.prepareStatement(GUARDAR_MARCA_SQL)) {
+                ps.setString(1, entidad);
+                ps.setString(2, marca);
+                ps.setString(3, etag);
+                return ps.executeUpdate();
+            }
+        });
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no disponible", e);
+        }
+    }
+
+    private static String contenido(Producto producto) {
+        return new StringBuilder(96)
+            .append(producto.getCodigo()).append(SEPARADOR_HUELLA)
+            .append(producto.getNombre()).append(SEPARADOR_HUELLA)
+            .append(producto.getCategoria()).append(SEPARADOR_HUELLA)
+            .append(producto.getProveedorCodigo()).append(SEPARADOR_HUELLA)
+            .append(producto.getStock()).append(SEPARADOR_HUELLA)
+            .append(producto.getCoste()).append(SEPARADOR_HUELLA)
+            .append(producto.getPrecio())
+            .toString();
+    }
+
+    private static String contenido(Proveedor proveedor) {
+        return new StringBuilder(96)
+            .append(proveedor.getCodigo()).append(SEPARADOR_HUELLA)
+            .append(proveedor.getNombre()).append(SEPARADOR_HUELLA)
+            .append(proveedor.getEmail()).append(SEPARADOR_HUELLA)
+            .append(proveedor.getTelefono()).append(SEPARADOR_HUELLA)
+            .append(proveedor.getDireccion())
+            .toString();
+    }
+
+    private static String contenido(Orden orden) {
+        return new StringBuilder(64)
+            .append(orden.getCodigo()).append(SEPARADOR_HUELLA)
+            .append(orden.getFecha()).append(SEPARADOR_HUELLA)
+            .append(orden.getProveedorCodigo()).append(SEPARADOR_HUELLA)
+            .append(orden.getTotal()).append(SEPARADOR_HUELLA)
+            .append(orden.getEstado())
+            .toString();
     }
 
     @Override
     public void close() {
         executor.shutdownNow();
+        senders.shutdownNow();
+    }
+
+    private record QueuedChange(int id, String entidad, String referencia, String payload, SyncOperation operacion,
+                                int intentos) {
+
+        QueuedChange withOperacion(SyncOperation nueva) {
+            return new QueuedChange(id, entidad, referencia, payload, nueva, intentos);
+        }
     }
 
-    private record QueuedChange(int id, String entidad, String referencia, String payload, SyncOperation operacion) {
+    private record Fallo(QueuedChange cambio, String error) {
     }
 }
 
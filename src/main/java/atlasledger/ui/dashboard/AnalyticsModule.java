@@ -9,6 +9,8 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
 import javafx.beans.property.SimpleStringProperty;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
@@ -29,6 +31,7 @@ import javafx.scene.layout.HBox;
 import javafx.scene.layout.Priority;
 import javafx.scene.layout.Region;
 import javafx.scene.layout.VBox;
+import javafx.util.Duration;
 
 public class AnalyticsModule extends VBox {
 
@@ -41,6 +44,8 @@ public class AnalyticsModule extends VBox {
     private final TableView<AppLog> logsTable = new TableView<>();
     private final Label documentsSummary = new Label();
     private final NumberFormat currencyFormat = NumberFormat.getCurrencyInstance(new Locale("es", "ES"));
+    private final Timeline logsTicker;
+    private long logsVersion = -1;
 
     public AnalyticsModule(AppContext context) {
         this.analyticsService = context.getAnalyticsService();
@@ -110,6 +115,17 @@ public class AnalyticsModule extends VBox {
 
         getChildren().addAll(heading, grid, toolbar, logsBox);
 
+        // Los contadores de log estan en memoria: el grafico se actualiza en vivo mientras el modulo esta visible.
+        logsTicker = new Timeline(new KeyFrame(Duration.seconds(2), e -> populateLogsChartIfChanged()));
+        logsTicker.setCycleCount(Timeline.INDEFINITE);
+        sceneProperty().addListener((obs, oldScene, newScene) -> {
+            if (newScene != null) {
+                logsTicker.play();
+            } else {
+                logsTicker.stop();
+            }
+        });
+
         refresh();
     }
 
@@ -191,7 +207,14 @@ public class AnalyticsModule extends VBox {
         ordersChart.getData().setAll(series);
     }
 
+    private void populateLogsChartIfChanged() {
+        if (analyticsService.logCountersVersion() != logsVersion) {
+            populateLogsChart();
+        }
+    }
+
     private void populateLogsChart() {
+        logsVersion = analyticsService.logCountersVersion();
         Map<String, Long> counts = analyticsService.logCountByLevel();
         XYChart.Series<String, Number> series = new XYChart.Series<>();
         if (counts.isEmpty()) {
@@ -3,6 +3,7 @@ package atlasledger.ui.dashboard;
 import atlasledger.app.AppContext;
 import atlasledger.model.Worker;
 import atlasledger.service.DatabaseIntegrityService;
+import atlasledger.service.SyncScheduler;
 import atlasledger.ui.informes.ReportModule;
 import atlasledger.ui.ordenes.OrderModule;
 import atlasledger.ui.productos.ProductModule;
@@ -10,7 +11,9 @@ import atlasledger.ui.proveedores.ProviderModule;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.function.Consumer;
 import java.util.function.Supplier;
+import javafx.application.Platform;
 import javafx.animation.FadeTransition;
 import javafx.animation.Interpolator;
 import javafx.geometry.Insets;
@@ -40,7 +43,7 @@ import javafx.util.Duration;
  * <ul>
  *   <li>Sidebar navigation with module icons and tooltips</li>
  *   <li>User card displaying current user's name, role, and mode (local/server)</li>
- *   <li>Header with application title, subtitle, and action buttons</li>
+ *   <li>Header with application title, subtitle, action buttons and background sync status</li>
  *   <li>Animated transitions between modules</li>
  *   <li>Logout functionality and database integrity validation</li>
  *   <li>Module content caching for performance</li>
@@ -58,6 +61,9 @@ public class MainScreen extends BorderPane {
     private final Map<String, Supplier<Node>> moduleSuppliers = new LinkedHashMap<>();
     private final Map<String, Node> moduleCache = new HashMap<>();
     private final Map<Button, String> navMapping = new LinkedHashMap<>();
+    private final Label syncStatus = new Label();
+    private final Consumer<SyncScheduler.Progress> syncListener =
+        progress -> Platform.runLater(() -> syncStatus.setText(describeSync(progress)));
     private Button activeNavButton;
     private final Runnable logoutHandler;
     private String activeModule = "Productos";
@@ -104,9 +110,16 @@ public class MainScreen extends BorderPane {
         logoutButton.getStyleClass().add("button-logout");
         logoutButton.setMaxWidth(Double.MAX_VALUE);
         logoutButton.setOnAction(event -> {
+            if (context.getSyncScheduler() != null) {
+                context.getSyncScheduler().removeListener(syncListener);
+                context.getSyncScheduler().close();
+            }
             if (context.getSyncService() != null) {
                 context.getSyncService().close();
             }
+            if (context.getNetworkUtils() != null) {
+                context.getNetworkUtils().connectivity().close();
+            }
             if (logoutHandler != null) {
                 logoutHandler.run();
             }
@@ -166,19 +179,52 @@ public class MainScreen extends BorderPane {
 
         Button sync = new Button("Sincronizar");
         sync.getStyleClass().addAll("button", "cta");
-        sync.setOnAction(event -> context.getSyncService().pushPendingAsync(success -> {
-            Alert alert = new Alert(Alert.AlertType.INFORMATION);
-            alert.setTitle("Sincronizacion");
-            alert.setHeaderText(null);
-            alert.setContentText(success ? "Sincronizacion completada." : "Sin conexion. Intentar mas tarde.");
-            alert.showAndWait();
+        sync.setOnAction(event -> context.getSyncScheduler().requestSync(online -> {
+            if (online) {
+                return;
+            }
+            Platform.runLater(() -> {
+                Alert alert = new Alert(Alert.AlertType.INFORMATION);
+                alert.setTitle("Sincronizacion");
+                alert.setHeaderText(null);
+                alert.setContentText("Sin conexion. Los cambios se enviaran al recuperarla.");
+                alert.showAndWait();
+            });
         }));
         sync.setTooltip(new Tooltip("Enviar y recibir cambios con el servidor remoto"));
 
-        header.getChildren().addAll(caption, spacer, integrity, sync);
+        syncStatus.getStyleClass().add("subtitle");
+        context.getSyncScheduler().addListener(syncListener);
+
+        header.getChildren().addAll(caption, spacer, syncStatus, integrity, sync);
         return header;
     }
 
+    private static String describeSync(SyncScheduler.Progress progress) {
+        String text = switch (progress.state()) {
+            case OFFLINE -> "Sin conexion";
+            case STOPPED -> "Sincronizacion detenida";
+            case SYNCING -> "Sincronizando (" + progress.pending() + " pendientes)";
+            case IDLE -> progress.pending() == 0
+                ? "Sincronizado"
+                : progress.pending() + " pendientes (retraso " + describeLag(progress.lag()) + ")";
+        };
+        if (progress.state() == SyncScheduler.State.OFFLINE && progress.pending() > 0) {
+            text += ", " + progress.pending() + " pendientes";
+        }
+        if (progress.dead() > 0) {
+            text += ", " + progress.dead() + " descartados";
+        }
+        return text;
+    }
+
+    private static String describeLag(java.time.Duration lag) {
+        if (lag.toMinutes() > 0) {
+            return lag.toMinutes() + " min";
+        }
+        return lag.toSeconds() + " s";
+    }
+
     private void activateModule(String name) {
         Node module = moduleCache.computeIfAbsent(name, key -> moduleSuppliers.get(key).get());
         if (!contentArea.getChildren().contains(module)) {
@@ -289,10 +335,11 @@ public class MainScreen extends BorderPane {
         Alert alert = new Alert(Alert.AlertType.INFORMATION);
         alert.setTitle("Integridad de Datos");
         alert.setHeaderText(null);
+        String espacio = "Espacio: " + integrityService.estadoCompactacion();
         if (issues.isEmpty()) {
-            alert.setContentText("Sin incidencias. La base de datos esta consistente.");
+            alert.setContentText("Sin incidencias. La base de datos esta consistente.\n" + espacio);
         } else {
-            alert.setContentText(String.join("\n", issues));
+            alert.setContentText(String.join("\n", issues) + "\n" + espacio);
         }
         alert.showAndWait();
     }
@@ -12,6 +12,7 @@ import java.util.function.Consumer;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.control.Button;
+import javafx.scene.control.CheckBox;
 import javafx.scene.control.Label;
 import javafx.scene.control.PasswordField;
 import javafx.scene.control.RadioButton;
@@ -37,6 +38,7 @@ import javafx.stage.Window;
  *
  * <ul>
  *   <li>Supports switching between local and central server modes.</li>
+ *   <li>Lets local mode work on an in-memory copy of the database file, snapshotted back to disk.</li>
  *   <li>Handles authentication via an injected AuthService.</li>
  *   <li>Allows configuration of database and documents paths.</li>
  *   <li>Displays messages for authentication errors or missing input.</li>
@@ -67,6 +69,7 @@ public class LoginScreen extends BorderPane {
     private final ToggleGroup modeGroup = new ToggleGroup();
     private final RadioButton localModeButton = new RadioButton("Modo local / temporal");
     private final RadioButton centralModeButton = new RadioButton("Servidor central");
+    private final CheckBox inMemoryCheckBox = new CheckBox("Trabajar en memoria (demos y formacion)");
     private final TextField databasePathField = new TextField();
     private final Button browseDbButton = new Button("Elegir archivo");
     private final TextField documentsPathField = new TextField();
@@ -110,7 +113,7 @@ public class LoginScreen extends BorderPane {
         centralModeButton.setToggleGroup(modeGroup);
         localModeButton.setSelected(true);
 
-        VBox modeBox = new VBox(6, localModeButton, centralModeButton);
+        VBox modeBox = new VBox(6, localModeButton, inMemoryCheckBox, centralModeButton);
         modeBox.getStyleClass().add("login-mode-box");
         form.add(new Label("Modo de trabajo"), 0, 2);
         form.add(modeBox, 1, 2);
@@ -173,7 +176,9 @@ public class LoginScreen extends BorderPane {
         boolean local = localModeButton.isSelected();
         databasePathField.setDisable(!local);
         browseDbButton.setDisable(!local);
+        inMemoryCheckBox.setDisable(!local);
         if (!local) {
+            inMemoryCheckBox.setSelected(false);
             databasePathField.setText(CENTRAL_DB_PATH.toString());
         }
     }
@@ -220,7 +225,12 @@ public class LoginScreen extends BorderPane {
         Path docsPath = Paths.get(documentsPathField.getText().trim());
         String baseUrl = localMode ? "http://128.0.0.1" : "https://api.atlas-ledger.example";
 
-        DBHelper.overrideDatabasePath(dbPath, true);
+        boolean inMemory = localMode && inMemoryCheckBox.isSelected();
+        if (inMemory) {
+            DBHelper.useInMemoryDatabase(dbPath, true);
+        } else {
+            DBHelper.overrideDatabasePath(dbPath, true);
+        }
         authService.ensureDefaultAdmin();
 
         Optional<Worker> worker = authService.authenticate(username, password);
@@ -229,7 +239,7 @@ public class LoginScreen extends BorderPane {
             return;
         }
 
-        StartupProfile profile = new StartupProfile(dbPath, docsPath, localMode, baseUrl, worker.get());
+        StartupProfile profile = new StartupProfile(dbPath, docsPath, localMode, baseUrl, worker.get(), inMemory);
         if (authenticatedListener != null) {
             authenticatedListener.accept(profile);
         }
@@ -5,7 +5,9 @@ import atlasledger.model.Orden;
 import atlasledger.model.Proveedor;
 import atlasledger.repository.OrderRepository;
 import atlasledger.repository.ProviderRepository;
+import atlasledger.service.SyncScheduler;
 import atlasledger.service.SyncService;
+import atlasledger.utils.JsonCodec;
 import java.text.NumberFormat;
 import java.time.LocalDate;
 import java.util.EnumSet;
@@ -39,6 +41,7 @@ public class OrderModule extends BorderPane {
     private final OrderRepository orderRepository;
     private final ProviderRepository providerRepository;
     private final SyncService syncService;
+    private final SyncScheduler syncScheduler;
     private final ObservableList<Orden> data;
     private final TableView<Orden> tableView;
     private final Label totalOrdenesValue = new Label();
@@ -51,6 +54,7 @@ public class OrderModule extends BorderPane {
         this.orderRepository = context.getOrderRepository();
         this.providerRepository = context.getProviderRepository();
         this.syncService = context.getSyncService();
+        this.syncScheduler = context.getSyncScheduler();
 
         data = FXCollections.observableArrayList(orderRepository.findAll());
         FilteredList<Orden> filtered = new FilteredList<>(data, orden -> true);
@@ -119,7 +123,7 @@ public class OrderModule extends BorderPane {
         refreshButton.setOnAction(event -> recargar());
 
         Button syncButton = new Button("Sincronizar");
-        syncButton.setOnAction(event -> syncService.pushPendingAsync(success -> Platform.runLater(() -> {
+        syncButton.setOnAction(event -> syncScheduler.requestSync(success -> Platform.runLater(() -> {
             if (success) {
                 recargar();
             } else {
@@ -243,7 +247,7 @@ public class OrderModule extends BorderPane {
         dialog.showAndWait().ifPresent(updated -> {
             SyncService.SyncOperation op = orden == null ? SyncService.SyncOperation.CREATE : SyncService.SyncOperation.UPDATE;
             orderRepository.save(updated);
-            syncService.enqueueChange("ordenes", updated.getCodigo(), toJson(updated), op);
+            syncService.enqueueChange("ordenes", updated.getCodigo(), JsonCodec.encode(updated), op);
             recargar();
         });
     }
@@ -262,22 +266,11 @@ public class OrderModule extends BorderPane {
             .filter(result -> result == javafx.scene.control.ButtonType.OK)
             .ifPresent(result -> {
                 orderRepository.deleteById(selected.getId());
-                syncService.enqueueChange("ordenes", selected.getCodigo(), "{\"codigo\":\"" + selected.getCodigo() + "\"}", SyncService.SyncOperation.DELETE);
+                syncService.enqueueChange("ordenes", selected.getCodigo(), JsonCodec.encodeReference(selected.getCodigo()), SyncService.SyncOperation.DELETE);
                 recargar();
             });
     }
 
-    private String toJson(Orden orden) {
-        return String.format(Locale.US,
-            "{\"codigo\":\"%s\",\"fecha\":\"%s\",\"proveedorCodigo\":\"%s\",\"total\":%.2f,\"estado\":\"%s\"}",
-            orden.getCodigo(),
-            Optional.ofNullable(orden.getFecha()).map(LocalDate::toString).orElse(""),
-            Optional.ofNullable(orden.getProveedorCodigo()).orElse(""),
-            orden.getTotal(),
-            Optional.ofNullable(orden.getEstado()).map(Enum::name).orElse(Orden.Estado.BORRADOR.name())
-        );
-    }
-
     private void recargar() {
         data.setAll(orderRepository.findAll());
         updateStats();
@@ -3,7 +3,9 @@ package atlasledger.ui.productos;
 import atlasledger.app.AppContext;
 import atlasledger.model.Producto;
 import atlasledger.repository.ProductRepository;
+import atlasledger.service.SyncScheduler;
 import atlasledger.service.SyncService;
+import atlasledger.utils.JsonCodec;
 import java.text.NumberFormat;
 import java.util.Locale;
 import java.util.Optional;
@@ -32,6 +34,7 @@ public class ProductModule extends BorderPane {
     private final AppContext context;
     private final ProductRepository productRepository;
     private final SyncService syncService;
+    private final SyncScheduler syncScheduler;
     private final ObservableList<Producto> data;
     private final TableView<Producto> tableView;
     private final Label totalProductosValue = new Label();
@@ -45,6 +48,7 @@ public class ProductModule extends BorderPane {
         this.context = context;
         this.productRepository = context.getProductRepository();
         this.syncService = context.getSyncService();
+        this.syncScheduler = context.getSyncScheduler();
 
         data = FXCollections.observableArrayList(productRepository.findAll());
         FilteredList<Producto> filtered = new FilteredList<>(data, producto -> true);
@@ -99,7 +103,7 @@ public class ProductModule extends BorderPane {
         refreshButton.setOnAction(event -> recargar());
 
         Button syncButton = new Button("Sincronizar");
-        syncButton.setOnAction(event -> syncService.pushPendingAsync(success -> Platform.runLater(() -> {
+        syncButton.setOnAction(event -> syncScheduler.requestSync(success -> Platform.runLater(() -> {
             if (success) {
                 recargar();
             } else {
@@ -199,7 +203,7 @@ public class ProductModule extends BorderPane {
                 ? SyncService.SyncOperation.CREATE
                 : SyncService.SyncOperation.UPDATE;
             productRepository.save(updated);
-            syncService.enqueueChange("productos", updated.getCodigo(), toJson(updated), operation);
+            syncService.enqueueChange("productos", updated.getCodigo(), JsonCodec.encode(updated), operation);
             recargar();
         });
     }
@@ -217,24 +221,11 @@ public class ProductModule extends BorderPane {
 
         confirm.showAndWait().filter(response -> response == javafx.scene.control.ButtonType.OK).ifPresent(response -> {
             productRepository.deleteById(seleccionado.getId());
-            syncService.enqueueChange("productos", seleccionado.getCodigo(), "{\"codigo\":\"" + seleccionado.getCodigo() + "\"}", SyncService.SyncOperation.DELETE);
+            syncService.enqueueChange("productos", seleccionado.getCodigo(), JsonCodec.encodeReference(seleccionado.getCodigo()), SyncService.SyncOperation.DELETE);
             recargar();
         });
     }
 
-    private String toJson(Producto producto) {
-        return String.format(Locale.US,
-            "{\"codigo\":\"%s\",\"nombre\":\"%s\",\"categoria\":\"%s\",\"proveedorCodigo\":\"%s\",\"stock\":%d,\"coste\":%.2f,\"precio\":%.2f}",
-            producto.getCodigo(),
-            producto.getNombre(),
-            Optional.ofNullable(producto.getCategoria()).orElse(""),
-            Optional.ofNullable(producto.getProveedorCodigo()).orElse(""),
-            producto.getStock(),
-            producto.getCoste(),
-            producto.getPrecio()
-        );
-    }
-
     private void recargar() {
         data.setAll(productRepository.findAll());
         updateStats();
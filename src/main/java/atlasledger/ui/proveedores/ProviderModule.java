@@ -3,7 +3,9 @@ package atlasledger.ui.proveedores;
 import atlasledger.app.AppContext;
 import atlasledger.model.Proveedor;
 import atlasledger.repository.ProviderRepository;
+import atlasledger.service.SyncScheduler;
 import atlasledger.service.SyncService;
+import atlasledger.utils.JsonCodec;
 import java.text.NumberFormat;
 import java.util.Locale;
 import java.util.Optional;
@@ -31,6 +33,7 @@ public class ProviderModule extends BorderPane {
 
     private final ProviderRepository providerRepository;
     private final SyncService syncService;
+    private final SyncScheduler syncScheduler;
     private final ObservableList<Proveedor> data;
     private final TableView<Proveedor> tableView;
     private final Label totalProveedoresValue = new Label();
@@ -41,6 +44,7 @@ public class ProviderModule extends BorderPane {
     public ProviderModule(AppContext context) {
         this.providerRepository = context.getProviderRepository();
         this.syncService = context.getSyncService();
+        this.syncScheduler = context.getSyncScheduler();
 
         data = FXCollections.observableArrayList(providerRepository.findAll());
         FilteredList<Proveedor> filtered = new FilteredList<>(data, proveedor -> true);
@@ -95,7 +99,7 @@ public class ProviderModule extends BorderPane {
         refreshButton.setOnAction(event -> recargar());
 
         Button syncButton = new Button("Sincronizar");
-        syncButton.setOnAction(event -> syncService.pushPendingAsync(success -> Platform.runLater(() -> {
+        syncButton.setOnAction(event -> syncScheduler.requestSync(success -> Platform.runLater(() -> {
             if (success) {
                 recargar();
             } else {
@@ -181,7 +185,7 @@ public class ProviderModule extends BorderPane {
         dialog.showAndWait().ifPresent(updated -> {
             SyncService.SyncOperation op = proveedor == null ? SyncService.SyncOperation.CREATE : SyncService.SyncOperation.UPDATE;
             providerRepository.save(updated);
-            syncService.enqueueChange("proveedores", updated.getCodigo(), toJson(updated), op);
+            syncService.enqueueChange("proveedores", updated.getCodigo(), JsonCodec.encode(updated), op);
             recargar();
         });
     }
@@ -200,23 +204,11 @@ public class ProviderModule extends BorderPane {
             .filter(result -> result == javafx.scene.control.ButtonType.OK)
             .ifPresent(result -> {
                 providerRepository.deleteById(seleccionado.getId());
-                syncService.enqueueChange("proveedores", seleccionado.getCodigo(), "{\"codigo\":\"" + seleccionado.getCodigo() + "\"}", SyncService.SyncOperation.DELETE);
+                syncService.enqueueChange("proveedores", seleccionado.getCodigo(), JsonCodec.encodeReference(seleccionado.getCodigo()), SyncService.SyncOperation.DELETE);
                 recargar();
             });
     }
 
-    private String toJson(Proveedor proveedor) {
-        return """
-            {"codigo":"%s","nombre":"%s","email":"%s","telefono":"%s","direccion":"%s"}
-        """.formatted(
-            proveedor.getCodigo(),
-            proveedor.getNombre(),
-            Optional.ofNullable(proveedor.getEmail()).orElse(""),
-            Optional.ofNullable(proveedor.getTelefono()).orElse(""),
-            Optional.ofNullable(proveedor.getDireccion()).orElse("")
-        );
-    }
-
     private void recargar() {
         data.setAll(providerRepository.findAll());
         updateStats();
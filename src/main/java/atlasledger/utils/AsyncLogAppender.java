@@ -0,0 +1,194 @@
+package atlasledger.utils;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Cola asincrona propia de cada destino de log ({@link SqliteLogAppender}, {@link MappedFileLogAppender}).
+ * <p>
+ * Quien registra una entrada solo la anade a un {@link RingBuffer}; un hilo de fondo la extrae por
+ * lotes y se los pasa al destino. Cuando el buffer esta lleno se aplica la
+ * {@link Logger.OverflowPolicy politica de desbordamiento} configurada, salvo en el hilo escritor de
+ * {@link DBWriter}, que nunca espera. Las entradas descartadas se cuentan y se resumen en una entrada
+ * de aviso en el siguiente lote.
+ * <p>
+ * Las colas activas se registran para que {@link Logger#flush()} pueda esperar a todas.
+ */
+final class AsyncLogAppender {
+
+    /**
+     * Entrada de log pendiente de escribir.
+     *
+     * @param level           nivel ({@code INFO}, {@code WARN} o {@code ERROR})
+     * @param source          nombre simple de la clase que la genera
+     * @param message         texto del mensaje
+     * @param timestampMillis instante en que se registro
+     * @param stackTrace      traza de la excepcion asociada, o {@code null}
+     */
+    record Entry(String level, String source, String message, long timestampMillis, String stackTrace) {
+
+        Entry(String level, String source, String message, long timestampMillis) {
+            this(level, source, message, timestampMillis, null);
+        }
+    }
+
+    @FunctionalInterface
+    interface BatchWriter {
+        void write(List<Entry> batch) throws Exception;
+    }
+
+    static final int BATCH_SIZE = 512;
+    static final int SAMPLE_RATE = 10;
+    private static final Duration DRAIN_INTERVAL = Duration.ofMillis(50);
+    private static final long BLOCK_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+    private final RingBuffer<Entry> buffer;
+    private final BatchWriter writer;
+    private final Thread drainer;
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong sampled = new AtomicLong();
+    private volatile Logger.OverflowPolicy policy;
+    private volatile long completed;
+    private volatile boolean running = true;
+
+    private static final List<AsyncLogAppender> ACTIVE = new CopyOnWriteArrayList<>();
+
+    AsyncLogAppender(String name, int capacity, Logger.OverflowPolicy policy, BatchWriter writer) {
+        this.buffer = new RingBuffer<>(capacity);
+        this.policy = policy;
+        this.writer = writer;
+        this.drainer = new Thread(this::drainLoop, name);
+        drainer.setDaemon(true);
+        drainer.start();
+        ACTIVE.add(this);
+    }
+
+    /**
+     * Espera a que todas las colas activas escriban lo pendiente.
+     *
+     * @return {@code true} si todas lo han conseguido dentro del plazo
+     */
+    static boolean flushAll(Duration timeout) {
+        boolean flushed = true;
+        for (AsyncLogAppender appender : ACTIVE) {
+            flushed &= appender.flush(timeout);
+        }
+        return flushed;
+    }
+
+    static List<AsyncLogAppender> active() {
+        return List.copyOf(ACTIVE);
+    }
+
+    /**
+     * Escribe lo pendiente y detiene el hilo de fondo.
+     */
+    void close(Duration timeout) {
+        ACTIVE.remove(this);
+        flush(timeout);
+        running = false;
+        LockSupport.unpark(drainer);
+    }
+
+    void setPolicy(Logger.OverflowPolicy policy) {
+        this.policy = policy;
+    }
+
+    Logger.OverflowPolicy getPolicy() {
+        return policy;
+    }
+
+    /**
+     * Anade una entrada sin esperar salvo que la politica lo exija con el buffer lleno.
+     *
+     * @return {@code false} si la entrada se ha descartado
+     */
+    boolean append(Entry entry) {
+        if (buffer.offer(entry)) {
+            if (buffer.size() >= BATCH_SIZE) {
+                LockSupport.unpark(drainer);
+            }
+            return true;
+        }
+        if (mustWait(entry)) {
+            while (!buffer.offer(entry)) {
+                LockSupport.unpark(drainer);
+                LockSupport.parkNanos(BLOCK_PARK_NANOS);
+            }
+            return true;
+        }
+        dropped.incrementAndGet();
+        return false;
+    }
+
+    private boolean mustWait(Entry entry) {
+        // El hilo de escritura no puede esperar a que se vacie su propio buffer, ni el escritor de
+        // DBWriter a un destino que necesita que el termine su comando: se descarta y se cuenta.
+        if (Thread.currentThread() == drainer || DBWriter.isWriterThread()) {
+            return false;
+        }
+        return switch (policy) {
+            case BLOCK -> true;
+            case DROP -> false;
+            case SAMPLE -> "ERROR".equals(entry.level()) || sampled.incrementAndGet() % SAMPLE_RATE == 0;
+        };
+    }
+
+    /**
+     * Espera a que se escriban las entradas registradas hasta ahora, como mucho {@code timeout}.
+     *
+     * @return {@code true} si se han escrito todas
+     */
+    boolean flush(Duration timeout) {
+        if (Thread.currentThread() == drainer) {
+            return false;
+        }
+        long target = buffer.published();
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (completed < target) {
+            if (System.nanoTime() > deadline) {
+                return false;
+            }
+            LockSupport.unpark(drainer);
+            LockSupport.parkNanos(BLOCK_PARK_NANOS);
+        }
+        return true;
+    }
+
+    long droppedCount() {
+        return dropped.get();
+    }
+
+    int pending() {
+        return buffer.size();
+    }
+
+    private void drainLoop() {
+        List<Entry> batch = new ArrayList<>(BATCH_SIZE + 1);
+        while (running) {
+            if (buffer.drainTo(batch, BATCH_SIZE) == 0) {
+                LockSupport.parkNanos(DRAIN_INTERVAL.toNanos());
+                continue;
+            }
+            int taken = batch.size();
+            long lost = dropped.getAndSet(0);
+            if (lost > 0) {
+                batch.add(new Entry("WARN", AsyncLogAppender.class.getSimpleName(),
+                    "Se descartaron " + lost + " entradas de log por desbordamiento del buffer",
+                    System.currentTimeMillis()));
+            }
+            try {
+                writer.write(batch);
+            } catch (Exception e) {
+                System.err.println("[" + drainer.getName() + "] No se pudo escribir un lote de " + batch.size() + " entradas: " + e.getMessage());
+            }
+            batch.clear();
+            completed += taken;
+        }
+    }
+}
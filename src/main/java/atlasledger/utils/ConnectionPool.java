@@ -0,0 +1,562 @@
+package atlasledger.utils;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Pool acotado de conexiones SQLite usado por {@link DBHelper}.
+ * <p>
+ * Cada conexion fisica se abre una sola vez, se configura con los PRAGMA de rendimiento y se
+ * reutiliza entre llamadas. Los clientes reciben un proxy de {@link Connection} cuyo
+ * {@code close()} devuelve la conexion al pool en lugar de cerrarla, de modo que el patron
+ * {@code try (Connection conn = DBHelper.getConnection())} sigue funcionando sin cambios.
+ * <p>
+ * Las conexiones ociosas se validan antes de reutilizarse cuando llevan mas de
+ * {@link #VALIDATION_INTERVAL} sin uso; las que fallan la validacion se descartan y se abren de nuevo.
+ * <p>
+ * Cada conexion fisica mantiene ademas una cache LRU de sentencias preparadas indexada por el texto
+ * SQL. {@code prepareStatement(sql)} devuelve la sentencia ya compilada si existe, y su
+ * {@code close()} cierra el {@link ResultSet} abierto, limpia los parametros y restaura el
+ * {@code fetchSize}, {@code maxRows} y {@code queryTimeout} originales para el siguiente uso. Asi los DAO
+ * siguen escribiendo {@code try (PreparedStatement ps = conn.prepareStatement(sql))} sin volver a
+ * analizar el SQL. Al devolver la conexion se liberan tambien las sentencias que el cliente no cerro.
+ * <p>
+ * Todas las sentencias entregadas pasan por {@link StatementInstrumentation}, que anota su latencia
+ * y filas en {@link QueryMetrics}; la espera por una conexion tambien se registra alli.
+ */
+final class ConnectionPool implements AutoCloseable {
+
+    private static final Duration VALIDATION_INTERVAL = Duration.ofSeconds(30);
+    private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+    private static final int STATEMENT_CACHE_SIZE = 64;
+
+    private static final String[] CONNECTION_PRAGMAS = {
+        "PRAGMA journal_mode = WAL;",
+        "PRAGMA synchronous = NORMAL;",
+        "PRAGMA busy_timeout = 5000;",
+        "PRAGMA cache_size = -8000;",
+        "PRAGMA mmap_size = 134217728;",
+        "PRAGMA temp_store = MEMORY;"
+    };
+
+    private final String url;
+    private final int maxSize;
+    private final Duration acquireTimeout;
+    private final BlockingDeque<PooledConnection> idle = new LinkedBlockingDeque<>();
+    private final Semaphore permits;
+
+    private final AtomicInteger inUse = new AtomicInteger();
+    private final AtomicLong created = new AtomicLong();
+    private final AtomicLong discarded = new AtomicLong();
+    private final LongAdder acquisitions = new LongAdder();
+    private final LongAdder totalWaitNanos = new LongAdder();
+    private final LongAccumulator maxWaitNanos = new LongAccumulator(Math::max, 0L);
+    private final LongAdder statementHits = new LongAdder();
+    private final LongAdder statementMisses = new LongAdder();
+
+    private volatile boolean closed;
+
+    ConnectionPool(String url, int maxSize, Duration acquireTimeout) {
+        this.url = url;
+        this.maxSize = maxSize;
+        this.acquireTimeout = acquireTimeout;
+        this.permits = new Semaphore(maxSize, true);
+    }
+
+    Connection acquire() throws SQLException {
+        if (closed) {
+            throw new SQLException("El pool de conexiones esta cerrado");
+        }
+        long start = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(acquireTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                throw new SQLException("Tiempo de espera agotado obteniendo una conexion del pool ("
+                    + maxSize + " en uso)");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrumpido esperando una conexion del pool", e);
+        }
+
+        try {
+            PooledConnection pooled = takeIdle();
+            if (pooled == null) {
+                pooled = open();
+            }
+            long waited = System.nanoTime() - start;
+            acquisitions.increment();
+            totalWaitNanos.add(waited);
+            maxWaitNanos.accumulate(waited);
+            QueryMetrics.recordConnectionWait(waited);
+            inUse.incrementAndGet();
+            return pooled.lease();
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    PoolStats stats() {
+        return new PoolStats(
+            maxSize,
+            inUse.get(),
+            idle.size(),
+            created.get(),
+            discarded.get(),
+            acquisitions.sum(),
+            totalWaitNanos.sum(),
+            maxWaitNanos.get(),
+            statementHits.sum(),
+            statementMisses.sum()
+        );
+    }
+
+    @FunctionalInterface
+    interface DrainedAction {
+        void run() throws IOException;
+    }
+
+    /**
+     * Espera a que se devuelvan todas las conexiones prestadas, cierra las conexiones fisicas y
+     * ejecuta {@code action} sin ninguna conexion abierta contra el fichero. Los prestamos pedidos
+     * mientras tanto esperan y despues abren conexiones nuevas.
+     */
+    void runDrained(Duration timeout, DrainedAction action) throws SQLException {
+        try {
+            if (!permits.tryAcquire(maxSize, timeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                throw new SQLException("Tiempo de espera agotado esperando a que se devuelvan las conexiones ("
+                    + inUse.get() + " en uso)");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrumpido esperando a que se devuelvan las conexiones", e);
+        }
+        try {
+            PooledConnection pooled;
+            while ((pooled = idle.pollFirst()) != null) {
+                discard(pooled);
+            }
+            action.run();
+        } catch (IOException e) {
+            throw new SQLException("Error operando sobre el fichero de base de datos", e);
+        } finally {
+            permits.release(maxSize);
+        }
+    }
+
+    /**
+     * Cierra las conexiones ociosas y marca el pool como cerrado. Las conexiones prestadas en ese
+     * momento se cierran fisicamente cuando el cliente las devuelve.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            discard(pooled);
+        }
+    }
+
+    private PooledConnection takeIdle() {
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            if (isHealthy(pooled)) {
+                return pooled;
+            }
+            discard(pooled);
+        }
+        return null;
+    }
+
+    private boolean isHealthy(PooledConnection pooled) {
+        if (System.nanoTime() - pooled.lastUsedNanos < VALIDATION_INTERVAL.toNanos()) {
+            return true;
+        }
+        try {
+            return !pooled.physical.isClosed() && pooled.physical.isValid(VALIDATION_TIMEOUT_SECONDS);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private PooledConnection open() throws SQLException {
+        Connection physical = DriverManager.getConnection(url);
+        try (Statement st = physical.createStatement()) {
+            for (String pragma : CONNECTION_PRAGMAS) {
+                st.execute(pragma);
+            }
+        } catch (SQLException e) {
+            physical.close();
+            throw e;
+        }
+        created.incrementAndGet();
+        return new PooledConnection(physical);
+    }
+
+    private void release(PooledConnection pooled) {
+        boolean reusable = !closed;
+        try {
+            if (reusable && !pooled.physical.getAutoCommit()) {
+                pooled.physical.rollback();
+                pooled.physical.setAutoCommit(true);
+            }
+            reusable = reusable && !pooled.physical.isClosed();
+        } catch (SQLException e) {
+            reusable = false;
+        }
+
+        if (reusable) {
+            pooled.lastUsedNanos = System.nanoTime();
+            idle.offerFirst(pooled);
+        } else {
+            discard(pooled);
+        }
+        inUse.decrementAndGet();
+        permits.release();
+    }
+
+    private void discard(PooledConnection pooled) {
+        discarded.incrementAndGet();
+        pooled.statements.closeAll();
+        try {
+            pooled.physical.close();
+        } catch (SQLException ignored) {
+            // La conexion ya no es utilizable; no hay nada mas que hacer.
+        }
+    }
+
+    private final class PooledConnection {
+
+        private final Connection physical;
+        private final StatementCache statements = new StatementCache();
+        private volatile long lastUsedNanos = System.nanoTime();
+
+        private PooledConnection(Connection physical) {
+            this.physical = physical;
+        }
+
+        private Connection lease() {
+            return (Connection) Proxy.newProxyInstance(
+                ConnectionPool.class.getClassLoader(),
+                new Class<?>[] {Connection.class},
+                new LeaseHandler(this)
+            );
+        }
+    }
+
+    /**
+     * Manejador del proxy entregado a los clientes. Tras {@code close()} la conexion vuelve al pool
+     * y cualquier uso posterior del proxy falla igual que lo haria una conexion cerrada.
+     */
+    private final class LeaseHandler implements InvocationHandler {
+
+        private final PooledConnection pooled;
+        // Sentencias sin cachear creadas con este prestamo; se cierran al devolver la conexion.
+        private final List<Statement> uncached = new ArrayList<>();
+        private boolean returned;
+
+        private LeaseHandler(PooledConnection pooled) {
+            this.pooled = pooled;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (!returned && "prepareStatement".equals(method.getName()) && args.length == 1) {
+                String sql = (String) args[0];
+                PreparedStatement statement = pooled.statements.prepare(pooled.physical, sql, (Connection) proxy);
+                if (!Proxy.isProxyClass(statement.getClass())) {
+                    track(statement);
+                }
+                return StatementInstrumentation.wrap(statement, sql, pooled.physical);
+            }
+            switch (method.getName()) {
+                case "close" -> {
+                    if (!returned) {
+                        returned = true;
+                        pooled.statements.releaseLeases();
+                        closeUncached();
+                        release(pooled);
+                    }
+                    return null;
+                }
+                case "isClosed" -> {
+                    return returned || pooled.physical.isClosed();
+                }
+                case "equals" -> {
+                    return proxy == args[0];
+                }
+                case "hashCode" -> {
+                    return System.identityHashCode(proxy);
+                }
+                case "toString" -> {
+                    return "PooledConnection[" + pooled.physical + "]";
+                }
+                default -> {
+                    if (returned) {
+                        throw new SQLException("La conexion ya fue devuelta al pool");
+                    }
+                    Object result;
+                    try {
+                        result = method.invoke(pooled.physical, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                    if (result instanceof PreparedStatement statement) {
+                        track(statement);
+                        return StatementInstrumentation.wrap(statement, (String) args[0], pooled.physical);
+                    }
+                    if (result instanceof Statement statement) {
+                        track(statement);
+                        return StatementInstrumentation.wrap(statement, pooled.physical);
+                    }
+                    return result;
+                }
+            }
+        }
+
+        private void track(Statement statement) throws SQLException {
+            if (uncached.size() >= STATEMENT_CACHE_SIZE) {
+                // Prestamos largos: se olvidan las que el cliente ya cerro.
+                List<Statement> abiertas = new ArrayList<>(uncached.size());
+                for (Statement previa : uncached) {
+                    if (!previa.isClosed()) {
+                        abiertas.add(previa);
+                    }
+                }
+                uncached.clear();
+                uncached.addAll(abiertas);
+            }
+            uncached.add(statement);
+        }
+
+        private void closeUncached() {
+            for (Statement statement : uncached) {
+                try {
+                    statement.close();
+                } catch (SQLException ignored) {
+                    // La sentencia se libera igualmente al cerrar la conexion fisica.
+                }
+            }
+            uncached.clear();
+        }
+    }
+
+    /**
+     * Cache LRU de sentencias preparadas de una conexion fisica. Solo la usa el hilo que tiene la
+     * conexion prestada, por lo que no necesita sincronizacion.
+     */
+    private final class StatementCache {
+
+        private final Map<String, CachedStatement> cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedStatement> eldest) {
+                if (size() > STATEMENT_CACHE_SIZE) {
+                    eldest.getValue().evict();
+                    return true;
+                }
+                return false;
+            }
+        };
+
+        private PreparedStatement prepare(Connection physical, String sql, Connection owner) throws SQLException {
+            CachedStatement cached = cache.get(sql);
+            if (cached != null && !cached.inUse) {
+                statementHits.increment();
+                return cached.lease(owner);
+            }
+            statementMisses.increment();
+            PreparedStatement statement = physical.prepareStatement(sql);
+            if (cached != null) {
+                // La misma sentencia ya esta abierta en este hilo (consultas anidadas): se usa una copia sin cachear.
+                return statement;
+            }
+            CachedStatement created = new CachedStatement(statement);
+            cache.put(sql, created);
+            return created.lease(owner);
+        }
+
+        /**
+         * Devuelve a la cache las sentencias que siguen prestadas; las que no se pueden dejar limpias se
+         * descartan.
+         */
+        private void releaseLeases() {
+            cache.values().removeIf(cached -> {
+                if (!cached.inUse) {
+                    return false;
+                }
+                try {
+                    cached.forceGiveBack();
+                    return false;
+                } catch (SQLException e) {
+                    cached.evict();
+                    return true;
+                }
+            });
+        }
+
+        private void closeAll() {
+            cache.values().forEach(CachedStatement::evict);
+            cache.clear();
+        }
+    }
+
+    private static final class CachedStatement {
+
+        private final PreparedStatement physical;
+        private final int defaultFetchSize;
+        private final int defaultMaxRows;
+        private final int defaultQueryTimeout;
+        private StatementHandler lease;
+        private ResultSet openResult;
+        private boolean settingsChanged;
+        private boolean inUse;
+        private boolean evicted;
+
+        private CachedStatement(PreparedStatement physical) throws SQLException {
+            this.physical = physical;
+            this.defaultFetchSize = physical.getFetchSize();
+            this.defaultMaxRows = physical.getMaxRows();
+            this.defaultQueryTimeout = physical.getQueryTimeout();
+        }
+
+        private PreparedStatement lease(Connection owner) {
+            inUse = true;
+            lease = new StatementHandler(this, owner);
+            return (PreparedStatement) Proxy.newProxyInstance(
+                ConnectionPool.class.getClassLoader(),
+                new Class<?>[] {PreparedStatement.class},
+                lease
+            );
+        }
+
+        /**
+         * Devuelve la sentencia aunque el cliente no la haya cerrado; su proxy queda cerrado.
+         */
+        private void forceGiveBack() throws SQLException {
+            if (lease != null) {
+                lease.closed = true;
+            }
+            giveBack();
+        }
+
+        private void giveBack() throws SQLException {
+            inUse = false;
+            lease = null;
+            ResultSet result = openResult;
+            openResult = null;
+            if (evicted) {
+                physical.close();
+                return;
+            }
+            if (result != null) {
+                result.close();
+            }
+            physical.clearParameters();
+            physical.clearBatch();
+            if (settingsChanged) {
+                settingsChanged = false;
+                physical.setFetchSize(defaultFetchSize);
+                physical.setMaxRows(defaultMaxRows);
+                physical.setQueryTimeout(defaultQueryTimeout);
+            }
+        }
+
+        private void evict() {
+            evicted = true;
+            if (!inUse) {
+                try {
+                    physical.close();
+                } catch (SQLException ignored) {
+                    // La sentencia se libera igualmente al cerrar la conexion.
+                }
+            }
+        }
+    }
+
+    /**
+     * Proxy de una sentencia cacheada: {@code close()} la devuelve a la cache en lugar de finalizarla.
+     */
+    private static final class StatementHandler implements InvocationHandler {
+
+        private static final Set<String> CHANGED_SETTINGS =
+            Set.of("setFetchSize", "setMaxRows", "setLargeMaxRows", "setQueryTimeout");
+
+        private final CachedStatement cached;
+        private final Connection owner;
+        private boolean closed;
+
+        private StatementHandler(CachedStatement cached, Connection owner) {
+            this.cached = cached;
+            this.owner = owner;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close" -> {
+                    if (!closed) {
+                        closed = true;
+                        cached.giveBack();
+                    }
+                    return null;
+                }
+                case "isClosed" -> {
+                    return closed || cached.physical.isClosed();
+                }
+                case "getConnection" -> {
+                    return owner;
+                }
+                case "equals" -> {
+                    return proxy == args[0];
+                }
+                case "hashCode" -> {
+                    return System.identityHashCode(proxy);
+                }
+                case "toString" -> {
+                    return "CachedStatement[" + cached.physical + "]";
+                }
+                default -> {
+                    if (closed) {
+                        throw new SQLException("La sentencia ya esta cerrada");
+                    }
+                    if (CHANGED_SETTINGS.contains(method.getName())) {
+                        cached.settingsChanged = true;
+                    }
+                    Object result;
+                    try {
+                        result = method.invoke(cached.physical, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                    if (result instanceof ResultSet rs) {
+                        cached.openResult = rs;
+                    }
+                    return result;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,280 @@
+package atlasledger.utils;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Estado de la conexion con la API remota, deducido del resultado de las peticiones reales.
+ * <p>
+ * Funciona como un cortocircuito: en {@link State#CLOSED} las peticiones pasan y cada fallo de red (o
+ * respuesta {@code 502}, {@code 503} o {@code 504}) suma uno; al llegar a {@code failureThreshold} fallos
+ * seguidos pasa a {@link State#OPEN} y {@link #allowRequest()} deja de permitir peticiones. Abierto, una
+ * sonda en segundo plano comprueba el servidor con esperas que se duplican desde {@code initialBackoff}
+ * hasta {@code maxBackoff}; cuando responde pasa a {@link State#HALF_OPEN}, donde la siguiente peticion
+ * real decide si se cierra o se vuelve a abrir. Sin sonda, al vencer la espera se pasa directamente a
+ * {@link State#HALF_OPEN}.
+ * <p>
+ * Cualquier otra respuesta del servidor, aunque rechace la peticion, demuestra que se llega a el y se
+ * registra con {@link #recordSuccess()}.
+ * <p>
+ * {@link #allowRequest()} solo lee un campo volatil, asi que se puede consultar antes de cada peticion.
+ * Los cambios de estado se notifican a los {@link #addListener oyentes} desde el hilo que los provoca.
+ */
+public final class ConnectivityMonitor implements AutoCloseable {
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    /**
+     * Comprobacion de que el servidor responde.
+     */
+    @FunctionalInterface
+    public interface Probe {
+        boolean check() throws Exception;
+    }
+
+    public static final int DEFAULT_FAILURE_THRESHOLD = 3;
+    public static final Duration DEFAULT_INITIAL_BACKOFF = Duration.ofSeconds(2);
+    public static final Duration DEFAULT_MAX_BACKOFF = Duration.ofMinutes(5);
+
+    private final Probe probe;
+    private final int failureThreshold;
+    private final long initialBackoffNanos;
+    private final long maxBackoffNanos;
+    private final AtomicInteger failures = new AtomicInteger();
+    private final List<Consumer<State>> listeners = new CopyOnWriteArrayList<>();
+    private volatile State state = State.CLOSED;
+    private volatile long retryAtNanos;
+
+    // Protegidos por this.
+    private long backoffNanos;
+    private ScheduledExecutorService prober;
+    private ScheduledFuture<?> pendingProbe;
+    private boolean closed;
+
+    /**
+     * Monitor sin sonda y con los valores por defecto; la siguiente peticion tras la espera hace de prueba.
+     */
+    public ConnectivityMonitor() {
+        this(null, DEFAULT_FAILURE_THRESHOLD, DEFAULT_INITIAL_BACKOFF, DEFAULT_MAX_BACKOFF);
+    }
+
+    public ConnectivityMonitor(Probe probe, int failureThreshold, Duration initialBackoff, Duration maxBackoff) {
+        this.probe = probe;
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.initialBackoffNanos = Math.max(1, initialBackoff.toNanos());
+        this.maxBackoffNanos = Math.max(initialBackoffNanos, maxBackoff.toNanos());
+    }
+
+    /**
+     * Monitor que sondea {@code baseUrl} con una peticion {@code HEAD}. Cualquier respuesta que no sea
+     * {@code 502}, {@code 503} o {@code 504} cuenta como servidor disponible, aunque la ruta no exista.
+     */
+    public static ConnectivityMonitor forEndpoint(String baseUrl, Duration timeout) {
+        HttpClient client = HttpClient.newBuilder()
+            .connectTimeout(timeout)
+            .build();
+        HttpRequest request = HttpRequest.newBuilder()
+            .uri(URI.create(baseUrl))
+            .timeout(timeout)
+            .method("HEAD", HttpRequest.BodyPublishers.noBody())
+            .build();
+        Probe probe = () -> !isUnavailableStatus(client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode());
+        return new ConnectivityMonitor(probe, DEFAULT_FAILURE_THRESHOLD, DEFAULT_INITIAL_BACKOFF, DEFAULT_MAX_BACKOFF);
+    }
+
+    /**
+     * Estados HTTP con los que un proxy o el propio servidor indican que no puede atender peticiones.
+     */
+    public static boolean isUnavailableStatus(int status) {
+        return status == 502 || status == 503 || status == 504;
+    }
+
+    public State state() {
+        return state;
+    }
+
+    /**
+     * Indica si se puede intentar una peticion. Sin sonda, abierto y con la espera vencida, pasa a
+     * {@link State#HALF_OPEN} para que la peticion sirva de prueba.
+     */
+    public boolean allowRequest() {
+        if (state != State.OPEN) {
+            return true;
+        }
+        if (probe != null || System.nanoTime() - retryAtNanos < 0) {
+            return false;
+        }
+        if (transition(State.OPEN, State.HALF_OPEN)) {
+            notifyListeners(State.HALF_OPEN);
+        }
+        return state != State.OPEN;
+    }
+
+    public void recordSuccess() {
+        if (failures.get() != 0) {
+            failures.set(0);
+        }
+        if (state != State.CLOSED) {
+            boolean changed;
+            synchronized (this) {
+                changed = state != State.CLOSED;
+                if (changed) {
+                    state = State.CLOSED;
+                    backoffNanos = 0;
+                    cancelProbe();
+                }
+            }
+            if (changed) {
+                Logger.info(ConnectivityMonitor.class, "Conexion con el servidor recuperada.");
+                notifyListeners(State.CLOSED);
+            }
+        }
+    }
+
+    public void recordFailure() {
+        State actual = state;
+        if (actual == State.OPEN) {
+            return;
+        }
+        if (actual == State.HALF_OPEN || failures.incrementAndGet() >= failureThreshold) {
+            open();
+        }
+    }
+
+    /**
+     * Si esta abierto, sondea el servidor en el hilo actual sin esperar a que venza la espera.
+     *
+     * @return lo mismo que {@link #allowRequest()} despues de sondear
+     */
+    public boolean checkNow() {
+        if (state == State.OPEN && probe != null) {
+            runProbe();
+        } else if (state == State.OPEN) {
+            retryAtNanos = System.nanoTime();
+        }
+        return allowRequest();
+    }
+
+    public void addListener(Consumer<State> listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Consumer<State> listener) {
+        listeners.remove(listener);
+    }
+
+    @Override
+    public synchronized void close() {
+        closed = true;
+        cancelProbe();
+        if (prober != null) {
+            prober.shutdownNow();
+            prober = null;
+        }
+        listeners.clear();
+    }
+
+    private void open() {
+        long delayNanos;
+        synchronized (this) {
+            if (state == State.OPEN) {
+                return;
+            }
+            state = State.OPEN;
+            failures.set(0);
+            delayNanos = nextBackoff();
+        }
+        Logger.warn(ConnectivityMonitor.class, "Servidor no disponible; nuevo intento en "
+            + TimeUnit.NANOSECONDS.toSeconds(delayNanos) + " s.");
+        notifyListeners(State.OPEN);
+    }
+
+    /**
+     * Duplica la espera, fija el siguiente intento y, con sonda, lo programa. Se llama con el cerrojo tomado.
+     */
+    private long nextBackoff() {
+        backoffNanos = backoffNanos == 0 ? initialBackoffNanos : Math.min(backoffNanos * 2, maxBackoffNanos);
+        retryAtNanos = System.nanoTime() + backoffNanos;
+        if (probe != null && !closed) {
+            if (prober == null) {
+                prober = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                    Thread thread = new Thread(runnable, "atlasledger-conectividad");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            }
+            cancelProbe();
+            pendingProbe = prober.schedule(this::runProbe, backoffNanos, TimeUnit.NANOSECONDS);
+        }
+        return backoffNanos;
+    }
+
+    private void runProbe() {
+        if (state != State.OPEN) {
+            return;
+        }
+        boolean ok;
+        try {
+            ok = probe.check();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        } catch (Exception e) {
+            ok = false;
+        }
+        if (ok) {
+            if (transition(State.OPEN, State.HALF_OPEN)) {
+                notifyListeners(State.HALF_OPEN);
+            }
+            return;
+        }
+        synchronized (this) {
+            if (state == State.OPEN) {
+                nextBackoff();
+            }
+        }
+    }
+
+    private synchronized boolean transition(State from, State to) {
+        if (state != from) {
+            return false;
+        }
+        state = to;
+        if (to != State.OPEN) {
+            cancelProbe();
+        }
+        return true;
+    }
+
+    private void cancelProbe() {
+        if (pendingProbe != null) {
+            pendingProbe.cancel(false);
+            pendingProbe = null;
+        }
+    }
+
+    private void notifyListeners(State actual) {
+        for (Consumer<State> listener : listeners) {
+            try {
+                listener.accept(actual);
+            } catch (RuntimeException e) {
+                Logger.error(ConnectivityMonitor.class, "Error notificando el estado de la conexion", e);
+            }
+        }
+    }
+}
@@ -5,10 +5,13 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.time.Duration;
+import java.util.List;
 
 /**
  * Utility class for managing the SQLite database connection and schema initialization for the AtlasLedger application.
@@ -16,12 +19,34 @@ import java.sql.Statement;
  * This class handles:
  * <ul>
  *   <li>Setting up the database file location and JDBC URL.</li>
- *   <li>Initializing the database schema, including tables and indexes.</li>
- *   <li>Executing an optional initialization SQL script on first run or when the database path is overridden.</li>
- *   <li>Providing a method to obtain a JDBC {@link Connection} to the database.</li>
+ *   <li>Bringing the schema up to date through the versioned migrations run by {@link SchemaMigrator}.</li>
+ *   <li>Executing an optional initialization SQL script whenever migrations had to be applied.</li>
+ *   <li>Providing pooled JDBC {@link Connection}s to the database through a bounded connection pool.</li>
  * </ul>
  * <p>
  * The database path can be overridden at runtime, and the schema will be (re)initialized as needed.
+ * When the stored schema version is already current, startup skips all DDL; migrations flagged as
+ * background work (such as large index builds) run after the application is usable.
+ * Overriding the path drains the current pool and builds a new one against the new file.
+ *
+ * <h2>In-Memory Mode</h2>
+ * {@link #useInMemoryDatabase(Path, boolean)} runs the application against an in-memory ({@code memdb})
+ * SQLite database loaded from the given file. Changes are written back to that file periodically and
+ * on {@link #shutdown()} or when switching databases, only when something changed. Setting the system
+ * property {@value #IN_MEMORY_PROPERTY} to {@code true} starts the default database in this mode.
+ *
+ * <h2>Connection Pool</h2>
+ * Connections returned by {@link #getConnection()} are pooled: closing them returns the underlying
+ * physical connection to the pool instead of closing it. Every physical connection is configured once
+ * with WAL journaling, {@code synchronous=NORMAL}, a busy timeout and enlarged page/mmap caches.
+ * Each physical connection also keeps an LRU cache of prepared statements keyed by SQL text, so
+ * repeated {@code prepareStatement(sql)} calls reuse the compiled statement.
+ * Pool and statement cache metrics are exposed through {@link #poolStats()}.
+ *
+ * <h2>Compaction</h2>
+ * Free pages are returned to the file system in small steps while the writer is idle by
+ * {@link DatabaseCompactor}. A full rebuild of the file is only done on request through
+ * {@link #rebuildDatabaseFile()}.
  * <p>
  * This class is not intended to be instantiated.
  *
@@ -40,27 +65,87 @@ import java.sql.Statement;
  */
 public final class DBHelper {
 
+    public static final String IN_MEMORY_PROPERTY = "atlasledger.db.memoria";
+
     private static final String DB_NAME = "atlasledger.db";
     private static final Path DEFAULT_DB_PATH = Paths.get(System.getProperty("user.home"), ".atlasledger", DB_NAME);
 
     private static volatile Path databasePath = DEFAULT_DB_PATH;
     private static volatile String url = buildUrl(databasePath);
 
+    private static final int POOL_MAX_SIZE = 8;
+    private static final Duration POOL_ACQUIRE_TIMEOUT = Duration.ofSeconds(10);
+    private static volatile ConnectionPool pool;
+
+    private static final Duration REBUILD_DRAIN_TIMEOUT = Duration.ofSeconds(30);
+
+    private static final Duration SNAPSHOT_INTERVAL = Duration.ofSeconds(30);
+    private static volatile MemoryDatabase memoryDatabase;
+
     static {
-        initialise(true);
+        initialise(true, Boolean.getBoolean(IN_MEMORY_PROPERTY));
     }
 
     private DBHelper() {
     }
 
     public static synchronized void overrideDatabasePath(Path newPath, boolean runInitScript) {
+        openDatabase(newPath, runInitScript, false);
+    }
+
+    /**
+     * Carga {@code snapshotPath} en una base de datos en memoria y trabaja sobre ella. Si ya se esta
+     * usando esa misma base en memoria no hace nada.
+     */
+    public static synchronized void useInMemoryDatabase(Path snapshotPath, boolean runInitScript) {
+        if (memoryDatabase != null && snapshotPath != null && snapshotPath.equals(databasePath)) {
+            return;
+        }
+        openDatabase(snapshotPath, runInitScript, true);
+    }
+
+    public static boolean isInMemory() {
+        return memoryDatabase != null;
+    }
+
+    /**
+     * Espera a que terminen las escrituras pendientes y, en modo memoria, guarda la ultima instantanea.
+     */
+    public static synchronized void shutdown() {
+        Logger.flush();
+        DBWriter.flush();
+        MemoryDatabase memory = memoryDatabase;
+        if (memory != null) {
+            memory.close();
+            memoryDatabase = null;
+            ConnectionPool previous = pool;
+            pool = null;
+            if (previous != null) {
+                previous.close();
+            }
+        }
+    }
+
+    private static void openDatabase(Path newPath, boolean runInitScript, boolean inMemory) {
         if (newPath == null) {
             return;
         }
+        Logger.flush();
+        DBWriter.flush();
+        MemoryDatabase previousMemory = memoryDatabase;
+        if (previousMemory != null) {
+            previousMemory.close();
+            memoryDatabase = null;
+        }
+        ConnectionPool previous = pool;
         databasePath = newPath;
         url = buildUrl(databasePath);
-        Logger.resetPersistence();
-        initialise(runInitScript);
+        initialise(runInitScript, inMemory);
+        // El pool anterior se cierra despues de publicar el nuevo: asi no hay un intervalo en el que
+        // getConnection() encuentre un pool cerrado.
+        if (previous != null) {
+            previous.close();
+        }
     }
 
     public static Path getDatabasePath() {
@@ -71,7 +156,7 @@ public final class DBHelper {
         return "jdbc:sqlite:" + path.toAbsolutePath().toString().replace("\\", "/");
     }
 
-    private static void initialise(boolean runInitScript) {
+    private static void initialise(boolean runInitScript, boolean inMemory) {
         try {
             Files.createDirectories(databasePath.getParent());
             Class.forName("org.sqlite.JDBC");
@@ -80,16 +165,87 @@ public final class DBHelper {
             return;
         }
 
+        if (inMemory) {
+            try {
+                memoryDatabase = MemoryDatabase.open(databasePath);
+                url = memoryDatabase.url();
+            } catch (SQLException e) {
+                Logger.error(DBHelper.class, "Error cargando la base de datos en memoria; se usa el fichero", e);
+            }
+        }
+        pool = new ConnectionPool(url, POOL_MAX_SIZE, POOL_ACQUIRE_TIMEOUT);
+        List<Migration> migrations = DatabaseMigrations.all();
+        List<Migration> background = List.of();
         try (Connection conn = DriverManager.getConnection(url)) {
-            conn.createStatement().execute("PRAGMA foreign_keys = ON;");
-            if (runInitScript) {
-                executeInitScript(conn);
+            if (!SchemaMigrator.isCurrent(conn, migrations)) {
+                try (Statement st = conn.createStatement()) {
+                    st.execute("PRAGMA foreign_keys = ON;");
+                }
+                SchemaMigrator.migrate(conn, migrations);
+                if (runInitScript) {
+                    executeInitScript(conn);
+                }
+                background = SchemaMigrator.pendingBackground(conn, migrations);
             }
-            createTables(conn);
-            createIndexes(conn);
         } catch (SQLException e) {
             Logger.error(DBHelper.class, "Error al inicializar la base de datos", e);
         }
+        Logger.resetPersistence();
+        LogCounters.invalidate();
+        SchemaMigrator.scheduleBackground(background, migrations, databasePath);
+        if (memoryDatabase != null) {
+            memoryDatabase.startSnapshots(SNAPSHOT_INTERVAL);
+        }
+        DatabaseCompactor.start();
+        LogRetention.start();
+    }
+
+    /**
+     * Reconstruye la base de datos completa eliminando todo el espacio libre y la fragmentacion.
+     * <p>
+     * Con el escritor en pausa se copia la base con {@code VACUUM INTO} a un fichero temporal mientras
+     * las lecturas continuan. Despues se espera a que se devuelvan todas las conexiones y el fichero
+     * nuevo sustituye al actual con un movimiento atomico. En modo memoria se ejecuta {@code VACUUM}
+     * directamente. Es una operacion costosa que solo debe lanzarse a peticion del usuario; el
+     * mantenimiento habitual lo hace {@link DatabaseCompactor}.
+     */
+    public static synchronized void rebuildDatabaseFile() throws SQLException {
+        if (memoryDatabase != null) {
+            DBWriter.executeExclusive(conn -> {
+                try (Statement st = conn.createStatement()) {
+                    st.execute("VACUUM");
+                }
+                return null;
+            });
+            return;
+        }
+        long start = System.nanoTime();
+        Path target = databasePath;
+        Path rebuilt = target.resolveSibling(target.getFileName() + ".rebuild");
+        DBWriter.Pause pause = DBWriter.pause();
+        try {
+            Files.deleteIfExists(rebuilt);
+            try (Connection conn = getConnection(); Statement st = conn.createStatement()) {
+                st.execute("VACUUM INTO '" + rebuilt.toAbsolutePath().toString().replace("\\", "/") + "'");
+            }
+            pool.runDrained(REBUILD_DRAIN_TIMEOUT, () -> {
+                // Tras cerrar la ultima conexion SQLite ya ha volcado el -wal; se borran los restos.
+                Files.deleteIfExists(target.resolveSibling(target.getFileName() + "-wal"));
+                Files.deleteIfExists(target.resolveSibling(target.getFileName() + "-shm"));
+                Files.move(rebuilt, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            });
+        } catch (IOException e) {
+            throw new SQLException("No se pudo preparar la reconstruccion de " + target, e);
+        } finally {
+            pause.resume();
+            try {
+                Files.deleteIfExists(rebuilt);
+            } catch (IOException ignored) {
+                // Un fichero temporal huerfano se sobrescribe en la siguiente reconstruccion.
+            }
+        }
+        Logger.info(DBHelper.class, "Base de datos reconstruida en " + target
+            + " (" + (System.nanoTime() - start) / 1_000_000 + " ms)");
     }
 
     private static void executeInitScript(Connection conn) {
@@ -99,11 +255,7 @@ public final class DBHelper {
         }
         try {
             String script = Files.readString(scriptPath, StandardCharsets.UTF_8);
-            for (String rawStatement : script.split(";")) {
-                String statement = rawStatement.trim();
-                if (statement.isEmpty() || statement.startsWith("--")) {
-                    continue;
-                }
+            for (String statement : SchemaMigrator.splitStatements(script)) {
                 try (Statement st = conn.createStatement()) {
                     st.execute(statement);
                 }
@@ -113,112 +265,16 @@ public final class DBHelper {
         }
     }
 
-    private static void createTables(Connection conn) throws SQLException {
-        try (Statement statement = conn.createStatement()) {
-            statement.addBatch("""
-                CREATE TABLE IF NOT EXISTS productos (
-                    id INTEGER PRIMARY KEY AUTOINCREMENT,
-                    codigo TEXT UNIQUE NOT NULL,
-                    nombre TEXT NOT NULL,
-                    categoria TEXT,
-                    proveedor_codigo TEXT,
-                    stock INTEGER DEFAULT 0,
-                    coste REAL DEFAULT 0.0,
-                    precio REAL DEFAULT 0.0,
-                    updated_at TEXT DEFAULT CURRENT_TIMESTAMP
-                );
-            """);
-            statement.addBatch("""
-                CREATE TABLE IF NOT EXISTS proveedores (
-                    id INTEGER PRIMARY KEY AUTOINCREMENT,
-                    codigo TEXT UNIQUE NOT NULL,
-                    nombre TEXT NOT NULL,
-                    email TEXT,
-                    telefono TEXT,
-                    direccion TEXT,
-                    updated_at TEXT DEFAULT CURRENT_TIMESTAMP
-                );
-            """);
-            statement.addBatch("""
-                CREATE TABLE IF NOT EXISTS ordenes (
-                    id INTEGER PRIMARY KEY AUTOINCREMENT,
-                    codigo TEXT UNIQUE NOT NULL,
-                    fecha TEXT,
-                    proveedor_codigo TEXT,
-                    total REAL DEFAULT 0.0,
-                    estado TEXT DEFAULT 'BORRADOR',
-                    updated_at TEXT DEFAULT CURRENT_TIMESTAMP,
-                    FOREIGN KEY (proveedor_codigo) REFERENCES proveedores(codigo)
-                );
-            """);
-            statement.addBatch("""
-                CREATE TABLE IF NOT EXISTS informes (
-                    id INTEGER PRIMARY KEY AUTOINCREMENT,
-                    nombre TEXT UNIQUE NOT NULL,
-                    tipo TEXT NOT NULL,
-                    definicion_json TEXT,
-                    generado_en TEXT
-                );
-            """);
-            statement.addBatch("""
-                CREATE TABLE IF NOT EXISTS sync_queue (
-                    id INTEGER PRIMARY KEY AUTOINCREMENT,
-                    entidad TEXT NOT NULL,
-                    referencia TEXT NOT NULL,
-                    payload TEXT NOT NULL,
-                    operacion TEXT NOT NULL,
-                    estado TEXT DEFAULT 'PENDING',
-                    intentos INTEGER DEFAULT 0,
-                    ultimo_intento TEXT,
-                    creado_en TEXT DEFAULT CURRENT_TIMESTAMP
-                );
-            """);
-            statement.addBatch("""
-                CREATE TABLE IF NOT EXISTS app_logs (
-                    id INTEGER PRIMARY KEY AUTOINCREMENT,
-                    level TEXT NOT NULL,
-                    source TEXT NOT NULL,
-                    message TEXT NOT NULL,
-                    created_at TEXT DEFAULT CURRENT_TIMESTAMP
-                );
-            """);
-            statement.addBatch("""
-                CREATE TABLE IF NOT EXISTS workers (
-                    id INTEGER PRIMARY KEY AUTOINCREMENT,
-                    username TEXT UNIQUE NOT NULL,
-                    password_hash TEXT NOT NULL,
-                    nombre TEXT,
-                    rol TEXT,
-                    last_login TEXT
-                );
-            """);
-            statement.addBatch("""
-                CREATE TABLE IF NOT EXISTS document_queue (
-                    id INTEGER PRIMARY KEY AUTOINCREMENT,
-                    file_name TEXT NOT NULL,
-                    local_path TEXT NOT NULL,
-                    status TEXT DEFAULT 'PENDING',
-                    uploaded_at TEXT,
-                    metadata TEXT
-                );
-            """);
-            statement.executeBatch();
-        }
-    }
-
-    private static void createIndexes(Connection conn) throws SQLException {
-        try (Statement statement = conn.createStatement()) {
-            statement.addBatch("CREATE INDEX IF NOT EXISTS idx_productos_codigo ON productos (codigo);");
-            statement.addBatch("CREATE INDEX IF NOT EXISTS idx_proveedores_codigo ON proveedores (codigo);");
-            statement.addBatch("CREATE INDEX IF NOT EXISTS idx_ordenes_codigo ON ordenes (codigo);");
-            statement.addBatch("CREATE INDEX IF NOT EXISTS idx_sync_estado ON sync_queue (estado);");
-            statement.addBatch("CREATE INDEX IF NOT EXISTS idx_logs_level ON app_logs (level);");
-            statement.addBatch("CREATE INDEX IF NOT EXISTS idx_workers_username ON workers (username);");
-            statement.executeBatch();
+    public static Connection getConnection() throws SQLException {
+        ConnectionPool current = pool;
+        if (current == null) {
+            throw new SQLException("La base de datos no esta inicializada: " + databasePath);
         }
+        return current.acquire();
     }
 
-    public static Connection getConnection() throws SQLException {
-        return DriverManager.getConnection(url);
+    public static PoolStats poolStats() {
+        ConnectionPool current = pool;
+        return current != null ? current.stats() : new PoolStats(POOL_MAX_SIZE, 0, 0, 0, 0, 0, 0, 0, 0, 0);
     }
 }
@@ -0,0 +1,388 @@
+package atlasledger.utils;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Escritor unico de la base de datos con commit agrupado.
+ * <p>
+ * SQLite solo admite un escritor a la vez, asi que todas las escrituras de la aplicacion se encolan
+ * aqui y las ejecuta un unico hilo. Cuando hay escrituras concurrentes, el hilo agrupa los comandos
+ * que llegan en una ventana de pocos milisegundos (o hasta {@link #MAX_BATCH} comandos) dentro de una
+ * sola transaccion, de forma que muchas escrituras pequenas comparten un unico commit y un unico fsync.
+ * <p>
+ * Cada comando se ejecuta dentro de su propio savepoint: si falla, solo se deshacen sus cambios y su
+ * {@link CompletableFuture} termina con la excepcion, sin afectar al resto del lote.
+ * <p>
+ * Los comandos enviados con {@link #submitExclusive} se ejecutan solos y fuera de transaccion, en
+ * orden con el resto de la cola. Sirven para operaciones que SQLite no admite dentro de una
+ * transaccion (copias de seguridad, {@code VACUUM}) y que no deben solaparse con otras escrituras.
+ *
+ * <h2>Usage Example</h2>
+ * <pre>
+ * int filas = DBWriter.execute(conn -> {
+ *     try (PreparedStatement ps = conn.prepareStatement(sql)) {
+ *         ps.setString(1, codigo);
+ *         return ps.executeUpdate();
+ *     }
+ * });
+ * </pre>
+ */
+public final class DBWriter {
+
+    static final int MAX_BATCH = 256;
+    private static final long MAX_DELAY_NANOS = TimeUnit.MILLISECONDS.toNanos(2);
+
+    private static final BlockingQueue<PendingWrite<?>> QUEUE = new LinkedBlockingQueue<>();
+    private static final ThreadLocal<Connection> CURRENT = new ThreadLocal<>();
+    private static volatile Thread writerThread;
+    private static volatile boolean busy;
+    private static volatile long lastActivityNanos = System.nanoTime();
+
+    private DBWriter() {
+    }
+
+    @FunctionalInterface
+    public interface WriteCommand<T> {
+        T execute(Connection conn) throws SQLException;
+    }
+
+    /**
+     * Encola un comando de escritura. Si se invoca desde el propio hilo escritor (por ejemplo, un
+     * comando que llama a otro DAO) se ejecuta directamente dentro de la transaccion en curso.
+     */
+    public static <T> CompletableFuture<T> submit(WriteCommand<T> command) {
+        return enqueue(command, false);
+    }
+
+    /**
+     * Encola un comando que se ejecutara solo, con autocommit y sin escrituras concurrentes.
+     */
+    public static <T> CompletableFuture<T> submitExclusive(WriteCommand<T> command) {
+        return enqueue(command, true);
+    }
+
+    /**
+     * Tiempo transcurrido desde la ultima escritura, o cero si hay escrituras en curso o encoladas.
+     */
+    public static long idleNanos() {
+        if (busy || !QUEUE.isEmpty()) {
+            return 0;
+        }
+        return System.nanoTime() - lastActivityNanos;
+    }
+
+    /**
+     * Detiene el hilo escritor, sin retener ninguna conexion, hasta que se llame a {@link Pause#resume()}
+     * sobre la pausa devuelta. Las escrituras que lleguen mientras tanto esperan en la cola. No debe
+     * llamarse desde un comando de escritura.
+     */
+    static Pause pause() throws SQLException {
+        Pause pause = new Pause();
+        ensureStarted();
+        QUEUE.add(new PendingWrite<Void>(conn -> {
+            pause.paused.countDown();
+            pause.awaitResume();
+            return null;
+        }, Kind.PAUSE));
+        try {
+            pause.paused.await();
+        } catch (InterruptedException e) {
+            pause.resume();
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrumpido esperando al escritor", e);
+        }
+        return pause;
+    }
+
+    private static <T> CompletableFuture<T> enqueue(WriteCommand<T> command, boolean exclusive) {
+        Connection current = CURRENT.get();
+        if (current != null) {
+            try {
+                return CompletableFuture.completedFuture(command.execute(current));
+            } catch (SQLException | RuntimeException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+        if (Thread.currentThread() == writerThread) {
+            // Callback de un future completado por el escritor: no puede esperar a su propia cola.
+            try (Connection conn = DBHelper.getConnection()) {
+                return CompletableFuture.completedFuture(command.execute(conn));
+            } catch (SQLException | RuntimeException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+        ensureStarted();
+        PendingWrite<T> pending = new PendingWrite<>(command, exclusive ? Kind.EXCLUSIVE : Kind.BATCHED);
+        QUEUE.add(pending);
+        return pending.future;
+    }
+
+    /**
+     * Encola un comando y espera a que su lote se confirme.
+     */
+    public static <T> T execute(WriteCommand<T> command) throws SQLException {
+        return await(submit(command));
+    }
+
+    /**
+     * Version bloqueante de {@link #submitExclusive}.
+     */
+    public static <T> T executeExclusive(WriteCommand<T> command) throws SQLException {
+        return await(submitExclusive(command));
+    }
+
+    private static <T> T await(CompletableFuture<T> future) throws SQLException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrumpido esperando la escritura", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException sqlException) {
+                throw sqlException;
+            }
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new SQLException("Error ejecutando escritura", cause);
+        }
+    }
+
+    /**
+     * Indica si el hilo actual es el escritor o esta ejecutando un comando de escritura. Desde aqui no
+     * se puede esperar a nada que dependa de que el escritor avance.
+     */
+    static boolean isWriterThread() {
+        return CURRENT.get() != null || Thread.currentThread() == writerThread;
+    }
+
+    /**
+     * Espera a que se confirmen todas las escrituras encoladas hasta este momento.
+     */
+    public static void flush() {
+        if (CURRENT.get() != null) {
+            return;
+        }
+        try {
+            execute(conn -> null);
+        } catch (SQLException e) {
+            Logger.warn(DBWriter.class, "No se pudo vaciar la cola de escritura: " + e.getMessage());
+        }
+    }
+
+    private static synchronized void ensureStarted() {
+        if (writerThread != null && writerThread.isAlive()) {
+            return;
+        }
+        writerThread = new Thread(DBWriter::run, "atlasledger-db-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    private static void run() {
+        List<PendingWrite<?>> batch = new ArrayList<>(MAX_BATCH);
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                collectBatch(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            busy = true;
+            try {
+                process(batch);
+            } finally {
+                lastActivityNanos = System.nanoTime();
+                busy = false;
+            }
+            batch.clear();
+        }
+        PendingWrite<?> pending;
+        while ((pending = QUEUE.poll()) != null) {
+            pending.future.completeExceptionally(new SQLException("El escritor de base de datos se ha detenido"));
+        }
+    }
+
+    private static void collectBatch(List<PendingWrite<?>> batch) throws InterruptedException {
+        batch.add(QUEUE.take());
+        QUEUE.drainTo(batch, MAX_BATCH - batch.size());
+        if (batch.size() == 1) {
+            // Sin concurrencia no compensa esperar: una escritura aislada se confirma de inmediato.
+            return;
+        }
+        long deadline = System.nanoTime() + MAX_DELAY_NANOS;
+        while (batch.size() < MAX_BATCH) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                break;
+            }
+            PendingWrite<?> next = QUEUE.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                break;
+            }
+            batch.add(next);
+            QUEUE.drainTo(batch, MAX_BATCH - batch.size());
+        }
+    }
+
+    /**
+     * Confirma el lote por tramos: los comandos normales consecutivos comparten transaccion y cada
+     * comando exclusivo se ejecuta aparte, respetando el orden de llegada.
+     */
+    private static void process(List<PendingWrite<?>> batch) {
+        int start = 0;
+        for (int i = 0; i < batch.size(); i++) {
+            PendingWrite<?> pending = batch.get(i);
+            if (pending.kind != Kind.BATCHED) {
+                commitBatch(batch.subList(start, i));
+                if (pending.kind == Kind.PAUSE) {
+                    runWithoutConnection(pending);
+                } else {
+                    runExclusive(pending);
+                }
+                start = i + 1;
+            }
+        }
+        commitBatch(batch.subList(start, batch.size()));
+    }
+
+    private static void runExclusive(PendingWrite<?> pending) {
+        try (Connection conn = DBHelper.getConnection()) {
+            CURRENT.set(conn);
+            try {
+                pending.runDirectly(conn);
+            } finally {
+                CURRENT.remove();
+            }
+        } catch (SQLException | RuntimeException e) {
+            pending.future.completeExceptionally(e);
+        }
+    }
+
+    private static void runWithoutConnection(PendingWrite<?> pending) {
+        try {
+            pending.runDirectly(null);
+        } catch (SQLException | RuntimeException e) {
+            pending.future.completeExceptionally(e);
+        }
+    }
+
+    private static void commitBatch(List<PendingWrite<?>> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        List<PendingWrite<?>> succeeded = new ArrayList<>(batch.size());
+        try (Connection conn = DBHelper.getConnection()) {
+            conn.setAutoCommit(false);
+            CURRENT.set(conn);
+            try {
+                for (PendingWrite<?> pending : batch) {
+                    if (pending.run(conn)) {
+                        succeeded.add(pending);
+                    }
+                }
+                conn.commit();
+            } finally {
+                CURRENT.remove();
+            }
+        } catch (SQLException | RuntimeException e) {
+            Logger.error(DBWriter.class, "Error confirmando lote de escrituras", e);
+            for (PendingWrite<?> pending : succeeded) {
+                pending.future.completeExceptionally(e);
+            }
+            for (PendingWrite<?> pending : batch) {
+                if (!pending.future.isDone()) {
+                    pending.future.completeExceptionally(e);
+                }
+            }
+            return;
+        }
+        for (PendingWrite<?> pending : succeeded) {
+            pending.complete();
+        }
+    }
+
+    private static final class PendingWrite<T> {
+
+        private final WriteCommand<T> command;
+        private final Kind kind;
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+        private T result;
+
+        private PendingWrite(WriteCommand<T> command, Kind kind) {
+            this.command = command;
+            this.kind = kind;
+        }
+
+        private void runDirectly(Connection conn) throws SQLException {
+            future.complete(command.execute(conn));
+        }
+
+        /**
+         * Ejecuta el comando dentro de un savepoint. Devuelve {@code false} si fallo, en cuyo caso
+         * sus cambios ya se han deshecho y el future se ha completado con el error.
+         */
+        private boolean run(Connection conn) throws SQLException {
+            Savepoint savepoint = conn.setSavepoint();
+            try {
+                result = command.execute(conn);
+                conn.releaseSavepoint(savepoint);
+                return true;
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback(savepoint);
+                conn.releaseSavepoint(savepoint);
+                future.completeExceptionally(e);
+                return false;
+            }
+        }
+
+        private void complete() {
+            future.complete(result);
+        }
+    }
+
+    private enum Kind {
+        BATCHED,
+        EXCLUSIVE,
+        PAUSE
+    }
+
+    /**
+     * Pausa del hilo escritor obtenida con {@link #pause()}; {@link #resume()} reanuda las escrituras.
+     */
+    static final class Pause {
+
+        private final CountDownLatch paused = new CountDownLatch(1);
+        private final CountDownLatch resumed = new CountDownLatch(1);
+
+        /**
+         * Se ejecuta en el hilo escritor. La pausa solo termina con {@link #resume()}: una interrupcion
+         * se descarta, porque conservarla detendria el escritor al volver al bucle principal.
+         */
+        private void awaitResume() {
+            while (true) {
+                try {
+                    resumed.await();
+                    return;
+                } catch (InterruptedException e) {
+                    Logger.warn(DBWriter.class, "Interrupcion ignorada durante una pausa del escritor");
+                }
+            }
+        }
+
+        void resume() {
+            resumed.countDown();
+        }
+    }
+}
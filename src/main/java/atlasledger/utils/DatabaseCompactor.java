@@ -0,0 +1,175 @@
+package atlasledger.utils;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compactacion incremental de la base de datos.
+ * <p>
+ * Con {@code auto_vacuum = INCREMENTAL} (activado por la migracion 4) SQLite guarda las paginas
+ * liberadas en una lista libre y {@code PRAGMA incremental_vacuum(N)} devuelve hasta {@code N} de
+ * ellas al sistema de ficheros moviendo solo las paginas del final. Cada paso es un comando corto de
+ * {@link DBWriter}, asi que las escrituras de la aplicacion nunca esperan mas que un paso.
+ * <p>
+ * Una tarea periodica lanza pasos de {@value #PAGES_PER_STEP} paginas cuando el escritor lleva
+ * {@link #IDLE_THRESHOLD} sin trabajo y la lista libre supera {@value #MIN_FREE_PAGES} paginas. Si
+ * llega una escritura entre dos pasos, la tarea se detiene hasta la siguiente comprobacion.
+ * <p>
+ * La reconstruccion completa del fichero ({@code VACUUM INTO} y sustitucion) solo se hace cuando se
+ * pide expresamente con {@link DBHelper#rebuildDatabaseFile()}.
+ */
+public final class DatabaseCompactor {
+
+    public static final int AUTO_VACUUM_INCREMENTAL = 2;
+    public static final int PAGES_PER_STEP = 256;
+
+    private static final Duration CHECK_INTERVAL = Duration.ofSeconds(30);
+    private static final Duration IDLE_THRESHOLD = Duration.ofSeconds(5);
+    private static final int MIN_FREE_PAGES = 64;
+    private static final int MAX_STEPS_PER_CHECK = 16;
+
+    private static ScheduledExecutorService scheduler;
+
+    private DatabaseCompactor() {
+    }
+
+    /**
+     * Estado de ocupacion del fichero de base de datos.
+     *
+     * @param pageSize      tamano de pagina en bytes
+     * @param pageCount     paginas del fichero
+     * @param freelistCount paginas libres dentro del fichero
+     * @param autoVacuum    modo de {@code PRAGMA auto_vacuum} (0 ninguno, 1 completo, 2 incremental)
+     */
+    public record CompactionStats(long pageSize, long pageCount, long freelistCount, int autoVacuum) {
+
+        public long fileBytes() {
+            return pageSize * pageCount;
+        }
+
+        public long freeBytes() {
+            return pageSize * freelistCount;
+        }
+
+        /**
+         * Fraccion del fichero ocupada por paginas libres, entre 0 y 1.
+         */
+        public double fragmentation() {
+            return pageCount == 0 ? 0.0 : freelistCount / (double) pageCount;
+        }
+
+        public boolean isIncremental() {
+            return autoVacuum == AUTO_VACUUM_INCREMENTAL;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d paginas de %d bytes, %d libres (%.1f%%), auto_vacuum=%d",
+                pageCount, pageSize, freelistCount, fragmentation() * 100, autoVacuum);
+        }
+    }
+
+    static synchronized void start() {
+        if (scheduler != null) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "atlasledger-compactor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long millis = CHECK_INTERVAL.toMillis();
+        scheduler.scheduleWithFixedDelay(DatabaseCompactor::compactWhileIdle, millis, millis, TimeUnit.MILLISECONDS);
+    }
+
+    public static CompactionStats stats() throws SQLException {
+        try (Connection conn = DBHelper.getConnection()) {
+            return stats(conn);
+        }
+    }
+
+    static CompactionStats stats(Connection conn) throws SQLException {
+        return new CompactionStats(
+            pragma(conn, "page_size"),
+            pragma(conn, "page_count"),
+            pragma(conn, "freelist_count"),
+            (int) pragma(conn, "auto_vacuum")
+        );
+    }
+
+    static int autoVacuumMode(Connection conn) throws SQLException {
+        return (int) pragma(conn, "auto_vacuum");
+    }
+
+    /**
+     * Libera todas las paginas libres en pasos de {@value #PAGES_PER_STEP}, sin esperar a que el
+     * escritor este ocioso.
+     *
+     * @return paginas devueltas al sistema de ficheros
+     */
+    public static long compactNow() throws SQLException {
+        long released = 0;
+        long step;
+        while ((step = step()) > 0) {
+            released += step;
+        }
+        return released;
+    }
+
+    /**
+     * Ejecuta pasos de compactacion mientras el escritor siga ocioso, hasta un maximo por comprobacion.
+     *
+     * @return paginas devueltas al sistema de ficheros
+     */
+    static long compactWhileIdle() {
+        long released = 0;
+        try {
+            if (DBWriter.idleNanos() < IDLE_THRESHOLD.toNanos() || stats().freelistCount() < MIN_FREE_PAGES) {
+                return 0;
+            }
+            for (int i = 0; i < MAX_STEPS_PER_CHECK; i++) {
+                long step = step();
+                released += step;
+                // El propio paso cuenta como actividad; solo se mira si han llegado escrituras nuevas.
+                if (step == 0 || DBWriter.idleNanos() == 0) {
+                    break;
+                }
+            }
+            if (released > 0) {
+                Logger.info(DatabaseCompactor.class, "Compactacion incremental: " + released + " paginas liberadas");
+            }
+        } catch (SQLException | RuntimeException e) {
+            Logger.error(DatabaseCompactor.class, "Error en la compactacion incremental", e);
+        }
+        return released;
+    }
+
+    private static long step() throws SQLException {
+        return DBWriter.execute(conn -> {
+            if (autoVacuumMode(conn) != AUTO_VACUUM_INCREMENTAL) {
+                return 0L;
+            }
+            long before = pragma(conn, "freelist_count");
+            if (before == 0) {
+                return 0L;
+            }
+            // Con execute() el controlador solo avanza un paso del PRAGMA y libera una pagina.
+            try (Statement st = conn.createStatement()) {
+                st.executeUpdate("PRAGMA incremental_vacuum(" + PAGES_PER_STEP + ")");
+            }
+            return before - pragma(conn, "freelist_count");
+        });
+    }
+
+    private static long pragma(Connection conn, String name) throws SQLException {
+        try (Statement st = conn.createStatement(); ResultSet rs = st.executeQuery("PRAGMA " + name)) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+}
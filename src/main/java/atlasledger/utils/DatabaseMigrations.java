@@ -0,0 +1,191 @@
+package atlasledger.utils;
+
+import java.sql.Statement;
+import java.util.List;
+
+/**
+ * Catalogo ordenado de las migraciones del esquema de AtlasLedger.
+ * <p>
+ * Las migraciones ya publicadas no deben modificarse: cualquier cambio de esquema se anade como una
+ * version nueva al final de la lista.
+ */
+final class DatabaseMigrations {
+
+    private static final List<Migration> MIGRATIONS = List.of(
+        Migration.sql(1, "Esquema base",
+            """
+            CREATE TABLE IF NOT EXISTS productos (
+                id INTEGER PRIMARY KEY AUTOINCREMENT,
+                codigo TEXT UNIQUE NOT NULL,
+                nombre TEXT NOT NULL,
+                categoria TEXT,
+                proveedor_codigo TEXT,
+                stock INTEGER DEFAULT 0,
+                coste REAL DEFAULT 0.0,
+                precio REAL DEFAULT 0.0,
+                updated_at TEXT DEFAULT CURRENT_TIMESTAMP
+            )
+            """,
+            """
+            CREATE TABLE IF NOT EXISTS proveedores (
+                id INTEGER PRIMARY KEY AUTOINCREMENT,
+                codigo TEXT UNIQUE NOT NULL,
+                nombre TEXT NOT NULL,
+                email TEXT,
+                telefono TEXT,
+                direccion TEXT,
+                updated_at TEXT DEFAULT CURRENT_TIMESTAMP
+            )
+            """,
+            """
+            CREATE TABLE IF NOT EXISTS ordenes (
+                id INTEGER PRIMARY KEY AUTOINCREMENT,
+                codigo TEXT UNIQUE NOT NULL,
+                fecha TEXT,
+                proveedor_codigo TEXT,
+                total REAL DEFAULT 0.0,
+                estado TEXT DEFAULT 'BORRADOR',
+                updated_at TEXT DEFAULT CURRENT_TIMESTAMP,
+                FOREIGN KEY (proveedor_codigo) REFERENCES proveedores(codigo)
+            )
+            """,
+            """
+            CREATE TABLE IF NOT EXISTS informes (
+                id INTEGER PRIMARY KEY AUTOINCREMENT,
+                nombre TEXT UNIQUE NOT NULL,
+                tipo TEXT NOT NULL,
+                definicion_json TEXT,
+                generado_en TEXT
+            )
+            """,
+            """
+            CREATE TABLE IF NOT EXISTS sync_queue (
+                id INTEGER PRIMARY KEY AUTOINCREMENT,
+                entidad TEXT NOT NULL,
+                referencia TEXT NOT NULL,
+                payload TEXT NOT NULL,
+                operacion TEXT NOT NULL,
+                estado TEXT DEFAULT 'PENDING',
+                intentos INTEGER DEFAULT 0,
+                ultimo_intento TEXT,
+                creado_en TEXT DEFAULT CURRENT_TIMESTAMP
+            )
+            """,
+            """
+            CREATE TABLE IF NOT EXISTS app_logs (
+                id INTEGER PRIMARY KEY AUTOINCREMENT,
+                level TEXT NOT NULL,
+                source TEXT NOT NULL,
+                message TEXT NOT NULL,
+                created_at TEXT DEFAULT CURRENT_TIMESTAMP
+            )
+            """,
+            """
+            CREATE TABLE IF NOT EXISTS workers (
+                id INTEGER PRIMARY KEY AUTOINCREMENT,
+                username TEXT UNIQUE NOT NULL,
+                password_hash TEXT NOT NULL,
+                nombre TEXT,
+                rol TEXT,
+                last_login TEXT
+            )
+            """,
+            """
+            CREATE TABLE IF NOT EXISTS document_queue (
+                id INTEGER PRIMARY KEY AUTOINCREMENT,
+                file_name TEXT NOT NULL,
+                local_path TEXT NOT NULL,
+                status TEXT DEFAULT 'PENDING',
+                uploaded_at TEXT,
+                metadata TEXT
+            )
+            """
+        ),
+        Migration.sql(2, "Indices base",
+            "CREATE INDEX IF NOT EXISTS idx_productos_codigo ON productos (codigo)",
+            "CREATE INDEX IF NOT EXISTS idx_proveedores_codigo ON proveedores (codigo)",
+            "CREATE INDEX IF NOT EXISTS idx_ordenes_codigo ON ordenes (codigo)",
+            "CREATE INDEX IF NOT EXISTS idx_sync_estado ON sync_queue (estado)",
+            "CREATE INDEX IF NOT EXISTS idx_logs_level ON app_logs (level)",
+            "CREATE INDEX IF NOT EXISTS idx_workers_username ON workers (username)"
+        ).inBackground(),
+        Migration.sql(3, "Indices segun consultas auditadas",
+            "DROP INDEX IF EXISTS idx_sync_estado",
+            "CREATE INDEX IF NOT EXISTS idx_sync_estado_creado ON sync_queue (estado, creado_en)",
+            "CREATE INDEX IF NOT EXISTS idx_ordenes_fecha ON ordenes (fecha)",
+            "CREATE INDEX IF NOT EXISTS idx_ordenes_mes ON ordenes (strftime('%Y-%m', fecha), total)",
+            "CREATE INDEX IF NOT EXISTS idx_productos_categoria ON productos (categoria, precio, stock)",
+            "CREATE INDEX IF NOT EXISTS idx_productos_proveedor ON productos (proveedor_codigo, stock)",
+            "CREATE INDEX IF NOT EXISTS idx_productos_nombre ON productos (nombre)",
+            "CREATE INDEX IF NOT EXISTS idx_proveedores_nombre ON proveedores (nombre)",
+            "CREATE INDEX IF NOT EXISTS idx_document_queue_status ON document_queue (status)"
+        ).inBackground(),
+        // auto_vacuum solo cambia en una base existente tras reconstruirla con VACUUM.
+        Migration.java(4, "Auto vacuum incremental", "PRAGMA auto_vacuum = INCREMENTAL; VACUUM", conn -> {
+            if (DatabaseCompactor.autoVacuumMode(conn) == DatabaseCompactor.AUTO_VACUUM_INCREMENTAL) {
+                return;
+            }
+            try (Statement st = conn.createStatement()) {
+                st.execute("PRAGMA auto_vacuum = INCREMENTAL");
+                st.execute("VACUUM");
+            }
+        }).inBackground().nonTransactional(),
+        Migration.sql(5, "Indice de fecha en app_logs",
+            "CREATE INDEX IF NOT EXISTS idx_logs_created ON app_logs (created_at)"
+        ).inBackground(),
+        Migration.sql(6, "Contadores de logs",
+            """
+            CREATE TABLE IF NOT EXISTS app_log_counters (
+                level TEXT NOT NULL,
+                source TEXT NOT NULL,
+                hour TEXT NOT NULL,
+                total INTEGER NOT NULL DEFAULT 0,
+                PRIMARY KEY (level, source, hour)
+            ) WITHOUT ROWID
+            """,
+            """
+            INSERT INTO app_log_counters (level, source, hour, total)
+            SELECT level, source, COALESCE(strftime('%Y-%m-%d %H:00', created_at), ''), COUNT(*)
+            FROM app_logs
+            GROUP BY 1, 2, 3
+            """
+        ),
+        Migration.sql(7, "Reintentos con espera y descarte en sync_queue",
+            "ALTER TABLE sync_queue ADD COLUMN proximo_intento INTEGER NOT NULL DEFAULT 0",
+            "ALTER TABLE sync_queue ADD COLUMN ultimo_error TEXT",
+            "DROP INDEX IF EXISTS idx_sync_estado_creado",
+            "CREATE INDEX IF NOT EXISTS idx_sync_estado_proximo ON sync_queue (estado, proximo_intento)",
+            "CREATE INDEX IF NOT EXISTS idx_sync_registro ON sync_queue (entidad, referencia, estado)"
+        ),
+        Migration.sql(8, "Marcas y huellas de la descarga incremental",
+            """
+            CREATE TABLE IF NOT EXISTS sync_marcas (
+                entidad TEXT PRIMARY KEY,
+                marca TEXT,
+                etag TEXT,
+                actualizado_en TEXT DEFAULT CURRENT_TIMESTAMP
+            ) WITHOUT ROWID
+            """,
+            """
+            CREATE TABLE IF NOT EXISTS sync_huellas (
+                entidad TEXT NOT NULL,
+                codigo TEXT NOT NULL,
+                hash TEXT NOT NULL,
+                PRIMARY KEY (entidad, codigo)
+            ) WITHOUT ROWID
+            """
+        ),
+        // En una base nueva V3 se aplica en segundo plano despues de V7 y vuelve a crear el indice que
+        // V7 retira; esta version va tambien en segundo plano para ejecutarse detras de V3.
+        Migration.sql(9, "Retirar idx_sync_estado_creado recreado por V3",
+            "DROP INDEX IF EXISTS idx_sync_estado_creado"
+        ).inBackground()
+    );
+
+    private DatabaseMigrations() {
+    }
+
+    static List<Migration> all() {
+        return MIGRATIONS;
+    }
+}
@@ -0,0 +1,125 @@
+package atlasledger.utils;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Flujo que entrega un texto codificado en UTF-8 y comprimido en formato gzip a medida que se lee.
+ * <p>
+ * El texto se codifica y se comprime por tramos de {@link #CHUNK_SIZE} bytes, de modo que ni la version
+ * en bytes ni la comprimida llegan a existir enteras en memoria; sirve como cuerpo de una peticion HTTP
+ * con {@code Content-Encoding: gzip} y longitud desconocida.
+ */
+public final class GzipEncodingStream extends InputStream {
+
+    private static final int CHUNK_SIZE = 8192;
+    private static final byte[] HEADER = {
+        0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff
+    };
+
+    private final CharBuffer source;
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+        .onMalformedInput(CodingErrorAction.REPLACE)
+        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private final ByteBuffer encoded = ByteBuffer.allocate(CHUNK_SIZE);
+    private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+    private final CRC32 crc = new CRC32();
+    private long size;
+    private boolean encoderFlushed;
+
+    // Cabecera o cola pendientes de entregar.
+    private byte[] pending = HEADER;
+    private int pendingPos;
+    private boolean trailerWritten;
+
+    public GzipEncodingStream(CharSequence text) {
+        this.source = CharBuffer.wrap(text);
+    }
+
+    @Override
+    public int read() {
+        byte[] one = new byte[1];
+        int n = read(one, 0, 1);
+        return n < 0 ? -1 : one[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) {
+        if (length == 0) {
+            return 0;
+        }
+        while (true) {
+            if (pending != null) {
+                int n = Math.min(length, pending.length - pendingPos);
+                System.arraycopy(pending, pendingPos, buffer, offset, n);
+                pendingPos += n;
+                if (pendingPos == pending.length) {
+                    pending = null;
+                }
+                return n;
+            }
+            if (deflater.finished()) {
+                if (trailerWritten) {
+                    return -1;
+                }
+                trailerWritten = true;
+                deflater.end();
+                pending = trailer();
+                pendingPos = 0;
+                continue;
+            }
+            if (deflater.needsInput()) {
+                feed();
+            }
+            int n = deflater.deflate(buffer, offset, length);
+            if (n > 0) {
+                return n;
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        if (!trailerWritten) {
+            trailerWritten = true;
+            deflater.end();
+        }
+    }
+
+    /**
+     * Codifica el siguiente tramo del texto y lo pasa al compresor, o lo cierra si no queda texto.
+     */
+    private void feed() {
+        encoded.clear();
+        if (source.hasRemaining()) {
+            encoder.encode(source, encoded, true);
+        } else if (!encoderFlushed) {
+            // Con el texto vacio el codificador aun no ha visto el final de la entrada y no admite flush.
+            encoder.encode(source, encoded, true);
+            encoder.flush(encoded);
+            encoderFlushed = true;
+        }
+        encoded.flip();
+        if (!encoded.hasRemaining()) {
+            deflater.finish();
+            return;
+        }
+        crc.update(encoded.array(), 0, encoded.limit());
+        size += encoded.limit();
+        deflater.setInput(encoded.array(), 0, encoded.limit());
+    }
+
+    private byte[] trailer() {
+        long checksum = crc.getValue();
+        return new byte[] {
+            (byte) checksum, (byte) (checksum >> 8), (byte) (checksum >> 16), (byte) (checksum >> 24),
+            (byte) size, (byte) (size >> 8), (byte) (size >> 16), (byte) (size >> 24)
+        };
+    }
+}
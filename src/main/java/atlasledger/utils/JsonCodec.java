@@ -0,0 +1,375 @@
+package atlasledger.utils;
+
+import atlasledger.model.Informe;
+import atlasledger.model.Orden;
+import atlasledger.model.Producto;
+import atlasledger.model.Proveedor;
+import java.io.IOException;
+import java.io.StringReader;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Map;
+
+/**
+ * Conversion a y desde JSON de las entidades que viajan en la cola de sincronizacion y de los informes.
+ * <p>
+ * Se escribe a mano, campo a campo, sobre un {@link StringBuilder} por hilo que se reutiliza entre
+ * llamadas, sin {@code String.format}, expresiones regulares ni reflexion. Las cadenas se escapan segun
+ * JSON (comillas, barras, caracteres de control y los separadores U+2028 y U+2029, que algunos
+ * interpretes de JavaScript no aceptan sin escapar) y los importes se escriben con dos decimales, como
+ * hasta ahora en la cola. La lectura usa {@link JsonReader} y acepta los campos en cualquier orden,
+ * ignorando los desconocidos.
+ */
+public final class JsonCodec {
+
+    private static final int INITIAL_CAPACITY = 256;
+    // Un buffer que ha crecido mucho por un valor enorme no se conserva para no retener esa memoria.
+    private static final int MAX_RETAINED_CAPACITY = 16 * 1024;
+    private static final ThreadLocal<StringBuilder> BUFFER = ThreadLocal.withInitial(() -> new StringBuilder(INITIAL_CAPACITY));
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    // Por encima de este valor los centimos no caben con precision en un long.
+    private static final double MAX_FIXED = 1e15;
+
+    private JsonCodec() {
+    }
+
+    public static String encode(Producto producto) {
+        StringBuilder out = buffer();
+        out.append("{\"codigo\":");
+        appendString(out, producto.getCodigo());
+        out.append(",\"nombre\":");
+        appendString(out, producto.getNombre());
+        out.append(",\"categoria\":");
+        appendString(out, producto.getCategoria());
+        out.append(",\"proveedorCodigo\":");
+        appendString(out, producto.getProveedorCodigo());
+        out.append(",\"stock\":").append(producto.getStock());
+        out.append(",\"coste\":");
+        appendAmount(out, producto.getCoste());
+        out.append(",\"precio\":");
+        appendAmount(out, producto.getPrecio());
+        return out.append('}').toString();
+    }
+
+    public static String encode(Proveedor proveedor) {
+        StringBuilder out = buffer();
+        out.append("{\"codigo\":");
+        appendString(out, proveedor.getCodigo());
+        out.append(",\"nombre\":");
+        appendString(out, proveedor.getNombre());
+        out.append(",\"email\":");
+        appendString(out, proveedor.getEmail());
+        out.append(",\"telefono\":");
+        appendString(out, proveedor.getTelefono());
+        out.append(",\"direccion\":");
+        appendString(out, proveedor.getDireccion());
+        return out.append('}').toString();
+    }
+
+    /**
+     * Una orden sin estado se escribe como {@code BORRADOR}, el estado inicial.
+     */
+    public static String encode(Orden orden) {
+        StringBuilder out = buffer();
+        out.append("{\"codigo\":");
+        appendString(out, orden.getCodigo());
+        out.append(",\"fecha\":");
+        appendString(out, orden.getFecha() != null ? orden.getFecha().toString() : null);
+        out.append(",\"proveedorCodigo\":");
+        appendString(out, orden.getProveedorCodigo());
+        out.append(",\"total\":");
+        appendAmount(out, orden.getTotal());
+        out.append(",\"estado\":\"")
+            .append(orden.getEstado() != null ? orden.getEstado().name() : Orden.Estado.BORRADOR.name());
+        return out.append("\"}").toString();
+    }
+
+    /**
+     * La definicion del informe ya es JSON, pero se guarda como cadena para no depender de que sea valida.
+     */
+    public static String encode(Informe informe) {
+        StringBuilder out = buffer();
+        out.append("{\"id\":").append(informe.getId()).append(",\"nombre\":");
+        appendString(out, informe.getNombre());
+        out.append(",\"tipo\":");
+        appendString(out, informe.getTipo() != null ? informe.getTipo().name() : null);
+        out.append(",\"definicionJson\":");
+        appendString(out, informe.getDefinicionJson());
+        out.append(",\"generadoEn\":");
+        appendString(out, informe.getGeneradoEn() != null ? informe.getGeneradoEn().toString() : null);
+        return out.append('}').toString();
+    }
+
+    /**
+     * Carga de un borrado: solo identifica el registro.
+     */
+    public static String encodeReference(String codigo) {
+        StringBuilder out = buffer();
+        out.append("{\"codigo\":");
+        appendString(out, codigo);
+        return out.append('}').toString();
+    }
+
+    /**
+     * Definicion de un informe: resumen y desglose. Los enteros se escriben tal cual y el resto con dos
+     * decimales.
+     */
+    public static String encodeReport(Map<String, Number> summary, String breakdownLabel, Map<String, Number> breakdown) {
+        StringBuilder out = buffer();
+        out.append("{\"summary\":");
+        appendNumbers(out, summary);
+        out.append(",\"breakdownLabel\":");
+        appendString(out, breakdownLabel);
+        out.append(",\"breakdown\":");
+        appendNumbers(out, breakdown);
+        return out.append('}').toString();
+    }
+
+    public static Producto decodeProducto(String json) throws IOException {
+        return readProducto(new JsonReader(new StringReader(json)));
+    }
+
+    public static Proveedor decodeProveedor(String json) throws IOException {
+        return readProveedor(new JsonReader(new StringReader(json)));
+    }
+
+    public static Orden decodeOrden(String json) throws IOException {
+        return readOrden(new JsonReader(new StringReader(json)));
+    }
+
+    public static Informe decodeInforme(String json) throws IOException {
+        return readInforme(new JsonReader(new StringReader(json)));
+    }
+
+    /**
+     * Lee el siguiente objeto como producto. Los campos ausentes o nulos quedan vacios o a cero.
+     */
+    public static Producto readProducto(JsonReader reader) throws IOException {
+        Producto producto = new Producto();
+        producto.setCodigo("");
+        producto.setNombre("");
+        producto.setCategoria("");
+        producto.setProveedorCodigo("");
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "codigo" -> producto.setCodigo(readString(reader));
+                case "nombre" -> producto.setNombre(readString(reader));
+                case "categoria" -> producto.setCategoria(readString(reader));
+                case "proveedorCodigo" -> producto.setProveedorCodigo(readString(reader));
+                case "stock" -> producto.setStock(readInt(reader));
+                case "coste" -> producto.setCoste(readDouble(reader));
+                case "precio" -> producto.setPrecio(readDouble(reader));
+                default -> reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return producto;
+    }
+
+    public static Proveedor readProveedor(JsonReader reader) throws IOException {
+        Proveedor proveedor = new Proveedor();
+        proveedor.setCodigo("");
+        proveedor.setNombre("");
+        proveedor.setEmail("");
+        proveedor.setTelefono("");
+        proveedor.setDireccion("");
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "codigo" -> proveedor.setCodigo(readString(reader));
+                case "nombre" -> proveedor.setNombre(readString(reader));
+                case "email" -> proveedor.setEmail(readString(reader));
+                case "telefono" -> proveedor.setTelefono(readString(reader));
+                case "direccion" -> proveedor.setDireccion(readString(reader));
+                default -> reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return proveedor;
+    }
+
+    public static Orden readOrden(JsonReader reader) throws IOException {
+        Orden orden = new Orden();
+        orden.setCodigo("");
+        orden.setProveedorCodigo("");
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "codigo" -> orden.setCodigo(readString(reader));
+                case "fecha" -> {
+                    String fecha = readString(reader);
+                    if (!fecha.isEmpty()) {
+                        orden.setFecha(LocalDate.parse(fecha));
+                    }
+                }
+                case "proveedorCodigo" -> orden.setProveedorCodigo(readString(reader));
+                case "total" -> orden.setTotal(readDouble(reader));
+                case "estado" -> {
+                    String estado = readString(reader);
+                    if (!estado.isEmpty()) {
+                        orden.setEstado(Orden.Estado.valueOf(estado));
+                    }
+                }
+                default -> reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return orden;
+    }
+
+    public static Informe readInforme(JsonReader reader) throws IOException {
+        Informe informe = new Informe();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "id" -> informe.setId(readInt(reader));
+                case "nombre" -> informe.setNombre(readString(reader));
+                case "tipo" -> {
+                    String tipo = readString(reader);
+                    if (!tipo.isEmpty()) {
+                        informe.setTipo(Informe.Tipo.valueOf(tipo));
+                    }
+                }
+                case "definicionJson" -> {
+                    String definicion = readString(reader);
+                    informe.setDefinicionJson(definicion.isEmpty() ? null : definicion);
+                }
+                case "generadoEn" -> {
+                    String generadoEn = readString(reader);
+                    if (!generadoEn.isEmpty()) {
+                        informe.setGeneradoEn(LocalDateTime.parse(generadoEn));
+                    }
+                }
+                default -> reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return informe;
+    }
+
+    /**
+     * Escribe {@code value} como cadena JSON escapada; {@code null} se escribe como cadena vacia.
+     */
+    public static void appendString(StringBuilder out, String value) {
+        out.append('"');
+        if (value == null) {
+            out.append('"');
+            return;
+        }
+        int start = 0;
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c >= 0x20 && c != '"' && c != '\\' && c != '\u2028' && c != '\u2029') {
+                continue;
+            }
+            out.append(value, start, i);
+            switch (c) {
+                case '"' -> out.append("\\\"");
+                case '\\' -> out.append("\\\\");
+                case '\n' -> out.append("\\n");
+                case '\r' -> out.append("\\r");
+                case '\t' -> out.append("\\t");
+                case '\b' -> out.append("\\b");
+                case '\f' -> out.append("\\f");
+                default -> out.append("\\u")
+                    .append(HEX[(c >> 12) & 0xF]).append(HEX[(c >> 8) & 0xF])
+                    .append(HEX[(c >> 4) & 0xF]).append(HEX[c & 0xF]);
+            }
+            start = i + 1;
+        }
+        out.append(value, start, length).append('"');
+    }
+
+    /**
+     * Escribe un importe con dos decimales, redondeando al centimo. JSON no admite NaN ni infinitos, que
+     * se escriben como 0.
+     */
+    static void appendAmount(StringBuilder out, double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            out.append("0.00");
+            return;
+        }
+        if (Math.abs(value) >= MAX_FIXED) {
+            out.append(value);
+            return;
+        }
+        long cents = Math.round(value * 100);
+        if (cents < 0) {
+            out.append('-');
+            cents = -cents;
+        }
+        long fraction = cents % 100;
+        out.append(cents / 100).append('.');
+        if (fraction < 10) {
+            out.append('0');
+        }
+        out.append(fraction);
+    }
+
+    private static void appendNumbers(StringBuilder out, Map<String, Number> values) {
+        out.append('{');
+        boolean first = true;
+        for (Map.Entry<String, Number> entry : values.entrySet()) {
+            if (!first) {
+                out.append(',');
+            }
+            first = false;
+            appendString(out, entry.getKey());
+            out.append(':');
+            Number number = entry.getValue();
+            if (number == null) {
+                out.append('0');
+            } else if (number instanceof Integer || number instanceof Long) {
+                out.append(number.longValue());
+            } else {
+                appendAmount(out, number.doubleValue());
+            }
+        }
+        out.append('}');
+    }
+
+    private static StringBuilder buffer() {
+        StringBuilder out = BUFFER.get();
+        if (out.capacity() > MAX_RETAINED_CAPACITY) {
+            out = new StringBuilder(INITIAL_CAPACITY);
+            BUFFER.set(out);
+        }
+        out.setLength(0);
+        return out;
+    }
+
+    private static String readString(JsonReader reader) throws IOException {
+        return switch (reader.peek()) {
+            case STRING, NUMBER -> reader.nextString();
+            case BOOLEAN -> String.valueOf(reader.nextBoolean());
+            default -> {
+                reader.skipValue();
+                yield "";
+            }
+        };
+    }
+
+    private static int readInt(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonReader.Token.NUMBER) {
+            return (int) reader.nextLong();
+        }
+        try {
+            return Integer.parseInt(readString(reader));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static double readDouble(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonReader.Token.NUMBER) {
+            return reader.nextDouble();
+        }
+        try {
+            return Double.parseDouble(readString(reader));
+        } catch (NumberFormatException e) {
+            return 0.0;
+        }
+    }
+}
@@ -0,0 +1,442 @@
+package atlasledger.utils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Lector JSON de tipo pull: recorre el documento token a token sin construir mapas ni listas
+ * intermedias, leyendo de un {@link Reader} con un buffer fijo.
+ * <p>
+ * El uso es el habitual en este tipo de lectores:
+ * <pre>
+ *     reader.beginArray();
+ *     while (reader.hasNext()) {
+ *         reader.beginObject();
+ *         while (reader.hasNext()) {
+ *             switch (reader.nextName()) {
+ *                 case "id" -> id = reader.nextInt();
+ *                 default -> reader.skipValue();
+ *             }
+ *         }
+ *         reader.endObject();
+ *     }
+ *     reader.endArray();
+ * </pre>
+ * Un documento mal formado produce una {@link IOException} con la posicion del error.
+ */
+public final class JsonReader implements Closeable {
+
+    /**
+     * Tipo del siguiente elemento del documento.
+     */
+    public enum Token {
+        BEGIN_ARRAY,
+        END_ARRAY,
+        BEGIN_OBJECT,
+        END_OBJECT,
+        NAME,
+        STRING,
+        NUMBER,
+        BOOLEAN,
+        NULL,
+        END_DOCUMENT
+    }
+
+    /**
+     * Lee un valor completo del documento y lo convierte, por ejemplo un objeto en una entidad.
+     */
+    @FunctionalInterface
+    public interface ValueReader<T> {
+        T read(JsonReader reader) throws IOException;
+    }
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private static final int EMPTY_DOCUMENT = 0;
+    private static final int NONEMPTY_DOCUMENT = 1;
+    private static final int EMPTY_ARRAY = 2;
+    private static final int NONEMPTY_ARRAY = 3;
+    private static final int EMPTY_OBJECT = 4;
+    private static final int DANGLING_NAME = 5;
+    private static final int NONEMPTY_OBJECT = 6;
+
+    private final Reader in;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private int pos;
+    private int limit;
+    private long consumed;
+
+    private int[] stack = new int[32];
+    private int depth = 1;
+
+    private Token peeked;
+    private final StringBuilder text = new StringBuilder();
+    private boolean booleanValue;
+
+    public JsonReader(Reader in) {
+        this.in = in;
+        stack[0] = EMPTY_DOCUMENT;
+    }
+
+    /**
+     * Lector sobre un flujo de bytes en UTF-8.
+     */
+    public static JsonReader of(InputStream in) {
+        return new JsonReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+    }
+
+    public Token peek() throws IOException {
+        if (peeked != null) {
+            return peeked;
+        }
+        int scope = stack[depth - 1];
+        switch (scope) {
+            case EMPTY_ARRAY, NONEMPTY_ARRAY -> {
+                stack[depth - 1] = NONEMPTY_ARRAY;
+                int c = nextNonWhitespace();
+                if (c == ']') {
+                    return peeked = Token.END_ARRAY;
+                }
+                if (scope == NONEMPTY_ARRAY) {
+                    expect(c, ',');
+                } else if (c == -1) {
+                    throw syntaxError("fin inesperado del documento");
+                } else {
+                    pos--;
+                }
+                return peeked = readValue();
+            }
+            case EMPTY_OBJECT, NONEMPTY_OBJECT -> {
+                int c = nextNonWhitespace();
+                if (c == '}') {
+                    return peeked = Token.END_OBJECT;
+                }
+                if (scope == NONEMPTY_OBJECT) {
+                    expect(c, ',');
+                    c = nextNonWhitespace();
+                }
+                expect(c, '"');
+                readString();
+                stack[depth - 1] = DANGLING_NAME;
+                return peeked = Token.NAME;
+            }
+            case DANGLING_NAME -> {
+                expect(nextNonWhitespace(), ':');
+                stack[depth - 1] = NONEMPTY_OBJECT;
+                return peeked = readValue();
+            }
+            case EMPTY_DOCUMENT -> {
+                stack[depth - 1] = NONEMPTY_DOCUMENT;
+                return peeked = readValue();
+            }
+            default -> {
+                int c = nextNonWhitespace();
+                if (c != -1) {
+                    throw syntaxError("contenido tras el final del documento");
+                }
+                return peeked = Token.END_DOCUMENT;
+            }
+        }
+    }
+
+    public void beginArray() throws IOException {
+        consume(Token.BEGIN_ARRAY);
+        push(EMPTY_ARRAY);
+    }
+
+    public void endArray() throws IOException {
+        consume(Token.END_ARRAY);
+        depth--;
+    }
+
+    public void beginObject() throws IOException {
+        consume(Token.BEGIN_OBJECT);
+        push(EMPTY_OBJECT);
+    }
+
+    public void endObject() throws IOException {
+        consume(Token.END_OBJECT);
+        depth--;
+    }
+
+    /**
+     * Indica si quedan elementos en el array u objeto actual.
+     */
+    public boolean hasNext() throws IOException {
+        Token token = peek();
+        return token != Token.END_ARRAY && token != Token.END_OBJECT && token != Token.END_DOCUMENT;
+    }
+
+    public String nextName() throws IOException {
+        consume(Token.NAME);
+        return text.toString();
+    }
+
+    /**
+     * Devuelve una cadena; los numeros se devuelven con su texto original.
+     */
+    public String nextString() throws IOException {
+        Token token = peek();
+        if (token != Token.STRING && token != Token.NUMBER) {
+            throw syntaxError("se esperaba una cadena y se encontro " + token);
+        }
+        peeked = null;
+        return text.toString();
+    }
+
+    public boolean nextBoolean() throws IOException {
+        consume(Token.BOOLEAN);
+        return booleanValue;
+    }
+
+    public void nextNull() throws IOException {
+        consume(Token.NULL);
+    }
+
+    /**
+     * Devuelve un numero; tambien acepta una cadena con un numero.
+     */
+    public double nextDouble() throws IOException {
+        numberToken();
+        try {
+            return Double.parseDouble(text.toString());
+        } catch (NumberFormatException e) {
+            throw syntaxError("numero no valido: " + text);
+        }
+    }
+
+    /**
+     * Devuelve un numero entero; tambien acepta una cadena con un numero.
+     */
+    public long nextLong() throws IOException {
+        numberToken();
+        try {
+            return Long.parseLong(text, 0, text.length(), 10);
+        } catch (NumberFormatException e) {
+            try {
+                return (long) Double.parseDouble(text.toString());
+            } catch (NumberFormatException notNumber) {
+                throw syntaxError("numero no valido: " + text);
+            }
+        }
+    }
+
+    public int nextInt() throws IOException {
+        long value = nextLong();
+        if (value != (int) value) {
+            throw syntaxError("numero fuera de rango: " + value);
+        }
+        return (int) value;
+    }
+
+    /**
+     * Salta el siguiente valor completo, incluidos sus arrays y objetos anidados.
+     */
+    public void skipValue() throws IOException {
+        int nested = 0;
+        do {
+            switch (peek()) {
+                case BEGIN_ARRAY -> {
+                    beginArray();
+                    nested++;
+                }
+                case BEGIN_OBJECT -> {
+                    beginObject();
+                    nested++;
+                }
+                case END_ARRAY -> {
+                    endArray();
+                    nested--;
+                }
+                case END_OBJECT -> {
+                    endObject();
+                    nested--;
+                }
+                case END_DOCUMENT -> throw syntaxError("fin inesperado del documento");
+                default -> peeked = null;
+            }
+        } while (nested > 0);
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private void consume(Token expected) throws IOException {
+        Token token = peek();
+        if (token != expected) {
+            throw syntaxError("se esperaba " + expected + " y se encontro " + token);
+        }
+        peeked = null;
+    }
+
+    private void numberToken() throws IOException {
+        Token token = peek();
+        if (token != Token.NUMBER && token != Token.STRING) {
+            throw syntaxError("se esperaba un numero y se encontro " + token);
+        }
+        peeked = null;
+    }
+
+    private void push(int scope) {
+        if (depth == stack.length) {
+            int[] grown = new int[depth * 2];
+            System.arraycopy(stack, 0, grown, 0, depth);
+            stack = grown;
+        }
+        stack[depth++] = scope;
+    }
+
+    private Token readValue() throws IOException {
+        int c = nextNonWhitespace();
+        switch (c) {
+            case '[' -> {
+                return Token.BEGIN_ARRAY;
+            }
+            case '{' -> {
+                return Token.BEGIN_OBJECT;
+            }
+            case '"' -> {
+                readString();
+                return Token.STRING;
+            }
+            case 't' -> {
+                readLiteral("rue");
+                booleanValue = true;
+                return Token.BOOLEAN;
+            }
+            case 'f' -> {
+                readLiteral("alse");
+                booleanValue = false;
+                return Token.BOOLEAN;
+            }
+            case 'n' -> {
+                readLiteral("ull");
+                return Token.NULL;
+            }
+            case -1 -> throw syntaxError("fin inesperado del documento");
+            default -> {
+                if (c == '-' || (c >= '0' && c <= '9')) {
+                    readNumber(c);
+                    return Token.NUMBER;
+                }
+                throw syntaxError("caracter inesperado '" + (char) c + "'");
+            }
+        }
+    }
+
+    private void readString() throws IOException {
+        text.setLength(0);
+        while (true) {
+            int start = pos;
+            while (pos < limit) {
+                char c = buffer[pos++];
+                if (c == '"') {
+                    text.append(buffer, start, pos - 1 - start);
+                    return;
+                }
+                if (c == '\\') {
+                    text.append(buffer, start, pos - 1 - start);
+                    text.append(readEscape());
+                    start = pos;
+                } else if (c < 0x20) {
+                    throw syntaxError("caracter de control sin escapar en una cadena");
+                }
+            }
+            text.append(buffer, start, pos - start);
+            if (!fill()) {
+                throw syntaxError("cadena sin cerrar");
+            }
+        }
+    }
+
+    private char readEscape() throws IOException {
+        int c = read();
+        return switch (c) {
+            case '"', '\\', '/' -> (char) c;
+            case 'b' -> '\b';
+            case 'f' -> '\f';
+            case 'n' -> '\n';
+            case 'r' -> '\r';
+            case 't' -> '\t';
+            case 'u' -> {
+                int value = 0;
+                for (int i = 0; i < 4; i++) {
+                    int digit = Character.digit(read(), 16);
+                    if (digit < 0) {
+                        throw syntaxError("secuencia \\u no valida");
+                    }
+                    value = (value << 4) | digit;
+                }
+                yield (char) value;
+            }
+            default -> throw syntaxError("secuencia de escape no valida");
+        };
+    }
+
+    private void readNumber(int first) throws IOException {
+        text.setLength(0);
+        text.append((char) first);
+        while (pos < limit || fill()) {
+            char c = buffer[pos];
+            if ((c >= '0' && c <= '9') || c == '.' || c == 'e' || c == 'E' || c == '+' || c == '-') {
+                text.append(c);
+                pos++;
+            } else {
+                return;
+            }
+        }
+    }
+
+    private void readLiteral(String rest) throws IOException {
+        for (int i = 0; i < rest.length(); i++) {
+            if (read() != rest.charAt(i)) {
+                throw syntaxError("literal no valido");
+            }
+        }
+    }
+
+    private int read() throws IOException {
+        if (pos == limit && !fill()) {
+            return -1;
+        }
+        return buffer[pos++];
+    }
+
+    private int nextNonWhitespace() throws IOException {
+        while (pos < limit || fill()) {
+            char c = buffer[pos++];
+            if (c != ' ' && c != '\n' && c != '\r' && c != '\t') {
+                return c;
+            }
+        }
+        return -1;
+    }
+
+    private void expect(int actual, char expected) throws IOException {
+        if (actual != expected) {
+            throw syntaxError("se esperaba '" + expected + "'");
+        }
+    }
+
+    private boolean fill() throws IOException {
+        consumed += limit;
+        pos = 0;
+        limit = 0;
+        int read = in.read(buffer, 0, buffer.length);
+        if (read <= 0) {
+            return false;
+        }
+        limit = read;
+        return true;
+    }
+
+    private IOException syntaxError(String message) {
+        return new IOException("JSON mal formado en la posicion " + (consumed + pos) + ": " + message);
+    }
+}
@@ -0,0 +1,91 @@
+package atlasledger.utils;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histograma de latencias con cubetas fijas, seguro para registrar desde varios hilos sin bloqueo.
+ * <p>
+ * Las cubetas cubren de 100 microsegundos a 1 segundo; la ultima recoge todo lo que supera ese limite.
+ */
+public final class LatencyHistogram {
+
+    private static final long[] BOUNDS_MICROS = {100, 500, 1_000, 5_000, 10_000, 50_000, 100_000, 500_000, 1_000_000};
+
+    private final LongAdder[] buckets = new LongAdder[BOUNDS_MICROS.length + 1];
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0L);
+
+    public LatencyHistogram() {
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    public void record(long nanos) {
+        long micros = nanos / 1_000;
+        int index = 0;
+        while (index < BOUNDS_MICROS.length && micros >= BOUNDS_MICROS[index]) {
+            index++;
+        }
+        buckets[index].increment();
+        count.increment();
+        totalNanos.add(nanos);
+        maxNanos.accumulate(nanos);
+    }
+
+    public Snapshot snapshot() {
+        long[] counts = new long[buckets.length];
+        for (int i = 0; i < buckets.length; i++) {
+            counts[i] = buckets[i].sum();
+        }
+        return new Snapshot(BOUNDS_MICROS.clone(), counts, count.sum(), totalNanos.sum(), maxNanos.get());
+    }
+
+    /**
+     * Copia inmutable del histograma.
+     *
+     * @param boundsMicros limite superior (exclusivo) de cada cubeta salvo la ultima, en microsegundos
+     * @param counts       muestras por cubeta; tiene un elemento mas que {@code boundsMicros}
+     * @param count        muestras totales
+     * @param totalNanos   suma de todas las latencias
+     * @param maxNanos     mayor latencia registrada
+     */
+    public record Snapshot(long[] boundsMicros, long[] counts, long count, long totalNanos, long maxNanos) {
+
+        public double averageMillis() {
+            return count == 0 ? 0.0 : totalNanos / (double) count / 1_000_000.0;
+        }
+
+        public double maxMillis() {
+            return maxNanos / 1_000_000.0;
+        }
+
+        /**
+         * Percentil aproximado: limite superior de la cubeta que contiene el percentil pedido, o la
+         * latencia maxima si cae en la ultima cubeta.
+         */
+        public double percentileMillis(double percentile) {
+            if (count == 0) {
+                return 0.0;
+            }
+            long target = (long) Math.ceil(count * percentile / 100.0);
+            long seen = 0;
+            for (int i = 0; i < boundsMicros.length; i++) {
+                seen += counts[i];
+                if (seen >= target) {
+                    return Math.min(boundsMicros[i] / 1_000.0, maxMillis());
+                }
+            }
+            return maxMillis();
+        }
+
+        @Override
+        public String toString() {
+            return "Snapshot[count=" + count + ", avgMs=" + averageMillis() + ", maxMs=" + maxMillis()
+                + ", counts=" + Arrays.toString(counts) + "]";
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package atlasledger.utils;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+/**
+ * Contadores de entradas de log por nivel, por origen y por hora.
+ * <p>
+ * Se guardan en la tabla {@code app_log_counters}, una fila por nivel, origen y hora (UTC), que se
+ * actualiza en la misma transaccion que inserta o purga las entradas de {@code app_logs}. Los totales
+ * se mantienen ademas en memoria para que leerlos no toque la base de datos; se cargan una sola vez
+ * por base de datos y despues solo se aplican las diferencias.
+ * <p>
+ * Todas las modificaciones, y la carga inicial, se hacen desde comandos de {@link DBWriter}, asi que
+ * la cache siempre refleja lo que ve la conexion del escritor. La carga se encola sin esperarla: una
+ * lectura con la cache vacia (por ejemplo, desde el hilo de JavaFX) devuelve contadores vacios y
+ * {@link #version()} cambia cuando estan cargados. Si una transaccion falla despues de aplicar sus
+ * diferencias, quien la lanzo debe llamar a {@link #invalidate()}.
+ */
+public final class LogCounters {
+
+    /**
+     * Formato de la hora de cada contador; equivale a {@code strftime('%Y-%m-%d %H:00', created_at)}.
+     */
+    static final DateTimeFormatter HOUR_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:00").withZone(ZoneOffset.UTC);
+
+    record Key(String level, String source, String hour) {
+    }
+
+    static final String UPSERT_SQL = """
+        INSERT INTO app_log_counters (level, source, hour, total)
+        VALUES (?, ?, ?, ?)
+        ON CONFLICT (level, source, hour) DO UPDATE SET total = total + excluded.total
+    """;
+
+    private static final String DELETE_EMPTY_SQL = "DELETE FROM app_log_counters WHERE total <= 0";
+
+    private static final String LOAD_SQL = """
+        SELECT level, source, hour, total
+        FROM app_log_counters
+    """;
+
+    private static final Object LOCK = new Object();
+    private static Totals totals;
+    private static boolean loading;
+    private static volatile long version;
+
+    private LogCounters() {
+    }
+
+    static Key key(String level, String source, long timestampMillis) {
+        return new Key(level, source, HOUR_FORMAT.format(Instant.ofEpochMilli(timestampMillis)));
+    }
+
+    public static Map<String, Long> byLevel() {
+        return read(current -> new LinkedHashMap<>(current.byLevel));
+    }
+
+    public static Map<String, Long> bySource() {
+        return read(current -> new LinkedHashMap<>(current.bySource));
+    }
+
+    /**
+     * Entradas por hora (UTC) de las ultimas {@code hours} horas, en orden cronologico.
+     */
+    public static Map<String, Long> byHour(int hours) {
+        String from = HOUR_FORMAT.format(Instant.now().truncatedTo(ChronoUnit.HOURS).minus(hours - 1L, ChronoUnit.HOURS));
+        return read(current -> new LinkedHashMap<>(current.byHour.tailMap(from, true)));
+    }
+
+    /**
+     * Numero que cambia cada vez que cambian los contadores; permite refrescar una vista solo cuando
+     * hay entradas nuevas.
+     */
+    public static long version() {
+        return version;
+    }
+
+    /**
+     * Descarta la cache; se vuelve a cargar de la tabla a partir de la siguiente lectura.
+     */
+    public static void invalidate() {
+        synchronized (LOCK) {
+            totals = null;
+            version++;
+        }
+    }
+
+    /**
+     * Suma {@code deltas} (positivos al insertar, negativos al purgar) a la tabla y a la cache. Debe
+     * ejecutarse dentro del comando de {@link DBWriter} que modifica {@code app_logs}.
+     */
+    static void apply(Connection conn, Map<Key, Long> deltas) throws SQLException {
+        if (deltas.isEmpty()) {
+            return;
+        }
+        boolean negative = false;
+        try (PreparedStatement ps = conn.prepareStatement(UPSERT_SQL)) {
+            for (Map.Entry<Key, Long> delta : deltas.entrySet()) {
+                ps.setString(1, delta.getKey().level());
+                ps.setString(2, delta.getKey().source());
+                ps.setString(3, delta.getKey().hour());
+                ps.setLong(4, delta.getValue());
+                ps.addBatch();
+                negative |= delta.getValue() < 0;
+            }
+            ps.executeBatch();
+        }
+        if (negative) {
+            try (PreparedStatement ps = conn.prepareStatement(DELETE_EMPTY_SQL)) {
+                ps.executeUpdate();
+            }
+        }
+        synchronized (LOCK) {
+            if (totals != null) {
+                deltas.forEach(totals::add);
+            }
+            version++;
+        }
+    }
+
+    private static <T> T read(Function<Totals, T> reader) {
+        synchronized (LOCK) {
+            if (totals != null) {
+                return reader.apply(totals);
+            }
+            if (loading) {
+                return reader.apply(new Totals());
+            }
+            loading = true;
+        }
+        // Se carga desde el escritor para ver exactamente lo que ya han sumado sus comandos.
+        DBWriter.submit(LogCounters::load).whenComplete((ignored, error) -> {
+            synchronized (LOCK) {
+                loading = false;
+            }
+            if (error != null) {
+                Logger.error(LogCounters.class, "Error cargando los contadores de log", error);
+            }
+        });
+        synchronized (LOCK) {
+            return reader.apply(totals != null ? totals : new Totals());
+        }
+    }
+
+    private static Void load(Connection conn) throws SQLException {
+        Totals loaded = new Totals();
+        try (PreparedStatement ps = conn.prepareStatement(LOAD_SQL); ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                loaded.add(new Key(rs.getString("level"), rs.getString("source"), rs.getString("hour")), rs.getLong("total"));
+            }
+        }
+        synchronized (LOCK) {
+            if (totals == null) {
+                totals = loaded;
+                version++;
+            }
+        }
+        return null;
+    }
+
+    private static final class Totals {
+
+        private final Map<String, Long> byLevel = new TreeMap<>();
+        private final Map<String, Long> bySource = new TreeMap<>();
+        private final TreeMap<String, Long> byHour = new TreeMap<>();
+
+        private void add(Key key, long delta) {
+            add(byLevel, key.level(), delta);
+            add(bySource, key.source(), delta);
+            add(byHour, key.hour(), delta);
+        }
+
+        private static void add(Map<String, Long> map, String name, long delta) {
+            long total = map.getOrDefault(name, 0L) + delta;
+            if (total > 0) {
+                map.put(name, total);
+            } else {
+                map.remove(name);
+            }
+        }
+    }
+}
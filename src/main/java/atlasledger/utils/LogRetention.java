@@ -0,0 +1,160 @@
+package atlasledger.utils;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Retencion de la tabla {@code app_logs}.
+ * <p>
+ * Una tarea de fondo borra cada hora las entradas mas antiguas que el periodo de retencion
+ * (propiedad {@value #RETENTION_PROPERTY}, en dias; {@code 0} la desactiva). El borrado se hace en
+ * trozos de {@value #PURGE_CHUNK} filas, cada uno como un comando independiente de {@link DBWriter},
+ * para que las escrituras de la aplicacion se intercalen entre trozos. Los trozos se localizan con el
+ * indice sobre {@code created_at}, y cada uno descuenta sus filas de {@link LogCounters}.
+ */
+public final class LogRetention {
+
+    public static final String RETENTION_PROPERTY = "atlasledger.log.retencionDias";
+    public static final int PURGE_CHUNK = 1_000;
+    private static final int DEFAULT_RETENTION_DAYS = 30;
+    private static final Duration FIRST_PURGE_DELAY = Duration.ofMinutes(1);
+    private static final Duration PURGE_INTERVAL = Duration.ofHours(1);
+
+    private static final String PURGE_CHUNK_SQL = QueryPlanAuditor.register(LogRetention.class, "purgeChunk", """
+        DELETE FROM app_logs
+        WHERE id IN (
+            SELECT id
+            FROM app_logs
+            WHERE created_at < ?
+            ORDER BY created_at
+            LIMIT ?
+        )
+    """);
+    private static final String PURGE_CHUNK_COUNTS_SQL = """
+        SELECT level, source, COALESCE(strftime('%Y-%m-%d %H:00', created_at), '') AS hour, COUNT(*) AS total
+        FROM app_logs
+        WHERE id IN (
+            SELECT id
+            FROM app_logs
+            WHERE created_at < ?
+            ORDER BY created_at
+            LIMIT ?
+        )
+        GROUP BY 1, 2, 3
+    """;
+    // Mismo formato que CURRENT_TIMESTAMP, que SQLite expresa en UTC.
+    private static final DateTimeFormatter TIMESTAMP_FORMAT =
+        DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss").withZone(ZoneOffset.UTC);
+
+    private static volatile Duration retention = Duration.ofDays(Integer.getInteger(RETENTION_PROPERTY, DEFAULT_RETENTION_DAYS));
+    private static ScheduledExecutorService scheduler;
+
+    private LogRetention() {
+    }
+
+    public static Duration getRetention() {
+        return retention;
+    }
+
+    /**
+     * Cambia el periodo de retencion. Un periodo cero o negativo desactiva la purga.
+     */
+    public static void setRetention(Duration period) {
+        retention = period;
+    }
+
+    static synchronized void start() {
+        if (scheduler != null) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "atlasledger-log-retention");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(LogRetention::purgeQuietly,
+            FIRST_PURGE_DELAY.toMillis(), PURGE_INTERVAL.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Borra las entradas anteriores al periodo de retencion.
+     *
+     * @return filas borradas
+     */
+    public static long purgeExpired() throws SQLException {
+        Duration period = retention;
+        if (period.isZero() || period.isNegative()) {
+            return 0;
+        }
+        return purgeOlderThan(Instant.now().minus(period));
+    }
+
+    /**
+     * Borra, en trozos, las entradas creadas antes de {@code cutoff}.
+     *
+     * @return filas borradas
+     */
+    public static long purgeOlderThan(Instant cutoff) throws SQLException {
+        String limit = TIMESTAMP_FORMAT.format(cutoff);
+        long total = 0;
+        int deleted;
+        do {
+            try {
+                deleted = DBWriter.execute(conn -> purgeChunk(conn, limit));
+            } catch (SQLException | RuntimeException e) {
+                LogCounters.invalidate();
+                throw e;
+            }
+            total += deleted;
+        } while (deleted == PURGE_CHUNK);
+        return total;
+    }
+
+    /**
+     * Descuenta de {@link LogCounters} las entradas del trozo y despues las borra; ambas sentencias
+     * seleccionan las mismas filas porque se ejecutan en la misma transaccion.
+     */
+    private static int purgeChunk(Connection conn, String limit) throws SQLException {
+        Map<LogCounters.Key, Long> counts = new HashMap<>();
+        try (PreparedStatement ps = conn.prepareStatement(PURGE_CHUNK_COUNTS_SQL)) {
+            ps.setString(1, limit);
+            ps.setInt(2, PURGE_CHUNK);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    counts.put(new LogCounters.Key(rs.getString("level"), rs.getString("source"), rs.getString("hour")),
+                        -rs.getLong("total"));
+                }
+            }
+        }
+        try (PreparedStatement ps = conn.prepareStatement(PURGE_CHUNK_SQL)) {
+            ps.setString(1, limit);
+            ps.setInt(2, PURGE_CHUNK);
+            int deleted = ps.executeUpdate();
+            LogCounters.apply(conn, counts);
+            return deleted;
+        }
+    }
+
+    private static void purgeQuietly() {
+        try {
+            long purged = purgeExpired();
+            if (purged > 0) {
+                Logger.info(LogRetention.class, "Purga de logs: " + purged + " entradas anteriores a "
+                    + retention.toDays() + " dias eliminadas");
+            }
+        } catch (SQLException | RuntimeException e) {
+            Logger.error(LogRetention.class, "Error purgando logs antiguos", e);
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package atlasledger.utils;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Limite de frecuencia para los mensajes de {@link Logger}.
+ * <p>
+ * Los mensajes se agrupan por origen y plantilla: el texto con los numeros y los literales entre
+ * comillas sustituidos, de modo que "Error guardando 17" y "Error guardando 18" cuentan como el mismo
+ * mensaje. De cada plantilla se dejan pasar las primeras {@code maxPerWindow} apariciones de cada
+ * ventana; el resto se cuentan y, al cerrarse la ventana, se resumen en una sola entrada
+ * ("Mensaje repetido N veces mas..."), con el nivel del mensaje que abrio la ventana. Las ventanas
+ * caducadas se revisan al registrar cualquier mensaje y en cada {@link Logger#flush()}, sin hilos propios.
+ */
+final class LogThrottle {
+
+    @FunctionalInterface
+    interface SummarySink {
+        void emit(String level, String source, String message);
+    }
+
+    private static final int MAX_TEMPLATE_LENGTH = 200;
+
+    private final Map<Key, Window> windows = new ConcurrentHashMap<>();
+    private final SummarySink sink;
+    private volatile long windowNanos;
+    private volatile int maxPerWindow;
+    private volatile long nextSweepNanos;
+
+    private record Key(String source, String template) {
+    }
+
+    LogThrottle(Duration window, int maxPerWindow, SummarySink sink) {
+        this.sink = sink;
+        configure(window, maxPerWindow);
+    }
+
+    /**
+     * Cambia la ventana y el numero de mensajes permitidos por ventana. Una ventana cero desactiva
+     * el limite.
+     */
+    void configure(Duration window, int maxPerWindow) {
+        this.windowNanos = Math.max(0, window.toNanos());
+        this.maxPerWindow = Math.max(1, maxPerWindow);
+        this.nextSweepNanos = System.nanoTime() + windowNanos;
+    }
+
+    Duration window() {
+        return Duration.ofNanos(windowNanos);
+    }
+
+    int maxPerWindow() {
+        return maxPerWindow;
+    }
+
+    /**
+     * Decide si un mensaje se registra.
+     *
+     * @return {@code false} si se ha suprimido por repetirse demasiado
+     */
+    boolean admit(String level, String source, String message) {
+        long window = windowNanos;
+        if (window == 0) {
+            return true;
+        }
+        long now = System.nanoTime();
+        if (now - nextSweepNanos >= 0) {
+            sweep(now);
+        }
+        Key key = new Key(source, template(message));
+        Window state = windows.computeIfAbsent(key, k -> new Window(now));
+        String summary;
+        String summaryLevel;
+        boolean admitted;
+        synchronized (state) {
+            summaryLevel = state.level;
+            summary = state.rollIfExpired(now, window, key);
+            if (state.count == 0) {
+                state.level = level;
+            }
+            admitted = ++state.count <= maxPerWindow;
+            if (!admitted) {
+                state.suppressed++;
+            }
+        }
+        if (summary != null) {
+            sink.emit(summaryLevel, source, summary);
+        }
+        return admitted;
+    }
+
+    /**
+     * Emite el resumen de todas las ventanas con mensajes suprimidos, hayan caducado o no, y abre
+     * una ventana nueva en cada una de ellas.
+     */
+    void drain() {
+        for (Map.Entry<Key, Window> entry : windows.entrySet()) {
+            Window state = entry.getValue();
+            String summary;
+            String level;
+            synchronized (state) {
+                level = state.level;
+                summary = state.suppressed > 0 ? state.roll(System.nanoTime(), entry.getKey()) : null;
+            }
+            if (summary != null) {
+                sink.emit(level, entry.getKey().source(), summary);
+            }
+        }
+    }
+
+    /**
+     * Emite el resumen de las ventanas caducadas y olvida las que ya no tienen actividad.
+     */
+    private void sweep(long now) {
+        long window = windowNanos;
+        nextSweepNanos = now + Math.max(window, Duration.ofSeconds(1).toNanos());
+        Iterator<Map.Entry<Key, Window>> iterator = windows.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Key, Window> entry = iterator.next();
+            Window state = entry.getValue();
+            String summary = null;
+            String level;
+            synchronized (state) {
+                if (now - state.start < window) {
+                    continue;
+                }
+                level = state.level;
+                if (state.suppressed > 0) {
+                    summary = state.rollIfExpired(now, window, entry.getKey());
+                } else {
+                    iterator.remove();
+                }
+            }
+            if (summary != null) {
+                sink.emit(level, entry.getKey().source(), summary);
+            }
+        }
+    }
+
+    /**
+     * Sustituye cada literal entre comillas simples o dobles por {@code '?'} y cada secuencia de digitos
+     * por {@code #}, en una sola pasada y sin pasar de {@link #MAX_TEMPLATE_LENGTH} caracteres. Se
+     * ejecuta con cada mensaje, por eso no usa expresiones regulares.
+     */
+    static String template(String message) {
+        if (message == null) {
+            return "";
+        }
+        StringBuilder template = new StringBuilder(Math.min(message.length(), MAX_TEMPLATE_LENGTH));
+        int length = message.length();
+        int i = 0;
+        while (i < length && template.length() < MAX_TEMPLATE_LENGTH) {
+            char c = message.charAt(i);
+            if (c == '\'' || c == '"') {
+                int closing = message.indexOf(c, i + 1);
+                if (closing >= 0) {
+                    template.append("'?'");
+                    i = closing + 1;
+                    continue;
+                }
+            } else if (c >= '0' && c <= '9') {
+                template.append('#');
+                while (i < length && message.charAt(i) >= '0' && message.charAt(i) <= '9') {
+                    i++;
+                }
+                continue;
+            }
+            template.append(c);
+            i++;
+        }
+        template.setLength(Math.min(template.length(), MAX_TEMPLATE_LENGTH));
+        return template.toString();
+    }
+
+    /**
+     * Estado de una plantilla en la ventana actual. Se protege con su propio monitor.
+     */
+    private static final class Window {
+
+        private long start;
+        private int count;
+        private long suppressed;
+        private String level;
+
+        private Window(long start) {
+            this.start = start;
+        }
+
+        /**
+         * Si la ventana ha caducado abre una nueva y devuelve el resumen de la anterior, o
+         * {@code null} si no suprimio nada.
+         */
+        private String rollIfExpired(long now, long window, Key key) {
+            if (now - start < window) {
+                return null;
+            }
+            return roll(now, key);
+        }
+
+        /**
+         * Abre una ventana nueva y devuelve el resumen de la anterior, o {@code null} si no suprimio nada.
+         */
+        private String roll(long now, Key key) {
+            String summary = summary(key, now);
+            start = now;
+            count = 0;
+            suppressed = 0;
+            return summary;
+        }
+
+        private String summary(Key key, long now) {
+            if (suppressed == 0) {
+                return null;
+            }
+            long seconds = Math.max(1, Duration.ofNanos(now - start).toSeconds());
+            return "Mensaje repetido " + suppressed + " veces mas en los ultimos " + seconds + " s: " + key.template();
+        }
+    }
+}
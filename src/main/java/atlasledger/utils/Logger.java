@@ -1,17 +1,69 @@
 package atlasledger.utils;
 
-import java.sql.Connection;
-import java.sql.PreparedStatement;
-import java.sql.SQLException;
-import java.time.LocalDateTime;
+import java.time.Duration;
+import org.slf4j.LoggerFactory;
 
+/**
+ * Log de la aplicacion sobre SLF4J.
+ * <p>
+ * Cada entrada se envia a SLF4J con el nombre de la clase de origen, y logback la reparte entre los
+ * destinos declarados en {@code logback.xml}: consola, la tabla {@code app_logs}
+ * ({@link SqliteLogAppender}) y ficheros proyectados en memoria ({@link MappedFileLogAppender}). Cada
+ * destino tiene su propia cola asincrona y su propio nivel minimo, configurables con las propiedades
+ * {@code atlasledger.log.consola.nivel}, {@code atlasledger.log.sqlite.nivel} y
+ * {@code atlasledger.log.fichero.nivel} ({@code OFF} desactiva el destino). La cola de
+ * {@code app_logs} usa las propiedades {@value #BUFFER_PROPERTY} y {@value #OVERFLOW_PROPERTY}.
+ * {@link #flush()} espera a que los destinos escriban lo pendiente y debe llamarse antes de cerrar
+ * la aplicacion.
+ * <p>
+ * Los mensajes repetidos se limitan con {@link LogThrottle} antes de llegar a SLF4J: de cada origen y
+ * plantilla se registran como mucho {@value #DEFAULT_RATE_MAX} por ventana de
+ * {@value #DEFAULT_RATE_WINDOW_SECONDS} s (propiedades {@value #RATE_MAX_PROPERTY} y
+ * {@value #RATE_WINDOW_PROPERTY}) y el resto se resume en una sola entrada al cerrar la ventana.
+ */
 public final class Logger {
 
-    private static final String INSERT_LOG_SQL = """
-        INSERT INTO app_logs (level, source, message, created_at)
-        VALUES (?, ?, ?, CURRENT_TIMESTAMP)
-    """;
-    private static volatile boolean persistenceEnabled = true;
+    public static final String BUFFER_PROPERTY = "atlasledger.log.buffer";
+    public static final String OVERFLOW_PROPERTY = "atlasledger.log.desbordamiento";
+    private static final Duration FLUSH_TIMEOUT = Duration.ofSeconds(5);
+
+    public static final String RATE_WINDOW_PROPERTY = "atlasledger.log.ventanaSegundos";
+    public static final String RATE_MAX_PROPERTY = "atlasledger.log.maxPorVentana";
+    private static final int DEFAULT_RATE_WINDOW_SECONDS = 60;
+    private static final int DEFAULT_RATE_MAX = 5;
+
+    /**
+     * Que hacer con una entrada cuando la cola de un destino esta llena.
+     */
+    public enum OverflowPolicy {
+        /** Descartar la entrada. */
+        DROP,
+        /** Conservar los errores y una de cada {@value AsyncLogAppender#SAMPLE_RATE} entradas del resto. */
+        SAMPLE,
+        /** Esperar a que haya sitio. */
+        BLOCK;
+
+        /**
+         * Interpreta el nombre de una politica; si no se reconoce se usa {@link #SAMPLE}.
+         */
+        public static OverflowPolicy parse(String value) {
+            if (value == null || value.isBlank()) {
+                return SAMPLE;
+            }
+            try {
+                return valueOf(value.strip().toUpperCase());
+            } catch (IllegalArgumentException e) {
+                System.err.println("[Logger] Politica de desbordamiento desconocida: " + value + "; se usa SAMPLE");
+                return SAMPLE;
+            }
+        }
+    }
+
+    private static final LogThrottle THROTTLE = new LogThrottle(
+        Duration.ofSeconds(Integer.getInteger(RATE_WINDOW_PROPERTY, DEFAULT_RATE_WINDOW_SECONDS)),
+        Integer.getInteger(RATE_MAX_PROPERTY, DEFAULT_RATE_MAX),
+        (level, source, message) -> write(level, source, message, null)
+    );
 
     private Logger() {
     }
@@ -32,34 +84,68 @@ public final class Logger {
         log("ERROR", source, message, null);
     }
 
-    private static void log(String level, Class<?> source, String message, Throwable throwable) {
-        LocalDateTime now = LocalDateTime.now();
-        if ("ERROR".equals(level)) {
-            System.err.printf("[%s] [%s] [%s] %s%n", now, level, source.getSimpleName(), message);
-            if (throwable != null) {
-                throwable.printStackTrace(System.err);
-            }
-        } else {
-            System.out.printf("[%s] [%s] [%s] %s%n", now, level, source.getSimpleName(), message);
+    /**
+     * Espera a que los destinos escriban las entradas registradas hasta ahora. No debe llamarse
+     * desde un comando de {@link DBWriter}.
+     */
+    public static void flush() {
+        THROTTLE.drain();
+        if (!AsyncLogAppender.flushAll(FLUSH_TIMEOUT)) {
+            System.err.println("[Logger] Quedan entradas de log sin escribir tras " + FLUSH_TIMEOUT.toSeconds() + " s");
         }
-        persist(level, source, message);
     }
 
-    private static void persist(String level, Class<?> source, String message) {
-        if (!persistenceEnabled) {
-            return;
-        }
-        try (Connection conn = DBHelper.getConnection(); PreparedStatement ps = conn.prepareStatement(INSERT_LOG_SQL)) {
-            ps.setString(1, level);
-            ps.setString(2, source.getSimpleName());
-            ps.setString(3, message);
-            ps.executeUpdate();
-        } catch (SQLException ex) {
-            persistenceEnabled = false;
-        }
+    /**
+     * Cambia el limite de frecuencia: cada combinacion de origen y plantilla de mensaje se registra
+     * como mucho {@code maxPerWindow} veces por {@code window}. Una ventana cero lo desactiva.
+     */
+    public static void setRateLimit(Duration window, int maxPerWindow) {
+        THROTTLE.configure(window, maxPerWindow);
+    }
+
+    public static Duration getRateLimitWindow() {
+        return THROTTLE.window();
+    }
+
+    public static int getRateLimitMax() {
+        return THROTTLE.maxPerWindow();
+    }
+
+    /**
+     * Cambia la politica de desbordamiento de todas las colas de destino activas.
+     */
+    public static void setOverflowPolicy(OverflowPolicy policy) {
+        AsyncLogAppender.active().forEach(queue -> queue.setPolicy(policy));
+    }
+
+    /**
+     * Entradas descartadas por desbordamiento que aun no se han resumido en el log.
+     */
+    public static long droppedEntries() {
+        return AsyncLogAppender.active().stream().mapToLong(AsyncLogAppender::droppedCount).sum();
     }
 
     public static void resetPersistence() {
-        persistenceEnabled = true;
+        SqliteLogAppender.resetPersistence();
+    }
+
+    static String simpleName(String loggerName) {
+        return loggerName.substring(loggerName.lastIndexOf('.') + 1);
+    }
+
+    private static void log(String level, Class<?> source, String message, Throwable throwable) {
+        String sourceName = source.getName();
+        if (THROTTLE.admit(level, sourceName, message)) {
+            write(level, sourceName, message, throwable);
+        }
+    }
+
+    private static void write(String level, String source, String message, Throwable throwable) {
+        org.slf4j.Logger logger = LoggerFactory.getLogger(source);
+        switch (level) {
+            case "ERROR" -> logger.error(message, throwable);
+            case "WARN" -> logger.warn(message, throwable);
+            default -> logger.info(message, throwable);
+        }
     }
 }
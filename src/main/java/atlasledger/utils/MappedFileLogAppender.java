@@ -0,0 +1,219 @@
+package atlasledger.utils;
+
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.IThrowableProxy;
+import ch.qos.logback.classic.spi.ThrowableProxyUtil;
+import ch.qos.logback.core.AppenderBase;
+import ch.qos.logback.core.util.FileSize;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Destino de logback que escribe las entradas como texto en ficheros proyectados en memoria.
+ * <p>
+ * Cada segmento ({@code prefijo-000001.log}, {@code prefijo-000002.log}...) se reserva con el tamano
+ * configurado y se proyecta con {@link FileChannel#map}; escribir una linea es copiar bytes a memoria y
+ * el sistema operativo la lleva a disco, incluso si el proceso termina de forma abrupta. Cuando un
+ * segmento se llena se recorta a su contenido real, se abre el siguiente y se borran los mas antiguos
+ * por encima de {@code maxSegments}. Una linea que no cabe en el resto del segmento empieza en el
+ * siguiente; si no cabe ni en un segmento vacio se reparte entre segmentos consecutivos. Las entradas
+ * pasan por una {@link AsyncLogAppender cola propia} y solo el hilo de esa cola toca el segmento activo.
+ */
+public class MappedFileLogAppender extends AppenderBase<ILoggingEvent> {
+
+    private static final DateTimeFormatter LINE_TIMESTAMP =
+        DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSS").withZone(ZoneId.systemDefault());
+    private static final Duration STOP_TIMEOUT = Duration.ofSeconds(5);
+
+    private String directory = Paths.get(System.getProperty("user.home"), ".atlasledger", "logs").toString();
+    private String prefix = "atlasledger";
+    private long segmentSize = 8L * 1024 * 1024;
+    private int maxSegments = 5;
+    private int capacity = 8192;
+    private Logger.OverflowPolicy overflowPolicy = Logger.OverflowPolicy.DROP;
+
+    private final Object segmentLock = new Object();
+    private AsyncLogAppender queue;
+    private Pattern segmentName;
+    private long sequence;
+    private FileChannel channel;
+    private MappedByteBuffer mapped;
+
+    /**
+     * Constructor que usa logback al leer {@code logback.xml}; la configuracion llega por los setters.
+     */
+    public MappedFileLogAppender() {
+    }
+
+    public void setDirectory(String directory) {
+        this.directory = directory;
+    }
+
+    public void setPrefix(String prefix) {
+        this.prefix = prefix;
+    }
+
+    public void setSegmentSize(FileSize segmentSize) {
+        this.segmentSize = segmentSize.getSize();
+    }
+
+    public void setMaxSegments(int maxSegments) {
+        this.maxSegments = Math.max(1, maxSegments);
+    }
+
+    public void setCapacity(int capacity) {
+        this.capacity = capacity;
+    }
+
+    public void setOverflowPolicy(String overflowPolicy) {
+        this.overflowPolicy = Logger.OverflowPolicy.parse(overflowPolicy);
+    }
+
+    @Override
+    public void start() {
+        segmentName = Pattern.compile(Pattern.quote(prefix) + "-(\\d+)\\.log");
+        try {
+            Files.createDirectories(Paths.get(directory));
+            sequence = segments().stream().mapToLong(this::sequenceOf).max().orElse(0);
+            openNextSegment();
+            pruneSegments();
+        } catch (IOException e) {
+            addError("No se pudo abrir el fichero de log en " + directory, e);
+            return;
+        }
+        queue = new AsyncLogAppender("atlasledger-log-file", capacity, overflowPolicy, this::writeBatch);
+        super.start();
+    }
+
+    @Override
+    public void stop() {
+        if (!isStarted()) {
+            return;
+        }
+        super.stop();
+        queue.close(STOP_TIMEOUT);
+        synchronized (segmentLock) {
+            try {
+                closeSegment();
+            } catch (IOException e) {
+                addError("No se pudo cerrar el fichero de log", e);
+            }
+        }
+    }
+
+    @Override
+    protected void append(ILoggingEvent event) {
+        IThrowableProxy throwable = event.getThrowableProxy();
+        queue.append(new AsyncLogAppender.Entry(event.getLevel().toString(), Logger.simpleName(event.getLoggerName()),
+            event.getFormattedMessage(), event.getTimeStamp(),
+            throwable != null ? ThrowableProxyUtil.asString(throwable) : null));
+    }
+
+    /**
+     * Segmento en el que se esta escribiendo.
+     */
+    Path activeSegment() {
+        return Paths.get(directory, String.format("%s-%06d.log", prefix, sequence));
+    }
+
+    private void writeBatch(List<AsyncLogAppender.Entry> batch) throws IOException {
+        synchronized (segmentLock) {
+            if (mapped == null) {
+                return;
+            }
+            for (AsyncLogAppender.Entry entry : batch) {
+                byte[] line = format(entry);
+                if (line.length > mapped.remaining() && mapped.position() > 0) {
+                    roll();
+                }
+                int written = 0;
+                while (true) {
+                    int chunk = Math.min(line.length - written, mapped.remaining());
+                    mapped.put(line, written, chunk);
+                    written += chunk;
+                    if (written == line.length) {
+                        break;
+                    }
+                    roll();
+                }
+            }
+        }
+    }
+
+    private static byte[] format(AsyncLogAppender.Entry entry) {
+        StringBuilder line = new StringBuilder(64 + entry.message().length())
+            .append(LINE_TIMESTAMP.format(Instant.ofEpochMilli(entry.timestampMillis())))
+            .append(" [").append(entry.level()).append("] [").append(entry.source()).append("] ")
+            .append(entry.message()).append('\n');
+        if (entry.stackTrace() != null) {
+            line.append(entry.stackTrace());
+        }
+        return line.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private void roll() throws IOException {
+        closeSegment();
+        openNextSegment();
+        pruneSegments();
+    }
+
+    private void pruneSegments() throws IOException {
+        List<Path> existing = segments();
+        for (int i = 0; i < existing.size() - maxSegments; i++) {
+            Files.deleteIfExists(existing.get(i));
+        }
+    }
+
+    private void openNextSegment() throws IOException {
+        sequence++;
+        channel = FileChannel.open(activeSegment(), StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+    }
+
+    /**
+     * Vuelca el segmento activo y lo recorta a la parte escrita para no dejar relleno de ceros.
+     */
+    private void closeSegment() throws IOException {
+        if (mapped == null) {
+            return;
+        }
+        int used = mapped.position();
+        mapped.force();
+        mapped = null;
+        try (FileChannel closing = channel) {
+            closing.truncate(used);
+        } catch (IOException e) {
+            // En algunos sistemas no se puede recortar un fichero proyectado; queda con relleno al final.
+            addWarn("No se pudo recortar " + activeSegment() + ": " + e.getMessage());
+        }
+        channel = null;
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(Paths.get(directory))) {
+            List<Path> found = new ArrayList<>(files.filter(p -> segmentName.matcher(p.getFileName().toString()).matches()).toList());
+            found.sort((a, b) -> Long.compare(sequenceOf(a), sequenceOf(b)));
+            return found;
+        }
+    }
+
+    private long sequenceOf(Path path) {
+        Matcher matcher = segmentName.matcher(path.getFileName().toString());
+        return matcher.matches() ? Long.parseLong(matcher.group(1)) : 0;
+    }
+}
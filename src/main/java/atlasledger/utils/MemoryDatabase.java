@@ -0,0 +1,182 @@
+package atlasledger.utils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Base de datos SQLite en memoria respaldada por un fichero en disco.
+ * <p>
+ * Usa el VFS {@code memdb} con un nombre que empieza por {@code /} para que todas las conexiones del
+ * pool compartan la misma base. A diferencia de {@code cache=shared}, cada conexion mantiene su propia
+ * cache de paginas y los bloqueos son los normales de SQLite: un lector nunca ve cambios sin confirmar
+ * y, mientras el escritor confirma, espera lo que indique {@code busy_timeout}. Una conexion ancla
+ * permanece abierta mientras dure la sesion, porque SQLite destruye la base en memoria al cerrarse la
+ * ultima conexion. Al abrirse se cargan los datos del fichero con la API de copia de SQLite
+ * ({@code restore from}).
+ * <p>
+ * Las instantaneas a disco ({@code backup to}) se escriben periodicamente y al cerrar, y solo si
+ * {@code PRAGMA data_version} indica que otra conexion ha confirmado cambios desde la anterior. Cada
+ * instantanea se ejecuta como comando exclusivo de {@link DBWriter}, por lo que nunca captura una
+ * transaccion a medias. Se escribe en un fichero temporal y se mueve sobre el destino de forma atomica.
+ */
+final class MemoryDatabase implements AutoCloseable {
+
+    private static final AtomicInteger SEQUENCE = new AtomicInteger();
+
+    private final Path snapshotPath;
+    private final String url;
+    private final Connection anchor;
+    private long snapshotDataVersion;
+    private ScheduledExecutorService scheduler;
+
+    private MemoryDatabase(Path snapshotPath, String url, Connection anchor) {
+        this.snapshotPath = snapshotPath;
+        this.url = url;
+        this.anchor = anchor;
+    }
+
+    static MemoryDatabase open(Path snapshotPath) throws SQLException {
+        String url = "jdbc:sqlite:file:/atlasledger-mem-" + SEQUENCE.incrementAndGet() + "?vfs=memdb";
+        Connection anchor = DriverManager.getConnection(url);
+        MemoryDatabase database = new MemoryDatabase(snapshotPath, url, anchor);
+        try {
+            if (Files.exists(snapshotPath)) {
+                long start = System.nanoTime();
+                restore(anchor, snapshotPath);
+                Logger.info(MemoryDatabase.class, "Base de datos cargada en memoria desde " + snapshotPath
+                    + " (" + (System.nanoTime() - start) / 1_000_000 + " ms)");
+            }
+            database.snapshotDataVersion = database.dataVersion();
+        } catch (SQLException e) {
+            anchor.close();
+            throw e;
+        }
+        return database;
+    }
+
+    String url() {
+        return url;
+    }
+
+    synchronized void startSnapshots(Duration interval) {
+        if (scheduler != null) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "atlasledger-memory-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long millis = interval.toMillis();
+        scheduler.scheduleWithFixedDelay(this::snapshotQuietly, millis, millis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Escribe una instantanea si hay cambios desde la anterior.
+     *
+     * @return {@code true} si se ha escrito el fichero
+     */
+    boolean snapshot() throws SQLException {
+        if (!DBWriter.executeExclusive(conn -> dataVersion() != snapshotDataVersion)) {
+            return false;
+        }
+        // El aviso se escribe antes de la copia para que su insercion en app_logs quede dentro de
+        // ella y no fuerce otra instantanea.
+        Logger.info(MemoryDatabase.class, "Guardando instantanea de la base en memoria en " + snapshotPath);
+        Logger.flush();
+        DBWriter.executeExclusive(conn -> {
+            writeSnapshot();
+            return null;
+        });
+        return true;
+    }
+
+    /**
+     * Detiene las instantaneas periodicas, guarda los ultimos cambios y libera la base en memoria.
+     * Debe llamarse con la cola de {@link DBWriter} vacia y antes de cerrar el pool.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (scheduler != null) {
+                scheduler.shutdownNow();
+                scheduler = null;
+            }
+        }
+        snapshotQuietly();
+        try {
+            anchor.close();
+        } catch (SQLException ignored) {
+            // La base en memoria se libera igualmente al cerrar el resto de conexiones.
+        }
+    }
+
+    private void snapshotQuietly() {
+        try {
+            snapshot();
+        } catch (SQLException | RuntimeException e) {
+            Logger.error(MemoryDatabase.class, "Error guardando la instantanea de la base en memoria", e);
+        }
+    }
+
+    private void writeSnapshot() throws SQLException {
+        Path temporary = snapshotPath.resolveSibling(snapshotPath.getFileName() + ".snapshot");
+        try {
+            Files.deleteIfExists(temporary);
+            try (Statement st = anchor.createStatement()) {
+                st.executeUpdate("backup to " + quote(temporary));
+            }
+            // Un -wal de una sesion anterior en disco no corresponde a la nueva copia.
+            Files.deleteIfExists(snapshotPath.resolveSibling(snapshotPath.getFileName() + "-wal"));
+            Files.deleteIfExists(snapshotPath.resolveSibling(snapshotPath.getFileName() + "-shm"));
+            Files.move(temporary, snapshotPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new SQLException("No se pudo escribir la instantanea en " + snapshotPath, e);
+        }
+        snapshotDataVersion = dataVersion();
+    }
+
+    /**
+     * La copia arrastra la cabecera del fichero y {@code memdb} no admite WAL: si el fichero viene del
+     * modo disco, la base en memoria no podria abrirse. Se carga desde una copia temporal hecha con
+     * {@code VACUUM INTO}, que siempre usa el diario clasico y no toca el fichero original.
+     */
+    private static void restore(Connection anchor, Path path) throws SQLException {
+        Path copy = path.resolveSibling(path.getFileName() + ".carga");
+        try {
+            Files.deleteIfExists(copy);
+            try (Connection source = DriverManager.getConnection("jdbc:sqlite:" + path.toAbsolutePath());
+                 Statement st = source.createStatement()) {
+                st.execute("VACUUM INTO " + quote(copy));
+            }
+            try (Statement st = anchor.createStatement()) {
+                st.executeUpdate("restore from " + quote(copy));
+            }
+            Files.deleteIfExists(copy);
+        } catch (IOException e) {
+            throw new SQLException("No se pudo preparar la copia de " + path, e);
+        }
+    }
+
+    private long dataVersion() throws SQLException {
+        try (Statement st = anchor.createStatement(); ResultSet rs = st.executeQuery("PRAGMA data_version")) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+    private static String quote(Path path) {
+        return "'" + path.toAbsolutePath().toString().replace("\\", "/") + "'";
+    }
+}
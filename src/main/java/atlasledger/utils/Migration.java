@@ -0,0 +1,115 @@
+package atlasledger.utils;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HexFormat;
+import java.util.List;
+
+/**
+ * Paso versionado del esquema de la base de datos, aplicado una sola vez por {@link SchemaMigrator}.
+ * <p>
+ * Una migracion puede ser SQL (una lista de sentencias) o Java (codigo arbitrario sobre la conexion).
+ * Su checksum se guarda en {@code schema_version} para detectar migraciones ya aplicadas que se han
+ * modificado despues. Las migraciones marcadas con {@link #inBackground()} se aplican despues de que
+ * la aplicacion este disponible, y solo deben contener optimizaciones (por ejemplo indices grandes)
+ * de las que no dependa ninguna migracion posterior.
+ */
+public final class Migration {
+
+    @FunctionalInterface
+    public interface Step {
+        void apply(Connection conn) throws SQLException;
+    }
+
+    private final int version;
+    private final String description;
+    private final String checksum;
+    private final Step step;
+    private final boolean background;
+    private final boolean transactional;
+
+    private Migration(int version, String description, String checksum, Step step,
+                      boolean background, boolean transactional) {
+        this.version = version;
+        this.description = description;
+        this.checksum = checksum;
+        this.step = step;
+        this.background = background;
+        this.transactional = transactional;
+    }
+
+    public static Migration sql(int version, String description, String... statements) {
+        List<String> sentences = List.of(statements);
+        Step step = conn -> {
+            try (Statement st = conn.createStatement()) {
+                for (String sentence : sentences) {
+                    st.execute(sentence);
+                }
+            }
+        };
+        return new Migration(version, description, checksum(String.join(";\n", sentences)), step, false, true);
+    }
+
+    /**
+     * Migracion escrita en Java. {@code checksumSource} identifica el contenido de la migracion; debe
+     * cambiar si cambia lo que hace {@code step}.
+     */
+    public static Migration java(int version, String description, String checksumSource, Step step) {
+        return new Migration(version, description, checksum(checksumSource), step, false, true);
+    }
+
+    public Migration inBackground() {
+        return new Migration(version, description, checksum, step, true, transactional);
+    }
+
+    /**
+     * Marca la migracion para ejecutarse fuera de transaccion (necesario para {@code VACUUM} y
+     * algunos {@code PRAGMA}).
+     */
+    public Migration nonTransactional() {
+        return new Migration(version, description, checksum, step, background, false);
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public String getChecksum() {
+        return checksum;
+    }
+
+    public boolean isBackground() {
+        return background;
+    }
+
+    public boolean isTransactional() {
+        return transactional;
+    }
+
+    void apply(Connection conn) throws SQLException {
+        step.apply(conn);
+    }
+
+    private static String checksum(String content) {
+        String normalized = content.strip().replaceAll("\\s+", " ");
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(normalized.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no disponible", e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "V" + version + " " + description;
+    }
+}
@@ -3,42 +3,38 @@ package atlasledger.utils;
 import atlasledger.model.Orden;
 import atlasledger.model.Producto;
 import atlasledger.model.Proveedor;
-import java.net.InetAddress;
+import java.io.IOException;
 import java.time.Duration;
-import java.util.Collections;
-import java.util.List;
 import java.util.Map;
 
 public class NetworkUtils {
 
     private final Duration defaultTimeout;
+    private final ConnectivityMonitor connectivity;
 
     public NetworkUtils(Duration defaultTimeout) {
+        this(defaultTimeout, new ConnectivityMonitor());
+    }
+
+    public NetworkUtils(Duration defaultTimeout, ConnectivityMonitor connectivity) {
         this.defaultTimeout = defaultTimeout;
+        this.connectivity = connectivity;
     }
 
     public Duration defaultTimeout() {
         return defaultTimeout;
     }
 
-    public boolean isOnline() {
-        try {
-            InetAddress address = InetAddress.getByName("8.8.8.8");
-            return address.isReachable((int) defaultTimeout.toMillis());
-        } catch (Exception e) {
-            Logger.warn(NetworkUtils.class, "Sin conectividad de red disponible.");
-            return false;
-        }
+    public ConnectivityMonitor connectivity() {
+        return connectivity;
     }
 
     /**
-     * Analiza una respuesta JSON en formato lista. Este metodo es un stub a la espera
-     * de integrar una libreria JSON real; por ahora devuelve una lista vacia para
-     * mantener la arquitectura lista para ampliarse.
+     * Indica si merece la pena intentar una peticion a la API segun su {@link ConnectivityMonitor}. No hace
+     * ninguna peticion: el estado lo mantienen los resultados de las peticiones reales y la sonda del monitor.
      */
-    public List<Map<String, Object>> parseJsonArray(String body) {
-        Logger.warn(NetworkUtils.class, "Parser JSON no implementado. Respuesta ignorada.");
-        return Collections.emptyList();
+    public boolean isOnline() {
+        return connectivity.allowRequest();
     }
 
     public Producto mapToProducto(Map<String, Object> data) {
@@ -79,6 +75,28 @@ public class NetworkUtils {
         return orden;
     }
 
+    /**
+     * Lee el siguiente objeto de {@code reader} directamente como producto, sin pasar por un mapa. Los
+     * campos ausentes o de otro tipo quedan igual que con {@link #mapToProducto(Map)}.
+     */
+    public Producto mapToProducto(JsonReader reader) throws IOException {
+        return JsonCodec.readProducto(reader);
+    }
+
+    /**
+     * Lee el siguiente objeto de {@code reader} directamente como proveedor, sin pasar por un mapa.
+     */
+    public Proveedor mapToProveedor(JsonReader reader) throws IOException {
+        return JsonCodec.readProveedor(reader);
+    }
+
+    /**
+     * Lee el siguiente objeto de {@code reader} directamente como orden, sin pasar por un mapa.
+     */
+    public Orden mapToOrden(JsonReader reader) throws IOException {
+        return JsonCodec.readOrden(reader);
+    }
+
     private String asString(Object value) {
         return value == null ? "" : String.valueOf(value);
     }
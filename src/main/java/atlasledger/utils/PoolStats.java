@@ -0,0 +1,40 @@
+package atlasledger.utils;
+
+/**
+ * Instantanea de las metricas del pool de conexiones de {@link DBHelper}.
+ *
+ * @param maxSize        numero maximo de conexiones simultaneas
+ * @param inUse          conexiones prestadas en este momento
+ * @param idle           conexiones abiertas a la espera de ser reutilizadas
+ * @param created        conexiones fisicas abiertas desde que se creo el pool
+ * @param discarded      conexiones fisicas cerradas por fallo de validacion o drenaje
+ * @param acquisitions   prestamos atendidos
+ * @param totalWaitNanos tiempo acumulado esperando una conexion
+ * @param maxWaitNanos   mayor espera observada para un prestamo
+ * @param statementHits  sentencias preparadas servidas desde la cache de su conexion
+ * @param statementMisses sentencias que hubo que compilar de nuevo
+ */
+public record PoolStats(int maxSize,
+                        int inUse,
+                        int idle,
+                        long created,
+                        long discarded,
+                        long acquisitions,
+                        long totalWaitNanos,
+                        long maxWaitNanos,
+                        long statementHits,
+                        long statementMisses) {
+
+    public double averageWaitMillis() {
+        return acquisitions == 0 ? 0.0 : totalWaitNanos / (double) acquisitions / 1_000_000.0;
+    }
+
+    public double maxWaitMillis() {
+        return maxWaitNanos / 1_000_000.0;
+    }
+
+    public double statementHitRatio() {
+        long total = statementHits + statementMisses;
+        return total == 0 ? 0.0 : statementHits / (double) total;
+    }
+}
@@ -0,0 +1,205 @@
+package atlasledger.utils;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * Metricas de las sentencias SQL ejecutadas a traves de las conexiones de {@link DBHelper}.
+ * <p>
+ * Por cada plantilla SQL (el texto de la sentencia con los espacios normalizados y las listas
+ * {@code IN (?, ?, ...)} reducidas a una) se guarda un {@link LatencyHistogram} y el numero de filas
+ * leidas o modificadas. Como mucho se guardan {@value #MAX_TEMPLATES} plantillas; las siguientes se
+ * acumulan en {@value #OTHER_TEMPLATE}. La latencia de una consulta
+ * es el tiempo pasado dentro de {@code executeQuery} y de las llamadas a {@code next()}; no incluye
+ * el tiempo que el llamador dedica a procesar cada fila. Tambien se registra cuanto se espera por
+ * una conexion del pool.
+ * <p>
+ * Las sentencias que superan {@link #getSlowThreshold() el umbral de lentitud} se escriben en el log
+ * junto con su plan de ejecucion. El umbral inicial se lee de la propiedad del sistema
+ * {@value #SLOW_THRESHOLD_PROPERTY} (en milisegundos).
+ */
+public final class QueryMetrics {
+
+    public static final String SLOW_THRESHOLD_PROPERTY = "atlasledger.slowQueryMs";
+    private static final long DEFAULT_SLOW_THRESHOLD_MS = 250;
+
+    static final int MAX_TEMPLATES = 512;
+    static final String OTHER_TEMPLATE = "(otras sentencias)";
+    private static final int MAX_ALIASES = 2048;
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final Pattern IN_LIST = Pattern.compile("(?i)\\bIN \\( ?\\?(?: ?, ?\\?)* ?\\)");
+    // Tablas que escribe el propio Logger; sus sentencias nunca se anotan como lentas.
+    private static final Pattern LOG_WRITE = Pattern.compile(
+        "(?i)^(?:INSERT(?: OR \\w+)? INTO|REPLACE INTO|UPDATE|DELETE FROM) (?:app_logs|app_log_counters)\\b");
+
+    // Texto SQL tal cual llega de JDBC -> acumulador de su plantilla.
+    private static final Map<String, Entry> ENTRIES = new ConcurrentHashMap<>();
+    private static final Map<String, Entry> TEMPLATES = new ConcurrentHashMap<>();
+    private static final LatencyHistogram CONNECTION_WAIT = new LatencyHistogram();
+
+    private static volatile long slowThresholdNanos =
+        Duration.ofMillis(Long.getLong(SLOW_THRESHOLD_PROPERTY, DEFAULT_SLOW_THRESHOLD_MS)).toNanos();
+
+    private QueryMetrics() {
+    }
+
+    /**
+     * Estadisticas acumuladas de una plantilla SQL.
+     *
+     * @param sql     plantilla SQL normalizada
+     * @param latency histograma de latencias
+     * @param rows    filas leidas o modificadas en total
+     * @param slow    ejecuciones que superaron el umbral de lentitud
+     */
+    public record QueryStats(String sql, LatencyHistogram.Snapshot latency, long rows, long slow) {
+    }
+
+    public static Duration getSlowThreshold() {
+        return Duration.ofNanos(slowThresholdNanos);
+    }
+
+    public static void setSlowThreshold(Duration threshold) {
+        slowThresholdNanos = threshold.toNanos();
+    }
+
+    /**
+     * Devuelve las plantillas ordenadas por tiempo total consumido, de mayor a menor.
+     */
+    public static List<QueryStats> snapshot() {
+        List<QueryStats> stats = new ArrayList<>();
+        TEMPLATES.values().forEach(entry -> stats.add(entry.toStats()));
+        stats.sort(Comparator.comparingLong((QueryStats s) -> s.latency().totalNanos()).reversed());
+        return stats;
+    }
+
+    public static LatencyHistogram.Snapshot connectionWait() {
+        return CONNECTION_WAIT.snapshot();
+    }
+
+    public static void reset() {
+        ENTRIES.clear();
+        TEMPLATES.clear();
+    }
+
+    static void recordConnectionWait(long nanos) {
+        CONNECTION_WAIT.record(nanos);
+    }
+
+    /**
+     * Registra una ejecucion. {@code physical} se usa solo para obtener el plan cuando la sentencia
+     * es lenta; debe ser la conexion fisica para no volver a pasar por la instrumentacion.
+     */
+    static void record(String sql, long nanos, long rows, Connection physical) {
+        Entry entry = entry(sql);
+        entry.latency.record(nanos);
+        entry.rows.add(rows);
+        if (nanos < slowThresholdNanos || entry.logWrite) {
+            return;
+        }
+        entry.slow.increment();
+        if (entry.template.equals(OTHER_TEMPLATE)) {
+            // Sin plantilla propia se describe la sentencia concreta, sin guardar su plan.
+            String template = normalize(sql);
+            if (!isLogWrite(template)) {
+                logSlow(template, explain(sql, physical), nanos, rows);
+            }
+            return;
+        }
+        if (entry.plan == null) {
+            entry.plan = explain(entry.sample, physical);
+        }
+        logSlow(entry.template, entry.plan, nanos, rows);
+    }
+
+    private static void logSlow(String template, String plan, long nanos, long rows) {
+        Logger.warn(QueryMetrics.class, "Consulta lenta (" + nanos / 1_000_000 + " ms, " + rows + " filas): "
+            + template + " | plan: " + plan);
+    }
+
+    private static String explain(String sql, Connection physical) {
+        if (physical == null) {
+            return "no disponible";
+        }
+        List<String> details = new ArrayList<>();
+        try (Statement st = physical.createStatement();
+             ResultSet rs = st.executeQuery("EXPLAIN QUERY PLAN " + sql)) {
+            while (rs.next()) {
+                details.add(rs.getString("detail"));
+            }
+        } catch (SQLException e) {
+            return "no disponible (" + e.getMessage() + ")";
+        }
+        return String.join("; ", details);
+    }
+
+    /**
+     * Busca el acumulador de {@code sql}. El texto recibido suele ser la misma constante en cada llamada,
+     * asi que se indexa tal cual y la plantilla solo se calcula la primera vez; el SQL dinamico que no
+     * cabe en los alias se normaliza en cada llamada, y el que no cabe en las plantillas va a
+     * {@value #OTHER_TEMPLATE}.
+     */
+    private static Entry entry(String sql) {
+        Entry entry = ENTRIES.get(sql);
+        if (entry != null) {
+            return entry;
+        }
+        String template = normalize(sql);
+        entry = TEMPLATES.get(template);
+        if (entry == null) {
+            String key = TEMPLATES.size() < MAX_TEMPLATES ? template : OTHER_TEMPLATE;
+            entry = TEMPLATES.computeIfAbsent(key, ignored -> new Entry(key, sql));
+        }
+        if (ENTRIES.size() < MAX_ALIASES) {
+            ENTRIES.putIfAbsent(sql, entry);
+        }
+        return entry;
+    }
+
+    /**
+     * Las escrituras de {@link Logger} en {@code app_logs} y {@code app_log_counters} no se anotan como
+     * lentas: cada aviso generaria otra escritura en las mismas tablas.
+     */
+    static boolean isLogWrite(String template) {
+        return LOG_WRITE.matcher(template).find();
+    }
+
+    static String normalize(String sql) {
+        String template = WHITESPACE.matcher(sql.strip()).replaceAll(" ");
+        return IN_LIST.matcher(template).replaceAll("IN (?, ...)");
+    }
+
+    /**
+     * Acumulador de una plantilla; la plantilla y si es una escritura del log se calculan una sola vez.
+     */
+    private static final class Entry {
+
+        private final String template;
+        // Primer texto SQL visto de la plantilla; es el que se explica.
+        private final String sample;
+        private final boolean logWrite;
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final LongAdder rows = new LongAdder();
+        private final LongAdder slow = new LongAdder();
+        private volatile String plan;
+
+        private Entry(String template, String sample) {
+            this.template = template;
+            this.sample = sample;
+            this.logWrite = isLogWrite(template);
+        }
+
+        private QueryStats toStats() {
+            return new QueryStats(template, latency.snapshot(), rows.sum(), slow.sum());
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package atlasledger.utils;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Revisa con {@code EXPLAIN QUERY PLAN} las consultas de lectura de los DAO y servicios.
+ * <p>
+ * Cada clase registra sus consultas al inicializarse mediante {@link #register}. El auditor marca las
+ * que recorren una tabla completa sin indice ({@code SCAN tabla}) o necesitan ordenar en un arbol
+ * temporal ({@code USE TEMP B-TREE}). Una consulta puede declarar como aceptados los problemas que
+ * forman parte de su diseno, por ejemplo un recorrido completo deliberado.
+ * <p>
+ * Las consultas se analizan sin valores enlazados; SQLite trata los parametros como {@code NULL},
+ * lo que no cambia el plan elegido.
+ */
+public final class QueryPlanAuditor {
+
+    public enum Issue {
+        FULL_SCAN,
+        TEMP_B_TREE
+    }
+
+    /**
+     * Problema detectado en el plan de una consulta registrada.
+     *
+     * @param query  nombre de la consulta ({@code Clase.metodo})
+     * @param issue  tipo de problema
+     * @param detail linea del plan que lo provoca
+     */
+    public record Finding(String query, Issue issue, String detail) {
+
+        @Override
+        public String toString() {
+            return query + ": " + issue + " (" + detail + ")";
+        }
+    }
+
+    private record RegisteredQuery(String sql, Set<Issue> accepted) {
+    }
+
+    private static final Map<String, RegisteredQuery> QUERIES = new LinkedHashMap<>();
+
+    private QueryPlanAuditor() {
+    }
+
+    /**
+     * Registra una consulta para auditarla y la devuelve sin cambios, de modo que puede usarse al
+     * declarar la constante SQL.
+     */
+    public static String register(Class<?> owner, String name, String sql, Issue... accepted) {
+        Set<Issue> issues = EnumSet.noneOf(Issue.class);
+        issues.addAll(List.of(accepted));
+        synchronized (QUERIES) {
+            QUERIES.put(owner.getSimpleName() + "." + name, new RegisteredQuery(sql, issues));
+        }
+        return sql;
+    }
+
+    public static Map<String, String> registeredQueries() {
+        Map<String, String> queries = new LinkedHashMap<>();
+        synchronized (QUERIES) {
+            QUERIES.forEach((name, query) -> queries.put(name, query.sql()));
+        }
+        return queries;
+    }
+
+    /**
+     * Inicializa las clases indicadas (para que registren sus consultas) y audita todas las consultas
+     * registradas.
+     */
+    public static List<Finding> audit(Connection conn, Class<?>... owners) throws SQLException {
+        for (Class<?> owner : owners) {
+            try {
+                Class.forName(owner.getName(), true, owner.getClassLoader());
+            } catch (ClassNotFoundException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        Map<String, RegisteredQuery> queries;
+        synchronized (QUERIES) {
+            queries = new LinkedHashMap<>(QUERIES);
+        }
+        List<Finding> findings = new ArrayList<>();
+        for (Map.Entry<String, RegisteredQuery> entry : queries.entrySet()) {
+            RegisteredQuery query = entry.getValue();
+            for (String detail : explain(conn, query.sql())) {
+                Issue issue = classify(detail);
+                if (issue != null && !query.accepted().contains(issue)) {
+                    findings.add(new Finding(entry.getKey(), issue, detail));
+                }
+            }
+        }
+        return findings;
+    }
+
+    /**
+     * Audita las consultas sobre la base de datos activa y escribe cada hallazgo en el log.
+     */
+    public static List<Finding> auditAndLog(Class<?>... owners) {
+        try (Connection conn = DBHelper.getConnection()) {
+            List<Finding> findings = audit(conn, owners);
+            for (Finding finding : findings) {
+                Logger.warn(QueryPlanAuditor.class, "Plan de consulta mejorable: " + finding);
+            }
+            Logger.info(QueryPlanAuditor.class, "Auditoria de planes completada: " + registeredQueries().size()
+                + " consultas, " + findings.size() + " hallazgos");
+            return findings;
+        } catch (SQLException e) {
+            Logger.error(QueryPlanAuditor.class, "Error auditando planes de consulta", e);
+            return List.of();
+        }
+    }
+
+    private static List<String> explain(Connection conn, String sql) throws SQLException {
+        List<String> details = new ArrayList<>();
+        try (Statement st = conn.createStatement(); ResultSet rs = st.executeQuery("EXPLAIN QUERY PLAN " + sql)) {
+            while (rs.next()) {
+                details.add(rs.getString("detail"));
+            }
+        }
+        return details;
+    }
+
+    private static Issue classify(String detail) {
+        if (detail.startsWith("USE TEMP B-TREE")) {
+            return Issue.TEMP_B_TREE;
+        }
+        if (detail.startsWith("SCAN ") && !detail.contains(" USING ")) {
+            return Issue.FULL_SCAN;
+        }
+        return null;
+    }
+}
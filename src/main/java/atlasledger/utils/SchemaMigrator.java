@@ -0,0 +1,300 @@
+package atlasledger.utils;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Ejecuta las {@link Migration migraciones} del esquema en orden y registra cada version aplicada en
+ * la tabla {@code schema_version}.
+ * <p>
+ * Cuando todas las migraciones estan aplicadas, la version mas alta se guarda tambien en
+ * {@code PRAGMA user_version}. En el arranque basta leer ese valor de la cabecera del fichero para
+ * saber que el esquema esta al dia y omitir todo el DDL.
+ * <p>
+ * Las migraciones en segundo plano se aplican a traves de {@link DBWriter} en un hilo aparte, una vez
+ * que la aplicacion ya puede usarse.
+ */
+public final class SchemaMigrator {
+
+    private static final String CREATE_VERSION_TABLE_SQL = """
+        CREATE TABLE IF NOT EXISTS schema_version (
+            version INTEGER PRIMARY KEY,
+            description TEXT NOT NULL,
+            checksum TEXT NOT NULL,
+            applied_at TEXT DEFAULT CURRENT_TIMESTAMP
+        )
+    """;
+    private static final String INSERT_VERSION_SQL = """
+        INSERT INTO schema_version (version, description, checksum, applied_at)
+        VALUES (?, ?, ?, CURRENT_TIMESTAMP)
+    """;
+
+    private static ExecutorService backgroundExecutor;
+
+    private SchemaMigrator() {
+    }
+
+    /**
+     * Divide un script SQL en sentencias, ignorando los {@code ;} que aparecen dentro de literales,
+     * identificadores entre comillas y comentarios.
+     */
+    public static List<String> splitStatements(String script) {
+        List<String> statements = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        int length = script.length();
+        int i = 0;
+        while (i < length) {
+            char c = script.charAt(i);
+            char next = i + 1 < length ? script.charAt(i + 1) : '\0';
+            if (c == '-' && next == '-') {
+                int end = script.indexOf('\n', i);
+                i = end < 0 ? length : end + 1;
+                current.append('\n');
+            } else if (c == '/' && next == '*') {
+                int end = script.indexOf("*/", i + 2);
+                i = end < 0 ? length : end + 2;
+                current.append(' ');
+            } else if (c == '\'' || c == '"' || c == '`' || c == '[') {
+                char close = c == '[' ? ']' : c;
+                int end = i + 1;
+                while (end < length) {
+                    if (script.charAt(end) == close) {
+                        if (close != ']' && end + 1 < length && script.charAt(end + 1) == close) {
+                            end += 2;
+                            continue;
+                        }
+                        break;
+                    }
+                    end++;
+                }
+                int stop = Math.min(end + 1, length);
+                current.append(script, i, stop);
+                i = stop;
+            } else if (c == ';') {
+                addStatement(statements, current);
+                i++;
+            } else {
+                current.append(c);
+                i++;
+            }
+        }
+        addStatement(statements, current);
+        return statements;
+    }
+
+    public static int latestVersion(List<Migration> migrations) {
+        return migrations.stream().mapToInt(Migration::getVersion).max().orElse(0);
+    }
+
+    public static boolean isCurrent(Connection conn, List<Migration> migrations) throws SQLException {
+        return userVersion(conn) >= latestVersion(migrations);
+    }
+
+    /**
+     * Aplica las migraciones de primer plano pendientes, cada una en su propia transaccion.
+     *
+     * @return numero de migraciones aplicadas; 0 si el esquema ya estaba al dia
+     */
+    public static int migrate(Connection conn, List<Migration> migrations) throws SQLException {
+        if (isCurrent(conn, migrations)) {
+            return 0;
+        }
+        try (Statement st = conn.createStatement()) {
+            st.execute(CREATE_VERSION_TABLE_SQL);
+        }
+        Map<Integer, String> applied = loadApplied(conn);
+        verifyChecksums(applied, migrations);
+
+        int count = 0;
+        for (Migration migration : sorted(migrations)) {
+            if (applied.containsKey(migration.getVersion()) || migration.isBackground()) {
+                continue;
+            }
+            apply(conn, migration);
+            applied.put(migration.getVersion(), migration.getChecksum());
+            count++;
+        }
+        if (pending(applied, migrations).isEmpty()) {
+            setUserVersion(conn, latestVersion(migrations));
+        }
+        return count;
+    }
+
+    public static List<Migration> pendingBackground(Connection conn, List<Migration> migrations) throws SQLException {
+        if (isCurrent(conn, migrations)) {
+            return List.of();
+        }
+        return pending(loadApplied(conn), migrations);
+    }
+
+    /**
+     * Programa las migraciones en segundo plano pendientes. Si mientras tanto se cambia la base de datos
+     * activa, las migraciones restantes se descartan y se aplicaran en el siguiente arranque.
+     */
+    static synchronized void scheduleBackground(List<Migration> pending, List<Migration> all, Path databasePath) {
+        if (pending.isEmpty()) {
+            return;
+        }
+        if (backgroundExecutor == null) {
+            backgroundExecutor = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "atlasledger-schema-background");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        backgroundExecutor.submit(() -> runBackground(pending, all, databasePath));
+    }
+
+    /**
+     * Espera a que terminen las migraciones en segundo plano programadas hasta ahora y a que se
+     * escriban las entradas de log que hayan generado.
+     */
+    public static void awaitBackground() {
+        ExecutorService executor;
+        synchronized (SchemaMigrator.class) {
+            executor = backgroundExecutor;
+        }
+        if (executor == null) {
+            return;
+        }
+        try {
+            executor.submit(() -> { }).get();
+            Logger.flush();
+            DBWriter.flush();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private static void runBackground(List<Migration> pending, List<Migration> all, Path databasePath) {
+        int latest = latestVersion(all);
+        List<Migration> remaining = new ArrayList<>(sorted(pending));
+        while (!remaining.isEmpty()) {
+            Migration migration = remaining.remove(0);
+            if (!databasePath.equals(DBHelper.getDatabasePath())) {
+                return;
+            }
+            boolean last = remaining.isEmpty();
+            long start = System.nanoTime();
+            try {
+                if (migration.isTransactional()) {
+                    DBWriter.execute(conn -> {
+                        applyWithin(conn, migration);
+                        if (last) {
+                            setUserVersion(conn, latest);
+                        }
+                        return null;
+                    });
+                } else {
+                    DBWriter.executeExclusive(conn -> {
+                        applyWithin(conn, migration);
+                        if (last) {
+                            setUserVersion(conn, latest);
+                        }
+                        return null;
+                    });
+                }
+                Logger.info(SchemaMigrator.class, "Migracion en segundo plano aplicada: " + migration
+                    + " (" + (System.nanoTime() - start) / 1_000_000 + " ms)");
+            } catch (SQLException | RuntimeException e) {
+                Logger.error(SchemaMigrator.class, "Error aplicando migracion en segundo plano " + migration, e);
+                return;
+            }
+        }
+    }
+
+    private static void apply(Connection conn, Migration migration) throws SQLException {
+        if (!migration.isTransactional()) {
+            applyWithin(conn, migration);
+            Logger.info(SchemaMigrator.class, "Migracion aplicada: " + migration);
+            return;
+        }
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        try {
+            applyWithin(conn, migration);
+            conn.commit();
+            Logger.info(SchemaMigrator.class, "Migracion aplicada: " + migration);
+        } catch (SQLException | RuntimeException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+    }
+
+    private static void applyWithin(Connection conn, Migration migration) throws SQLException {
+        migration.apply(conn);
+        try (PreparedStatement ps = conn.prepareStatement(INSERT_VERSION_SQL)) {
+            ps.setInt(1, migration.getVersion());
+            ps.setString(2, migration.getDescription());
+            ps.setString(3, migration.getChecksum());
+            ps.executeUpdate();
+        }
+    }
+
+    private static Map<Integer, String> loadApplied(Connection conn) throws SQLException {
+        Map<Integer, String> applied = new HashMap<>();
+        try (Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery("SELECT version, checksum FROM schema_version")) {
+            while (rs.next()) {
+                applied.put(rs.getInt("version"), rs.getString("checksum"));
+            }
+        }
+        return applied;
+    }
+
+    private static void verifyChecksums(Map<Integer, String> applied, List<Migration> migrations) {
+        for (Migration migration : migrations) {
+            String checksum = applied.get(migration.getVersion());
+            if (checksum != null && !checksum.equals(migration.getChecksum())) {
+                Logger.warn(SchemaMigrator.class, "La migracion " + migration
+                    + " ha cambiado despues de aplicarse (checksum distinto).");
+            }
+        }
+    }
+
+    private static List<Migration> pending(Map<Integer, String> applied, List<Migration> migrations) {
+        return sorted(migrations).stream()
+            .filter(migration -> !applied.containsKey(migration.getVersion()))
+            .toList();
+    }
+
+    private static List<Migration> sorted(List<Migration> migrations) {
+        return migrations.stream().sorted(Comparator.comparingInt(Migration::getVersion)).toList();
+    }
+
+    private static void addStatement(List<String> statements, StringBuilder current) {
+        String statement = current.toString().strip();
+        if (!statement.isEmpty()) {
+            statements.add(statement);
+        }
+        current.setLength(0);
+    }
+
+    private static int userVersion(Connection conn) throws SQLException {
+        try (Statement st = conn.createStatement(); ResultSet rs = st.executeQuery("PRAGMA user_version")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    private static void setUserVersion(Connection conn, int version) throws SQLException {
+        try (Statement st = conn.createStatement()) {
+            st.execute("PRAGMA user_version = " + version);
+        }
+    }
+}
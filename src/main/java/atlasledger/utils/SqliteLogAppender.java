@@ -0,0 +1,111 @@
+package atlasledger.utils;
+
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.AppenderBase;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Destino de logback que guarda las entradas en la tabla {@code app_logs}.
+ * <p>
+ * Cada entrada se anade a una {@link AsyncLogAppender cola propia} y un hilo de fondo las inserta por
+ * lotes en una sola transaccion de {@link DBWriter}, actualizando en ella los {@link LogCounters}.
+ * La capacidad de la cola y su politica de desbordamiento se configuran en {@code logback.xml}. Si
+ * una escritura falla se dejan de guardar entradas hasta que {@link DBHelper} abre una base de datos
+ * y llama a {@link #resetPersistence()}.
+ */
+public class SqliteLogAppender extends AppenderBase<ILoggingEvent> {
+
+    private static final String INSERT_LOG_SQL = """
+        INSERT INTO app_logs (level, source, message, created_at)
+        VALUES (?, ?, ?, ?)
+    """;
+    // Mismo formato que CURRENT_TIMESTAMP, que SQLite expresa en UTC.
+    private static final DateTimeFormatter TIMESTAMP_FORMAT =
+        DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss").withZone(ZoneOffset.UTC);
+    private static final Duration STOP_TIMEOUT = Duration.ofSeconds(5);
+
+    private static volatile boolean persistenceEnabled = true;
+
+    private int capacity = 8192;
+    private Logger.OverflowPolicy overflowPolicy = Logger.OverflowPolicy.SAMPLE;
+    private AsyncLogAppender queue;
+
+    /**
+     * Logback instancia el destino por reflexion; la capacidad y la politica se fijan despues.
+     */
+    public SqliteLogAppender() {
+    }
+
+    public void setCapacity(int capacity) {
+        this.capacity = capacity;
+    }
+
+    public void setOverflowPolicy(String overflowPolicy) {
+        this.overflowPolicy = Logger.OverflowPolicy.parse(overflowPolicy);
+    }
+
+    static void resetPersistence() {
+        persistenceEnabled = true;
+    }
+
+    @Override
+    public void start() {
+        queue = new AsyncLogAppender("atlasledger-log-sqlite", capacity, overflowPolicy, SqliteLogAppender::writeBatch);
+        super.start();
+    }
+
+    @Override
+    public void stop() {
+        super.stop();
+        if (queue != null) {
+            queue.close(STOP_TIMEOUT);
+        }
+    }
+
+    @Override
+    protected void append(ILoggingEvent event) {
+        if (!persistenceEnabled) {
+            return;
+        }
+        queue.append(new AsyncLogAppender.Entry(event.getLevel().toString(), Logger.simpleName(event.getLoggerName()),
+            event.getFormattedMessage(), event.getTimeStamp()));
+    }
+
+    private static void writeBatch(List<AsyncLogAppender.Entry> batch) throws SQLException {
+        if (!persistenceEnabled) {
+            return;
+        }
+        Map<LogCounters.Key, Long> counts = new HashMap<>();
+        for (AsyncLogAppender.Entry entry : batch) {
+            counts.merge(LogCounters.key(entry.level(), entry.source(), entry.timestampMillis()), 1L, Long::sum);
+        }
+        try {
+            DBWriter.execute(conn -> {
+                try (PreparedStatement ps = conn.prepareStatement(INSERT_LOG_SQL)) {
+                    for (AsyncLogAppender.Entry entry : batch) {
+                        ps.setString(1, entry.level());
+                        ps.setString(2, entry.source());
+                        ps.setString(3, entry.message());
+                        ps.setString(4, TIMESTAMP_FORMAT.format(Instant.ofEpochMilli(entry.timestampMillis())));
+                        ps.addBatch();
+                    }
+                    ps.executeBatch();
+                }
+                LogCounters.apply(conn, counts);
+                return null;
+            });
+        } catch (SQLException | RuntimeException e) {
+            LogCounters.invalidate();
+            persistenceEnabled = false;
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package atlasledger.utils;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+/**
+ * Envuelve las sentencias entregadas por {@link ConnectionPool} para medir cada ejecucion y
+ * anotarla en {@link QueryMetrics}.
+ * <p>
+ * Las actualizaciones se miden en la propia llamada a {@code execute*}. En las consultas se suma el
+ * tiempo de {@code executeQuery} y el de cada {@code next()}, y la medicion se registra cuando el
+ * cursor se agota o se cierra, junto con el numero de filas leidas.
+ */
+final class StatementInstrumentation {
+
+    private StatementInstrumentation() {
+    }
+
+    static PreparedStatement wrap(PreparedStatement statement, String sql, Connection physical) {
+        return (PreparedStatement) Proxy.newProxyInstance(
+            ConnectionPool.class.getClassLoader(),
+            new Class<?>[] {PreparedStatement.class},
+            new StatementHandler(statement, sql, physical)
+        );
+    }
+
+    static Statement wrap(Statement statement, Connection physical) {
+        return (Statement) Proxy.newProxyInstance(
+            ConnectionPool.class.getClassLoader(),
+            new Class<?>[] {Statement.class},
+            new StatementHandler(statement, null, physical)
+        );
+    }
+
+    private static final class StatementHandler implements InvocationHandler {
+
+        private final Statement target;
+        private final String preparedSql;
+        private final Connection physical;
+        private QueryTimer openQuery;
+
+        private StatementHandler(Statement target, String preparedSql, Connection physical) {
+            this.target = target;
+            this.preparedSql = preparedSql;
+            this.physical = physical;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.equals("close")) {
+                finishOpenQuery();
+            }
+            if (!name.startsWith("execute")) {
+                return forward(method, args);
+            }
+            String sql = args != null && args.length > 0 && args[0] instanceof String text ? text : preparedSql;
+            if (sql == null) {
+                return forward(method, args);
+            }
+
+            finishOpenQuery();
+            long start = System.nanoTime();
+            Object result = forward(method, args);
+            long elapsed = System.nanoTime() - start;
+            if (result instanceof ResultSet rs) {
+                openQuery = new QueryTimer(sql, elapsed, physical);
+                return openQuery.wrap(rs);
+            }
+            QueryMetrics.record(sql, elapsed, affectedRows(result), physical);
+            return result;
+        }
+
+        private Object forward(Method method, Object[] args) throws Throwable {
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+
+        private void finishOpenQuery() {
+            if (openQuery != null) {
+                openQuery.finish();
+                openQuery = null;
+            }
+        }
+
+        private static long affectedRows(Object result) {
+            if (result instanceof Integer count) {
+                return Math.max(count, 0);
+            }
+            if (result instanceof Long count) {
+                return Math.max(count, 0);
+            }
+            long total = 0;
+            if (result instanceof int[] counts) {
+                for (int count : counts) {
+                    total += Math.max(count, 0);
+                }
+            } else if (result instanceof long[] counts) {
+                for (long count : counts) {
+                    total += Math.max(count, 0);
+                }
+            }
+            return total;
+        }
+    }
+
+    /**
+     * Acumula el tiempo de una consulta mientras se recorre su cursor.
+     */
+    private static final class QueryTimer implements InvocationHandler {
+
+        private final String sql;
+        private final Connection physical;
+        private ResultSet target;
+        private long nanos;
+        private long rows;
+        private boolean finished;
+
+        private QueryTimer(String sql, long executeNanos, Connection physical) {
+            this.sql = sql;
+            this.nanos = executeNanos;
+            this.physical = physical;
+        }
+
+        private ResultSet wrap(ResultSet rs) {
+            this.target = rs;
+            return (ResultSet) Proxy.newProxyInstance(
+                ConnectionPool.class.getClassLoader(),
+                new Class<?>[] {ResultSet.class},
+                this
+            );
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.equals("next")) {
+                long start = System.nanoTime();
+                boolean hasRow = (Boolean) forward(method, args);
+                nanos += System.nanoTime() - start;
+                if (hasRow) {
+                    rows++;
+                } else {
+                    finish();
+                }
+                return hasRow;
+            }
+            if (name.equals("close")) {
+                finish();
+            }
+            return forward(method, args);
+        }
+
+        private Object forward(Method method, Object[] args) throws Throwable {
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+
+        private void finish() {
+            if (!finished) {
+                finished = true;
+                QueryMetrics.record(sql, nanos, rows, physical);
+            }
+        }
+    }
+}
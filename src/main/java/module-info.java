@@ -12,6 +12,7 @@ module atlasledger {
     // Logging
     requires org.slf4j;
     requires ch.qos.logback.classic;
+    requires ch.qos.logback.core;
 
     // Internal exports
     exports atlasledger.app;
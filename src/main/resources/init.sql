@@ -57,7 +57,9 @@ CREATE TABLE IF NOT EXISTS sync_queue (
     estado TEXT DEFAULT 'PENDING',
     intentos INTEGER DEFAULT 0,
     ultimo_intento TEXT,
-    creado_en TEXT DEFAULT CURRENT_TIMESTAMP
+    creado_en TEXT DEFAULT CURRENT_TIMESTAMP,
+    proximo_intento INTEGER NOT NULL DEFAULT 0,
+    ultimo_error TEXT
 );
 
 CREATE TABLE IF NOT EXISTS app_logs (
@@ -86,11 +88,35 @@ CREATE TABLE IF NOT EXISTS document_queue (
     metadata TEXT
 );
 
+CREATE TABLE IF NOT EXISTS app_log_counters (
+    level TEXT NOT NULL,
+    source TEXT NOT NULL,
+    hour TEXT NOT NULL,
+    total INTEGER NOT NULL DEFAULT 0,
+    PRIMARY KEY (level, source, hour)
+) WITHOUT ROWID;
+
+CREATE TABLE IF NOT EXISTS sync_marcas (
+    entidad TEXT PRIMARY KEY,
+    marca TEXT,
+    etag TEXT,
+    actualizado_en TEXT DEFAULT CURRENT_TIMESTAMP
+) WITHOUT ROWID;
+
+CREATE TABLE IF NOT EXISTS sync_huellas (
+    entidad TEXT NOT NULL,
+    codigo TEXT NOT NULL,
+    hash TEXT NOT NULL,
+    PRIMARY KEY (entidad, codigo)
+) WITHOUT ROWID;
+
 CREATE INDEX IF NOT EXISTS idx_productos_codigo ON productos (codigo);
 CREATE INDEX IF NOT EXISTS idx_proveedores_codigo ON proveedores (codigo);
 CREATE INDEX IF NOT EXISTS idx_ordenes_codigo ON ordenes (codigo);
-CREATE INDEX IF NOT EXISTS idx_sync_estado ON sync_queue (estado);
+CREATE INDEX IF NOT EXISTS idx_sync_estado_proximo ON sync_queue (estado, proximo_intento);
+CREATE INDEX IF NOT EXISTS idx_sync_registro ON sync_queue (entidad, referencia, estado);
 CREATE INDEX IF NOT EXISTS idx_logs_level ON app_logs (level);
+CREATE INDEX IF NOT EXISTS idx_logs_created ON app_logs (created_at);
 CREATE INDEX IF NOT EXISTS idx_workers_username ON workers (username);
 
 INSERT INTO proveedores (codigo, nombre, email, telefono, direccion)
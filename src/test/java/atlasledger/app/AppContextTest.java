@@ -14,6 +14,7 @@ import atlasledger.service.DatabaseIntegrityService;
 import atlasledger.service.DocumentService;
 import atlasledger.service.ReportService;
 import atlasledger.service.SimulationService;
+import atlasledger.service.SyncScheduler;
 import atlasledger.service.SyncService;
 import atlasledger.utils.NetworkUtils;
 import java.nio.file.Path;
@@ -31,6 +32,7 @@ class AppContextTest {
         OrderRepository orders = new OrderRepository();
         NetworkUtils networkUtils = new NetworkUtils(Duration.ofSeconds(2));
         SyncService syncService = new SyncService(config.getApiBaseUrl(), products, providers, orders, networkUtils);
+        SyncScheduler syncScheduler = new SyncScheduler(syncService);
         ReportService reportService = new ReportService(products, orders);
         DatabaseIntegrityService databaseIntegrityService = new DatabaseIntegrityService();
         AnalyticsService analyticsService = new AnalyticsService();
@@ -46,6 +48,7 @@ class AppContextTest {
             providers,
             orders,
             syncService,
+            syncScheduler,
             reportService,
             databaseIntegrityService,
             analyticsService,
@@ -64,6 +67,7 @@ class AppContextTest {
             assertSame(providers, context.getProviderRepository());
             assertSame(orders, context.getOrderRepository());
             assertSame(syncService, context.getSyncService());
+            assertSame(syncScheduler, context.getSyncScheduler());
             assertSame(reportService, context.getReportService());
             assertSame(databaseIntegrityService, context.getDatabaseIntegrityService());
             assertSame(analyticsService, context.getAnalyticsService());
@@ -0,0 +1,103 @@
+package atlasledger.dao;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import atlasledger.model.Orden;
+import atlasledger.repository.OrderRepository;
+import atlasledger.utils.DBHelper;
+import atlasledger.utils.SchemaMigrator;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class OrdenDaoTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Path originalPath;
+    private final OrderRepository repository = new OrderRepository();
+
+    @BeforeEach
+    void useTemporaryDatabase() {
+        originalPath = DBHelper.getDatabasePath();
+        DBHelper.overrideDatabasePath(tempDir.resolve("ordenes.db"), false);
+        SchemaMigrator.awaitBackground();
+    }
+
+    @AfterEach
+    void restoreDatabase() {
+        DBHelper.overrideDatabasePath(originalPath, false);
+    }
+
+    @Test
+    void saveAllInsertsAndUpdatesInChunks() {
+        repository.saveAll(ordenes(0, 6, Orden.Estado.BORRADOR), 4);
+        repository.saveAll(ordenes(4, 3, Orden.Estado.APROBADA));
+
+        List<Orden> guardadas = OrdenDao.listar();
+        assertEquals(7, guardadas.size());
+        for (Orden orden : guardadas) {
+            int numero = Integer.parseInt(orden.getCodigo().substring(2));
+            assertEquals(numero >= 4 ? Orden.Estado.APROBADA : Orden.Estado.BORRADOR, orden.getEstado(), orden.getCodigo());
+        }
+    }
+
+    @Test
+    void failingRowRollsBackTheWholeBatch() {
+        repository.saveAll(ordenes(0, 1, Orden.Estado.BORRADOR));
+
+        List<Orden> lote = ordenes(0, 6, Orden.Estado.ENVIADA);
+        lote.get(5).setCodigo(null);
+        assertFalse(OrdenDao.guardarTodos(lote, 4));
+
+        List<Orden> guardadas = OrdenDao.listar();
+        assertEquals(1, guardadas.size());
+        assertEquals(Orden.Estado.BORRADOR, guardadas.get(0).getEstado());
+    }
+
+    @Test
+    void keysetPagesFollowDateThenIdWithUndatedOrdersFirst() {
+        List<Orden> ordenes = new ArrayList<>();
+        ordenes.add(new Orden("OC-C", LocalDate.of(2024, 3, 1), null, 1, Orden.Estado.BORRADOR));
+        ordenes.add(new Orden("OC-SF1", null, null, 1, Orden.Estado.BORRADOR));
+        ordenes.add(new Orden("OC-A1", LocalDate.of(2024, 1, 1), null, 1, Orden.Estado.BORRADOR));
+        ordenes.add(new Orden("OC-SF2", null, null, 1, Orden.Estado.BORRADOR));
+        ordenes.add(new Orden("OC-A2", LocalDate.of(2024, 1, 1), null, 1, Orden.Estado.BORRADOR));
+        repository.saveAll(ordenes);
+
+        List<String> vistas = new ArrayList<>();
+        List<Integer> tamanos = new ArrayList<>();
+        LocalDate fecha = null;
+        int id = 0;
+        while (true) {
+            List<Orden> pagina = OrdenDao.listarDespuesDe(fecha, id, 2);
+            tamanos.add(pagina.size());
+            if (pagina.isEmpty()) {
+                break;
+            }
+            pagina.forEach(orden -> vistas.add(orden.getCodigo()));
+            Orden ultima = pagina.get(pagina.size() - 1);
+            fecha = ultima.getFecha();
+            id = ultima.getId();
+        }
+
+        // La segunda pagina empieza en la ultima orden sin fecha y la tercera parte un empate de fecha.
+        assertEquals(List.of("OC-SF1", "OC-SF2", "OC-A1", "OC-A2", "OC-C"), vistas);
+        assertEquals(List.of(2, 2, 1, 0), tamanos);
+    }
+
+    private static List<Orden> ordenes(int desde, int cuantas, Orden.Estado estado) {
+        List<Orden> ordenes = new ArrayList<>();
+        for (int i = desde; i < desde + cuantas; i++) {
+            ordenes.add(new Orden("OC" + i, LocalDate.of(2024, 1, 1).plusDays(i), null, 10.0 * i, estado));
+        }
+        return ordenes;
+    }
+}
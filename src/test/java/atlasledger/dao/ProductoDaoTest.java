@@ -0,0 +1,131 @@
+package atlasledger.dao;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import atlasledger.model.Producto;
+import atlasledger.repository.ProductRepository;
+import atlasledger.utils.DBHelper;
+import atlasledger.utils.SchemaMigrator;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ProductoDaoTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Path originalPath;
+    private final ProductRepository repository = new ProductRepository();
+
+    @BeforeEach
+    void useTemporaryDatabase() {
+        originalPath = DBHelper.getDatabasePath();
+        DBHelper.overrideDatabasePath(tempDir.resolve("productos.db"), false);
+        SchemaMigrator.awaitBackground();
+    }
+
+    @AfterEach
+    void restoreDatabase() {
+        DBHelper.overrideDatabasePath(originalPath, false);
+    }
+
+    @Test
+    void saveAllInsertsAndUpdatesInChunks() {
+        // 7 filas en lotes de 3: dos lotes llenos y uno de una fila.
+        repository.saveAll(productos(0, 7, 1.0), 3);
+        assertEquals(7, ProductoDao.listar().size());
+
+        List<Producto> segundo = productos(5, 4, 2.0);
+        repository.saveAll(segundo);
+
+        List<Producto> guardados = ProductoDao.listar();
+        assertEquals(9, guardados.size());
+        for (Producto producto : guardados) {
+            int numero = Integer.parseInt(producto.getCodigo().substring(1));
+            assertEquals(numero >= 5 ? 2.0 : 1.0, producto.getPrecio(), producto.getCodigo());
+        }
+    }
+
+    @Test
+    void failingRowRollsBackTheWholeBatch() {
+        repository.saveAll(productos(0, 1, 1.0));
+
+        List<Producto> lote = productos(0, 7, 5.0);
+        // La fila invalida va en el tercer lote, cuando los dos primeros ya se han enviado a SQLite.
+        lote.get(6).setNombre(null);
+        assertFalse(ProductoDao.guardarTodos(lote, 3));
+
+        List<Producto> guardados = ProductoDao.listar();
+        assertEquals(1, guardados.size());
+        assertEquals(1.0, guardados.get(0).getPrecio());
+    }
+
+    @Test
+    void keysetPagesCoverEveryRowOnceAndEndWithAnEmptyPage() {
+        repository.saveAll(productos(0, 10, 1.0));
+
+        // 10 filas en paginas de 4: la ultima pagina llena a medias y despues una vacia.
+        assertEquals(List.of(4, 4, 2, 0), tamanosDePagina(4));
+        // Con un multiplo exacto la pagina vacia llega justo despues de la ultima llena.
+        assertEquals(List.of(5, 5, 0), tamanosDePagina(5));
+        assertTrue(repository.findPageAfter("P9", 5).isEmpty());
+        assertEquals(List.of("P2", "P3"), codigos(repository.findPageAfter("P1", 2)));
+    }
+
+    @Test
+    void streamReleasesItsConnectionWhenClosedEarly() {
+        repository.saveAll(productos(0, 20, 1.0));
+        int enUso = DBHelper.poolStats().inUse();
+
+        try (Stream<Producto> productos = repository.streamAll(2)) {
+            Optional<Producto> primero = productos.findFirst();
+            assertTrue(primero.isPresent());
+            assertEquals(enUso + 1, DBHelper.poolStats().inUse());
+        }
+        assertEquals(enUso, DBHelper.poolStats().inUse());
+
+        try (Stream<Producto> productos = ProductoDao.stream(3)) {
+            assertEquals(20, productos.count());
+        }
+        assertEquals(enUso, DBHelper.poolStats().inUse());
+    }
+
+    private List<Integer> tamanosDePagina(int limite) {
+        List<Integer> tamanos = new ArrayList<>();
+        List<String> vistos = new ArrayList<>();
+        String despuesDe = null;
+        while (true) {
+            List<Producto> pagina = repository.findPageAfter(despuesDe, limite);
+            tamanos.add(pagina.size());
+            if (pagina.isEmpty()) {
+                break;
+            }
+            vistos.addAll(codigos(pagina));
+            despuesDe = pagina.get(pagina.size() - 1).getCodigo();
+        }
+        assertEquals(vistos.stream().distinct().sorted().toList(), vistos);
+        assertEquals(10, vistos.size());
+        return tamanos;
+    }
+
+    private static List<String> codigos(List<Producto> productos) {
+        return productos.stream().map(Producto::getCodigo).toList();
+    }
+
+    private static List<Producto> productos(int desde, int cuantos, double precio) {
+        List<Producto> productos = new ArrayList<>();
+        for (int i = desde; i < desde + cuantos; i++) {
+            productos.add(new Producto("P" + i, "Producto " + i, "General", "PV-1", i, 0.5, precio));
+        }
+        return productos;
+    }
+}
@@ -0,0 +1,90 @@
+package atlasledger.dao;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import atlasledger.model.Proveedor;
+import atlasledger.repository.ProviderRepository;
+import atlasledger.utils.DBHelper;
+import atlasledger.utils.SchemaMigrator;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ProveedorDaoTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Path originalPath;
+    private final ProviderRepository repository = new ProviderRepository();
+
+    @BeforeEach
+    void useTemporaryDatabase() {
+        originalPath = DBHelper.getDatabasePath();
+        DBHelper.overrideDatabasePath(tempDir.resolve("proveedores.db"), false);
+        SchemaMigrator.awaitBackground();
+    }
+
+    @AfterEach
+    void restoreDatabase() {
+        DBHelper.overrideDatabasePath(originalPath, false);
+    }
+
+    @Test
+    void saveAllInsertsAndUpdatesInChunks() {
+        repository.saveAll(proveedores(0, 5, "antes"), 2);
+        repository.saveAll(proveedores(3, 4, "despues"), 1);
+
+        List<Proveedor> guardados = ProveedorDao.listar();
+        assertEquals(7, guardados.size());
+        for (Proveedor proveedor : guardados) {
+            int numero = Integer.parseInt(proveedor.getCodigo().substring(2));
+            assertEquals(numero >= 3 ? "despues" : "antes", proveedor.getDireccion(), proveedor.getCodigo());
+        }
+    }
+
+    @Test
+    void failingRowRollsBackTheWholeBatch() {
+        repository.saveAll(proveedores(0, 1, "antes"));
+
+        List<Proveedor> lote = proveedores(0, 5, "despues");
+        lote.get(4).setCodigo(null);
+        assertFalse(ProveedorDao.guardarTodos(lote, 2));
+
+        List<Proveedor> guardados = ProveedorDao.listar();
+        assertEquals(1, guardados.size());
+        assertEquals("antes", guardados.get(0).getDireccion());
+    }
+
+    @Test
+    void keysetPagesAndStreamCoverEveryRow() {
+        repository.saveAll(proveedores(0, 3, "antes"));
+
+        List<Proveedor> primera = repository.findPageAfter(null, 2);
+        assertEquals(List.of("PV0", "PV1"), primera.stream().map(Proveedor::getCodigo).toList());
+        List<Proveedor> segunda = repository.findPageAfter("PV1", 2);
+        assertEquals(List.of("PV2"), segunda.stream().map(Proveedor::getCodigo).toList());
+        assertTrue(repository.findPageAfter("PV2", 2).isEmpty());
+
+        int enUso = DBHelper.poolStats().inUse();
+        try (Stream<Proveedor> todos = repository.streamAll(1)) {
+            assertEquals(3, todos.count());
+        }
+        assertEquals(enUso, DBHelper.poolStats().inUse());
+    }
+
+    private static List<Proveedor> proveedores(int desde, int cuantos, String direccion) {
+        List<Proveedor> proveedores = new ArrayList<>();
+        for (int i = desde; i < desde + cuantos; i++) {
+            proveedores.add(new Proveedor("PV" + i, "Proveedor " + i, "pv" + i + "@example.com", "600000000", direccion));
+        }
+        return proveedores;
+    }
+}
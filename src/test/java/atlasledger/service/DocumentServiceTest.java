@@ -0,0 +1,105 @@
+package atlasledger.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import atlasledger.model.DocumentTask;
+import atlasledger.utils.ConnectivityMonitor;
+import atlasledger.utils.DBHelper;
+import atlasledger.utils.DBWriter;
+import atlasledger.utils.SchemaMigrator;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class DocumentServiceTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Path originalPath;
+    private ConnectivityMonitor connectivity;
+    private DocumentService service;
+
+    @BeforeEach
+    void useTemporaryDatabase() throws IOException {
+        originalPath = DBHelper.getDatabasePath();
+        DBHelper.overrideDatabasePath(tempDir.resolve("documentos.db"), false);
+        SchemaMigrator.awaitBackground();
+        connectivity = new ConnectivityMonitor(null, 2, Duration.ofMinutes(1), Duration.ofMinutes(1));
+        service = new DocumentService(tempDir.resolve("docs"), connectivity);
+        for (int i = 0; i < 3; i++) {
+            Path source = Files.writeString(tempDir.resolve("doc" + i + ".txt"), "documento " + i);
+            service.saveLocalCopy(source);
+        }
+        DBWriter.flush();
+    }
+
+    @AfterEach
+    void restoreDatabase() {
+        connectivity.close();
+        DBHelper.overrideDatabasePath(originalPath, false);
+    }
+
+    @Test
+    void rejectedUploadsDoNotOpenTheCircuit() {
+        AtomicInteger calls = new AtomicInteger();
+        service.uploadPendingDocuments(path -> {
+            calls.incrementAndGet();
+            return false;
+        });
+        DBWriter.flush();
+
+        assertEquals(3, calls.get());
+        assertEquals(ConnectivityMonitor.State.CLOSED, connectivity.state());
+        assertTrue(connectivity.allowRequest());
+        assertTrue(service.pendingDocuments().isEmpty());
+    }
+
+    @Test
+    void rejectionAfterTheRetryClosesTheCircuit() throws Exception {
+        try (ConnectivityMonitor monitor = new ConnectivityMonitor(null, 1, Duration.ofMillis(1), Duration.ofMillis(1))) {
+            DocumentService documents = new DocumentService(tempDir.resolve("docs"), monitor);
+            monitor.recordFailure();
+            assertEquals(ConnectivityMonitor.State.OPEN, monitor.state());
+            Thread.sleep(10);
+
+            documents.uploadPendingDocuments(path -> false);
+            DBWriter.flush();
+
+            assertEquals(ConnectivityMonitor.State.CLOSED, monitor.state());
+            assertTrue(documents.pendingDocuments().isEmpty());
+        }
+    }
+
+    @Test
+    void unreachableServerKeepsDocumentsPendingAndOpensTheCircuit() {
+        AtomicInteger calls = new AtomicInteger();
+        service.uploadPendingDocuments(path -> {
+            calls.incrementAndGet();
+            throw new IOException("Connection refused");
+        });
+        DBWriter.flush();
+
+        assertEquals(2, calls.get());
+        assertEquals(ConnectivityMonitor.State.OPEN, connectivity.state());
+        assertEquals(3, service.pendingDocuments().size());
+    }
+
+    @Test
+    void uploadedAndRejectedDocumentsLeaveTheQueue() {
+        service.uploadPendingDocuments(path -> !path.getFileName().toString().equals("doc1.txt"));
+        DBWriter.flush();
+
+        List<DocumentTask> pending = service.pendingDocuments();
+        assertTrue(pending.isEmpty());
+        assertEquals(ConnectivityMonitor.State.CLOSED, connectivity.state());
+    }
+}
@@ -0,0 +1,182 @@
+package atlasledger.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import atlasledger.repository.OrderRepository;
+import atlasledger.repository.ProductRepository;
+import atlasledger.repository.ProviderRepository;
+import atlasledger.utils.DBHelper;
+import atlasledger.utils.DBWriter;
+import atlasledger.utils.NetworkUtils;
+import atlasledger.utils.SchemaMigrator;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class SyncSchedulerTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Path originalPath;
+    private HttpServer server;
+    private final AtomicInteger recibidos = new AtomicInteger();
+    private final AtomicBoolean online = new AtomicBoolean(true);
+
+    @BeforeEach
+    void startServer() throws IOException {
+        originalPath = DBHelper.getDatabasePath();
+        DBHelper.overrideDatabasePath(tempDir.resolve("scheduler.db"), false);
+        SchemaMigrator.awaitBackground();
+
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.createContext("/sync/", exchange -> {
+            try (InputStream in = exchange.getRequestBody()) {
+                in.readAllBytes();
+                recibidos.incrementAndGet();
+                exchange.sendResponseHeaders(200, -1);
+            } finally {
+                exchange.close();
+            }
+        });
+        server.start();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop(0);
+        DBHelper.overrideDatabasePath(originalPath, false);
+    }
+
+    @Test
+    void drainsEnqueuedChangesInTheBackgroundGrowingTheBatch() throws Exception {
+        Set<SyncScheduler.State> estados = ConcurrentHashMap.newKeySet();
+        try (SyncService service = newService();
+             SyncScheduler scheduler = new SyncScheduler(service)) {
+            scheduler.addListener(progress -> estados.add(progress.state()));
+            scheduler.start();
+
+            for (int registro = 0; registro < 300; registro++) {
+                String codigo = "P" + registro;
+                service.enqueueChange("productos", codigo, "{\"codigo\":\"" + codigo + "\"}", SyncService.SyncOperation.UPDATE);
+            }
+
+            long limite = System.nanoTime() + TimeUnit.SECONDS.toNanos(20);
+            while (count("SELECT COUNT(*) FROM sync_queue WHERE estado = 'DONE'") < 300 && System.nanoTime() < limite) {
+                Thread.sleep(50);
+            }
+
+            assertEquals(300, count("SELECT COUNT(*) FROM sync_queue WHERE estado = 'DONE'"));
+            assertEquals(300, recibidos.get());
+            // Sin fallos y con pasadas rapidas el tamano de pasada crece desde el inicial.
+            assertTrue(scheduler.progress().batchSize() > SyncScheduler.INITIAL_BATCH);
+            assertEquals(300, scheduler.progress().delivered());
+            assertTrue(estados.contains(SyncScheduler.State.SYNCING));
+        }
+    }
+
+    @Test
+    void reportsOfflineAndRecoversOnRequest() throws Exception {
+        online.set(false);
+        try (SyncService service = newService();
+             SyncScheduler scheduler = new SyncScheduler(service)) {
+            scheduler.start();
+            service.enqueueChange("productos", "P1", "{\"codigo\":\"P1\"}", SyncService.SyncOperation.UPDATE);
+
+            assertFalse(requestSync(scheduler));
+            assertEquals(SyncScheduler.State.OFFLINE, scheduler.progress().state());
+            assertEquals(1, scheduler.progress().pending());
+            assertEquals(0, recibidos.get());
+
+            online.set(true);
+            assertTrue(requestSync(scheduler));
+            assertEquals(SyncScheduler.State.IDLE, scheduler.progress().state());
+            assertEquals(0, scheduler.progress().pending());
+            assertEquals(1, recibidos.get());
+        }
+    }
+
+    @Test
+    void heldBackChangeWaitsForTheRetryOfTheChangeAheadOfIt() throws Exception {
+        try (SyncService service = newService();
+             SyncScheduler scheduler = new SyncScheduler(service)) {
+            service.enqueueChange("productos", "P1", "{\"codigo\":\"P1\"}", SyncService.SyncOperation.UPDATE);
+            service.enqueueChange("productos", "P1", "{\"codigo\":\"P1\",\"nombre\":\"B\"}", SyncService.SyncOperation.UPDATE);
+            // El primero espera su reintento; el segundo sigue con proximo_intento = 0 pero queda retenido.
+            long reintento = System.currentTimeMillis() + Duration.ofSeconds(20).toMillis();
+            DBWriter.execute(conn -> {
+                try (PreparedStatement ps = conn.prepareStatement(
+                    "UPDATE sync_queue SET proximo_intento = ? WHERE id = (SELECT MIN(id) FROM sync_queue)")) {
+                    ps.setLong(1, reintento);
+                    return ps.executeUpdate();
+                }
+            });
+
+            scheduler.start();
+            long limite = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (scheduler.progress().lastRun() == null && System.nanoTime() < limite) {
+                Thread.sleep(10);
+            }
+            Thread.sleep(1_000);
+
+            SyncScheduler.Progress progress = scheduler.progress();
+            assertEquals(0, recibidos.get());
+            assertEquals(2, progress.pending());
+            assertEquals(reintento, service.queueStatus().nextAttemptMillis());
+            long desvio = Math.abs(Duration.between(Instant.ofEpochMilli(reintento), progress.nextRun()).toMillis());
+            assertTrue(desvio < 1_000, "nextRun " + progress.nextRun() + " frente a reintento " + reintento);
+        }
+    }
+
+    private static boolean requestSync(SyncScheduler scheduler) throws Exception {
+        CompletableFuture<Boolean> resultado = new CompletableFuture<>();
+        scheduler.requestSync(resultado::complete);
+        boolean conectado = resultado.get(10, TimeUnit.SECONDS);
+        // El estado se publica justo despues de avisar a quien pidio la sincronizacion.
+        long limite = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (scheduler.progress().state() == SyncScheduler.State.SYNCING && System.nanoTime() < limite) {
+            Thread.sleep(10);
+        }
+        return conectado;
+    }
+
+    private SyncService newService() {
+        NetworkUtils network = new NetworkUtils(Duration.ofSeconds(2)) {
+            @Override
+            public boolean isOnline() {
+                return online.get();
+            }
+        };
+        return new SyncService("http://127.0.0.1:" + server.getAddress().getPort(),
+            new ProductRepository(), new ProviderRepository(), new OrderRepository(), network, 8);
+    }
+
+    private static long count(String sql) throws Exception {
+        try (Connection conn = DBHelper.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql);
+             ResultSet rs = ps.executeQuery()) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+}
@@ -0,0 +1,585 @@
+package atlasledger.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import atlasledger.model.Producto;
+import atlasledger.repository.OrderRepository;
+import atlasledger.repository.ProductRepository;
+import atlasledger.repository.ProviderRepository;
+import atlasledger.utils.ConnectivityMonitor;
+import atlasledger.utils.DBHelper;
+import atlasledger.utils.DBWriter;
+import atlasledger.utils.JsonCodec;
+import atlasledger.utils.JsonReader;
+import atlasledger.utils.NetworkUtils;
+import atlasledger.utils.SchemaMigrator;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiPredicate;
+import java.util.function.Predicate;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class SyncServiceTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Path originalPath;
+    private HttpServer server;
+    private final Map<String, List<Integer>> recibidos = new ConcurrentHashMap<>();
+    private final AtomicInteger enCurso = new AtomicInteger();
+    private final AtomicInteger maximoEnCurso = new AtomicInteger();
+    private final AtomicInteger peticionesLote = new AtomicInteger();
+    private volatile Predicate<String> rechazar = body -> false;
+    private volatile BiPredicate<String, Integer> rechazarVersion = (referencia, version) -> false;
+    private volatile int estadoRechazo = 500;
+    private final Map<String, Remoto> remotos = new ConcurrentHashMap<>();
+    private final List<String> consultas = Collections.synchronizedList(new ArrayList<>());
+    private final AtomicLong bytesEnRed = new AtomicLong();
+    private final AtomicLong bytesJson = new AtomicLong();
+    private final AtomicInteger peticionesComprimidas = new AtomicInteger();
+    private volatile boolean rechazarGzip;
+
+    @BeforeEach
+    void startServer() throws IOException {
+        originalPath = DBHelper.getDatabasePath();
+        DBHelper.overrideDatabasePath(tempDir.resolve("sync.db"), false);
+        SchemaMigrator.awaitBackground();
+
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.createContext("/sync/", exchange -> {
+            if ("GET".equals(exchange.getRequestMethod())) {
+                handlePull(exchange);
+            } else if (exchange.getRequestURI().getPath().endsWith("/lote")) {
+                handleBatch(exchange);
+            } else {
+                handle(exchange);
+            }
+        });
+        server.start();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop(0);
+        DBHelper.overrideDatabasePath(originalPath, false);
+    }
+
+    @Test
+    void pushesRecordsInParallelKeepingOrderPerRecord() throws Exception {
+        try (SyncService service = newService(4)) {
+            for (int registro = 0; registro < 5; registro++) {
+                String codigo = "P" + registro;
+                service.enqueueChange("productos", codigo, payload(codigo, 0), SyncService.SyncOperation.UPDATE);
+                service.enqueueChange("productos", codigo, payload(codigo, 1), SyncService.SyncOperation.UPDATE);
+                service.enqueueChange("productos", codigo, payload(codigo, 2), SyncService.SyncOperation.DELETE);
+                service.enqueueChange("productos", codigo, payload(codigo, 3), SyncService.SyncOperation.CREATE);
+                service.enqueueChange("productos", codigo, payload(codigo, 4), SyncService.SyncOperation.UPDATE);
+            }
+
+            assertTrue(service.pushPendingInternal());
+        }
+
+        // Cada registro se reduce a su DELETE y a un CREATE con el ultimo contenido, enviados en ese orden.
+        assertEquals(10, count("SELECT COUNT(*) FROM sync_queue WHERE estado = 'DONE' AND intentos = 1"));
+        assertEquals(15, count("SELECT COUNT(*) FROM sync_queue WHERE estado = 'SUPERSEDED'"));
+        assertEquals(5, recibidos.size());
+        recibidos.values().forEach(versiones -> assertEquals(List.of(2, 4), versiones));
+        assertTrue(maximoEnCurso.get() > 1);
+        assertTrue(maximoEnCurso.get() <= 4);
+    }
+
+    @Test
+    void failedChangeHoldsBackLaterChangesOfTheSameRecord() throws Exception {
+        rechazar = body -> body.contains("\"codigo\":\"P0\"") && body.contains("\"version\":1");
+        try (SyncService service = newService(4)) {
+            for (String codigo : List.of("P0", "P1")) {
+                service.enqueueChange("productos", codigo, payload(codigo, 0), SyncService.SyncOperation.UPDATE);
+                service.enqueueChange("productos", codigo, payload(codigo, 1), SyncService.SyncOperation.DELETE);
+                service.enqueueChange("productos", codigo, payload(codigo, 2), SyncService.SyncOperation.CREATE);
+            }
+
+            assertTrue(service.pushPendingInternal());
+        }
+
+        assertEquals(List.of(1), recibidos.get("P0"));
+        assertEquals(List.of(1, 2), recibidos.get("P1"));
+        assertEquals(2, count("SELECT COUNT(*) FROM sync_queue WHERE estado = 'DONE'"));
+        assertEquals(2, count("SELECT COUNT(*) FROM sync_queue WHERE estado = 'SUPERSEDED'"));
+        assertEquals(1, count("SELECT COUNT(*) FROM sync_queue WHERE estado = 'PENDING' AND intentos = 1"));
+        assertEquals(1, count("SELECT COUNT(*) FROM sync_queue WHERE estado = 'PENDING' AND intentos = 0"));
+    }
+
+    @Test
+    void coalescesChangesOfTheSameRecordBeforeSending() throws Exception {
+        try (SyncService service = newService(4)) {
+            service.enqueueChange("productos", "A", payload("A", 0), SyncService.SyncOperation.CREATE);
+            service.enqueueChange("productos", "B", payload("B", 0), SyncService.SyncOperation.UPDATE);
+            service.enqueueChange("productos", "C", payload("C", 0), SyncService.SyncOperation.CREATE);
+            service.enqueueChange("productos", "A", payload("A", 1), SyncService.SyncOperation.UPDATE);
+            service.enqueueChange("productos", "B", payload("B", 1), SyncService.SyncOperation.DELETE);
+            service.enqueueChange("productos", "C", payload("C", 1), SyncService.SyncOperation.UPDATE);
+            service.enqueueChange("productos", "A", payload("A", 2), SyncService.SyncOperation.UPDATE);
+            service.enqueueChange("productos", "C", payload("C", 2), SyncService.SyncOperation.DELETE);
+
+            assertTrue(service.pushPendingInternal());
+        }
+
+        assertEquals(List.of(2), recibidos.get("A"));
+        assertEquals(List.of(1), recibidos.get("B"));
+        assertNull(recibidos.get("C"));
+        assertEquals(1, count("SELECT COUNT(*) FROM sync_queue WHERE referencia = 'A' AND estado = 'DONE' AND operacion = 'CREATE'"));
+        assertEquals(1, count("SELECT COUNT(*) FROM sync_queue WHERE referencia = 'B' AND estado = 'DONE' AND operacion = 'DELETE'"));
+        assertEquals(3, count("SELECT COUNT(*) FROM sync_queue WHERE referencia = 'C' AND estado = 'SUPERSEDED'"));
+        assertEquals(6, count("SELECT COUNT(*) FROM sync_queue WHERE estado = 'SUPERSEDED'"));
+    }
+
+    @Test
+    void batchProtocolPacksChangesAndAppliesPerItemResults() throws Exception {
+        rechazar = referencia -> referencia.equals("P3");
+        try (SyncService service = newService(4, 50)) {
+            for (int registro = 0; registro < 100; registro++) {
+                service.enqueueChange("productos", "P" + registro, payload("P" + registro, 0),
+                    SyncService.SyncOperation.UPDATE);
+            }
+            service.enqueueChange("productos", "P3", payload("P3", 1), SyncService.SyncOperation.DELETE);
+            service.enqueueChange("productos", "P3", payload("P3", 2), SyncService.SyncOperation.CREATE);
+
+            assertTrue(service.pushPendingInternal());
+        }
+
+        // 99 UPDATE y el DELETE de P3 caben en dos lotes; el CREATE de P3 espera a que su DELETE se acepte.
+        assertEquals(2, peticionesLote.get());
+        assertEquals(99, count("SELECT COUNT(*) FROM sync_queue WHERE estado = 'DONE' AND intentos = 1"));
+        assertEquals(1, count("SELECT COUNT(*) FROM sync_queue WHERE referencia = 'P3' AND estado = 'SUPERSEDED'"));
+        assertEquals(1, count("SELECT COUNT(*) FROM sync_queue WHERE referencia = 'P3' AND operacion = 'DELETE' AND intentos = 1"));
+        assertEquals(1, count("SELECT COUNT(*) FROM sync_queue WHERE referencia = 'P3' AND operacion = 'CREATE' AND intentos = 0"));
+        assertEquals(List.of(1), recibidos.get("P3"));
+    }
+
+    @Test
+    void changesHeldBehindAFailedOneInTheSameBatchDoNotSpendAttempts() throws Exception {
+        rechazarVersion = (referencia, version) -> referencia.equals("P1") && version == 0;
+        try (SyncService service = newService(4, 50)) {
+            service.enqueueChange("productos", "P1", payload("P1", 0), SyncService.SyncOperation.DELETE);
+            service.enqueueChange("productos", "P1", payload("P1", 1), SyncService.SyncOperation.CREATE);
+            service.enqueueChange("productos", "P2", payload("P2", 0), SyncService.SyncOperation.UPDATE);
+
+            assertTrue(service.pushPendingInternal());
+        }
+
+        assertEquals(1, peticionesLote.get());
+        assertEquals(1, count("SELECT COUNT(*) FROM sync_queue WHERE referencia = 'P2' AND estado = 'DONE'"));
+        assertEquals(1, count("SELECT COUNT(*) FROM sync_queue WHERE referencia = 'P1' AND operacion = 'DELETE'"
+            + " AND estado = 'PENDING' AND intentos = 1 AND ultimo_error = 'rechazado'"));
+        assertEquals(1, count("SELECT COUNT(*) FROM sync_queue WHERE referencia = 'P1' AND operacion = 'CREATE'"
+            + " AND estado = 'PENDING' AND intentos = 0 AND ultimo_error IS NULL AND proximo_intento = 0"));
+    }
+
+    @Test
+    void failedChangeBacksOffAndHoldsOnlyItsRecord() throws Exception {
+        rechazar = body -> body.contains("\"codigo\":\"P0\"");
+        try (SyncService service = newService(4)) {
+            service.enqueueChange("productos", "P0", payload("P0", 0), SyncService.SyncOperation.UPDATE);
+            assertTrue(service.pushPendingInternal());
+
+            assertEquals(1, count("SELECT COUNT(*) FROM sync_queue WHERE intentos = 1 AND ultimo_error = 'Estado HTTP 500'"
+                + " AND proximo_intento > " + System.currentTimeMillis()));
+
+            service.enqueueChange("productos", "P0", payload("P0", 1), SyncService.SyncOperation.DELETE);
+            service.enqueueChange("productos", "P1", payload("P1", 0), SyncService.SyncOperation.UPDATE);
+            assertTrue(service.pushPendingInternal());
+        }
+
+        assertEquals(List.of(0), recibidos.get("P0"));
+        assertEquals(List.of(0), recibidos.get("P1"));
+        assertEquals(2, count("SELECT COUNT(*) FROM sync_queue WHERE referencia = 'P0' AND estado = 'PENDING'"));
+    }
+
+    @Test
+    void changesBecomeDeadAfterMaxAttemptsAndCanBeRequeued() throws Exception {
+        rechazar = body -> true;
+        try (SyncService service = newService(4)) {
+            service.setMaxAttempts(2);
+            service.enqueueChange("productos", "P0", payload("P0", 0), SyncService.SyncOperation.UPDATE);
+            assertTrue(service.pushPendingInternal());
+            hacerVencidos();
+            assertTrue(service.pushPendingInternal());
+            hacerVencidos();
+            assertTrue(service.pushPendingInternal());
+
+            assertEquals(List.of(0, 0), recibidos.get("P0"));
+            assertEquals(1, service.deadCount());
+            assertEquals(1, count("SELECT COUNT(*) FROM sync_queue WHERE estado = 'DEAD' AND intentos = 2 AND ultimo_error IS NOT NULL"));
+
+            assertEquals(1, service.requeueDead());
+            assertEquals(0, service.deadCount());
+            assertEquals(1, count("SELECT COUNT(*) FROM sync_queue WHERE estado = 'PENDING' AND intentos = 0"));
+        }
+    }
+
+    @Test
+    void openCircuitStopsThePushWithoutSpendingAttempts() throws Exception {
+        rechazar = body -> true;
+        estadoRechazo = 503;
+        ConnectivityMonitor monitor = new ConnectivityMonitor(null, 3, Duration.ofMinutes(1), Duration.ofMinutes(1));
+        NetworkUtils network = new NetworkUtils(Duration.ofSeconds(2), monitor);
+        try (SyncService service = new SyncService("http://127.0.0.1:" + server.getAddress().getPort(),
+                new ProductRepository(), new ProviderRepository(), new OrderRepository(), network, 1, 1)) {
+            for (int registro = 0; registro < 10; registro++) {
+                service.enqueueChange("productos", "P" + registro, payload("P" + registro, 0),
+                    SyncService.SyncOperation.UPDATE);
+            }
+
+            SyncService.PushResult primera = service.pushPending(10);
+            assertFalse(primera.online());
+            assertEquals(3, primera.failed());
+            assertEquals(ConnectivityMonitor.State.OPEN, monitor.state());
+
+            // Con el circuito abierto ni siquiera se lee la cola.
+            SyncService.PushResult segunda = service.pushPending(10);
+            assertFalse(segunda.online());
+            assertEquals(0, segunda.read());
+            assertTrue(service.pullUpdates().isEmpty());
+        }
+
+        assertEquals(3, recibidos.values().stream().mapToInt(List::size).sum());
+        assertEquals(3, count("SELECT COUNT(*) FROM sync_queue WHERE estado = 'PENDING' AND intentos = 1"));
+        assertEquals(7, count("SELECT COUNT(*) FROM sync_queue WHERE estado = 'PENDING' AND intentos = 0"));
+    }
+
+    @Test
+    void backoffGrowsExponentiallyWithJitterAndIsCapped() {
+        long base = SyncService.BACKOFF_BASE.toMillis();
+        assertEquals(base / 2, SyncService.backoffMillis(1, 0.0));
+        assertTrue(SyncService.backoffMillis(1, 0.999) < base);
+        assertEquals(base * 2, SyncService.backoffMillis(3, 0.0));
+        long max = SyncService.BACKOFF_MAX.toMillis();
+        assertEquals(max / 2, SyncService.backoffMillis(40, 0.0));
+        assertTrue(SyncService.backoffMillis(40, 0.999) <= max);
+    }
+
+    @Test
+    void pullUsesWatermarkAndEtagAndSkipsUnchangedRows() throws Exception {
+        remotos.put("productos", new Remoto("[" + producto("A1", 10) + "," + producto("A2", 20) + "]", "m1", "\"e1\""));
+        try (SyncService service = newService(1)) {
+            assertEquals(new SyncService.PullResult("productos", true, false, 2, 2), service.pullUpdates().get(1));
+            assertEquals(2, count("SELECT COUNT(*) FROM productos WHERE codigo IN ('A1', 'A2')"));
+
+            // Sin cambios el servidor reconoce el ETag y no hay nada que leer ni guardar.
+            assertEquals(new SyncService.PullResult("productos", true, true, 0, 0), service.pullUpdates().get(1));
+
+            // Un servidor que ignora since devuelve todo el catalogo: solo se guarda la fila que cambia, y
+            // la edicion local de A1 no se pisa con un contenido remoto que ya se habia aplicado.
+            DBWriter.execute(conn -> {
+                try (PreparedStatement ps = conn.prepareStatement("UPDATE productos SET stock = 99 WHERE codigo = 'A1'")) {
+                    return ps.executeUpdate();
+                }
+            });
+            remotos.put("productos", new Remoto("[" + producto("A1", 10) + "," + producto("A2", 25) + "]", "m2", "\"e2\""));
+            assertEquals(new SyncService.PullResult("productos", true, false, 2, 1), service.pullUpdates().get(1));
+        }
+
+        assertEquals(1, count("SELECT COUNT(*) FROM productos WHERE codigo = 'A1' AND stock = 99"));
+        assertEquals(1, count("SELECT COUNT(*) FROM productos WHERE codigo = 'A2' AND precio = 25"));
+        assertEquals(1, count("SELECT COUNT(*) FROM sync_marcas WHERE entidad = 'productos' AND marca = 'm2' AND etag = '\"e2\"'"));
+        assertEquals(List.of("productos null null", "productos since=m1 \"e1\"", "productos since=m1 \"e1\""),
+            consultas.stream().filter(consulta -> consulta.startsWith("productos")).toList());
+    }
+
+    @Test
+    void failedSaveKeepsHashesAndWatermarkForTheRetry() throws Exception {
+        AtomicInteger fallosPendientes = new AtomicInteger(1);
+        ProductRepository productos = new ProductRepository() {
+            @Override
+            public boolean saveAll(Collection<Producto> lote) {
+                return fallosPendientes.getAndDecrement() <= 0 && super.saveAll(lote);
+            }
+        };
+        remotos.put("productos", new Remoto("[" + producto("A1", 10) + "," + producto("A2", 20) + "]", "m1", "\"e1\""));
+        try (SyncService service = newService(1, 1, productos)) {
+            assertEquals(SyncService.PullResult.failed("productos"), service.pullUpdates().get(1));
+            assertEquals(0, count("SELECT COUNT(*) FROM sync_huellas WHERE entidad = 'productos'"));
+            assertEquals(0, count("SELECT COUNT(*) FROM sync_marcas WHERE entidad = 'productos'"));
+
+            // El reintento parte de la marca anterior y guarda las filas, que no quedaron registradas como vistas.
+            assertEquals(new SyncService.PullResult("productos", true, false, 2, 2), service.pullUpdates().get(1));
+        }
+
+        assertEquals(2, count("SELECT COUNT(*) FROM productos WHERE codigo IN ('A1', 'A2')"));
+        assertEquals(1, count("SELECT COUNT(*) FROM sync_marcas WHERE entidad = 'productos' AND marca = 'm1'"));
+        assertEquals(List.of("productos null null", "productos null null"),
+            consultas.stream().filter(consulta -> consulta.startsWith("productos")).toList());
+    }
+
+    @Test
+    void pullStreamsLargeResponsesInBatches() throws Exception {
+        int total = SyncService.PULL_BATCH_SIZE * 2 + 3;
+        StringBuilder cuerpo = new StringBuilder("[");
+        for (int i = 0; i < total; i++) {
+            cuerpo.append(i == 0 ? "" : ",").append(producto("B" + i, i));
+        }
+        remotos.put("productos", new Remoto(cuerpo.append(']').toString(), "m1", null));
+
+        try (SyncService service = newService(1)) {
+            assertEquals(new SyncService.PullResult("productos", true, false, total, total), service.pullUpdates().get(1));
+            assertEquals(new SyncService.PullResult("productos", true, false, total, 0), service.pullUpdates().get(1));
+        }
+
+        assertEquals(total, count("SELECT COUNT(*) FROM productos WHERE codigo LIKE 'B%'"));
+        assertEquals(total, count("SELECT COUNT(*) FROM sync_huellas WHERE entidad = 'productos'"));
+    }
+
+    @Test
+    void gzipShrinksPushBatchesAndPullResponsesOnTheWire() throws Exception {
+        try (SyncService service = newService(2, 50)) {
+            for (int registro = 0; registro < 100; registro++) {
+                String codigo = "P" + registro;
+                Producto producto = new Producto(codigo, "Tornillo hexagonal M8 x " + registro, "Ferreteria", "GEN001",
+                    registro, 0.12, 0.39);
+                service.enqueueChange("productos", codigo, JsonCodec.encode(producto).replace("}", ",\"version\":0}"),
+                    SyncService.SyncOperation.UPDATE);
+            }
+            assertTrue(service.pushPendingInternal());
+            assertEquals(100, count("SELECT COUNT(*) FROM sync_queue WHERE estado = 'DONE'"));
+            assertEquals(2, peticionesComprimidas.get());
+            long enviados = bytesEnRed.get();
+            long json = bytesJson.get();
+            assertTrue(enviados * 4 < json, "push: " + enviados + " bytes en red para " + json + " bytes de JSON");
+
+            bytesEnRed.set(0);
+            bytesJson.set(0);
+            StringBuilder catalogo = new StringBuilder("[");
+            for (int i = 0; i < 1000; i++) {
+                catalogo.append(i == 0 ? "" : ",").append(producto("C" + i, i));
+            }
+            remotos.put("productos", new Remoto(catalogo.append(']').toString(), "m1", null));
+            assertEquals(new SyncService.PullResult("productos", true, false, 1000, 1000), service.pullUpdates().get(1));
+            long recibidos = bytesEnRed.get();
+            json = bytesJson.get();
+            assertTrue(recibidos * 4 < json, "pull: " + recibidos + " bytes en red para " + json + " bytes de JSON");
+        }
+    }
+
+    @Test
+    void serverWithoutGzipSupportGetsPlainBodies() throws Exception {
+        rechazarGzip = true;
+        try (SyncService service = newService(2, 50)) {
+            for (int registro = 0; registro < 60; registro++) {
+                String codigo = "P" + registro;
+                service.enqueueChange("productos", codigo, payload(codigo, 0), SyncService.SyncOperation.UPDATE);
+            }
+            assertTrue(service.pushPendingInternal());
+        }
+
+        // El primer lote se rechaza con 415 y se reenvia sin comprimir, igual que el segundo.
+        assertEquals(0, peticionesComprimidas.get());
+        assertEquals(3, peticionesLote.get());
+        assertEquals(60, count("SELECT COUNT(*) FROM sync_queue WHERE estado = 'DONE'"));
+    }
+
+    private static void hacerVencidos() throws Exception {
+        DBWriter.execute(conn -> {
+            try (PreparedStatement ps = conn.prepareStatement("UPDATE sync_queue SET proximo_intento = 0")) {
+                return ps.executeUpdate();
+            }
+        });
+    }
+
+    private SyncService newService(int concurrency) {
+        return newService(concurrency, 1);
+    }
+
+    private SyncService newService(int concurrency, int batchSize) {
+        return newService(concurrency, batchSize, new ProductRepository());
+    }
+
+    private SyncService newService(int concurrency, int batchSize, ProductRepository productRepository) {
+        NetworkUtils online = new NetworkUtils(Duration.ofSeconds(2)) {
+            @Override
+            public boolean isOnline() {
+                return true;
+            }
+        };
+        return new SyncService("http://127.0.0.1:" + server.getAddress().getPort(),
+            productRepository, new ProviderRepository(), new OrderRepository(), online, concurrency, batchSize);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        int actual = enCurso.incrementAndGet();
+        maximoEnCurso.accumulateAndGet(actual, Math::max);
+        try (InputStream in = cuerpo(exchange)) {
+            String body = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            String codigo = body.replaceAll(".*\"codigo\":\"([^\"]+)\".*", "$1");
+            int version = Integer.parseInt(body.replaceAll(".*\"version\":(\\d+).*", "$1"));
+            recibidos.computeIfAbsent(codigo, key -> new ArrayList<>()).add(version);
+            Thread.sleep(30);
+            exchange.sendResponseHeaders(rechazar.test(body) ? estadoRechazo : 200, -1);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            enCurso.decrementAndGet();
+            exchange.close();
+        }
+    }
+
+    private void handleBatch(HttpExchange exchange) throws IOException {
+        peticionesLote.incrementAndGet();
+        StringBuilder resultados = new StringBuilder("[");
+        if (rechazarGzip && "gzip".equals(exchange.getRequestHeaders().getFirst("Content-Encoding"))) {
+            exchange.getRequestBody().readAllBytes();
+            exchange.sendResponseHeaders(415, -1);
+            exchange.close();
+            return;
+        }
+        try (InputStream in = cuerpo(exchange)) {
+            JsonReader reader = JsonReader.of(in);
+            reader.beginArray();
+            while (reader.hasNext()) {
+                int id = 0;
+                String referencia = null;
+                String codigo = null;
+                int version = -1;
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    switch (reader.nextName()) {
+                        case "id" -> id = reader.nextInt();
+                        case "referencia" -> referencia = reader.nextString();
+                        case "payload" -> {
+                            reader.beginObject();
+                            while (reader.hasNext()) {
+                                switch (reader.nextName()) {
+                                    case "codigo" -> codigo = reader.nextString();
+                                    case "version" -> version = reader.nextInt();
+                                    default -> reader.skipValue();
+                                }
+                            }
+                            reader.endObject();
+                        }
+                        default -> reader.skipValue();
+                    }
+                }
+                reader.endObject();
+                assertEquals(referencia, codigo);
+                // El servidor de prueba rechaza el registro a partir de su primer cambio fallido.
+                List<Integer> versiones = recibidos.computeIfAbsent(referencia, key -> new ArrayList<>());
+                boolean ok = !rechazar.test(referencia) && !rechazarVersion.test(referencia, version);
+                if (ok || versiones.isEmpty()) {
+                    versiones.add(version);
+                }
+                if (resultados.length() > 1) {
+                    resultados.append(',');
+                }
+                resultados.append("{\"id\":").append(id).append(",\"ok\":").append(ok)
+                    .append(ok ? ",\"error\":null}" : ",\"error\":\"rechazado\"}");
+            }
+            reader.endArray();
+        }
+        byte[] response = resultados.append(']').toString().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, response.length);
+        exchange.getResponseBody().write(response);
+        exchange.close();
+    }
+
+    private void handlePull(HttpExchange exchange) throws IOException {
+        String entidad = exchange.getRequestURI().getPath().substring("/sync/".length());
+        String etagCliente = exchange.getRequestHeaders().getFirst("If-None-Match");
+        consultas.add(entidad + " " + exchange.getRequestURI().getQuery() + " " + etagCliente);
+        Remoto remoto = remotos.getOrDefault(entidad, new Remoto("[]", null, null));
+        if (remoto.etag() != null && remoto.etag().equals(etagCliente)) {
+            exchange.sendResponseHeaders(304, -1);
+            exchange.close();
+            return;
+        }
+        byte[] response = remoto.cuerpo().getBytes(StandardCharsets.UTF_8);
+        bytesJson.addAndGet(response.length);
+        String aceptadas = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+        if (aceptadas != null && aceptadas.contains("gzip") && response.length >= SyncService.DEFAULT_GZIP_THRESHOLD) {
+            ByteArrayOutputStream comprimido = new ByteArrayOutputStream();
+            try (GZIPOutputStream gzip = new GZIPOutputStream(comprimido)) {
+                gzip.write(response);
+            }
+            response = comprimido.toByteArray();
+            exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+        }
+        bytesEnRed.addAndGet(response.length);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        if (remoto.marca() != null) {
+            exchange.getResponseHeaders().set(SyncService.WATERMARK_HEADER, remoto.marca());
+        }
+        if (remoto.etag() != null) {
+            exchange.getResponseHeaders().set("ETag", remoto.etag());
+        }
+        exchange.sendResponseHeaders(200, response.length);
+        exchange.getResponseBody().write(response);
+        exchange.close();
+    }
+
+    /**
+     * Cuerpo de la peticion tal como lo veria un servidor con soporte de gzip; anota los bytes recibidos
+     * por la red y los del JSON ya descomprimido.
+     */
+    private InputStream cuerpo(HttpExchange exchange) throws IOException {
+        byte[] raw = exchange.getRequestBody().readAllBytes();
+        bytesEnRed.addAndGet(raw.length);
+        byte[] json = raw;
+        if ("gzip".equals(exchange.getRequestHeaders().getFirst("Content-Encoding"))) {
+            peticionesComprimidas.incrementAndGet();
+            try (InputStream gzip = new GZIPInputStream(new ByteArrayInputStream(raw))) {
+                json = gzip.readAllBytes();
+            }
+        }
+        bytesJson.addAndGet(json.length);
+        return new ByteArrayInputStream(json);
+    }
+
+    private static String producto(String codigo, double precio) {
+        return "{\"codigo\":\"" + codigo + "\",\"nombre\":\"Producto " + codigo + "\",\"categoria\":\"General\","
+            + "\"proveedorCodigo\":\"GEN001\",\"stock\":5,\"coste\":1.5,\"precio\":" + precio + "}";
+    }
+
+    private static String payload(String codigo, int version) {
+        return "{\"codigo\":\"" + codigo + "\",\"version\":" + version + "}";
+    }
+
+    private static long count(String sql) throws Exception {
+        try (Connection conn = DBHelper.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql);
+             ResultSet rs = ps.executeQuery()) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+    private record Remoto(String cuerpo, String marca, String etag) {
+    }
+}
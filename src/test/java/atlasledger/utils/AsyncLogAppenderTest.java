@@ -0,0 +1,139 @@
+package atlasledger.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class AsyncLogAppenderTest {
+
+    @Test
+    void concurrentProducersAreWrittenInBatchesAndFlushed() throws Exception {
+        List<AsyncLogAppender.Entry> written = Collections.synchronizedList(new ArrayList<>());
+        List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<>());
+        AsyncLogAppender appender = new AsyncLogAppender("test-log-writer", 16_384, Logger.OverflowPolicy.BLOCK, batch -> {
+            batchSizes.add(batch.size());
+            written.addAll(batch);
+        });
+
+        List<Thread> producers = new ArrayList<>();
+        for (int p = 0; p < 4; p++) {
+            int producer = p;
+            producers.add(Thread.ofPlatform().start(() -> {
+                for (int i = 0; i < 2_500; i++) {
+                    appender.append(entry("INFO", producer + "-" + i));
+                }
+            }));
+        }
+        for (Thread producer : producers) {
+            producer.join();
+        }
+
+        assertTrue(appender.flush(Duration.ofSeconds(5)));
+        assertEquals(10_000, written.size());
+        assertTrue(batchSizes.size() < 10_000);
+        assertTrue(batchSizes.stream().allMatch(size -> size <= AsyncLogAppender.BATCH_SIZE));
+    }
+
+    @Test
+    void dropPolicyDiscardsWhenFullAndReportsLoss() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        List<AsyncLogAppender.Entry> written = Collections.synchronizedList(new ArrayList<>());
+        AsyncLogAppender appender = new AsyncLogAppender("test-log-writer", 8, Logger.OverflowPolicy.DROP, batch -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            written.addAll(batch);
+        });
+
+        appender.append(entry("INFO", "bloqueante"));
+        Thread.sleep(200);
+        int accepted = 0;
+        for (int i = 0; i < 50; i++) {
+            if (appender.append(entry("INFO", "m" + i))) {
+                accepted++;
+            }
+        }
+        assertEquals(8, accepted);
+        assertEquals(42, appender.droppedCount());
+        assertFalse(appender.flush(Duration.ofMillis(100)));
+
+        release.countDown();
+        assertTrue(appender.flush(Duration.ofSeconds(5)));
+        assertTrue(written.stream().anyMatch(e -> e.message().contains("Se descartaron 42 entradas")));
+    }
+
+    @Test
+    void sampleKeepsErrorsWhenFull() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        List<AsyncLogAppender.Entry> written = Collections.synchronizedList(new ArrayList<>());
+        AsyncLogAppender appender = new AsyncLogAppender("test-log-writer", 2, Logger.OverflowPolicy.SAMPLE, batch -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            written.addAll(batch);
+        });
+        appender.append(entry("INFO", "bloqueante"));
+        Thread.sleep(200);
+        appender.append(entry("INFO", "a"));
+        appender.append(entry("INFO", "b"));
+
+        Thread errorProducer = Thread.ofPlatform().start(() -> appender.append(entry("ERROR", "importante")));
+        Thread.sleep(100);
+        assertTrue(errorProducer.isAlive());
+        release.countDown();
+        errorProducer.join(5_000);
+
+        assertTrue(appender.flush(Duration.ofSeconds(5)));
+        assertTrue(written.stream().anyMatch(e -> e.message().equals("importante")));
+    }
+
+    @Test
+    void writerThreadNeverBlocksOnAFullBuffer(@TempDir Path tempDir) throws Exception {
+        Path originalPath = DBHelper.getDatabasePath();
+        DBHelper.overrideDatabasePath(tempDir.resolve("log.db"), false);
+        try {
+            // Como SqliteLogAppender, el destino necesita al escritor: mientras dure el comando no avanza.
+            List<AsyncLogAppender.Entry> written = Collections.synchronizedList(new ArrayList<>());
+            AsyncLogAppender appender = new AsyncLogAppender("test-log-writer", 4, Logger.OverflowPolicy.BLOCK, batch -> {
+                DBWriter.execute(conn -> null);
+                written.addAll(batch);
+            });
+
+            int accepted = DBWriter.submit(conn -> {
+                int count = 0;
+                for (int i = 0; i < 50; i++) {
+                    if (appender.append(entry("ERROR", "m" + i))) {
+                        count++;
+                    }
+                }
+                return count;
+            }).get(10, TimeUnit.SECONDS);
+
+            assertTrue(accepted < 50);
+            assertEquals(50 - accepted, appender.droppedCount());
+            assertTrue(appender.flush(Duration.ofSeconds(5)));
+            assertTrue(written.stream().anyMatch(e -> e.message().contains("Se descartaron " + (50 - accepted))));
+            appender.close(Duration.ofSeconds(5));
+        } finally {
+            DBHelper.overrideDatabasePath(originalPath, false);
+        }
+    }
+
+    private static AsyncLogAppender.Entry entry(String level, String message) {
+        return new AsyncLogAppender.Entry(level, "Test", message, System.currentTimeMillis());
+    }
+}
@@ -0,0 +1,117 @@
+package atlasledger.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.sun.net.httpserver.HttpServer;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import org.junit.jupiter.api.Test;
+
+class ConnectivityMonitorTest {
+
+    @Test
+    void opensAfterConsecutiveFailuresAndProbesUntilTheServerAnswers() throws Exception {
+        AtomicBoolean disponible = new AtomicBoolean(false);
+        AtomicInteger sondeos = new AtomicInteger();
+        List<ConnectivityMonitor.State> estados = new CopyOnWriteArrayList<>();
+        try (ConnectivityMonitor monitor = new ConnectivityMonitor(() -> {
+            sondeos.incrementAndGet();
+            return disponible.get();
+        }, 3, Duration.ofMillis(10), Duration.ofMillis(40))) {
+            monitor.addListener(estados::add);
+
+            monitor.recordFailure();
+            monitor.recordFailure();
+            monitor.recordSuccess();
+            monitor.recordFailure();
+            monitor.recordFailure();
+            assertTrue(monitor.allowRequest(), "los fallos que no son seguidos no abren el circuito");
+
+            monitor.recordFailure();
+            assertEquals(ConnectivityMonitor.State.OPEN, monitor.state());
+            assertFalse(monitor.allowRequest());
+
+            assertTrue(esperar(() -> sondeos.get() >= 3));
+            assertEquals(ConnectivityMonitor.State.OPEN, monitor.state());
+
+            disponible.set(true);
+            assertTrue(esperar(() -> monitor.state() == ConnectivityMonitor.State.HALF_OPEN));
+            assertTrue(monitor.allowRequest());
+
+            // Una peticion real fallida en semiabierto vuelve a abrir el circuito sin esperar al umbral.
+            monitor.recordFailure();
+            assertEquals(ConnectivityMonitor.State.OPEN, monitor.state());
+            assertTrue(esperar(() -> monitor.state() == ConnectivityMonitor.State.HALF_OPEN));
+            monitor.recordSuccess();
+            assertEquals(ConnectivityMonitor.State.CLOSED, monitor.state());
+        }
+
+        assertEquals(List.of(
+            ConnectivityMonitor.State.OPEN,
+            ConnectivityMonitor.State.HALF_OPEN,
+            ConnectivityMonitor.State.OPEN,
+            ConnectivityMonitor.State.HALF_OPEN,
+            ConnectivityMonitor.State.CLOSED), estados);
+    }
+
+    @Test
+    void withoutProbeTheFirstRequestAfterTheBackoffIsTheTrial() throws Exception {
+        try (ConnectivityMonitor monitor = new ConnectivityMonitor(null, 1, Duration.ofMillis(50), Duration.ofSeconds(1))) {
+            monitor.recordFailure();
+            assertFalse(monitor.allowRequest());
+
+            Thread.sleep(80);
+            assertTrue(monitor.allowRequest());
+            assertEquals(ConnectivityMonitor.State.HALF_OPEN, monitor.state());
+
+            // La espera se duplica tras un intento fallido; checkNow no la espera.
+            monitor.recordFailure();
+            Thread.sleep(80);
+            assertFalse(monitor.allowRequest());
+            assertTrue(monitor.checkNow());
+        }
+    }
+
+    @Test
+    void endpointProbeTreatsAnyAnswerButUnavailableAsReachable() throws Exception {
+        AtomicInteger estado = new AtomicInteger(503);
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            exchange.sendResponseHeaders(estado.get(), -1);
+            exchange.close();
+        });
+        server.start();
+        try (ConnectivityMonitor monitor = ConnectivityMonitor.forEndpoint(
+                "http://127.0.0.1:" + server.getAddress().getPort() + "/api", Duration.ofSeconds(2))) {
+            for (int i = 0; i < ConnectivityMonitor.DEFAULT_FAILURE_THRESHOLD; i++) {
+                monitor.recordFailure();
+            }
+            assertFalse(monitor.checkNow());
+
+            estado.set(404);
+            assertTrue(monitor.checkNow());
+            assertEquals(ConnectivityMonitor.State.HALF_OPEN, monitor.state());
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    private static boolean esperar(BooleanSupplier condicion) throws InterruptedException {
+        long limite = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condicion.getAsBoolean()) {
+            if (System.nanoTime() > limite) {
+                return false;
+            }
+            Thread.sleep(5);
+        }
+        return true;
+    }
+}
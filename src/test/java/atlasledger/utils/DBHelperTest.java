@@ -0,0 +1,142 @@
+package atlasledger.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class DBHelperTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Path originalPath;
+
+    @BeforeEach
+    void useTemporaryDatabase() {
+        originalPath = DBHelper.getDatabasePath();
+        DBHelper.overrideDatabasePath(tempDir.resolve("pool.db"), false);
+        SchemaMigrator.awaitBackground();
+    }
+
+    @AfterEach
+    void restoreDatabase() {
+        DBHelper.overrideDatabasePath(originalPath, false);
+    }
+
+    @Test
+    void closedConnectionsAreReused() throws Exception {
+        PoolStats before = DBHelper.poolStats();
+        for (int i = 0; i < 20; i++) {
+            try (Connection conn = DBHelper.getConnection()) {
+                assertTrue(conn.isValid(1));
+            }
+        }
+
+        PoolStats stats = DBHelper.poolStats();
+        assertEquals(1, stats.created());
+        assertEquals(0, stats.inUse());
+        assertEquals(20, stats.acquisitions() - before.acquisitions());
+    }
+
+    @Test
+    void pooledConnectionsUseWalJournal() throws Exception {
+        try (Connection conn = DBHelper.getConnection();
+             Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery("PRAGMA journal_mode")) {
+            assertTrue(rs.next());
+            assertEquals("wal", rs.getString(1));
+        }
+    }
+
+    @Test
+    void repeatedStatementsAreServedFromCache() throws Exception {
+        PoolStats before = DBHelper.poolStats();
+        for (int i = 0; i < 5; i++) {
+            try (Connection conn = DBHelper.getConnection();
+                 PreparedStatement ps = conn.prepareStatement("SELECT ? AS valor")) {
+                ps.setInt(1, i);
+                try (ResultSet rs = ps.executeQuery()) {
+                    assertTrue(rs.next());
+                    assertEquals(i, rs.getInt("valor"));
+                }
+            }
+        }
+
+        PoolStats stats = DBHelper.poolStats();
+        assertEquals(1, stats.statementMisses() - before.statementMisses());
+        assertEquals(4, stats.statementHits() - before.statementHits());
+    }
+
+    @Test
+    void cachedStatementsComeBackCleanToTheNextBorrower() throws Exception {
+        String sql = "SELECT column1 FROM (VALUES (1), (2), (3))";
+        try (Connection conn = DBHelper.getConnection()) {
+            PreparedStatement ps = conn.prepareStatement(sql);
+            ps.setMaxRows(1);
+            ps.setFetchSize(1);
+            ps.setQueryTimeout(7);
+            ResultSet rs = ps.executeQuery();
+            assertTrue(rs.next());
+            // Ni el ResultSet ni la sentencia se cierran: los libera la devolucion de la conexion.
+        }
+
+        PoolStats before = DBHelper.poolStats();
+        try (Connection conn = DBHelper.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+            assertEquals(0, ps.getMaxRows());
+            assertEquals(0, ps.getQueryTimeout());
+            int filas = 0;
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    filas++;
+                }
+            }
+            assertEquals(3, filas);
+        }
+        PoolStats after = DBHelper.poolStats();
+        assertEquals(1, after.statementHits() - before.statementHits());
+        assertEquals(0, after.statementMisses() - before.statementMisses());
+    }
+
+    @Test
+    void statementLeftOpenIsClosedWithItsConnection() throws Exception {
+        PreparedStatement leaked;
+        try (Connection conn = DBHelper.getConnection()) {
+            leaked = conn.prepareStatement("SELECT 1");
+            leaked.executeQuery();
+        }
+        assertTrue(leaked.isClosed());
+        PoolStats before = DBHelper.poolStats();
+        try (Connection conn = DBHelper.getConnection();
+             PreparedStatement ps = conn.prepareStatement("SELECT 1");
+             ResultSet rs = ps.executeQuery()) {
+            assertTrue(rs.next());
+        }
+        // La sentencia volvio a la cache: no se compila otra copia.
+        assertEquals(0, DBHelper.poolStats().statementMisses() - before.statementMisses());
+    }
+
+    @Test
+    void overridingPathRebuildsPool() throws Exception {
+        try (Connection conn = DBHelper.getConnection()) {
+            assertTrue(conn.isValid(1));
+        }
+
+        DBHelper.overrideDatabasePath(tempDir.resolve("other.db"), false);
+        SchemaMigrator.awaitBackground();
+
+        try (Connection conn = DBHelper.getConnection()) {
+            assertTrue(conn.isValid(1));
+        }
+        assertEquals(1, DBHelper.poolStats().created());
+    }
+}
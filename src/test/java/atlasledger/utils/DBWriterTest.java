@@ -0,0 +1,98 @@
+package atlasledger.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class DBWriterTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Path originalPath;
+
+    @BeforeEach
+    void useTemporaryDatabase() throws SQLException {
+        originalPath = DBHelper.getDatabasePath();
+        DBHelper.overrideDatabasePath(tempDir.resolve("writer.db"), false);
+        DBWriter.execute(conn -> {
+            try (Statement st = conn.createStatement()) {
+                return st.executeUpdate("CREATE TABLE IF NOT EXISTS items (codigo TEXT PRIMARY KEY)");
+            }
+        });
+    }
+
+    @AfterEach
+    void restoreDatabase() {
+        DBHelper.overrideDatabasePath(originalPath, false);
+    }
+
+    @Test
+    void concurrentSubmissionsAreAllCommitted() throws Exception {
+        List<CompletableFuture<Integer>> futures = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            String codigo = "C-" + i;
+            futures.add(DBWriter.submit(conn -> insert(conn, codigo)));
+        }
+        CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).join();
+
+        assertEquals(500, countItems());
+    }
+
+    @Test
+    void failingCommandDoesNotRollBackItsBatch() throws Exception {
+        CompletableFuture<Integer> first = DBWriter.submit(conn -> insert(conn, "A"));
+        CompletableFuture<Integer> duplicate = DBWriter.submit(conn -> insert(conn, "A"));
+        CompletableFuture<Integer> last = DBWriter.submit(conn -> insert(conn, "B"));
+
+        assertEquals(1, first.join());
+        assertThrows(Exception.class, duplicate::join);
+        assertEquals(1, last.join());
+        assertEquals(2, countItems());
+    }
+
+    @Test
+    void interruptingAPausedWriterDoesNotStopIt() throws Exception {
+        Thread writer = DBWriter.execute(conn -> Thread.currentThread());
+
+        DBWriter.Pause pause = DBWriter.pause();
+        CompletableFuture<Integer> pending = DBWriter.submit(conn -> insert(conn, "EN-PAUSA"));
+        writer.interrupt();
+        pause.resume();
+
+        assertEquals(1, pending.get(10, TimeUnit.SECONDS));
+        assertEquals(1, DBWriter.submit(conn -> insert(conn, "DESPUES")).get(10, TimeUnit.SECONDS));
+        assertTrue(writer.isAlive());
+        assertEquals(2, countItems());
+    }
+
+    private static int insert(Connection conn, String codigo) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement("INSERT INTO items (codigo) VALUES (?)")) {
+            ps.setString(1, codigo);
+            return ps.executeUpdate();
+        }
+    }
+
+    private static int countItems() throws SQLException {
+        try (Connection conn = DBHelper.getConnection();
+             Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM items")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+}
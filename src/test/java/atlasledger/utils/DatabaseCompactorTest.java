@@ -0,0 +1,94 @@
+package atlasledger.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class DatabaseCompactorTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Path originalPath;
+
+    @BeforeEach
+    void rememberDatabase() {
+        originalPath = DBHelper.getDatabasePath();
+    }
+
+    @AfterEach
+    void restoreDatabase() {
+        DBHelper.overrideDatabasePath(originalPath, false);
+    }
+
+    @Test
+    void incrementalCompactionReleasesFreePages() throws Exception {
+        DBHelper.overrideDatabasePath(tempDir.resolve("compactar.db"), false);
+        SchemaMigrator.awaitBackground();
+        assertTrue(DatabaseCompactor.stats().isIncremental());
+
+        fillAndDelete();
+        DatabaseCompactor.CompactionStats before = DatabaseCompactor.stats();
+        assertTrue(before.freelistCount() > DatabaseCompactor.PAGES_PER_STEP);
+
+        long released = DatabaseCompactor.compactNow();
+
+        DatabaseCompactor.CompactionStats after = DatabaseCompactor.stats();
+        assertEquals(before.freelistCount(), released);
+        assertEquals(0, after.freelistCount());
+        assertTrue(after.pageCount() < before.pageCount());
+    }
+
+    @Test
+    void rebuildReplacesFileAndKeepsData() throws Exception {
+        Path file = tempDir.resolve("reconstruir.db");
+        DBHelper.overrideDatabasePath(file, false);
+        SchemaMigrator.awaitBackground();
+        fillAndDelete();
+        DBWriter.execute(conn -> {
+            try (Statement st = conn.createStatement()) {
+                st.executeUpdate("INSERT INTO productos (codigo, nombre) VALUES ('KEEP-1', 'Conservado')");
+            }
+            return null;
+        });
+
+        DBHelper.rebuildDatabaseFile();
+
+        assertEquals(0, DatabaseCompactor.stats().freelistCount());
+        assertTrue(Files.notExists(tempDir.resolve("reconstruir.db.rebuild")));
+        try (Connection conn = DBHelper.getConnection();
+             Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM productos WHERE codigo = 'KEEP-1'")) {
+            rs.next();
+            assertEquals(1, rs.getInt(1));
+        }
+    }
+
+    private static void fillAndDelete() throws Exception {
+        DBWriter.execute(conn -> {
+            try (PreparedStatement ps = conn.prepareStatement(
+                "INSERT INTO app_logs (level, source, message) VALUES ('INFO', 'test', ?)")) {
+                String payload = "x".repeat(2_000);
+                for (int i = 0; i < 2_000; i++) {
+                    ps.setString(1, payload + i);
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+            }
+            try (Statement st = conn.createStatement()) {
+                st.executeUpdate("DELETE FROM app_logs WHERE source = 'test'");
+            }
+            return null;
+        });
+    }
+}
@@ -0,0 +1,74 @@
+package atlasledger.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+import org.junit.jupiter.api.Test;
+
+class GzipEncodingStreamTest {
+
+    @Test
+    void roundTripsTextSpanningManyChunks() throws IOException {
+        // Texto poco compresible de varios tramos, para que el compresor pida entrada varias veces.
+        Random random = new Random(7);
+        StringBuilder text = new StringBuilder();
+        while (text.length() < 200_000) {
+            text.append(Long.toString(random.nextLong(), 36)).append(random.nextBoolean() ? ',' : '\n');
+        }
+
+        assertEquals(text.toString(), decompress(readAll(new GzipEncodingStream(text))));
+    }
+
+    @Test
+    void roundTripsNonAsciiAcrossChunkBoundaries() throws IOException {
+        // Caracteres de 2, 3 y 4 bytes en UTF-8: alguno queda partido entre dos tramos.
+        String text = "Año ñandú café 🚚 € ".repeat(3_000);
+
+        assertEquals(text, decompress(readAll(new GzipEncodingStream(text))));
+    }
+
+    @Test
+    void readsOneByteAtATime() throws IOException {
+        String text = "{\"codigo\":\"P-1\",\"nombre\":\"Tornillería\"}\n".repeat(500);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (InputStream in = new GzipEncodingStream(text)) {
+            int b;
+            while ((b = in.read()) != -1) {
+                out.write(b);
+            }
+            assertEquals(-1, in.read());
+        }
+
+        assertEquals(text, decompress(out.toByteArray()));
+    }
+
+    @Test
+    void emptyTextIsAValidGzipStream() throws IOException {
+        assertEquals("", decompress(readAll(new GzipEncodingStream(""))));
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        try (in) {
+            // Lecturas de tamano irregular, como las de un cliente HTTP.
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[1_000];
+            int n;
+            while ((n = in.read(buffer, 0, buffer.length)) != -1) {
+                out.write(buffer, 0, n);
+            }
+            return out.toByteArray();
+        }
+    }
+
+    private static String decompress(byte[] gzip) throws IOException {
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(gzip))) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package atlasledger.utils;
+
+import atlasledger.model.Orden;
+import atlasledger.model.Producto;
+import java.time.LocalDate;
+import java.util.Locale;
+
+/**
+ * Comparacion de {@link JsonCodec} con las cargas que se construian con {@code String.format}.
+ * <p>
+ * No es un test: se lanza a mano tras {@code mvn test-compile} con
+ * <pre>
+ *     java -cp target/classes:target/test-classes atlasledger.utils.JsonCodecBenchmark
+ * </pre>
+ * Sigue el esquema de JMH (iteraciones de calentamiento, iteraciones medidas y un sumidero para que el
+ * JIT no elimine el trabajo) sin anadir la dependencia al proyecto; para cifras publicables conviene
+ * repetirlo con JMH.
+ */
+public final class JsonCodecBenchmark {
+
+    private static final int WARMUP_ITERATIONS = 5;
+    private static final int MEASURED_ITERATIONS = 10;
+    private static final int OPERATIONS = 200_000;
+
+    private static long sink;
+
+    private JsonCodecBenchmark() {
+    }
+
+    public static void main(String[] args) {
+        Producto producto = new Producto("P-000123", "Tornillo hexagonal M8 x 40", "Ferreteria", "PV-0042", 1250, 0.125, 0.39);
+        Orden orden = new Orden("OC-2024-0815", LocalDate.of(2024, 8, 15), "PV-0042", 1532.75, Orden.Estado.APROBADA);
+
+        run("producto String.format", () -> formatProducto(producto));
+        run("producto JsonCodec", () -> JsonCodec.encode(producto));
+        run("orden String.format", () -> formatOrden(orden));
+        run("orden JsonCodec", () -> JsonCodec.encode(orden));
+    }
+
+    private static void run(String name, Operation operation) {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            iteration(operation);
+        }
+        long best = Long.MAX_VALUE;
+        long total = 0;
+        for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+            long elapsed = iteration(operation);
+            best = Math.min(best, elapsed);
+            total += elapsed;
+        }
+        System.out.printf(Locale.ROOT, "%-24s media %7.1f ns/op, mejor %7.1f ns/op%n", name,
+            (double) total / MEASURED_ITERATIONS / OPERATIONS, (double) best / OPERATIONS);
+    }
+
+    private static long iteration(Operation operation) {
+        long start = System.nanoTime();
+        for (int i = 0; i < OPERATIONS; i++) {
+            sink += operation.encode().length();
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static String formatProducto(Producto producto) {
+        return String.format(Locale.US,
+            "{\"codigo\":\"%s\",\"nombre\":\"%s\",\"categoria\":\"%s\",\"proveedorCodigo\":\"%s\",\"stock\":%d,\"coste\":%.2f,\"precio\":%.2f}",
+            producto.getCodigo(), producto.getNombre(), producto.getCategoria(), producto.getProveedorCodigo(),
+            producto.getStock(), producto.getCoste(), producto.getPrecio());
+    }
+
+    private static String formatOrden(Orden orden) {
+        return String.format(Locale.US,
+            "{\"codigo\":\"%s\",\"fecha\":\"%s\",\"proveedorCodigo\":\"%s\",\"total\":%.2f,\"estado\":\"%s\"}",
+            orden.getCodigo(), orden.getFecha(), orden.getProveedorCodigo(), orden.getTotal(), orden.getEstado().name());
+    }
+
+    @FunctionalInterface
+    private interface Operation {
+        String encode();
+    }
+}
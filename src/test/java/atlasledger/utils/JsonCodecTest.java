@@ -0,0 +1,84 @@
+package atlasledger.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import atlasledger.model.Informe;
+import atlasledger.model.Orden;
+import atlasledger.model.Producto;
+import atlasledger.model.Proveedor;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+class JsonCodecTest {
+
+    @Test
+    void encodesLikeTheFormatBasedPayloadsForPlainValues() {
+        Producto producto = new Producto("P-1", "Teclado", "Perifericos", "PV-1", 10, 12.345, 25);
+        assertEquals(String.format(Locale.US,
+                "{\"codigo\":\"%s\",\"nombre\":\"%s\",\"categoria\":\"%s\",\"proveedorCodigo\":\"%s\",\"stock\":%d,\"coste\":%.2f,\"precio\":%.2f}",
+                "P-1", "Teclado", "Perifericos", "PV-1", 10, 12.345, 25.0),
+            JsonCodec.encode(producto));
+
+        Orden orden = new Orden("OC-1", LocalDate.of(2024, 3, 1), "PV-9", -0.5, null);
+        assertEquals("{\"codigo\":\"OC-1\",\"fecha\":\"2024-03-01\",\"proveedorCodigo\":\"PV-9\",\"total\":-0.50,\"estado\":\"BORRADOR\"}",
+            JsonCodec.encode(orden));
+        assertEquals("{\"codigo\":\"X\"}", JsonCodec.encodeReference("X"));
+    }
+
+    @Test
+    void escapesStringsAndRoundTripsEveryModel() throws IOException {
+        String raro = "Tornillo \"M8\" \\ 1/2\n\t\u0001 \u2028 ñ";
+        Producto producto = new Producto("P-\"1\"", raro, null, "PV-1", 3, 1.5, 1e20);
+        Producto leido = JsonCodec.decodeProducto(JsonCodec.encode(producto));
+        assertEquals("P-\"1\"", leido.getCodigo());
+        assertEquals(raro, leido.getNombre());
+        assertEquals("", leido.getCategoria());
+        assertEquals(3, leido.getStock());
+        assertEquals(1.5, leido.getCoste());
+        assertEquals(1e20, leido.getPrecio());
+
+        Proveedor proveedor = new Proveedor();
+        proveedor.setCodigo("PV-1");
+        proveedor.setNombre(raro);
+        proveedor.setEmail("a@b.c");
+        Proveedor proveedorLeido = JsonCodec.decodeProveedor(JsonCodec.encode(proveedor));
+        assertEquals(raro, proveedorLeido.getNombre());
+        assertEquals("a@b.c", proveedorLeido.getEmail());
+        assertEquals("", proveedorLeido.getTelefono());
+
+        Orden orden = new Orden("OC-2", null, "PV-1", 99.999, Orden.Estado.ENVIADA);
+        Orden ordenLeida = JsonCodec.decodeOrden(JsonCodec.encode(orden));
+        assertNull(ordenLeida.getFecha());
+        assertEquals(100.0, ordenLeida.getTotal());
+        assertEquals(Orden.Estado.ENVIADA, ordenLeida.getEstado());
+
+        Informe informe = new Informe(7, "Resumen \"A\"", Informe.Tipo.INVENTARIO, "{\"summary\":{}}",
+            LocalDateTime.of(2024, 5, 6, 7, 8, 9));
+        Informe informeLeido = JsonCodec.decodeInforme(JsonCodec.encode(informe));
+        assertEquals(7, informeLeido.getId());
+        assertEquals("Resumen \"A\"", informeLeido.getNombre());
+        assertEquals(Informe.Tipo.INVENTARIO, informeLeido.getTipo());
+        assertEquals("{\"summary\":{}}", informeLeido.getDefinicionJson());
+        assertEquals(informe.getGeneradoEn(), informeLeido.getGeneradoEn());
+    }
+
+    @Test
+    void encodesReportDefinitions() {
+        Map<String, Number> resumen = new LinkedHashMap<>();
+        resumen.put("Total de productos", 4);
+        resumen.put("Valor inventario", 1234.5);
+        resumen.put("Nulo", null);
+        Map<String, Number> desglose = new LinkedHashMap<>();
+        desglose.put("Herramientas \"pro\"", 3L);
+
+        assertEquals("{\"summary\":{\"Total de productos\":4,\"Valor inventario\":1234.50,\"Nulo\":0},"
+                + "\"breakdownLabel\":\"Categorias\",\"breakdown\":{\"Herramientas \\\"pro\\\"\":3}}",
+            JsonCodec.encodeReport(resumen, "Categorias", desglose));
+    }
+}
@@ -0,0 +1,68 @@
+package atlasledger.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.StringReader;
+import org.junit.jupiter.api.Test;
+
+class JsonReaderTest {
+
+    @Test
+    void readsNestedDocumentWithEscapesAndNumbers() throws IOException {
+        JsonReader reader = new JsonReader(new StringReader("""
+            [ {"nombre": "Tornillo \\"M8\\"\\n\\u00f1", "stock": 12, "precio": -3.5e1,
+               "activo": true, "notas": null, "extra": {"a": [1, {"b": []}], "c": "x"}},
+              {} ]
+            """));
+
+        reader.beginArray();
+        reader.beginObject();
+        assertEquals("nombre", reader.nextName());
+        assertEquals("Tornillo \"M8\"\nñ", reader.nextString());
+        assertEquals("stock", reader.nextName());
+        assertEquals(12, reader.nextInt());
+        assertEquals("precio", reader.nextName());
+        assertEquals(-35.0, reader.nextDouble());
+        assertEquals("activo", reader.nextName());
+        assertTrue(reader.nextBoolean());
+        assertEquals("notas", reader.nextName());
+        assertEquals(JsonReader.Token.NULL, reader.peek());
+        reader.nextNull();
+        assertEquals("extra", reader.nextName());
+        reader.skipValue();
+        assertFalse(reader.hasNext());
+        reader.endObject();
+        reader.beginObject();
+        reader.endObject();
+        reader.endArray();
+        assertEquals(JsonReader.Token.END_DOCUMENT, reader.peek());
+    }
+
+    @Test
+    void readsStringsLongerThanTheBuffer() throws IOException {
+        String largo = "x".repeat(20_000);
+        JsonReader reader = new JsonReader(new StringReader("[\"" + largo + "\", 7]"));
+
+        reader.beginArray();
+        assertEquals(largo, reader.nextString());
+        assertEquals(7L, reader.nextLong());
+        reader.endArray();
+    }
+
+    @Test
+    void reportsMalformedInput() {
+        JsonReader reader = new JsonReader(new StringReader("[1, 2"));
+
+        IOException error = assertThrows(IOException.class, () -> {
+            reader.beginArray();
+            while (reader.hasNext()) {
+                reader.nextInt();
+            }
+        });
+        assertTrue(error.getMessage().startsWith("JSON mal formado"));
+    }
+}
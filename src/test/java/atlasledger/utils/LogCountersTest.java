@@ -0,0 +1,130 @@
+package atlasledger.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.TreeMap;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class LogCountersTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Path originalPath;
+
+    @BeforeEach
+    void useTemporaryDatabase() {
+        originalPath = DBHelper.getDatabasePath();
+        DBHelper.overrideDatabasePath(tempDir.resolve("contadores.db"), false);
+        SchemaMigrator.awaitBackground();
+        reload();
+    }
+
+    @AfterEach
+    void restoreDatabase() {
+        DBHelper.overrideDatabasePath(originalPath, false);
+    }
+
+    @Test
+    void countersFollowLoggerWritesAndMatchTable() throws Exception {
+        Duration window = Logger.getRateLimitWindow();
+        int max = Logger.getRateLimitMax();
+        Logger.setRateLimit(Duration.ZERO, max);
+        try {
+            logAndCheck();
+        } finally {
+            Logger.setRateLimit(window, max);
+        }
+    }
+
+    private void logAndCheck() throws Exception {
+        long before = LogCounters.bySource().getOrDefault("LogCountersTest", 0L);
+        for (int i = 0; i < 30; i++) {
+            Logger.info(LogCountersTest.class, "info " + i);
+        }
+        Logger.warn(LogCountersTest.class, "aviso");
+        Logger.flush();
+
+        assertEquals(before + 31, LogCounters.bySource().get("LogCountersTest"));
+        assertEquals(LogCounters.byLevel(), countFromTable());
+
+        reload();
+        assertEquals(before + 31, LogCounters.bySource().get("LogCountersTest"));
+        long lastDay = LogCounters.byHour(24).values().stream().mapToLong(Long::longValue).sum();
+        assertEquals(countFromTable().values().stream().mapToLong(Long::longValue).sum(), lastDay);
+    }
+
+    @Test
+    void purgeDecrementsCounters() throws Exception {
+        DBWriter.execute(conn -> {
+            try (PreparedStatement ps = conn.prepareStatement(
+                "INSERT INTO app_logs (level, source, message, created_at) VALUES ('ERROR', 'antiguo', 'x', '2020-01-01 10:15:00')")) {
+                for (int i = 0; i < 5; i++) {
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+            }
+            LogCounters.apply(conn, Map.of(new LogCounters.Key("ERROR", "antiguo", "2020-01-01 10:00"), 5L));
+            return null;
+        });
+        assertEquals(5L, LogCounters.bySource().get("antiguo"));
+
+        LogRetention.purgeOlderThan(Instant.now().minus(Duration.ofDays(1)));
+
+        assertNull(LogCounters.bySource().get("antiguo"));
+        assertEquals(LogCounters.byLevel(), countFromTable());
+    }
+
+    @Test
+    void coldReadDoesNotWaitForTheWriter() throws Exception {
+        Logger.warn(LogCountersTest.class, "aviso");
+        Logger.flush();
+        LogCounters.invalidate();
+        long version = LogCounters.version();
+
+        DBWriter.Pause pause = DBWriter.pause();
+        try {
+            assertTrue(LogCounters.byLevel().isEmpty());
+        } finally {
+            pause.resume();
+        }
+        DBWriter.flush();
+
+        assertNotEquals(version, LogCounters.version());
+        assertEquals(countFromTable(), LogCounters.byLevel());
+    }
+
+    /**
+     * Descarta la cache y espera a que la primera lectura la vuelva a cargar.
+     */
+    private static void reload() {
+        LogCounters.invalidate();
+        LogCounters.byLevel();
+        DBWriter.flush();
+    }
+
+    private static Map<String, Long> countFromTable() throws Exception {
+        Map<String, Long> counts = new TreeMap<>();
+        try (Connection conn = DBHelper.getConnection();
+             PreparedStatement ps = conn.prepareStatement("SELECT level, COUNT(*) FROM app_logs GROUP BY level");
+             ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                counts.put(rs.getString(1), rs.getLong(2));
+            }
+        }
+        return counts;
+    }
+}
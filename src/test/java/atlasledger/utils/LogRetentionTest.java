@@ -0,0 +1,80 @@
+package atlasledger.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.time.Duration;
+import java.time.Instant;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class LogRetentionTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Path originalPath;
+
+    @BeforeEach
+    void useTemporaryDatabase() {
+        originalPath = DBHelper.getDatabasePath();
+        DBHelper.overrideDatabasePath(tempDir.resolve("retencion.db"), false);
+        SchemaMigrator.awaitBackground();
+    }
+
+    @AfterEach
+    void restoreDatabase() {
+        DBHelper.overrideDatabasePath(originalPath, false);
+    }
+
+    @Test
+    void purgesOnlyExpiredEntriesInChunks() throws Exception {
+        int expired = LogRetention.PURGE_CHUNK * 2 + 500;
+        DBWriter.execute(conn -> {
+            try (PreparedStatement ps = conn.prepareStatement(
+                "INSERT INTO app_logs (level, source, message, created_at) VALUES ('INFO', 'retencion', ?, ?)")) {
+                for (int i = 0; i < expired; i++) {
+                    ps.setString(1, "antigua " + i);
+                    ps.setString(2, "2020-01-01 00:00:00");
+                    ps.addBatch();
+                }
+                ps.setString(1, "reciente");
+                ps.setString(2, "2999-01-01 00:00:00");
+                ps.addBatch();
+                ps.executeBatch();
+            }
+            return null;
+        });
+
+        long purged = LogRetention.purgeOlderThan(Instant.now().minus(Duration.ofDays(1)));
+
+        assertEquals(expired, purged);
+        assertEquals(1, count("SELECT COUNT(*) FROM app_logs WHERE source = 'retencion'"));
+    }
+
+    @Test
+    void purgeUsesCreatedAtIndex() throws Exception {
+        try (Connection conn = DBHelper.getConnection(); Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery("EXPLAIN QUERY PLAN " + QueryPlanAuditor.registeredQueries().get("LogRetention.purgeChunk"))) {
+            StringBuilder plan = new StringBuilder();
+            while (rs.next()) {
+                plan.append(rs.getString("detail")).append('\n');
+            }
+            assertTrue(plan.toString().contains("idx_logs_created"), plan.toString());
+        }
+    }
+
+    private static long count(String sql) throws Exception {
+        try (Connection conn = DBHelper.getConnection(); Statement st = conn.createStatement(); ResultSet rs = st.executeQuery(sql)) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+}
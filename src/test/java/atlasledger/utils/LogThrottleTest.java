@@ -0,0 +1,91 @@
+package atlasledger.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class LogThrottleTest {
+
+    @Test
+    void collapsesRepeatedTemplatesAndSummarisesOnNextWindow() throws Exception {
+        List<String> summaries = new ArrayList<>();
+        LogThrottle throttle = new LogThrottle(Duration.ofMillis(200), 3, (level, source, message) -> summaries.add(source + ": " + message));
+
+        int admitted = 0;
+        for (int i = 0; i < 100; i++) {
+            if (throttle.admit("ERROR", "ProductoDao", "Error guardando producto " + i)) {
+                admitted++;
+            }
+        }
+        assertEquals(3, admitted);
+        assertTrue(throttle.admit("ERROR", "OrdenDao", "Error guardando producto 1"));
+        assertTrue(summaries.isEmpty());
+
+        Thread.sleep(250);
+        assertTrue(throttle.admit("ERROR", "ProductoDao", "Error guardando producto 'P-9'"));
+
+        assertEquals(1, summaries.size());
+        assertTrue(summaries.get(0).startsWith("ProductoDao: Mensaje repetido 97 veces mas"), summaries.get(0));
+        assertTrue(summaries.get(0).endsWith("Error guardando producto #"), summaries.get(0));
+    }
+
+    @Test
+    void drainReportsOpenWindowsAndZeroWindowDisables() {
+        List<String> summaries = new ArrayList<>();
+        LogThrottle throttle = new LogThrottle(Duration.ofMinutes(1), 1, (level, source, message) -> summaries.add(message));
+        throttle.admit("WARN", "NetworkUtils", "Sin conexion");
+        throttle.admit("WARN", "NetworkUtils", "Sin conexion");
+        throttle.drain();
+        assertEquals(List.of("Mensaje repetido 1 veces mas en los ultimos 1 s: Sin conexion"), summaries);
+
+        throttle.configure(Duration.ZERO, 1);
+        for (int i = 0; i < 10; i++) {
+            assertTrue(throttle.admit("WARN", "NetworkUtils", "Sin conexion"));
+        }
+    }
+
+    @Test
+    void summaryKeepsTheLevelOfItsWindow() throws Exception {
+        List<String> summaries = new ArrayList<>();
+        LogThrottle throttle = new LogThrottle(Duration.ofMillis(200), 1, (level, source, message) -> summaries.add(level));
+        for (int i = 0; i < 3; i++) {
+            throttle.admit("ERROR", "SyncService", "Fallo enviando lote " + i);
+        }
+
+        Thread.sleep(250);
+        assertTrue(throttle.admit("INFO", "SyncService", "Fallo enviando lote 4"));
+
+        assertEquals(List.of("ERROR"), summaries);
+    }
+
+    @Test
+    void drainStartsANewWindow() {
+        List<String> summaries = new ArrayList<>();
+        LogThrottle throttle = new LogThrottle(Duration.ofMinutes(1), 1, (level, source, message) -> summaries.add(message));
+        throttle.admit("WARN", "NetworkUtils", "Sin conexion");
+        assertFalse(throttle.admit("WARN", "NetworkUtils", "Sin conexion"));
+        throttle.drain();
+
+        assertTrue(throttle.admit("WARN", "NetworkUtils", "Sin conexion"));
+        assertFalse(throttle.admit("WARN", "NetworkUtils", "Sin conexion"));
+        throttle.drain();
+        throttle.drain();
+
+        assertEquals(2, summaries.size());
+        assertTrue(summaries.get(1).startsWith("Mensaje repetido 1 veces mas"), summaries.get(1));
+    }
+
+    @Test
+    void templateReplacesNumbersAndQuotedLiterals() {
+        assertEquals("Orden '?' con # lineas", LogThrottle.template("Orden 'ORD-17' con 12 lineas"));
+        assertEquals("Producto '?' sin stock en '?'", LogThrottle.template("Producto \"P-1\" sin stock en 'A 3'"));
+        assertEquals("Lote # de #: it's #", LogThrottle.template("Lote 4 de 12: it's 100"));
+        assertEquals("", LogThrottle.template(null));
+        assertEquals("#" + "x".repeat(199), LogThrottle.template("123" + "x".repeat(500)));
+    }
+}
@@ -0,0 +1,91 @@
+package atlasledger.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import ch.qos.logback.core.util.FileSize;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class MappedFileLogAppenderTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void rollsSegmentsAndKeepsOnlyTheNewest() throws Exception {
+        LoggerContext context = new LoggerContext();
+        MappedFileLogAppender appender = new MappedFileLogAppender();
+        appender.setContext(context);
+        appender.setDirectory(tempDir.toString());
+        appender.setPrefix("prueba");
+        appender.setSegmentSize(FileSize.valueOf("4KB"));
+        appender.setMaxSegments(2);
+        appender.setOverflowPolicy("BLOCK");
+        appender.start();
+        assertTrue(appender.isStarted());
+
+        ch.qos.logback.classic.Logger logger = context.getLogger(MappedFileLogAppenderTest.class);
+        for (int i = 0; i < 500; i++) {
+            appender.doAppend(new LoggingEvent(MappedFileLogAppenderTest.class.getName(), logger, Level.INFO,
+                "Linea de prueba numero " + i, null, null));
+        }
+        appender.stop();
+        Path last = appender.activeSegment();
+
+        List<Path> segments;
+        try (Stream<Path> files = Files.list(tempDir)) {
+            segments = files.sorted().toList();
+        }
+        assertEquals(2, segments.size());
+        assertEquals(last, segments.get(1));
+        assertTrue(Files.size(segments.get(0)) <= 4096);
+        String content = Files.readString(last, StandardCharsets.UTF_8);
+        assertTrue(content.endsWith("[INFO] [MappedFileLogAppenderTest] Linea de prueba numero 499\n"));
+        assertTrue(content.indexOf('\0') < 0);
+    }
+
+    @Test
+    void splitsLinesLongerThanASegment() throws Exception {
+        LoggerContext context = new LoggerContext();
+        MappedFileLogAppender appender = new MappedFileLogAppender();
+        appender.setContext(context);
+        appender.setDirectory(tempDir.toString());
+        appender.setPrefix("larga");
+        appender.setSegmentSize(FileSize.valueOf("4KB"));
+        appender.setMaxSegments(10);
+        appender.setOverflowPolicy("BLOCK");
+        appender.start();
+
+        ch.qos.logback.classic.Logger logger = context.getLogger(MappedFileLogAppenderTest.class);
+        String largo = "x".repeat(10_000);
+        for (String message : List.of("antes", largo, "despues")) {
+            appender.doAppend(new LoggingEvent(MappedFileLogAppenderTest.class.getName(), logger, Level.INFO,
+                message, null, null));
+        }
+        appender.stop();
+
+        StringBuilder content = new StringBuilder();
+        List<Path> segments;
+        try (Stream<Path> files = Files.list(tempDir)) {
+            segments = files.sorted().toList();
+        }
+        for (Path segment : segments) {
+            assertTrue(Files.size(segment) <= 4096);
+            content.append(Files.readString(segment, StandardCharsets.UTF_8));
+        }
+        assertTrue(segments.size() >= 3);
+        List<String> lines = content.toString().lines().toList();
+        assertEquals(3, lines.size());
+        assertTrue(lines.get(1).endsWith("] " + largo), lines.get(1).substring(0, 80));
+        assertTrue(lines.get(2).endsWith("] despues"));
+    }
+}
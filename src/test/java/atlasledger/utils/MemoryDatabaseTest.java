@@ -0,0 +1,135 @@
+package atlasledger.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import atlasledger.dao.ProductoDao;
+import atlasledger.model.Producto;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class MemoryDatabaseTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Path originalPath;
+
+    @BeforeEach
+    void rememberDatabase() {
+        originalPath = DBHelper.getDatabasePath();
+    }
+
+    @AfterEach
+    void restoreDatabase() {
+        DBHelper.overrideDatabasePath(originalPath, false);
+    }
+
+    @Test
+    void changesReachDiskOnlyWhenSnapshotted() throws Exception {
+        Path file = tempDir.resolve("memoria.db");
+        DBHelper.useInMemoryDatabase(file, false);
+        SchemaMigrator.awaitBackground();
+        assertTrue(DBHelper.isInMemory());
+
+        ProductoDao.guardar(producto("MEM-1"));
+        assertTrue(ProductoDao.buscarPorCodigo("MEM-1").isPresent());
+        assertEquals(0, countOnDisk(file));
+
+        DBHelper.overrideDatabasePath(tempDir.resolve("otra.db"), false);
+        assertFalse(DBHelper.isInMemory());
+        assertEquals(1, countOnDisk(file));
+    }
+
+    @Test
+    void loadsExistingFileIntoMemory() throws Exception {
+        Path file = tempDir.resolve("existente.db");
+        DBHelper.overrideDatabasePath(file, false);
+        SchemaMigrator.awaitBackground();
+        ProductoDao.guardar(producto("DISCO-1"));
+
+        DBHelper.useInMemoryDatabase(file, false);
+        SchemaMigrator.awaitBackground();
+
+        assertTrue(DBHelper.isInMemory());
+        assertTrue(ProductoDao.buscarPorCodigo("DISCO-1").isPresent());
+    }
+
+    @Test
+    void readersDoNotSeeTheWritersUncommittedChanges() throws Exception {
+        DBHelper.useInMemoryDatabase(tempDir.resolve("aislada.db"), false);
+        SchemaMigrator.awaitBackground();
+        ProductoDao.guardar(producto("VISIBLE"));
+
+        // El lector arranca con la insercion sin confirmar y el comando la deshace: nunca debe verla.
+        CompletableFuture<Integer> lector = new CompletableFuture<>();
+        assertThrows(SQLException.class, () -> DBWriter.execute(conn -> {
+            try (Statement st = conn.createStatement()) {
+                st.executeUpdate("INSERT INTO productos (codigo, nombre) VALUES ('PENDIENTE', 'Sin confirmar')");
+            }
+            CompletableFuture.runAsync(() -> {
+                try {
+                    lector.complete(countProductos());
+                } catch (SQLException e) {
+                    lector.completeExceptionally(e);
+                }
+            });
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(200));
+            throw new SQLException("Cambio descartado");
+        }));
+
+        assertEquals(1, lector.get(10, TimeUnit.SECONDS));
+        assertEquals(1, countProductos());
+    }
+
+    private static int countProductos() throws SQLException {
+        try (Connection conn = DBHelper.getConnection();
+             Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM productos")) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+
+    private static Producto producto(String codigo) {
+        Producto producto = new Producto();
+        producto.setCodigo(codigo);
+        producto.setNombre("Producto " + codigo);
+        return producto;
+    }
+
+    private static int countOnDisk(Path file) throws Exception {
+        if (!Files.exists(file)) {
+            return 0;
+        }
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + file);
+             Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery(
+                 "SELECT COUNT(*) FROM sqlite_master WHERE name = 'productos'")) {
+            rs.next();
+            if (rs.getInt(1) == 0) {
+                return 0;
+            }
+        }
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + file);
+             Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM productos")) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+}
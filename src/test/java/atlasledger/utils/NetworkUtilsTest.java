@@ -6,6 +6,7 @@ import static org.junit.jupiter.api.Assertions.assertTrue;
 import atlasledger.model.Orden;
 import atlasledger.model.Producto;
 import atlasledger.model.Proveedor;
+import java.io.StringReader;
 import java.time.Duration;
 import java.util.Map;
 import org.junit.jupiter.api.Test;
@@ -76,6 +77,41 @@ class NetworkUtilsTest {
         assertEquals(Orden.Estado.APROBADA, orden.getEstado());
     }
 
+    @Test
+    void streamingMappersReadObjectsWithoutIntermediateMaps() throws Exception {
+        NetworkUtils utils = new NetworkUtils(Duration.ofSeconds(1));
+        JsonReader reader = new JsonReader(new StringReader("""
+            [
+              {"codigo": "P-1", "extra": {"anidado": [1, 2, {"a": null}]}, "nombre": "Teclado \\"pro\\"",
+               "stock": "7", "coste": 2, "precio": 4.5, "categoria": null},
+              {"codigo": "P-2", "stock": 1e2, "precio": "no"}
+            ]
+            """));
+
+        reader.beginArray();
+        Producto primero = utils.mapToProducto(reader);
+        Producto segundo = utils.mapToProducto(reader);
+        reader.endArray();
+
+        assertEquals("P-1", primero.getCodigo());
+        assertEquals("Teclado \"pro\"", primero.getNombre());
+        assertEquals("", primero.getCategoria());
+        assertEquals(7, primero.getStock());
+        assertEquals(2.0, primero.getCoste());
+        assertEquals(4.5, primero.getPrecio());
+        assertEquals("P-2", segundo.getCodigo());
+        assertEquals("", segundo.getNombre());
+        assertEquals(100, segundo.getStock());
+        assertEquals(0.0, segundo.getPrecio());
+        assertEquals(JsonReader.Token.END_DOCUMENT, reader.peek());
+
+        Orden orden = utils.mapToOrden(new JsonReader(new StringReader(
+            "{\"codigo\":\"OC-1\",\"fecha\":\"2024-03-01\",\"total\":150.75,\"estado\":\"APROBADA\"}")));
+        assertEquals("2024-03-01", orden.getFecha().toString());
+        assertEquals(150.75, orden.getTotal());
+        assertEquals(Orden.Estado.APROBADA, orden.getEstado());
+    }
+
     @Test
     void defaultTimeoutIsExposed() {
         Duration timeout = Duration.ofSeconds(4);
@@ -0,0 +1,126 @@
+package atlasledger.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.time.Duration;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class QueryMetricsTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Path originalPath;
+    private Duration originalThreshold;
+
+    @BeforeEach
+    void useTemporaryDatabase() {
+        originalPath = DBHelper.getDatabasePath();
+        originalThreshold = QueryMetrics.getSlowThreshold();
+        DBHelper.overrideDatabasePath(tempDir.resolve("metrics.db"), false);
+        SchemaMigrator.awaitBackground();
+    }
+
+    @AfterEach
+    void restoreDatabase() {
+        QueryMetrics.setSlowThreshold(originalThreshold);
+        DBHelper.overrideDatabasePath(originalPath, false);
+    }
+
+    @Test
+    void recordsLatencyAndRowsPerTemplate() throws Exception {
+        try (Connection conn = DBHelper.getConnection();
+             Statement st = conn.createStatement()) {
+            st.execute("CREATE TABLE medidas (valor INTEGER)");
+            try (PreparedStatement ps = conn.prepareStatement("INSERT INTO medidas (valor) VALUES (?)")) {
+                for (int i = 0; i < 10; i++) {
+                    ps.setInt(1, i);
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+            }
+        }
+        for (int i = 0; i < 3; i++) {
+            try (Connection conn = DBHelper.getConnection();
+                 PreparedStatement ps = conn.prepareStatement("SELECT valor FROM medidas WHERE valor >= ?")) {
+                ps.setInt(1, 5);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        rs.getInt(1);
+                    }
+                }
+            }
+        }
+
+        QueryMetrics.QueryStats select = stats("SELECT valor FROM medidas WHERE valor >= ?");
+        assertEquals(3, select.latency().count());
+        assertEquals(15, select.rows());
+        assertEquals(10, stats("INSERT INTO medidas (valor) VALUES (?)").rows());
+        assertTrue(QueryMetrics.connectionWait().count() > 0);
+    }
+
+    @Test
+    void statementsOverThresholdAreCountedAsSlow() throws Exception {
+        QueryMetrics.setSlowThreshold(Duration.ZERO);
+        try (Connection conn = DBHelper.getConnection();
+             Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM productos")) {
+            assertTrue(rs.next());
+        }
+
+        assertTrue(stats("SELECT COUNT(*) FROM productos").slow() >= 1);
+    }
+
+    @Test
+    void logPipelineWritesAreNeverSlow() {
+        assertTrue(QueryMetrics.isLogWrite("INSERT INTO app_logs (level, source, message, created_at) VALUES (?, ?, ?, ?)"));
+        assertTrue(QueryMetrics.isLogWrite(QueryMetrics.normalize(LogCounters.UPSERT_SQL)));
+        assertTrue(QueryMetrics.isLogWrite("DELETE FROM app_logs WHERE id IN (SELECT id FROM app_logs LIMIT ?)"));
+        assertTrue(QueryMetrics.isLogWrite("DELETE FROM app_log_counters WHERE total <= 0"));
+        assertFalse(QueryMetrics.isLogWrite("INSERT INTO productos (codigo) VALUES (?)"));
+        assertFalse(QueryMetrics.isLogWrite("SELECT * FROM app_logs"));
+    }
+
+    @Test
+    void dynamicInListsShareOneTemplateAndTemplatesAreCapped() throws Exception {
+        QueryMetrics.reset();
+        try (Connection conn = DBHelper.getConnection()) {
+            for (int size = 1; size <= 5; size++) {
+                String sql = "SELECT codigo FROM productos WHERE id IN (" + "?,".repeat(size - 1) + "?)";
+                try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                    for (int i = 1; i <= size; i++) {
+                        ps.setInt(i, i);
+                    }
+                    try (ResultSet rs = ps.executeQuery()) {
+                        assertFalse(rs.next());
+                    }
+                }
+            }
+        }
+        assertEquals(5, stats("SELECT codigo FROM productos WHERE id IN (?, ...)").latency().count());
+
+        for (int i = 0; i < QueryMetrics.MAX_TEMPLATES + 50; i++) {
+            QueryMetrics.record("SELECT " + i, 1, 0, null);
+        }
+        assertEquals(QueryMetrics.MAX_TEMPLATES + 1, QueryMetrics.snapshot().size());
+        assertTrue(stats(QueryMetrics.OTHER_TEMPLATE).latency().count() >= 50);
+        QueryMetrics.reset();
+    }
+
+    private static QueryMetrics.QueryStats stats(String sql) {
+        return QueryMetrics.snapshot().stream()
+            .filter(stats -> stats.sql().equals(sql))
+            .findFirst()
+            .orElseThrow();
+    }
+}
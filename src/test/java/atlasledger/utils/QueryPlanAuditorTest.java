@@ -0,0 +1,68 @@
+package atlasledger.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import atlasledger.dao.DocumentQueueDao;
+import atlasledger.dao.OrdenDao;
+import atlasledger.dao.ProductoDao;
+import atlasledger.dao.ProveedorDao;
+import atlasledger.dao.WorkerDao;
+import atlasledger.service.AnalyticsService;
+import atlasledger.service.SyncService;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class QueryPlanAuditorTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Path originalPath;
+
+    @BeforeEach
+    void useTemporaryDatabase() {
+        originalPath = DBHelper.getDatabasePath();
+        DBHelper.overrideDatabasePath(tempDir.resolve("plans.db"), false);
+        SchemaMigrator.awaitBackground();
+    }
+
+    @AfterEach
+    void restoreDatabase() {
+        DBHelper.overrideDatabasePath(originalPath, false);
+    }
+
+    @Test
+    void registeredQueriesUseIndexes() throws Exception {
+        try (Connection conn = DBHelper.getConnection()) {
+            List<QueryPlanAuditor.Finding> findings = QueryPlanAuditor.audit(conn,
+                ProductoDao.class, ProveedorDao.class, OrdenDao.class, DocumentQueueDao.class,
+                WorkerDao.class, SyncService.class, AnalyticsService.class).stream()
+                .filter(finding -> !finding.query().startsWith("QueryPlanAuditorTest."))
+                .toList();
+
+            assertTrue(QueryPlanAuditor.registeredQueries().containsKey("SyncService.obtenerPendientes"));
+            assertEquals(List.of(), findings);
+        }
+    }
+
+    @Test
+    void reportsFullScansAndTemporarySorts() throws Exception {
+        QueryPlanAuditor.register(QueryPlanAuditorTest.class, "sinIndice",
+            "SELECT codigo FROM productos WHERE stock > 10 ORDER BY precio");
+        try (Connection conn = DBHelper.getConnection()) {
+            List<QueryPlanAuditor.Finding> findings = QueryPlanAuditor.audit(conn).stream()
+                .filter(finding -> finding.query().equals("QueryPlanAuditorTest.sinIndice"))
+                .toList();
+
+            assertEquals(2, findings.size());
+            assertEquals(QueryPlanAuditor.Issue.FULL_SCAN, findings.get(0).issue());
+            assertEquals(QueryPlanAuditor.Issue.TEMP_B_TREE, findings.get(1).issue());
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package atlasledger.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class SchemaMigratorTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final List<Migration> migrations = List.of(
+        Migration.sql(1, "Tabla", "CREATE TABLE items (id INTEGER PRIMARY KEY, nombre TEXT)"),
+        Migration.sql(2, "Datos", "INSERT INTO items (nombre) VALUES ('a;b')"),
+        Migration.sql(3, "Indice", "CREATE INDEX idx_items_nombre ON items(nombre)").inBackground()
+    );
+
+    @Test
+    void appliesForegroundMigrationsOnceAndLeavesBackgroundPending() throws Exception {
+        try (Connection conn = open()) {
+            assertEquals(2, SchemaMigrator.migrate(conn, migrations));
+            assertEquals(0, SchemaMigrator.migrate(conn, migrations));
+            assertEquals(1, count(conn, "SELECT COUNT(*) FROM items"));
+            assertEquals(2, count(conn, "SELECT COUNT(*) FROM schema_version"));
+
+            List<Migration> pending = SchemaMigrator.pendingBackground(conn, migrations);
+            assertEquals(1, pending.size());
+            assertEquals(3, pending.get(0).getVersion());
+            assertEquals(0, count(conn, "PRAGMA user_version"));
+        }
+    }
+
+    @Test
+    void completedSchemaTakesFastPath() throws Exception {
+        List<Migration> foreground = migrations.subList(0, 2);
+        try (Connection conn = open()) {
+            SchemaMigrator.migrate(conn, foreground);
+            assertEquals(2, count(conn, "PRAGMA user_version"));
+            assertTrue(SchemaMigrator.isCurrent(conn, foreground));
+            assertTrue(SchemaMigrator.pendingBackground(conn, foreground).isEmpty());
+        }
+    }
+
+    @Test
+    void splitStatementsIgnoresSeparatorsInLiteralsAndComments() {
+        String script = """
+            -- cabecera; con separador
+            CREATE TABLE t (v TEXT);
+            /* bloque; */ INSERT INTO t VALUES ('x;y');
+            INSERT INTO t VALUES ('it''s')
+            """;
+
+        List<String> statements = SchemaMigrator.splitStatements(script);
+
+        assertEquals(3, statements.size());
+        assertEquals("CREATE TABLE t (v TEXT)", statements.get(0));
+        assertTrue(statements.get(1).endsWith("INSERT INTO t VALUES ('x;y')"));
+        assertEquals("INSERT INTO t VALUES ('it''s')", statements.get(2));
+    }
+
+    @Test
+    void freshDatabaseEndsWithTheCurrentIndexSet() throws Exception {
+        Path originalPath = DBHelper.getDatabasePath();
+        DBHelper.overrideDatabasePath(tempDir.resolve("nueva.db"), false);
+        try {
+            SchemaMigrator.awaitBackground();
+            Set<String> indices = new TreeSet<>();
+            try (Connection conn = DBHelper.getConnection();
+                 Statement st = conn.createStatement();
+                 ResultSet rs = st.executeQuery("SELECT name FROM sqlite_master WHERE type = 'index' AND sql IS NOT NULL")) {
+                while (rs.next()) {
+                    indices.add(rs.getString(1));
+                }
+            }
+
+            assertEquals(new TreeSet<>(List.of(
+                "idx_document_queue_status", "idx_logs_created", "idx_logs_level",
+                "idx_ordenes_codigo", "idx_ordenes_fecha", "idx_ordenes_mes",
+                "idx_productos_categoria", "idx_productos_codigo", "idx_productos_nombre", "idx_productos_proveedor",
+                "idx_proveedores_codigo", "idx_proveedores_nombre",
+                "idx_sync_estado_proximo", "idx_sync_registro", "idx_workers_username")), indices);
+        } finally {
+            DBHelper.overrideDatabasePath(originalPath, false);
+        }
+    }
+
+    private Connection open() throws Exception {
+        return DriverManager.getConnection("jdbc:sqlite:" + tempDir.resolve("schema.db"));
+    }
+
+    private static int count(Connection conn, String sql) throws Exception {
+        try (Statement st = conn.createStatement(); ResultSet rs = st.executeQuery(sql)) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+}